@@ -0,0 +1,452 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.hydrator.plugin.batch.action;
+
+import co.cask.cdap.api.annotation.Description;
+import co.cask.cdap.api.annotation.Macro;
+import co.cask.cdap.api.annotation.Name;
+import co.cask.cdap.api.annotation.Plugin;
+import co.cask.cdap.api.data.batch.InputFormatProvider;
+import co.cask.cdap.api.data.batch.OutputFormatProvider;
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.plugin.PluginConfig;
+import co.cask.cdap.etl.api.PipelineConfigurer;
+import co.cask.cdap.etl.api.action.Action;
+import co.cask.cdap.etl.api.action.ActionContext;
+import co.cask.hydrator.format.FileFormat;
+import co.cask.hydrator.format.FileStatistics;
+import co.cask.hydrator.format.GzipMemberIndex;
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.reflect.TypeToken;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.JobID;
+import org.apache.hadoop.mapreduce.JobStatus;
+import org.apache.hadoop.mapreduce.OutputCommitter;
+import org.apache.hadoop.mapreduce.OutputFormat;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskID;
+import org.apache.hadoop.mapreduce.TaskType;
+import org.apache.hadoop.mapreduce.lib.input.CombineFileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.CombineFileSplit;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.task.JobContextImpl;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+
+/**
+ * Action that compacts the small files in a directory into larger files. The files are read and written with the
+ * input and output format plugins of their format, in the process that runs the action.
+ *
+ * Each group of files is rewritten into a temporary directory. Once the new files are complete, the names of the files
+ * they replace are written to a marker file in the temporary directory, and the old files are deleted before the new
+ * files are moved into the directory. If the action fails after the marker is written, the next run finishes the
+ * swap, and if it fails before, the next run deletes the temporary directory.
+ */
+@Plugin(type = Action.PLUGIN_TYPE)
+@Name("FileCompact")
+@Description("Action to compact small files in a directory into larger files.")
+public class FileCompactAction extends Action {
+  private static final Logger LOG = LoggerFactory.getLogger(FileCompactAction.class);
+  private static final String INPUT_FORMAT_PLUGIN_ID = "inputformat";
+  private static final String OUTPUT_FORMAT_PLUGIN_ID = "outputformat";
+  private static final String COMPACTED_PREFIX = "compacted-";
+  private static final String COMPACTION_DIR_PREFIX = "_compaction-";
+  private static final String COMMIT_MARKER = "_COMMITTED";
+
+  private final Conf config;
+
+  public FileCompactAction(Conf config) {
+    this.config = config;
+  }
+
+  @Override
+  public void configurePipeline(PipelineConfigurer pipelineConfigurer) {
+    config.validate();
+    if (config.containsMacro("format")) {
+      return;
+    }
+    String format = config.getFormat().name().toLowerCase();
+    if (pipelineConfigurer.usePlugin("inputformat", format, INPUT_FORMAT_PLUGIN_ID, config.getProperties()) == null) {
+      throw new IllegalArgumentException(String.format("Could not find the '%s' input format.", format));
+    }
+    if (pipelineConfigurer.usePlugin("outputformat", format, OUTPUT_FORMAT_PLUGIN_ID,
+                                     config.getProperties()) == null) {
+      throw new IllegalArgumentException(String.format("Could not find the '%s' output format.", format));
+    }
+  }
+
+  @Override
+  public void run(ActionContext context) throws Exception {
+    config.validate();
+    InputFormatProvider inputFormatProvider = context.newPluginInstance(INPUT_FORMAT_PLUGIN_ID);
+    OutputFormatProvider outputFormatProvider = context.newPluginInstance(OUTPUT_FORMAT_PLUGIN_ID);
+
+    Configuration conf = new Configuration();
+    for (Map.Entry<String, String> entry : config.getFileSystemProperties().entrySet()) {
+      conf.set(entry.getKey(), entry.getValue());
+    }
+    for (Map.Entry<String, String> entry : inputFormatProvider.getInputFormatConfiguration().entrySet()) {
+      conf.set(entry.getKey(), entry.getValue());
+    }
+    for (Map.Entry<String, String> entry : outputFormatProvider.getOutputFormatConfiguration().entrySet()) {
+      conf.set(entry.getKey(), entry.getValue());
+    }
+    conf.setBoolean("mapreduce.fileoutputcommitter.marksuccessfuljobs", false);
+
+    Path dir = new Path(config.path);
+    FileSystem fs = dir.getFileSystem(conf);
+    recover(fs, dir);
+    long targetFileSize = config.getTargetFileSize();
+    Pattern pattern = config.fileRegex == null ? null : Pattern.compile(config.fileRegex);
+    List<FileStatus> smallFiles = new ArrayList<>();
+    for (FileStatus file : fs.listStatus(dir)) {
+      String name = file.getPath().getName();
+      if (file.isFile() && !name.startsWith("_") && !name.startsWith(".") && file.getLen() < targetFileSize
+        && (pattern == null || pattern.matcher(name).matches())) {
+        smallFiles.add(file);
+      }
+    }
+
+    // group the files so that each group is about the target size, and only rewrite groups of more than one file
+    int compacted = 0;
+    int written = 0;
+    List<FileStatus> group = new ArrayList<>();
+    long groupSize = 0L;
+    for (FileStatus file : smallFiles) {
+      if (!group.isEmpty() && groupSize + file.getLen() > targetFileSize) {
+        written += compact(fs, dir, group, conf, inputFormatProvider, outputFormatProvider);
+        compacted += group.size() > 1 ? group.size() : 0;
+        group = new ArrayList<>();
+        groupSize = 0L;
+      }
+      group.add(file);
+      groupSize += file.getLen();
+    }
+    written += compact(fs, dir, group, conf, inputFormatProvider, outputFormatProvider);
+    compacted += group.size() > 1 ? group.size() : 0;
+    LOG.info("Compacted {} files in {} into {} files.", compacted, dir, written);
+  }
+
+  /**
+   * Finishes or rolls back the compactions that were interrupted by a failure of a previous run.
+   */
+  private static void recover(FileSystem fs, Path dir) throws IOException {
+    for (FileStatus status : fs.listStatus(dir)) {
+      String name = status.getPath().getName();
+      if (!status.isDirectory() || !name.startsWith(COMPACTION_DIR_PREFIX)) {
+        continue;
+      }
+      if (fs.exists(new Path(status.getPath(), COMMIT_MARKER))) {
+        LOG.info("Finishing the interrupted compaction in {}.", status.getPath());
+        swap(fs, dir, status.getPath(), name.substring(COMPACTION_DIR_PREFIX.length()));
+      } else {
+        LOG.info("Deleting the incomplete compaction in {}.", status.getPath());
+        fs.delete(status.getPath(), true);
+      }
+    }
+  }
+
+  /**
+   * Rewrites a group of files into the directory and deletes them. The new files are written to a temporary
+   * directory first, and are only swapped with the old files once they are complete.
+   *
+   * @return the number of files written
+   */
+  private int compact(FileSystem fs, Path dir, List<FileStatus> files, Configuration conf,
+                      InputFormatProvider inputFormatProvider,
+                      OutputFormatProvider outputFormatProvider) throws IOException, InterruptedException {
+    if (files.size() < 2) {
+      return 0;
+    }
+    String id = UUID.randomUUID().toString();
+    Path tmpDir = new Path(dir, COMPACTION_DIR_PREFIX + id);
+    Configuration jobConf = new Configuration(conf);
+    jobConf.set(FileOutputFormat.OUTDIR, tmpDir.toString());
+    TaskAttemptID taskAttemptId = new TaskAttemptID(new TaskID(new JobID("compaction", 0), TaskType.MAP, 0), 0);
+    JobContext jobContext = new JobContextImpl(jobConf, taskAttemptId.getJobID());
+    TaskAttemptContext taskContext = new TaskAttemptContextImpl(jobConf, taskAttemptId);
+
+    InputFormat<NullWritable, StructuredRecord> inputFormat =
+      newInstance(inputFormatProvider, inputFormatProvider.getInputFormatClassName(), jobConf);
+    OutputFormat<NullWritable, StructuredRecord> outputFormat =
+      newInstance(outputFormatProvider, outputFormatProvider.getOutputFormatClassName(), jobConf);
+    OutputCommitter committer = outputFormat.getOutputCommitter(taskContext);
+    try {
+      committer.setupJob(jobContext);
+      committer.setupTask(taskContext);
+      RecordWriter<NullWritable, StructuredRecord> writer = outputFormat.getRecordWriter(taskContext);
+      try {
+        for (InputSplit split : getSplits(inputFormat, files)) {
+          try (RecordReader<NullWritable, StructuredRecord> reader = inputFormat.createRecordReader(split,
+                                                                                                  taskContext)) {
+            reader.initialize(split, taskContext);
+            while (reader.nextKeyValue()) {
+              writer.write(NullWritable.get(), reader.getCurrentValue());
+            }
+          }
+        }
+      } finally {
+        writer.close(taskContext);
+      }
+      if (committer.needsTaskCommit(taskContext)) {
+        committer.commitTask(taskContext);
+      }
+      committer.commitJob(jobContext);
+    } catch (IOException | InterruptedException | RuntimeException e) {
+      try {
+        committer.abortTask(taskContext);
+        committer.abortJob(jobContext, JobStatus.State.FAILED);
+      } catch (IOException abortException) {
+        e.addSuppressed(abortException);
+      }
+      fs.delete(tmpDir, true);
+      throw e;
+    }
+
+    writeCommitMarker(fs, tmpDir, files);
+    return swap(fs, dir, tmpDir, id);
+  }
+
+  /**
+   * Writes the names of the files that are replaced by a compaction to its marker file. The marker is written under
+   * another name and renamed, so that it is either complete or missing.
+   */
+  private static void writeCommitMarker(FileSystem fs, Path tmpDir, List<FileStatus> files) throws IOException {
+    Path tmpMarker = new Path(tmpDir, COMMIT_MARKER + ".tmp");
+    try (FSDataOutputStream out = fs.create(tmpMarker, true)) {
+      for (FileStatus file : files) {
+        out.write((file.getPath().getName() + "\n").getBytes(StandardCharsets.UTF_8));
+      }
+    }
+    Path marker = new Path(tmpDir, COMMIT_MARKER);
+    if (!fs.rename(tmpMarker, marker)) {
+      throw new IOException(String.format("Failed to move compaction marker %s to %s", tmpMarker, marker));
+    }
+  }
+
+  /**
+   * Deletes the files listed in the marker of a compaction, and moves the new files into the directory. Files are
+   * moved and deleted with their hidden index and statistics files. This can be repeated after a failure, since
+   * files that were already deleted or moved are skipped.
+   *
+   * @return the number of files moved into the directory
+   */
+  private static int swap(FileSystem fs, Path dir, Path tmpDir, String id) throws IOException {
+    List<String> replaced = new ArrayList<>();
+    try (BufferedReader reader = new BufferedReader(
+      new InputStreamReader(fs.open(new Path(tmpDir, COMMIT_MARKER)), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (!line.isEmpty()) {
+          replaced.add(line);
+        }
+      }
+    }
+    for (String name : replaced) {
+      Path file = new Path(dir, name);
+      for (Path sideFile : getSideFiles(file)) {
+        fs.delete(sideFile, false);
+      }
+      if (fs.exists(file) && !fs.delete(file, false)) {
+        throw new IOException(String.format("Failed to delete compacted file %s", file));
+      }
+    }
+
+    int written = 0;
+    for (FileStatus output : fs.listStatus(tmpDir)) {
+      String name = output.getPath().getName();
+      if (!output.isFile() || name.startsWith("_") || name.startsWith(".")) {
+        continue;
+      }
+      Path dest = new Path(dir, COMPACTED_PREFIX + id + "-" + name);
+      List<Path> sideFiles = getSideFiles(output.getPath());
+      List<Path> destSideFiles = getSideFiles(dest);
+      for (int i = 0; i < sideFiles.size(); i++) {
+        if (fs.exists(sideFiles.get(i))) {
+          move(fs, sideFiles.get(i), destSideFiles.get(i));
+        }
+      }
+      move(fs, output.getPath(), dest);
+      written++;
+    }
+    fs.delete(tmpDir, true);
+    return written;
+  }
+
+  /**
+   * Returns the hidden files that belong to a data file.
+   */
+  private static List<Path> getSideFiles(Path file) {
+    return Arrays.asList(GzipMemberIndex.getIndexPath(file), FileStatistics.getStatisticsPath(file));
+  }
+
+  private static void move(FileSystem fs, Path src, Path dest) throws IOException {
+    if (!fs.rename(src, dest)) {
+      throw new IOException(String.format("Failed to move compacted file %s to %s", src, dest));
+    }
+  }
+
+  private List<InputSplit> getSplits(InputFormat<NullWritable, StructuredRecord> inputFormat, List<FileStatus> files) {
+    if (inputFormat instanceof CombineFileInputFormat) {
+      Path[] paths = new Path[files.size()];
+      long[] starts = new long[files.size()];
+      long[] lengths = new long[files.size()];
+      for (int i = 0; i < files.size(); i++) {
+        paths[i] = files.get(i).getPath();
+        lengths[i] = files.get(i).getLen();
+      }
+      return Collections.singletonList(new CombineFileSplit(paths, starts, lengths, new String[0]));
+    }
+    List<InputSplit> splits = new ArrayList<>(files.size());
+    for (FileStatus file : files) {
+      splits.add(new FileSplit(file.getPath(), 0L, file.getLen(), new String[0]));
+    }
+    return splits;
+  }
+
+  /**
+   * Creates an instance of a class of a format plugin, which is loaded by the classloader of the plugin.
+   */
+  @SuppressWarnings("unchecked")
+  private static <T> T newInstance(Object plugin, String className, Configuration conf) {
+    try {
+      Class<?> cls = plugin.getClass().getClassLoader().loadClass(className);
+      return (T) ReflectionUtils.newInstance(cls, conf);
+    } catch (ClassNotFoundException e) {
+      throw new IllegalStateException(String.format("Unable to load class %s", className), e);
+    }
+  }
+
+  /**
+   * Config for the file compact action.
+   */
+  public static class Conf extends PluginConfig {
+    private static final Gson GSON = new Gson();
+    private static final Type MAP_TYPE = new TypeToken<Map<String, String>>() { }.getType();
+    private static final long DEFAULT_TARGET_FILE_SIZE = 128 * 1024 * 1024L;
+
+    @Macro
+    @Description("The directory that contains the files to compact. Sub-directories are not compacted. "
+      + "For example: hdfs://hostname/output/2018-01-01")
+    private String path;
+
+    @Description("The format of the files. The format must be one of 'json', 'avro', 'parquet', 'orc', 'csv', "
+      + "'tsv', or 'delimited'.")
+    private String format;
+
+    @Macro
+    @Nullable
+    @Description("The schema of the records in the files.")
+    private String schema;
+
+    @Macro
+    @Nullable
+    @Description("The delimiter of the values if the format is 'delimited'.")
+    private String delimiter;
+
+    @Macro
+    @Nullable
+    @Description("Size in bytes that compacted files should have. Files that are smaller are combined into files of "
+      + "about this size. The default is 134217728 (128MB).")
+    private Long targetFileSize;
+
+    @Macro
+    @Nullable
+    @Description("Regular expression that the names of the files to compact must match. "
+      + "If not specified, all the files in the directory are compacted.")
+    private String fileRegex;
+
+    @Macro
+    @Nullable
+    @Description("Advanced feature to specify any additional properties that should be used with the file system.")
+    private String fileSystemProperties;
+
+    private Conf() {
+      targetFileSize = DEFAULT_TARGET_FILE_SIZE;
+      fileSystemProperties = "{}";
+    }
+
+    public void validate() {
+      if (!containsMacro("format")) {
+        getFormat();
+      }
+      if (!containsMacro("targetFileSize") && targetFileSize != null && targetFileSize <= 0) {
+        throw new IllegalArgumentException(
+          String.format("The target file size must be positive, but found %d.", targetFileSize));
+      }
+      if (!containsMacro("fileRegex") && fileRegex != null) {
+        try {
+          Pattern.compile(fileRegex);
+        } catch (Exception e) {
+          throw new IllegalArgumentException(String.format("File regex %s is invalid: %s",
+                                                           fileRegex, e.getMessage()), e);
+        }
+      }
+      if (!containsMacro("fileSystemProperties")) {
+        getFileSystemProperties();
+      }
+    }
+
+    private long getTargetFileSize() {
+      return targetFileSize == null ? DEFAULT_TARGET_FILE_SIZE : targetFileSize;
+    }
+
+    private FileFormat getFormat() {
+      return FileFormat.from(format, f -> f.canRead() && f.canWrite());
+    }
+
+    private Map<String, String> getFileSystemProperties() {
+      if (fileSystemProperties == null || fileSystemProperties.isEmpty()) {
+        return Collections.emptyMap();
+      }
+      try {
+        return GSON.fromJson(fileSystemProperties, MAP_TYPE);
+      } catch (JsonSyntaxException e) {
+        throw new IllegalArgumentException("Unable to parse filesystem properties: " + e.getMessage(), e);
+      }
+    }
+  }
+}
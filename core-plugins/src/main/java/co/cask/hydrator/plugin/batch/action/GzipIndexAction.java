@@ -0,0 +1,251 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.hydrator.plugin.batch.action;
+
+import co.cask.cdap.api.annotation.Description;
+import co.cask.cdap.api.annotation.Macro;
+import co.cask.cdap.api.annotation.Name;
+import co.cask.cdap.api.annotation.Plugin;
+import co.cask.cdap.api.plugin.PluginConfig;
+import co.cask.cdap.etl.api.PipelineConfigurer;
+import co.cask.cdap.etl.api.action.Action;
+import co.cask.cdap.etl.api.action.ActionContext;
+import co.cask.hydrator.format.GzipMemberIndex;
+import co.cask.hydrator.format.output.ParallelGzipOutputStream;
+import com.google.common.io.CountingInputStream;
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.reflect.TypeToken;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.GzipCodec;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+
+/**
+ * Action that rewrites large gzip files into files of independently compressed gzip members, along with an index of
+ * the members. The rewritten files are still regular gzip files, but they can be split when they are read by the
+ * text, csv, tsv, delimited and json formats, so that a large file is read by several tasks instead of one.
+ */
+@Plugin(type = Action.PLUGIN_TYPE)
+@Name("GzipIndex")
+@Description("Action to rewrite large gzip files into indexed gzip files that can be split when they are read.")
+public class GzipIndexAction extends Action {
+  private static final Logger LOG = LoggerFactory.getLogger(GzipIndexAction.class);
+  private static final String GZIP_EXTENSION = ".gz";
+
+  private final Conf config;
+
+  public GzipIndexAction(Conf config) {
+    this.config = config;
+  }
+
+  @Override
+  public void configurePipeline(PipelineConfigurer pipelineConfigurer) {
+    config.validate();
+  }
+
+  @Override
+  public void run(ActionContext context) throws Exception {
+    config.validate();
+    Configuration conf = new Configuration();
+    for (Map.Entry<String, String> entry : config.getFileSystemProperties().entrySet()) {
+      conf.set(entry.getKey(), entry.getValue());
+    }
+
+    Path path = new Path(config.path);
+    FileSystem fs = path.getFileSystem(conf);
+    Pattern pattern = config.fileRegex == null ? null : Pattern.compile(config.fileRegex);
+    int indexed = 0;
+    for (FileStatus file : fs.listStatus(path)) {
+      String name = file.getPath().getName();
+      if (!file.isFile() || !name.endsWith(GZIP_EXTENSION) || name.startsWith("_") || name.startsWith(".")
+        || file.getLen() < config.getMinFileSize() || (pattern != null && !pattern.matcher(name).matches())
+        || GzipMemberIndex.read(fs, file.getPath()) != null) {
+        continue;
+      }
+      rewrite(fs, conf, file);
+      indexed++;
+    }
+    LOG.info("Rewrote {} gzip files in {} with an index.", indexed, path);
+  }
+
+  /**
+   * Rewrites a gzip file with an index. The new file is written next to the old file first, and the old file is only
+   * replaced once the new file is complete, so that the data is never lost.
+   *
+   * The file is decompressed with Hadoop's gzip codec, which reads every member of a file that already consists of
+   * several members. The GZIPInputStream of Java 8 decides whether another member follows with
+   * {@link InputStream#available()}, which some file systems always answer with 0, so it can stop after the first
+   * member. As a safeguard, the old file is only replaced if all of its bytes were consumed.
+   */
+  private void rewrite(FileSystem fs, Configuration conf, FileStatus file) throws IOException {
+    Path path = file.getPath();
+    String id = UUID.randomUUID().toString();
+    Path tmpFile = new Path(path.getParent(), "_gzip-index-" + id + GZIP_EXTENSION);
+    Path oldFile = new Path(path.getParent(), "_gzip-index-" + id + ".old");
+    GzipMemberIndex index = new GzipMemberIndex();
+    try {
+      byte[] buffer = new byte[64 * 1024];
+      CompressionCodec codec = ReflectionUtils.newInstance(GzipCodec.class, conf);
+      try (CountingInputStream compressed = new CountingInputStream(fs.open(path));
+           InputStream in = codec.createInputStream(compressed)) {
+        try (OutputStream out = new ParallelGzipOutputStream(fs.create(tmpFile, false), config.getThreads(),
+                                                             config.getBlockSize(), index)) {
+          int read;
+          while ((read = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, read);
+          }
+        }
+        if (compressed.getCount() != file.getLen()) {
+          throw new IOException(String.format("Only %d of the %d bytes of the file were decompressed.",
+                                              compressed.getCount(), file.getLen()));
+        }
+      }
+    } catch (IOException e) {
+      fs.delete(tmpFile, false);
+      throw new IOException(String.format("Failed to rewrite gzip file %s: %s", path, e.getMessage()), e);
+    }
+
+    if (!fs.rename(path, oldFile)) {
+      fs.delete(tmpFile, false);
+      throw new IOException(String.format("Failed to move gzip file %s to %s", path, oldFile));
+    }
+    if (!fs.rename(tmpFile, path)) {
+      // put the old file back, so that the directory is left the way it was
+      fs.rename(oldFile, path);
+      throw new IOException(String.format("Failed to move rewritten gzip file %s to %s", tmpFile, path));
+    }
+    index.write(fs, path);
+    fs.delete(oldFile, false);
+    LOG.debug("Rewrote gzip file {} into {} members.", path, index.size());
+  }
+
+  /**
+   * Config for the gzip index action.
+   */
+  public static class Conf extends PluginConfig {
+    private static final Gson GSON = new Gson();
+    private static final Type MAP_TYPE = new TypeToken<Map<String, String>>() { }.getType();
+    private static final long DEFAULT_MIN_FILE_SIZE = 128 * 1024 * 1024L;
+    private static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+    private static final int DEFAULT_THREADS = 4;
+
+    @Macro
+    @Description("The directory that contains the gzip files to rewrite. Only files with the '.gz' extension are "
+      + "rewritten, and sub-directories are not rewritten. For example: hdfs://hostname/input/2018-01-01")
+    private String path;
+
+    @Macro
+    @Nullable
+    @Description("Regular expression that the names of the files to rewrite must match. "
+      + "If not specified, all the gzip files in the directory are rewritten.")
+    private String fileRegex;
+
+    @Macro
+    @Nullable
+    @Description("Size in bytes that a gzip file must have to be rewritten. Smaller files are left alone, since "
+      + "splitting them would not help. The default is 134217728 (128MB).")
+    private Long minFileSize;
+
+    @Macro
+    @Nullable
+    @Description("Number of uncompressed bytes in each gzip member. Files can only be split at the start of a member. "
+      + "Smaller members compress slightly worse. The default is 1048576 (1MB).")
+    private Integer blockSize;
+
+    @Macro
+    @Nullable
+    @Description("Number of threads to compress the members with. The default is 4.")
+    private Integer threads;
+
+    @Macro
+    @Nullable
+    @Description("Advanced feature to specify any additional properties that should be used with the file system.")
+    private String fileSystemProperties;
+
+    private Conf() {
+      minFileSize = DEFAULT_MIN_FILE_SIZE;
+      blockSize = DEFAULT_BLOCK_SIZE;
+      threads = DEFAULT_THREADS;
+      fileSystemProperties = "{}";
+    }
+
+    public void validate() {
+      if (!containsMacro("fileRegex") && fileRegex != null) {
+        try {
+          Pattern.compile(fileRegex);
+        } catch (Exception e) {
+          throw new IllegalArgumentException(String.format("File regex %s is invalid: %s",
+                                                           fileRegex, e.getMessage()), e);
+        }
+      }
+      if (!containsMacro("minFileSize") && minFileSize != null && minFileSize < 0) {
+        throw new IllegalArgumentException(
+          String.format("The minimum file size must not be negative, but found %d.", minFileSize));
+      }
+      if (!containsMacro("blockSize") && blockSize != null && blockSize <= 0) {
+        throw new IllegalArgumentException(
+          String.format("The block size must be positive, but found %d.", blockSize));
+      }
+      if (!containsMacro("threads") && threads != null && threads <= 0) {
+        throw new IllegalArgumentException(
+          String.format("The number of threads must be positive, but found %d.", threads));
+      }
+      if (!containsMacro("fileSystemProperties")) {
+        getFileSystemProperties();
+      }
+    }
+
+    private long getMinFileSize() {
+      return minFileSize == null ? DEFAULT_MIN_FILE_SIZE : minFileSize;
+    }
+
+    private int getBlockSize() {
+      return blockSize == null ? DEFAULT_BLOCK_SIZE : blockSize;
+    }
+
+    private int getThreads() {
+      return threads == null ? DEFAULT_THREADS : threads;
+    }
+
+    private Map<String, String> getFileSystemProperties() {
+      if (fileSystemProperties == null || fileSystemProperties.isEmpty()) {
+        return Collections.emptyMap();
+      }
+      try {
+        return GSON.fromJson(fileSystemProperties, MAP_TYPE);
+      } catch (JsonSyntaxException e) {
+        throw new IllegalArgumentException("Unable to parse filesystem properties: " + e.getMessage(), e);
+      }
+    }
+  }
+}
@@ -68,6 +68,18 @@ public class SnapshotFileBatchAvroSink extends SnapshotFileBatchSink<SnapshotFil
     @Description("Used to specify the compression codec to be used for the final dataset.")
     private String compressionCodec;
 
+    @Macro
+    @Nullable
+    @Description("Compression level of the 'deflate' codec, between 1 and 9. Higher levels compress more, "
+      + "but are slower.")
+    private Integer compressionLevel;
+
+    @Macro
+    @Nullable
+    @Description("Approximate number of uncompressed bytes in each block of the files. Larger blocks compress "
+      + "better, and smaller blocks allow finer splits. The default is 64000.")
+    private Integer syncInterval;
+
     @Override
     public void validate() {
       super.validate();
@@ -17,6 +17,7 @@
 package co.cask.hydrator.plugin.batch.sink;
 
 import co.cask.cdap.api.annotation.Description;
+import co.cask.cdap.api.annotation.Macro;
 import co.cask.cdap.api.annotation.Name;
 import co.cask.cdap.api.annotation.Plugin;
 import co.cask.cdap.api.annotation.Requirements;
@@ -63,6 +64,18 @@ public class TimePartitionedFileSetDatasetAvroSink extends
     @Description("Used to specify the compression codec to be used for the final dataset.")
     private String compressionCodec;
 
+    @Macro
+    @Nullable
+    @Description("Compression level of the 'deflate' codec, between 1 and 9. Higher levels compress more, "
+      + "but are slower.")
+    private Integer compressionLevel;
+
+    @Macro
+    @Nullable
+    @Description("Approximate number of uncompressed bytes in each block of the files. Larger blocks compress "
+      + "better, and smaller blocks allow finer splits. The default is 64000.")
+    private Integer syncInterval;
+
     public TPFSAvroSinkConfig(String name, @Nullable String basePath, @Nullable String pathFormat,
                               @Nullable String timeZone, @Nullable String compressionCodec) {
       super(name, basePath, pathFormat, timeZone);
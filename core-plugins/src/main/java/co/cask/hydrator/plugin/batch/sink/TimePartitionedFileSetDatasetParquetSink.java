@@ -17,6 +17,7 @@
 package co.cask.hydrator.plugin.batch.sink;
 
 import co.cask.cdap.api.annotation.Description;
+import co.cask.cdap.api.annotation.Macro;
 import co.cask.cdap.api.annotation.Name;
 import co.cask.cdap.api.annotation.Plugin;
 import co.cask.cdap.api.annotation.Requirements;
@@ -63,6 +64,23 @@ public class TimePartitionedFileSetDatasetParquetSink extends
     @Description("Used to specify the compression codec to be used for the final dataset.")
     private String compressionCodec;
 
+    @Macro
+    @Nullable
+    @Description("Size in bytes of each page, which is the unit of encoding and compression within a column. "
+      + "The default is 1048576 (1MB).")
+    private Integer pageSize;
+
+    @Macro
+    @Nullable
+    @Description("Size in bytes of each row group, which is the amount of data that is buffered in memory before "
+      + "it is written. The default is 134217728 (128MB).")
+    private Long rowGroupSize;
+
+    @Macro
+    @Nullable
+    @Description("Whether to dictionary encode columns with few distinct values. The default is true.")
+    private Boolean enableDictionary;
+
     public TPFSParquetSinkConfig(String name, @Nullable String basePath, @Nullable String pathFormat,
                                  @Nullable String timeZone, @Nullable String compressionCodec) {
       super(name, basePath, pathFormat, timeZone);
@@ -17,8 +17,11 @@
 package co.cask.hydrator.plugin.batch;
 
 import co.cask.cdap.common.test.TestSuite;
+import co.cask.hydrator.plugin.batch.action.FileCompactActionTestRun;
+import co.cask.hydrator.plugin.batch.action.GzipIndexActionTestRun;
 import co.cask.hydrator.plugin.batch.aggregator.DedupTestRun;
 import co.cask.hydrator.plugin.batch.aggregator.GroupByTestRun;
+import co.cask.hydrator.plugin.batch.sink.FileSinkTestRun;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
@@ -32,7 +35,10 @@ import org.junit.runners.Suite;
   ETLTPFSTestRun.class,
   ETLMapReduceTestRun.class,
   GroupByTestRun.class,
-  DedupTestRun.class
+  DedupTestRun.class,
+  FileCompactActionTestRun.class,
+  GzipIndexActionTestRun.class,
+  FileSinkTestRun.class
 // TODO: CDAP-12368
 //  ETLFTPTestRun.class,
 //  EmailActionTestRun.class,
@@ -44,12 +44,15 @@ import co.cask.format.delimited.output.DelimitedOutputFormatProvider;
 import co.cask.format.delimited.output.TSVOutputFormatProvider;
 import co.cask.format.json.input.JsonInputFormatProvider;
 import co.cask.format.json.output.JsonOutputFormatProvider;
+import co.cask.format.orc.input.OrcInputFormatProvider;
 import co.cask.format.orc.output.OrcOutputFormatProvider;
 import co.cask.format.parquet.input.ParquetInputFormatProvider;
 import co.cask.format.parquet.output.ParquetOutputFormatProvider;
 import co.cask.format.text.input.TextInputFormatProvider;
 import co.cask.hydrator.plugin.alert.TMSAlertPublisher;
 import co.cask.hydrator.plugin.batch.action.EmailAction;
+import co.cask.hydrator.plugin.batch.action.FileCompactAction;
+import co.cask.hydrator.plugin.batch.action.GzipIndexAction;
 import co.cask.hydrator.plugin.batch.action.SSHAction;
 import co.cask.hydrator.plugin.batch.aggregator.DedupAggregator;
 import co.cask.hydrator.plugin.batch.aggregator.GroupByAggregator;
@@ -149,6 +152,8 @@ public class ETLBatchTestBase extends HydratorTestBase {
                       Joiner.class,
                       EmailAction.class,
                       SSHAction.class,
+                      FileCompactAction.class,
+                      GzipIndexAction.class,
                       TMSAlertPublisher.class,
                       ErrorCollector.class,
                       FileSink.class);
@@ -168,8 +173,9 @@ public class ETLBatchTestBase extends HydratorTestBase {
                       ImmutableSet.of(JsonOutputFormatProvider.PLUGIN_CLASS, JsonInputFormatProvider.PLUGIN_CLASS),
                       JsonOutputFormatProvider.class, JsonInputFormatProvider.class);
     addPluginArtifact(NamespaceId.DEFAULT.artifact("formats-orc", "4.0.0"), DATAPIPELINE_ARTIFACT_ID,
-                      ImmutableSet.of(OrcOutputFormatProvider.PLUGIN_CLASS),
-                      OrcOutputFormatProvider.class, OrcOutputFormat.class, OrcStruct.class,
+                      ImmutableSet.of(OrcOutputFormatProvider.PLUGIN_CLASS, OrcInputFormatProvider.PLUGIN_CLASS),
+                      OrcOutputFormatProvider.class, OrcInputFormatProvider.class,
+                      OrcOutputFormat.class, OrcStruct.class,
                       TypeDescription.class, TimestampColumnVector.class);
     addPluginArtifact(NamespaceId.DEFAULT.artifact("formats-parquet", "4.0.0"), DATAPIPELINE_ARTIFACT_ID,
                       ImmutableSet.of(ParquetOutputFormatProvider.PLUGIN_CLASS,
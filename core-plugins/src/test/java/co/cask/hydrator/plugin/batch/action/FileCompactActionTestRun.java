@@ -0,0 +1,179 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.hydrator.plugin.batch.action;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.etl.api.action.Action;
+import co.cask.cdap.etl.proto.v2.ETLBatchConfig;
+import co.cask.cdap.etl.proto.v2.ETLPlugin;
+import co.cask.cdap.etl.proto.v2.ETLStage;
+import co.cask.cdap.test.ApplicationManager;
+import co.cask.hydrator.plugin.batch.ETLBatchTestBase;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests for {@link FileCompactAction}.
+ */
+public class FileCompactActionTestRun extends ETLBatchTestBase {
+  private static final Schema SCHEMA = Schema.recordOf("record",
+                                                       Schema.Field.of("id", Schema.of(Schema.Type.INT)),
+                                                       Schema.Field.of("name", Schema.of(Schema.Type.STRING)));
+
+  @ClassRule
+  public static TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testCompactJson() throws Exception {
+    File dir = folder.newFolder("compact");
+    List<String> expected = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      String line = String.format("{\"id\":%d,\"name\":\"name%d\"}", i, i);
+      expected.add(line);
+      Files.write(new File(dir, "part-" + i).toPath(), (line + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+    // larger than the target size, so it is left alone
+    Files.write(new File(dir, "big").toPath(), new byte[2048]);
+
+    ETLStage action = new ETLStage(
+      "compact",
+      new ETLPlugin("FileCompact", Action.PLUGIN_TYPE,
+                    ImmutableMap.of("path", dir.getAbsolutePath(),
+                                    "format", "json",
+                                    "schema", SCHEMA.toString(),
+                                    "targetFileSize", "1024"),
+                    null));
+    ETLBatchConfig etlConfig = ETLBatchConfig.builder("* * * * *")
+      .addStage(action)
+      .build();
+
+    ApplicationManager appManager = deployETL(etlConfig, "fileCompactTest");
+    runETLOnce(appManager);
+
+    List<String> actual = new ArrayList<>();
+    int compactedFiles = 0;
+    File[] files = dir.listFiles();
+    Assert.assertNotNull(files);
+    for (File file : files) {
+      String name = file.getName();
+      if (name.startsWith(".")) {
+        continue;
+      }
+      Assert.assertFalse(name.startsWith("part-"));
+      if (name.startsWith("compacted-")) {
+        compactedFiles++;
+        for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+          if (!line.isEmpty()) {
+            actual.add(line);
+          }
+        }
+      }
+    }
+    Assert.assertEquals(1, compactedFiles);
+    Assert.assertTrue(new File(dir, "big").exists());
+    Collections.sort(actual);
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void testSideFilesAndRecovery() throws Exception {
+    File dir = folder.newFolder("recover");
+    List<String> expected = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      String line = String.format("{\"id\":%d,\"name\":\"name%d\"}", i, i);
+      expected.add(line);
+      write(new File(dir, "part-" + i), line + "\n");
+      // the index and statistics files of a compacted file must be deleted with it
+      write(new File(dir, ".part-" + i + ".index"), "index");
+      write(new File(dir, ".part-" + i + ".stats"), "stats");
+    }
+
+    // a compaction that failed after its marker was written, when one of the two files it replaces was deleted
+    File committed = new File(dir, "_compaction-committed");
+    Assert.assertTrue(committed.mkdir());
+    String line = "{\"id\":10,\"name\":\"name10\"}";
+    expected.add(line);
+    write(new File(committed, "part-m-00000"), line + "\n");
+    write(new File(committed, ".part-m-00000.stats"), "stats");
+    write(new File(committed, "_COMMITTED"), "replaced-0\nreplaced-1\n");
+    write(new File(dir, "replaced-1"), "{\"id\":11,\"name\":\"name11\"}\n");
+    write(new File(dir, ".replaced-1.stats"), "stats");
+
+    // a compaction that failed before its marker was written
+    File incomplete = new File(dir, "_compaction-incomplete");
+    Assert.assertTrue(incomplete.mkdir());
+    write(new File(incomplete, "part-m-00000"), "{\"id\":20,\"name\":\"name20\"}\n");
+
+    ETLStage action = new ETLStage(
+      "compact",
+      new ETLPlugin("FileCompact", Action.PLUGIN_TYPE,
+                    ImmutableMap.of("path", dir.getAbsolutePath(),
+                                    "format", "json",
+                                    "schema", SCHEMA.toString(),
+                                    "targetFileSize", "1024",
+                                    "fileRegex", "part-.*"),
+                    null));
+    ETLBatchConfig etlConfig = ETLBatchConfig.builder("* * * * *")
+      .addStage(action)
+      .build();
+    runETLOnce(deployETL(etlConfig, "fileCompactRecoveryTest"));
+
+    List<String> actual = new ArrayList<>();
+    int compactedFiles = 0;
+    File[] files = dir.listFiles();
+    Assert.assertNotNull(files);
+    for (File file : files) {
+      String name = file.getName();
+      if (name.endsWith(".crc")) {
+        continue;
+      }
+      if (name.startsWith(".")) {
+        // only the statistics of the recovered file are left, under its new name
+        Assert.assertEquals(".compacted-committed-part-m-00000.stats", name);
+        continue;
+      }
+      Assert.assertTrue(name, name.startsWith("compacted-"));
+      compactedFiles++;
+      for (String fileLine : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+        if (!fileLine.isEmpty()) {
+          actual.add(fileLine);
+        }
+      }
+    }
+    Assert.assertEquals(2, compactedFiles);
+    Assert.assertTrue(new File(dir, "compacted-committed-part-m-00000").exists());
+    Assert.assertTrue(new File(dir, ".compacted-committed-part-m-00000.stats").exists());
+    Collections.sort(actual);
+    Collections.sort(expected);
+    Assert.assertEquals(expected, actual);
+  }
+
+  private static void write(File file, String content) throws IOException {
+    Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.hydrator.plugin.batch.action;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.dataset.table.Table;
+import co.cask.cdap.etl.api.action.Action;
+import co.cask.cdap.etl.api.batch.BatchSource;
+import co.cask.cdap.etl.mock.batch.MockSink;
+import co.cask.cdap.etl.proto.v2.ETLBatchConfig;
+import co.cask.cdap.etl.proto.v2.ETLPlugin;
+import co.cask.cdap.etl.proto.v2.ETLStage;
+import co.cask.cdap.test.ApplicationManager;
+import co.cask.cdap.test.DataSetManager;
+import co.cask.hydrator.common.Constants;
+import co.cask.hydrator.plugin.batch.ETLBatchTestBase;
+import co.cask.hydrator.plugin.common.Properties;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Tests for {@link GzipIndexAction}.
+ */
+public class GzipIndexActionTestRun extends ETLBatchTestBase {
+  private static final Schema SCHEMA = Schema.recordOf(
+    "file.record", Schema.Field.of("body", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+
+  @ClassRule
+  public static TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testIndexAndSplitGzip() throws Exception {
+    File dir = folder.newFolder("gzip");
+    File file = new File(dir, "lines.gz");
+    List<String> expected = new ArrayList<>();
+    try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(file)),
+                                                StandardCharsets.UTF_8)) {
+      for (int i = 0; i < 2000; i++) {
+        String line = "line " + i;
+        expected.add(line);
+        writer.write(line + "\n");
+      }
+    }
+
+    ETLStage action = new ETLStage(
+      "index",
+      new ETLPlugin("GzipIndex", Action.PLUGIN_TYPE,
+                    ImmutableMap.of("path", dir.getAbsolutePath(),
+                                    "minFileSize", "0",
+                                    "blockSize", "1000",
+                                    "threads", "2"),
+                    null));
+    ETLBatchConfig etlConfig = ETLBatchConfig.builder("* * * * *")
+      .addStage(action)
+      .build();
+    runETLOnce(deployETL(etlConfig, "gzipIndexTest"));
+
+    // the rewritten file is still a gzip file with the same content
+    Assert.assertTrue(new File(dir, ".lines.gz.index").exists());
+    Assert.assertEquals(expected, readLines(file));
+
+    // read it in small splits, which must contain every line exactly once
+    String outputDatasetName = "gzipIndexOutput";
+    ETLStage source = new ETLStage(
+      "source",
+      new ETLPlugin("File", BatchSource.PLUGIN_TYPE,
+                    ImmutableMap.of(Constants.Reference.REFERENCE_NAME, "gzipIndexSource",
+                                    Properties.File.PATH, file.getAbsolutePath(),
+                                    Properties.File.FORMAT, "text",
+                                    Properties.File.SCHEMA, SCHEMA.toString(),
+                                    "maxSplitSize", "1024"),
+                    null));
+    ETLStage sink = new ETLStage("sink", MockSink.getPlugin(outputDatasetName));
+    etlConfig = ETLBatchConfig.builder("* * * * *")
+      .addStage(source)
+      .addStage(sink)
+      .addConnection(source.getName(), sink.getName())
+      .build();
+    runETLOnce(deployETL(etlConfig, "gzipSplitTest"));
+
+    DataSetManager<Table> outputManager = getDataset(outputDatasetName);
+    List<String> actual = new ArrayList<>();
+    for (StructuredRecord record : MockSink.readOutput(outputManager)) {
+      actual.add(record.get("body"));
+    }
+    Collections.sort(actual);
+    Collections.sort(expected);
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void testIndexMultiMemberGzip() throws Exception {
+    File dir = folder.newFolder("multiMember");
+    File file = new File(dir, "members.gz");
+    List<String> expected = new ArrayList<>();
+    // a file of several gzip members, as written by concatenating gzip files, must be rewritten completely
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      for (int member = 0; member < 5; member++) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(bytes), StandardCharsets.UTF_8)) {
+          for (int i = 0; i < 500; i++) {
+            String line = "member " + member + " line " + i;
+            expected.add(line);
+            writer.write(line + "\n");
+          }
+        }
+        bytes.writeTo(out);
+      }
+    }
+
+    ETLStage action = new ETLStage(
+      "index",
+      new ETLPlugin("GzipIndex", Action.PLUGIN_TYPE,
+                    ImmutableMap.of("path", dir.getAbsolutePath(),
+                                    "minFileSize", "0",
+                                    "blockSize", "1000",
+                                    "threads", "2"),
+                    null));
+    ETLBatchConfig etlConfig = ETLBatchConfig.builder("* * * * *")
+      .addStage(action)
+      .build();
+    runETLOnce(deployETL(etlConfig, "gzipIndexMultiMemberTest"));
+
+    Assert.assertTrue(new File(dir, ".members.gz.index").exists());
+    Assert.assertEquals(expected, readLines(file));
+  }
+
+  private static List<String> readLines(File file) throws IOException {
+    List<String> lines = new ArrayList<>();
+    try (BufferedReader reader = new BufferedReader(
+      new InputStreamReader(new GZIPInputStream(new FileInputStream(file)), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        lines.add(line);
+      }
+    }
+    return lines;
+  }
+}
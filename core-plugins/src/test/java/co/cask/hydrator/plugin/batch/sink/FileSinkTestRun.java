@@ -33,12 +33,15 @@ import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.test.ApplicationManager;
 import co.cask.cdap.test.DataSetManager;
 import co.cask.hydrator.format.FileFormat;
+import co.cask.hydrator.format.FileStatistics;
+import co.cask.hydrator.format.input.PushdownFilter;
 import co.cask.hydrator.plugin.batch.ETLBatchTestBase;
 import com.google.common.collect.ImmutableMap;
 import org.apache.avro.file.DataFileStream;
 import org.apache.avro.generic.GenericDatumReader;
 import org.apache.avro.generic.GenericRecord;
 import org.apache.avro.io.DatumReader;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
 import org.apache.parquet.avro.AvroParquetReader;
 import org.apache.parquet.hadoop.ParquetReader;
@@ -53,11 +56,17 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.zip.GZIPInputStream;
 import javax.annotation.Nullable;
 
 /**
@@ -124,6 +133,96 @@ public class FileSinkTestRun extends ETLBatchTestBase {
     validateDatasetSchema(FileFormat.AVRO);
   }
 
+  @Test
+  public void testCompressedJsonFileSink() throws Exception {
+    Map<Integer, String> output = new HashMap<>();
+    Map<String, String> properties = ImmutableMap.of("compressionCodec", "gzip", "compressionThreads", "2");
+    runPipeline("compressedJSON", FileFormat.JSON, null, properties, file -> {
+      Assert.assertTrue(file.getName().endsWith(".gz"));
+      try (BufferedReader reader = new BufferedReader(
+        new InputStreamReader(new GZIPInputStream(new FileInputStream(file)), StandardCharsets.UTF_8))) {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          StructuredRecord outputRecord = StructuredRecordStringConverter.fromJsonString(line, SCHEMA);
+          output.put(outputRecord.get("i"), outputRecord.get("s"));
+        }
+      }
+    });
+    Assert.assertEquals(ImmutableMap.of(0, "abc", 1, "def", 2, "ghi"), output);
+  }
+
+  @Test
+  public void testFileSinkStatistics() throws Exception {
+    List<FileStatistics> statistics = new ArrayList<>();
+    Map<String, String> properties = ImmutableMap.of("writeStatistics", "true");
+    runPipeline("statisticsCSV", FileFormat.CSV, null, properties, file -> {
+      Path path = new Path(file.getAbsolutePath());
+      Assert.assertTrue(new File(file.getParentFile(), "." + file.getName() + ".stats").exists());
+      statistics.add(FileStatistics.read(path.getFileSystem(new Configuration()), path));
+    });
+    Assert.assertEquals(1, statistics.size());
+    FileStatistics fileStatistics = statistics.get(0);
+    Assert.assertEquals(3L, fileStatistics.getRowCount());
+    Assert.assertTrue(fileStatistics.canMatch(PushdownFilter.parse("i = 1 AND s >= 'abc'")));
+    Assert.assertTrue(fileStatistics.canMatch(PushdownFilter.parse("s IS NOT NULL")));
+    Assert.assertFalse(fileStatistics.canMatch(PushdownFilter.parse("i > 2")));
+    Assert.assertFalse(fileStatistics.canMatch(PushdownFilter.parse("s < 'abc'")));
+    Assert.assertFalse(fileStatistics.canMatch(PushdownFilter.parse("i IS NULL")));
+  }
+
+  @Test
+  public void testPartitionedFileSink() throws Exception {
+    Map<String, List<String>> output = new HashMap<>();
+    // a single open writer makes every partition close the writer of the previous one
+    Map<String, String> properties = ImmutableMap.of("partitionBy", "i", "maxOpenWriters", "1");
+    runPipeline("partitionedCSV", FileFormat.CSV, null, properties, file -> {
+      Assert.assertTrue(file.isDirectory());
+      List<String> lines = new ArrayList<>();
+      for (File partitionFile : listDataFiles(file)) {
+        lines.addAll(readLines(partitionFile));
+      }
+      output.put(file.getName(), lines);
+    });
+    Assert.assertEquals(ImmutableMap.of("i=0", Collections.singletonList("0,abc"),
+                                        "i=1", Collections.singletonList("1,def"),
+                                        "i=2", Collections.singletonList("2,ghi")), output);
+  }
+
+  @Test
+  public void testRollOverFileSink() throws Exception {
+    List<List<String>> output = new ArrayList<>();
+    Map<String, String> properties = ImmutableMap.of("maxRecordsPerFile", "1");
+    runPipeline("rolledCSV", FileFormat.CSV, null, properties, file -> output.add(readLines(file)));
+    // the three records are written by a single task, which starts a new file for each record
+    Assert.assertEquals(3, output.size());
+    List<String> lines = new ArrayList<>();
+    for (List<String> fileLines : output) {
+      Assert.assertEquals(1, fileLines.size());
+      lines.addAll(fileLines);
+    }
+    Collections.sort(lines);
+    Assert.assertEquals(Arrays.asList("0,abc", "1,def", "2,ghi"), lines);
+  }
+
+  @Test
+  public void testTargetFileSizeFileSink() throws Exception {
+    List<List<String>> output = new ArrayList<>();
+    // every record is larger than the target size, so each one is written to its own file
+    Map<String, String> properties = ImmutableMap.of("targetFileSize", "1");
+    runPipeline("targetSizeCSV", FileFormat.CSV, null, properties, file -> output.add(readLines(file)));
+    Assert.assertEquals(3, output.size());
+    for (List<String> fileLines : output) {
+      Assert.assertEquals(1, fileLines.size());
+    }
+
+    // a target larger than the output writes a single file
+    output.clear();
+    properties = ImmutableMap.of("targetFileSize", "1048576");
+    runPipeline("largeTargetSizeCSV", FileFormat.CSV, null, properties, file -> output.add(readLines(file)));
+    Assert.assertEquals(1, output.size());
+    Assert.assertEquals(3, output.get(0).size());
+  }
+
   @Test
   public void testAvroFileSink() throws Exception {
     org.apache.avro.Schema avroSchema = new org.apache.avro.Schema.Parser().parse(SCHEMA.toString());
@@ -170,17 +269,27 @@ public class FileSinkTestRun extends ETLBatchTestBase {
    * It will always write three records, {"i":0, "s":"abc"}, {"i":1, "s":"def"}, and {"i":2, "s":"ghi"}.
    */
   private void runPipeline(FileFormat format, @Nullable String delimiter, FileConsumer fileConsumer) throws Exception {
+    runPipeline(format.name(), format, delimiter, Collections.emptyMap(), fileConsumer);
+  }
+
+  /**
+   * Creates and runs a pipeline like {@link #runPipeline(FileFormat, String, FileConsumer)}, with additional sink
+   * properties. The name is used as the reference name of the sink.
+   */
+  private void runPipeline(String name, FileFormat format, @Nullable String delimiter,
+                           Map<String, String> sinkProperties, FileConsumer fileConsumer) throws Exception {
     String inputName = UUID.randomUUID().toString();
 
-    File baseDir = TEMP_FOLDER.newFolder(format + "FileSink");
+    File baseDir = TEMP_FOLDER.newFolder(name + "FileSink");
     File outputDir = new File(baseDir, "out");
     Map<String, String> properties = new HashMap<>();
     properties.put("path", outputDir.getAbsolutePath());
-    properties.put("referenceName", format.name());
+    properties.put("referenceName", name);
     properties.put("format", format.name());
     //properties.put("schema", "${schema}");
     properties.put("schema", SCHEMA.toString());
     properties.put("delimiter", delimiter);
+    properties.putAll(sinkProperties);
 
     ETLBatchConfig conf = ETLBatchConfig.builder()
       .addStage(new ETLStage("source", MockSource.getPlugin(inputName, SCHEMA)))
@@ -188,7 +297,7 @@ public class FileSinkTestRun extends ETLBatchTestBase {
       .addConnection("source", "sink")
       .build();
 
-    ApplicationManager appManager = deployETL(conf, format + "FileSinkApp");
+    ApplicationManager appManager = deployETL(conf, name + "FileSinkApp");
 
     DataSetManager<Table> inputManager = getDataset(inputName);
     List<StructuredRecord> input = new ArrayList<>();
@@ -215,6 +324,23 @@ public class FileSinkTestRun extends ETLBatchTestBase {
     }
   }
 
+  private static List<File> listDataFiles(File dir) {
+    List<File> files = new ArrayList<>();
+    File[] children = dir.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        if (!child.getName().startsWith(".") && !"_SUCCESS".equals(child.getName())) {
+          files.add(child);
+        }
+      }
+    }
+    return files;
+  }
+
+  private static List<String> readLines(File file) throws IOException {
+    return Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+  }
+
   private void validateDatasetSchema(FileFormat format) throws IOException {
     // if a schema was provided for the sink verify that the external dataset has the given schema
     Map<String, String> metadataProperties =
@@ -41,6 +41,7 @@ import co.cask.cdap.test.TestConfiguration;
 import co.cask.cdap.test.WorkflowManager;
 import co.cask.hydrator.common.Constants;
 import co.cask.hydrator.format.FileFormat;
+import co.cask.hydrator.format.FileStatistics;
 import co.cask.hydrator.plugin.batch.ETLBatchTestBase;
 import co.cask.hydrator.plugin.common.Properties;
 import com.google.common.collect.ImmutableList;
@@ -52,6 +53,7 @@ import org.apache.avro.generic.GenericRecord;
 import org.apache.avro.generic.GenericRecordBuilder;
 import org.apache.avro.io.DatumWriter;
 import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
 import org.apache.parquet.avro.AvroParquetWriter;
 import org.apache.parquet.hadoop.ParquetWriter;
@@ -578,6 +580,133 @@ public class FileBatchSourceTest extends ETLBatchTestBase {
   }
 
 
+  @Test
+  public void testStatisticsFilter() throws Exception {
+    Schema schema = Schema.recordOf("record",
+                                    Schema.Field.of("i", Schema.of(Schema.Type.INT)),
+                                    Schema.Field.of("s", Schema.of(Schema.Type.STRING)));
+    File inputFolder = temporaryFolder.newFolder();
+    // files with statistics that rule them out are skipped, all other files are read
+    writeWithStatistics(new File(inputFolder, "low.csv"), schema, "0,a\n1,b\n2,c\n");
+    writeWithStatistics(new File(inputFolder, "high.csv"), schema, "10,x\n11,y\n");
+    FileUtils.writeStringToFile(new File(inputFolder, "nostats.csv"), "3,d\n");
+    // statistics of a file that was appended to after they were written are ignored
+    File staleFile = new File(inputFolder, "stale.csv");
+    writeWithStatistics(staleFile, schema, "0,e\n");
+    FileUtils.writeStringToFile(staleFile, "20,f\n", true);
+
+    Map<String, String> sourceProperties = new ImmutableMap.Builder<String, String>()
+      .put(Constants.Reference.REFERENCE_NAME, "StatisticsFilter")
+      .put(Properties.File.PATH, inputFolder.getAbsolutePath())
+      .put(Properties.File.FORMAT, "csv")
+      .put(Properties.File.SCHEMA, schema.toString())
+      // the literal of the first condition cannot be compared with a string column, so it never rules a file out
+      .put("pushdownFilter", "s != 5 AND i >= 10")
+      .build();
+    ETLStage source = new ETLStage("source", new ETLPlugin("File", BatchSource.PLUGIN_TYPE, sourceProperties, null));
+
+    String outputDatasetName = UUID.randomUUID().toString();
+    ETLStage sink = new ETLStage("sink", MockSink.getPlugin(outputDatasetName));
+
+    ETLBatchConfig etlConfig = ETLBatchConfig.builder()
+      .addStage(source)
+      .addStage(sink)
+      .addConnection(source.getName(), sink.getName())
+      .build();
+
+    AppRequest<ETLBatchConfig> appRequest = new AppRequest<>(DATAPIPELINE_ARTIFACT, etlConfig);
+    ApplicationManager appManager = deployApplication(NamespaceId.DEFAULT.app("FileTest-statistics-filter"),
+                                                      appRequest);
+    appManager.getWorkflowManager(SmartWorkflow.NAME)
+      .startAndWaitForRun(ProgramRunStatus.COMPLETED, 5, TimeUnit.MINUTES);
+
+    Set<StructuredRecord> expected = new HashSet<>();
+    for (Object[] values : new Object[][] { { 10, "x" }, { 11, "y" }, { 3, "d" }, { 0, "e" }, { 20, "f" } }) {
+      expected.add(StructuredRecord.builder(schema).set("i", values[0]).set("s", values[1]).build());
+    }
+    DataSetManager<Table> outputManager = getDataset(outputDatasetName);
+    List<StructuredRecord> output = MockSink.readOutput(outputManager);
+    Assert.assertEquals(expected.size(), output.size());
+    Assert.assertEquals(expected, new HashSet<>(output));
+  }
+
+  /**
+   * Writes a csv file and its statistics, the same way as the File sink does when it writes statistics.
+   */
+  private static void writeWithStatistics(File file, Schema schema, String csv) throws IOException {
+    FileUtils.writeStringToFile(file, csv);
+    FileStatistics statistics = new FileStatistics(schema);
+    for (String line : csv.split("\n")) {
+      String[] values = line.split(",");
+      statistics.add(StructuredRecord.builder(schema)
+                       .set("i", Integer.parseInt(values[0])).set("s", values[1]).build());
+    }
+    Path path = new Path(file.toURI());
+    statistics.write(path.getFileSystem(new Configuration()), path);
+  }
+
+  @Test
+  public void testTrackingTable() throws Exception {
+    File inputFolder = temporaryFolder.newFolder();
+    File oldFile = new File(inputFolder, "old.txt");
+    FileUtils.writeStringToFile(oldFile, "old");
+    Assert.assertTrue(oldFile.setLastModified(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1)));
+
+    Schema textSchema = Schema.recordOf("file.record",
+                                        Schema.Field.of("body", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+                                        Schema.Field.of("file", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+    Map<String, String> sourceProperties = new ImmutableMap.Builder<String, String>()
+      .put(Constants.Reference.REFERENCE_NAME, "TrackingTable")
+      .put(Properties.File.PATH, inputFolder.getAbsolutePath())
+      .put(Properties.File.FORMAT, "text")
+      .put(Properties.File.SCHEMA, textSchema.toString())
+      .put("pathField", "file")
+      .put("filenameOnly", "true")
+      .put("trackingTable", "trackingTable")
+      .build();
+    ETLStage source = new ETLStage("source", new ETLPlugin("File", BatchSource.PLUGIN_TYPE, sourceProperties, null));
+
+    String outputDatasetName = UUID.randomUUID().toString();
+    ETLStage sink = new ETLStage("sink", MockSink.getPlugin(outputDatasetName));
+
+    ETLBatchConfig etlConfig = ETLBatchConfig.builder()
+      .addStage(source)
+      .addStage(sink)
+      .addConnection(source.getName(), sink.getName())
+      .build();
+
+    AppRequest<ETLBatchConfig> appRequest = new AppRequest<>(DATAPIPELINE_ARTIFACT, etlConfig);
+    ApplicationManager appManager = deployApplication(NamespaceId.DEFAULT.app("FileTest-tracking-table"), appRequest);
+    WorkflowManager workflowManager = appManager.getWorkflowManager(SmartWorkflow.NAME);
+    workflowManager.startAndWaitForRun(ProgramRunStatus.COMPLETED, 5, TimeUnit.MINUTES);
+
+    StructuredRecord oldRecord = StructuredRecord.builder(textSchema).set("body", "old").set("file", "old.txt").build();
+    DataSetManager<Table> outputManager = getDataset(outputDatasetName);
+    Assert.assertEquals(ImmutableList.of(oldRecord), MockSink.readOutput(outputManager));
+
+    // the second run should only read the file that was added after the first run
+    FileUtils.writeStringToFile(new File(inputFolder, "new.txt"), "new");
+    workflowManager.startAndWaitForRun(ProgramRunStatus.COMPLETED, 5, TimeUnit.MINUTES);
+
+    StructuredRecord newRecord = StructuredRecord.builder(textSchema).set("body", "new").set("file", "new.txt").build();
+    outputManager = getDataset(outputDatasetName);
+    List<StructuredRecord> output = MockSink.readOutput(outputManager);
+    Assert.assertEquals(2, output.size());
+    Assert.assertEquals(ImmutableSet.of(oldRecord, newRecord), new HashSet<>(output));
+
+    // a file that lands with a modification time from before the previous run, as when it is copied with its times
+    // preserved, is not read, since files are only selected by their modification time
+    File copiedFile = new File(inputFolder, "copied.txt");
+    FileUtils.writeStringToFile(copiedFile, "copied");
+    Assert.assertTrue(copiedFile.setLastModified(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1)));
+    workflowManager.startAndWaitForRun(ProgramRunStatus.COMPLETED, 5, TimeUnit.MINUTES);
+
+    outputManager = getDataset(outputDatasetName);
+    output = MockSink.readOutput(outputManager);
+    Assert.assertEquals(2, output.size());
+    Assert.assertEquals(ImmutableSet.of(oldRecord, newRecord), new HashSet<>(output));
+  }
+
   @Test
   public void testFileBatchInputFormatText() throws Exception {
     File outputFolder = temporaryFolder.newFolder();
@@ -41,6 +41,8 @@ public class ConnectionConfig extends PluginConfig {
   public static final String JDBC_PLUGIN_TYPE = "jdbcPluginType";
   public static final String COLUMN_NAME_CASE = "columnNameCase";
   public static final String ENABLE_AUTO_COMMIT = "enableAutoCommit";
+  public static final String CONNECTION_POOL_SIZE = "connectionPoolSize";
+  public static final String MAX_CONNECTIONS = "maxConnections";
 
   @Name(CONNECTION_STRING)
   @Description("JDBC connection string including database name.")
@@ -89,6 +91,23 @@ public class ConnectionConfig extends PluginConfig {
   @Nullable
   public Boolean enableAutoCommit;
 
+  @Name(CONNECTION_POOL_SIZE)
+  @Description("The maximum number of idle connections to keep open in each executor, so that later splits and " +
+    "tasks can reuse them instead of opening a new connection. Idle connections are closed after one minute. " +
+    "Defaults to 0, which disables connection reuse.")
+  @Nullable
+  @Macro
+  public Integer connectionPoolSize;
+
+  @Name(MAX_CONNECTIONS)
+  @Description("The maximum number of connections that can be open at the same time in each executor for the same " +
+    "connection string and credentials, including idle connections. Once the limit is reached, tasks wait up to " +
+    "five minutes for another task to return a connection, and fail if none is returned. " +
+    "Defaults to 0, which means there is no limit.")
+  @Nullable
+  @Macro
+  public Integer maxConnections;
+
   public ConnectionConfig() {
     jdbcPluginType = "jdbc";
     enableAutoCommit = false;
@@ -121,6 +140,20 @@ public class ConnectionConfig extends PluginConfig {
     return properties;
   }
 
+  /**
+   * @return the maximum number of idle connections to keep open for reuse, 0 if connections should not be reused.
+   */
+  public int getConnectionPoolSize() {
+    return connectionPoolSize == null ? 0 : connectionPoolSize;
+  }
+
+  /**
+   * @return the maximum number of connections that can be open at the same time, 0 if there is no limit.
+   */
+  public int getMaxConnections() {
+    return maxConnections == null ? 0 : maxConnections;
+  }
+
   /**
    * @return a {@link Properties} of connection arguments, parsed from the config.
    */
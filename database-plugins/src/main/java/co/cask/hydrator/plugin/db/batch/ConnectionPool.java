@@ -0,0 +1,408 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.plugin.db.batch;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps idle JDBC connections open so that they can be reused by later tasks running in the same JVM, instead of
+ * paying for connection setup, TLS and authentication once per split. Connections are keyed by the connection
+ * string and connection arguments, which include the credentials.
+ *
+ * Closing a connection returned by {@link #getConnection(String, Properties, int, int)} rolls back any uncommitted
+ * work, resets the auto-commit, read-only and transaction isolation settings to the ones the connection was opened
+ * with, and returns it to the pool, unless the pool already holds the maximum number of idle connections for that
+ * key. Idle connections are validated before they are handed out again, and are closed after they have been idle
+ * for a minute.
+ *
+ * The pool can also limit the number of connections that are open at the same time for a key, including the idle
+ * ones. Once the limit is reached, callers wait for another connection to be returned, and fail if none is
+ * returned within five minutes.
+ *
+ * There is a single pool for each JVM, which is never closed, so that it outlives the tasks that use it. Tasks do
+ * not close idle connections when they end. Idle connections are only closed by a daemon thread once they have been
+ * idle for a minute, or when the JVM exits, so a database can see connections from a finished run for up to a minute.
+ */
+public final class ConnectionPool {
+  public static final String CONF_KEY = "co.cask.hydrator.db.connection.pool.size";
+  public static final String MAX_CONNECTIONS_CONF_KEY = "co.cask.hydrator.db.connection.pool.max.connections";
+
+  private static final Logger LOG = LoggerFactory.getLogger(ConnectionPool.class);
+  private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+  private static final long MAX_IDLE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+  private static final long MAX_WAIT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+  private static final ConnectionPool INSTANCE = new ConnectionPool(MAX_WAIT_MILLIS);
+
+  private final Map<Key, KeyPool> pools = new HashMap<>();
+  private final long maxWaitMillis;
+  private ScheduledExecutorService evictor;
+
+  /**
+   * @param maxWaitMillis how long to wait for a connection once the maximum number of connections is open
+   */
+  ConnectionPool(long maxWaitMillis) {
+    this.maxWaitMillis = maxWaitMillis;
+  }
+
+  /**
+   * Returns a connection for the given connection string and arguments, reusing an idle one if possible.
+   *
+   * @param url the JDBC connection string
+   * @param properties the connection arguments, including the user and password
+   * @param maxIdle the maximum number of idle connections to keep for this connection string and arguments.
+   *                If it is not positive, connections are closed instead of being reused.
+   * @param maxOpen the maximum number of connections that can be open at the same time for this connection string
+   *                and arguments. If it is not positive, there is no limit.
+   * @return a connection that is returned to the pool when closed
+   * @throws SQLException if the connection could not be opened, or if the maximum number of connections is open and
+   *                      none was returned in time
+   */
+  public static Connection getConnection(String url, Properties properties, int maxIdle,
+                                         int maxOpen) throws SQLException {
+    if (maxIdle <= 0 && maxOpen <= 0) {
+      return DriverManager.getConnection(url, properties);
+    }
+    return INSTANCE.borrow(url, properties, maxIdle, maxOpen);
+  }
+
+  Connection borrow(String url, Properties properties, int maxIdle, int maxOpen) throws SQLException {
+    Key key = new Key(url, properties);
+    long deadline = System.currentTimeMillis() + maxWaitMillis;
+    while (true) {
+      PhysicalConnection idle = reserve(key, maxOpen, deadline);
+      if (idle == null) {
+        // a new connection was reserved
+        break;
+      }
+      if (isValid(idle.connection)) {
+        LOG.trace("Reusing pooled connection to {}", key.url);
+        return new PooledConnection(idle, key, maxIdle);
+      }
+      discard(idle, key);
+    }
+
+    try {
+      return new PooledConnection(new PhysicalConnection(DriverManager.getConnection(key.url, key.properties)),
+                                  key, maxIdle);
+    } catch (SQLException | RuntimeException e) {
+      synchronized (this) {
+        closed(key);
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Takes an idle connection, or reserves a slot for a new connection, waiting for a connection to be returned if
+   * the maximum number of connections is open.
+   *
+   * @return the idle connection, or null if a new connection should be opened
+   */
+  private synchronized PhysicalConnection reserve(Key key, int maxOpen, long deadline) throws SQLException {
+    KeyPool pool = getPool(key);
+    while (true) {
+      if (!pool.idle.isEmpty()) {
+        return pool.idle.pollFirst().connection;
+      }
+      if (maxOpen <= 0 || pool.open < maxOpen) {
+        pool.open++;
+        return null;
+      }
+      long remaining = deadline - System.currentTimeMillis();
+      if (remaining <= 0) {
+        throw new SQLException(String.format("Timed out waiting for one of the %d open connections to %s to be " +
+                                               "returned to the pool.", maxOpen, key.url));
+      }
+      try {
+        wait(remaining);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new SQLException("Interrupted while waiting for a connection to " + key.url, e);
+      }
+    }
+  }
+
+  private void release(PhysicalConnection connection, Key key, int maxIdle) {
+    try {
+      if (connection.connection.isClosed()) {
+        synchronized (this) {
+          closed(key);
+        }
+        return;
+      }
+      // don't let uncommitted work or settings of one task leak into the next one
+      connection.reset();
+    } catch (SQLException e) {
+      LOG.debug("Unable to reset connection to {}. It will not be reused.", key.url, e);
+      discard(connection, key);
+      return;
+    }
+
+    synchronized (this) {
+      KeyPool pool = getPool(key);
+      if (pool.idle.size() < maxIdle) {
+        pool.idle.addFirst(new IdleConnection(connection, System.currentTimeMillis()));
+        scheduleEviction();
+        notifyAll();
+        return;
+      }
+    }
+    discard(connection, key);
+  }
+
+  /**
+   * Closes a connection that is not reused.
+   */
+  private void discard(PhysicalConnection connection, Key key) {
+    closeQuietly(connection.connection);
+    synchronized (this) {
+      closed(key);
+    }
+  }
+
+  /**
+   * Records that a connection of the key was closed, and wakes up callers waiting for a connection.
+   */
+  private void closed(Key key) {
+    KeyPool pool = getPool(key);
+    pool.open--;
+    if (pool.open <= 0 && pool.idle.isEmpty()) {
+      pools.remove(key);
+    }
+    notifyAll();
+  }
+
+  private KeyPool getPool(Key key) {
+    KeyPool pool = pools.get(key);
+    if (pool == null) {
+      pool = new KeyPool();
+      pools.put(key, pool);
+    }
+    return pool;
+  }
+
+  /**
+   * @return the number of connections that are open for the given connection string and arguments, including idle
+   *         connections
+   */
+  synchronized int getOpenConnections(String url, Properties properties) {
+    KeyPool pool = pools.get(new Key(url, properties));
+    return pool == null ? 0 : pool.open;
+  }
+
+  private synchronized void scheduleEviction() {
+    if (evictor != null) {
+      return;
+    }
+    evictor = Executors.newSingleThreadScheduledExecutor(
+      new ThreadFactoryBuilder().setDaemon(true).setNameFormat("jdbc-connection-evictor").build());
+    evictor.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        evictIdleConnections(MAX_IDLE_MILLIS);
+      }
+    }, MAX_IDLE_MILLIS, MAX_IDLE_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Closes the connections that have been idle for longer than the given time.
+   */
+  void evictIdleConnections(long maxIdleMillis) {
+    List<Connection> expired = new ArrayList<>();
+    long expiryTime = System.currentTimeMillis() - maxIdleMillis;
+    synchronized (this) {
+      Iterator<KeyPool> iterator = pools.values().iterator();
+      while (iterator.hasNext()) {
+        KeyPool pool = iterator.next();
+        // the least recently used connections are at the end
+        while (!pool.idle.isEmpty() && pool.idle.peekLast().idleSince < expiryTime) {
+          expired.add(pool.idle.pollLast().connection.connection);
+          pool.open--;
+        }
+        if (pool.open <= 0 && pool.idle.isEmpty()) {
+          iterator.remove();
+        }
+      }
+      if (!expired.isEmpty()) {
+        notifyAll();
+      }
+    }
+    for (Connection connection : expired) {
+      closeQuietly(connection);
+    }
+  }
+
+  private static boolean isValid(Connection connection) {
+    try {
+      return connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+    } catch (SQLException | AbstractMethodError e) {
+      // AbstractMethodError is thrown by drivers that were compiled against JDBC 3
+      LOG.trace("Unable to validate pooled connection.", e);
+      return false;
+    }
+  }
+
+  private static void closeQuietly(Connection connection) {
+    try {
+      connection.close();
+    } catch (SQLException e) {
+      LOG.debug("Exception while closing pooled connection. Ignoring.", e);
+    }
+  }
+
+  /**
+   * Connection string and arguments used to open a connection.
+   */
+  private static final class Key {
+    private final String url;
+    private final Properties properties;
+    private final Map<Object, Object> arguments;
+
+    private Key(String url, Properties properties) {
+      this.url = url;
+      this.properties = properties;
+      this.arguments = new HashMap<>(properties);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key that = (Key) o;
+      return url.equals(that.url) && arguments.equals(that.arguments);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * url.hashCode() + arguments.hashCode();
+    }
+  }
+
+  /**
+   * The idle connections of a key, and the number of open connections, including the idle ones.
+   */
+  private static final class KeyPool {
+    private final Deque<IdleConnection> idle = new ArrayDeque<>();
+    private int open;
+  }
+
+  /**
+   * A connection opened by the pool, with the settings it was opened with.
+   */
+  private static final class PhysicalConnection {
+    private final Connection connection;
+    private final boolean autoCommit;
+    private final boolean readOnly;
+    private final int transactionIsolation;
+
+    private PhysicalConnection(Connection connection) throws SQLException {
+      this.connection = connection;
+      try {
+        this.autoCommit = connection.getAutoCommit();
+        this.readOnly = connection.isReadOnly();
+        this.transactionIsolation = connection.getTransactionIsolation();
+      } catch (SQLException | RuntimeException e) {
+        closeQuietly(connection);
+        throw e;
+      }
+    }
+
+    /**
+     * Rolls back uncommitted work and restores the settings the connection was opened with.
+     */
+    private void reset() throws SQLException {
+      if (!connection.getAutoCommit()) {
+        connection.rollback();
+      }
+      if (connection.getAutoCommit() != autoCommit) {
+        connection.setAutoCommit(autoCommit);
+      }
+      if (connection.isReadOnly() != readOnly) {
+        connection.setReadOnly(readOnly);
+      }
+      if (connection.getTransactionIsolation() != transactionIsolation) {
+        connection.setTransactionIsolation(transactionIsolation);
+      }
+      connection.clearWarnings();
+    }
+  }
+
+  /**
+   * A connection in the pool, with the time it was returned.
+   */
+  private static final class IdleConnection {
+    private final PhysicalConnection connection;
+    private final long idleSince;
+
+    private IdleConnection(PhysicalConnection connection, long idleSince) {
+      this.connection = connection;
+      this.idleSince = idleSince;
+    }
+  }
+
+  /**
+   * A connection handed out by the pool, which is returned to the pool instead of being closed.
+   */
+  private final class PooledConnection extends ForwardingConnection {
+    private final PhysicalConnection connection;
+    private final Key key;
+    private final int maxIdle;
+    private boolean closed;
+
+    private PooledConnection(PhysicalConnection connection, Key key, int maxIdle) {
+      super(connection.connection);
+      this.connection = connection;
+      this.key = key;
+      this.maxIdle = maxIdle;
+    }
+
+    @Override
+    public void close() throws SQLException {
+      if (!closed) {
+        closed = true;
+        release(connection, key, maxIdle);
+      }
+    }
+
+    @Override
+    public boolean isClosed() throws SQLException {
+      return closed || delegate.isClosed();
+    }
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.hydrator.plugin.db.batch;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * A {@link Connection} that sets a fetch size on every statement it creates. This is needed because the statements
+ * used to read records are created by Hadoop's record readers, which always use the driver default fetch size.
+ */
+public class FetchSizeConnection extends ForwardingConnection {
+  private final int fetchSize;
+
+  public FetchSizeConnection(Connection delegate, int fetchSize) {
+    super(delegate);
+    this.fetchSize = fetchSize;
+  }
+
+  @Override
+  public Statement createStatement() throws SQLException {
+    return withFetchSize(delegate.createStatement());
+  }
+
+  @Override
+  public Statement createStatement(int resultSetType, int resultSetConcurrency) throws SQLException {
+    return withFetchSize(delegate.createStatement(resultSetType, resultSetConcurrency));
+  }
+
+  @Override
+  public Statement createStatement(int resultSetType, int resultSetConcurrency,
+                                   int resultSetHoldability) throws SQLException {
+    return withFetchSize(delegate.createStatement(resultSetType, resultSetConcurrency, resultSetHoldability));
+  }
+
+  @Override
+  public PreparedStatement prepareStatement(String sql) throws SQLException {
+    return withFetchSize(delegate.prepareStatement(sql));
+  }
+
+  @Override
+  public PreparedStatement prepareStatement(String sql, int resultSetType,
+                                            int resultSetConcurrency) throws SQLException {
+    return withFetchSize(delegate.prepareStatement(sql, resultSetType, resultSetConcurrency));
+  }
+
+  @Override
+  public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency,
+                                            int resultSetHoldability) throws SQLException {
+    return withFetchSize(delegate.prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability));
+  }
+
+  private <T extends Statement> T withFetchSize(T statement) throws SQLException {
+    statement.setFetchSize(fetchSize);
+    return statement;
+  }
+}
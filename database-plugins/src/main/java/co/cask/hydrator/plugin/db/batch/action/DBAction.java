@@ -45,14 +45,16 @@ public class DBAction extends Action {
 
   @Override
   public void run(ActionContext context) throws Exception {
+    config.validate();
 
     Class<? extends Driver> driverClass = context.loadPluginClass(JDBC_PLUGIN_ID);
     DBRun executeQuery = new DBRun(config, driverClass);
-    executeQuery.run();
+    executeQuery.run(context.getMetrics());
   }
 
   @Override
   public void configurePipeline(PipelineConfigurer pipelineConfigurer) throws IllegalArgumentException {
+    config.validate();
     DBManager dbManager = new DBManager(config);
     dbManager.validateJDBCPluginPipeline(pipelineConfigurer, JDBC_PLUGIN_ID);
   }
@@ -16,20 +16,32 @@
 
 package co.cask.hydrator.plugin.db.batch.action;
 
+import co.cask.cdap.etl.api.StageMetrics;
 import co.cask.hydrator.plugin.DBManager;
+import co.cask.hydrator.plugin.db.batch.ConnectionPool;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
 import java.sql.Connection;
 import java.sql.Driver;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.util.Properties;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Class used by database action plugins to run database commands
  */
 public class DBRun {
+  private static final Logger LOG = LoggerFactory.getLogger(DBRun.class);
   private final QueryConfig config;
   private final Class<? extends Driver> driverClass;
 
@@ -39,32 +51,106 @@ public class DBRun {
   }
 
   /**
-   * Uses a configured JDBC driver to execute a SQL statement. The configurations of which JDBC driver
-   * to use and which connection string to use come from the plugin configuration.
+   * Uses a configured JDBC driver to execute the SQL statements. The configurations of which JDBC driver
+   * to use and which connection string to use come from the plugin configuration. If parallelism is 1, all
+   * statements are executed in order in a single transaction. Otherwise, each statement is executed in its own
+   * transaction, with up to parallelism statements executing at the same time.
+   *
+   * @param metrics metrics to emit the number of statements, their execution time and affected rows to
    */
-  public void run() throws SQLException, InstantiationException, IllegalAccessException {
+  public void run(StageMetrics metrics)
+    throws SQLException, InstantiationException, IllegalAccessException, InterruptedException {
     DBManager dbManager = new DBManager(config);
 
     try {
       dbManager.ensureJDBCDriverIsAvailable(driverClass);
 
-      try (Connection connection = getConnection()) {
-        if (!config.enableAutoCommit) {
-          connection.setAutoCommit(false);
-        }
-        try (Statement statement = connection.createStatement()) {
-          statement.execute(config.query);
-          if (!config.enableAutoCommit) {
-            connection.commit();
+      List<String> statements = config.getStatements();
+      int parallelism = Math.min(config.getParallelism(), statements.size());
+      if (parallelism <= 1) {
+        execute(statements, 0, metrics);
+      } else {
+        executeInParallel(statements, parallelism, metrics);
+      }
+    } finally {
+      dbManager.destroy();
+    }
+  }
+
+  private void executeInParallel(List<String> statements, int parallelism, final StageMetrics metrics)
+    throws SQLException, InterruptedException {
+    ExecutorService executor = Executors.newFixedThreadPool(
+      parallelism, new ThreadFactoryBuilder().setDaemon(true).setNameFormat("db-run-%d").build());
+    try {
+      List<Future<Void>> futures = new ArrayList<>();
+      for (int i = 0; i < statements.size(); i++) {
+        final List<String> statement = statements.subList(i, i + 1);
+        final int index = i;
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            execute(statement, index, metrics);
+            return null;
           }
+        }));
+      }
+      for (Future<Void> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          Throwables.propagateIfInstanceOf(e.getCause(), SQLException.class);
+          throw Throwables.propagate(e.getCause());
         }
       }
     } finally {
-      dbManager.destroy();
+      executor.shutdownNow();
+      executor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+  }
+
+  /**
+   * Executes the given statements in order in a single transaction.
+   *
+   * @param statements the statements to execute
+   * @param firstIndex the index of the first statement in the configured query, used to log it
+   * @param metrics metrics to emit to
+   */
+  private void execute(List<String> statements, int firstIndex, StageMetrics metrics) throws SQLException {
+    try (Connection connection = getConnection()) {
+      if (!config.enableAutoCommit) {
+        connection.setAutoCommit(false);
+      }
+      try (Statement statement = connection.createStatement()) {
+        for (int i = 0; i < statements.size(); i++) {
+          executeStatement(statement, statements.get(i), firstIndex + i, metrics);
+        }
+        if (!config.enableAutoCommit) {
+          connection.commit();
+        }
+      }
+    }
+  }
+
+  private void executeStatement(Statement statement, String sql, int index, StageMetrics metrics)
+    throws SQLException {
+    long startTime = System.currentTimeMillis();
+    boolean hasResultSet = statement.execute(sql);
+    long executionTime = System.currentTimeMillis() - startTime;
+    // the update count is -1 if the statement returned a result set, or if the driver does not report it
+    int updateCount = hasResultSet ? -1 : statement.getUpdateCount();
+
+    LOG.info("Statement {} took {} ms and affected {} rows.", index, executionTime,
+             updateCount < 0 ? "an unknown number of" : updateCount);
+    // metrics are not named by statement index, so that their number does not grow with the number of statements
+    metrics.count("statements.executed", 1);
+    metrics.count("statements.time.ms", (int) Math.min(executionTime, Integer.MAX_VALUE));
+    if (updateCount >= 0) {
+      metrics.count("rows.affected", updateCount);
     }
   }
 
   private Connection getConnection() throws SQLException {
-    return DriverManager.getConnection(config.connectionString, config.getConnectionArguments());
+    return ConnectionPool.getConnection(config.connectionString, config.getConnectionArguments(),
+                                        config.getConnectionPoolSize(), config.getMaxConnections());
   }
 }
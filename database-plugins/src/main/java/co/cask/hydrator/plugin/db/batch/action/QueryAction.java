@@ -58,7 +58,7 @@ public class QueryAction extends PostAction {
 
     Class<? extends Driver> driverClass = batchContext.loadPluginClass(JDBC_PLUGIN_ID);
     DBRun executeQuery = new DBRun(config, driverClass);
-    executeQuery.run();
+    executeQuery.run(batchContext.getMetrics());
   }
 
   @Override
@@ -86,7 +86,9 @@ public class QueryAction extends PostAction {
       runCondition = Condition.SUCCESS.name();
     }
 
+    @Override
     public void validate() {
+      super.validate();
       // have to delegate instead of inherit, since we can't extend both ConditionConfig and ConnectionConfig.
       if (!containsMacro("runCondition")) {
         new ConditionConfig(runCondition).validate();
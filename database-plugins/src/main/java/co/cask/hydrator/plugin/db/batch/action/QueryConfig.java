@@ -1,5 +1,5 @@
 /*
- * Copyright © 2016 Cask Data, Inc.
+ * Copyright © 2016-2018 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -18,18 +18,108 @@ package co.cask.hydrator.plugin.db.batch.action;
 
 import co.cask.cdap.api.annotation.Description;
 import co.cask.cdap.api.annotation.Macro;
+import co.cask.cdap.api.annotation.Name;
+import co.cask.cdap.etl.api.validation.InvalidConfigPropertyException;
 import co.cask.hydrator.plugin.ConnectionConfig;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Nullable;
+
 /**
  * Config for Actions running database commands
  */
 public class QueryConfig extends ConnectionConfig {
+  public static final String MULTIPLE_STATEMENTS = "multipleStatements";
+  public static final String PARALLELISM = "parallelism";
 
   @Description("The database command to run.")
   @Macro
   public String query;
 
+  @Name(MULTIPLE_STATEMENTS)
+  @Description("Whether the command contains multiple statements separated by semicolons. If true, the statements " +
+    "are executed one by one, and the execution time and number of affected rows of each statement are reported. " +
+    "Semicolons inside quotes and comments do not separate statements. Quotes inside quoted strings must be " +
+    "doubled, because quotes escaped with a backslash are not recognized. This should not be used for procedural " +
+    "blocks, such as PL/SQL blocks, that contain semicolons themselves. Defaults to false.")
+  @Nullable
+  @Macro
+  public Boolean multipleStatements;
+
+  @Name(PARALLELISM)
+  @Description("The number of statements to execute at the same time if the command contains multiple statements. " +
+    "If greater than 1, each statement is executed in its own transaction on its own connection, in no particular " +
+    "order, so the statements must be independent of each other. If 1, statements are executed in order in a " +
+    "single transaction. Defaults to 1.")
+  @Nullable
+  @Macro
+  public Integer parallelism;
+
   public QueryConfig() {
     super();
+    multipleStatements = false;
+    parallelism = 1;
+  }
+
+  public void validate() {
+    if (!containsMacro(PARALLELISM) && parallelism != null && parallelism < 1) {
+      throw new InvalidConfigPropertyException(
+        "Invalid value for parallelism. Must be at least 1, but got " + parallelism, PARALLELISM);
+    }
+  }
+
+  /**
+   * @return the statements to execute, in the order they appear in the query
+   */
+  public List<String> getStatements() {
+    if (multipleStatements == null || !multipleStatements) {
+      return Collections.singletonList(query);
+    }
+    return splitStatements(query);
+  }
+
+  public int getParallelism() {
+    return parallelism == null ? 1 : parallelism;
+  }
+
+  /**
+   * Splits the given query into statements on semicolons that are not inside quotes or comments.
+   * Empty statements are dropped. Quotes escaped with a backslash, which only some databases support, end the quoted
+   * string, so a semicolon after them separates statements.
+   */
+  static List<String> splitStatements(String query) {
+    List<String> statements = new ArrayList<>();
+    int start = 0;
+    int i = 0;
+    while (i < query.length()) {
+      char c = query.charAt(i);
+      if (c == '\'' || c == '"') {
+        // a doubled quote inside a quoted string is handled as two consecutive quoted strings
+        int end = query.indexOf(c, i + 1);
+        i = end < 0 ? query.length() : end + 1;
+      } else if (c == '-' && query.startsWith("--", i)) {
+        int end = query.indexOf('\n', i);
+        i = end < 0 ? query.length() : end + 1;
+      } else if (c == '/' && query.startsWith("/*", i)) {
+        int end = query.indexOf("*/", i + 2);
+        i = end < 0 ? query.length() : end + 2;
+      } else if (c == ';') {
+        addStatement(statements, query.substring(start, i));
+        start = ++i;
+      } else {
+        i++;
+      }
+    }
+    addStatement(statements, query.substring(start));
+    return statements;
+  }
+
+  private static void addStatement(List<String> statements, String statement) {
+    statement = statement.trim();
+    if (!statement.isEmpty()) {
+      statements.add(statement);
+    }
   }
 }
@@ -38,6 +38,7 @@ import co.cask.hydrator.plugin.DBManager;
 import co.cask.hydrator.plugin.DBRecord;
 import co.cask.hydrator.plugin.DBUtils;
 import co.cask.hydrator.plugin.FieldCase;
+import co.cask.hydrator.plugin.db.batch.ConnectionPool;
 import co.cask.hydrator.plugin.db.batch.TransactionIsolationLevel;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
@@ -50,7 +51,6 @@ import org.slf4j.LoggerFactory;
 
 import java.sql.Connection;
 import java.sql.Driver;
-import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.Statement;
@@ -155,8 +155,10 @@ public class DBSink extends ReferenceBatchSink<StructuredRecord, DBRecord, NullW
     Map<String, Integer> columnToType = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
     dbManager.ensureJDBCDriverIsAvailable(driverClass);
 
-    try (Connection connection = DriverManager.getConnection(dbSinkConfig.connectionString,
-                                                             dbSinkConfig.getConnectionArguments())) {
+    try (Connection connection = ConnectionPool.getConnection(dbSinkConfig.connectionString,
+                                                              dbSinkConfig.getConnectionArguments(),
+                                                              dbSinkConfig.getConnectionPoolSize(),
+                                                              dbSinkConfig.getMaxConnections())) {
       try (Statement statement = connection.createStatement();
            // Run a query against the DB table that returns 0 records, but returns valid ResultSetMetadata
            // that can be used to construct DBRecord objects to sink to the database table.
@@ -229,6 +231,8 @@ public class DBSink extends ReferenceBatchSink<StructuredRecord, DBRecord, NullW
       if (dbSinkConfig.connectionArguments != null) {
         conf.put(DBUtils.CONNECTION_ARGUMENTS, dbSinkConfig.connectionArguments);
       }
+      conf.put(ConnectionPool.CONF_KEY, String.valueOf(dbSinkConfig.getConnectionPoolSize()));
+      conf.put(ConnectionPool.MAX_CONNECTIONS_CONF_KEY, String.valueOf(dbSinkConfig.getMaxConnections()));
       conf.put(DBConfiguration.DRIVER_CLASS_PROPERTY, driverClass.getName());
       conf.put(DBConfiguration.URL_PROPERTY, dbSinkConfig.connectionString);
       if (dbSinkConfig.user != null) {
@@ -19,6 +19,7 @@ package co.cask.hydrator.plugin.db.batch.sink;
 import co.cask.hydrator.plugin.ConnectionConfig;
 import co.cask.hydrator.plugin.DBUtils;
 import co.cask.hydrator.plugin.JDBCDriverShim;
+import co.cask.hydrator.plugin.db.batch.ConnectionPool;
 import co.cask.hydrator.plugin.db.batch.NoOpCommitConnection;
 import co.cask.hydrator.plugin.db.batch.TransactionIsolationLevel;
 import com.google.common.base.Preconditions;
@@ -149,7 +150,10 @@ public class ETLDBOutputFormat<K extends DBWritable, V>  extends DBOutputFormat<
         ConnectionConfig.getConnectionArguments(conf.get(DBUtils.CONNECTION_ARGUMENTS),
                                                 conf.get(DBConfiguration.USERNAME_PROPERTY),
                                                 conf.get(DBConfiguration.PASSWORD_PROPERTY));
-      connection = DriverManager.getConnection(url, properties);
+      // the pool is shared by the tasks of this JVM and is never closed. The connection is returned to it when the
+      // record writer is closed, and stays open for up to a minute after the task ends, until it is evicted.
+      connection = ConnectionPool.getConnection(url, properties, conf.getInt(ConnectionPool.CONF_KEY, 0),
+          conf.getInt(ConnectionPool.MAX_CONNECTIONS_CONF_KEY, 0));
 
       boolean autoCommitEnabled = conf.getBoolean(AUTO_COMMIT_ENABLED, false);
       if (autoCommitEnabled) {
@@ -20,10 +20,13 @@ import co.cask.cdap.api.annotation.Description;
 import co.cask.cdap.api.annotation.Macro;
 import co.cask.cdap.api.annotation.Name;
 import co.cask.cdap.api.annotation.Plugin;
+import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.data.batch.Input;
 import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.dataset.DatasetProperties;
 import co.cask.cdap.api.dataset.lib.KeyValue;
+import co.cask.cdap.api.dataset.lib.KeyValueTable;
 import co.cask.cdap.api.plugin.PluginConfig;
 import co.cask.cdap.etl.api.Emitter;
 import co.cask.cdap.etl.api.PipelineConfigurer;
@@ -43,6 +46,7 @@ import co.cask.hydrator.plugin.DBUtils;
 import co.cask.hydrator.plugin.DriverCleanup;
 import co.cask.hydrator.plugin.FieldCase;
 import co.cask.hydrator.plugin.StructuredRecordUtils;
+import co.cask.hydrator.plugin.db.batch.ConnectionPool;
 import co.cask.hydrator.plugin.db.batch.TransactionIsolationLevel;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.LongWritable;
@@ -70,10 +74,13 @@ import javax.annotation.Nullable;
   " Outputs one record for each row returned by the query.")
 public class DBSource extends ReferenceBatchSource<LongWritable, DBRecord, StructuredRecord> {
   private static final Logger LOG = LoggerFactory.getLogger(DBSource.class);
+  private static final String WATERMARK_SEPARATOR = ":";
 
   private final DBSourceConfig sourceConfig;
   private final DBManager dbManager;
   private Class<? extends Driver> driverClass;
+  private KeyValueTable watermarkTable;
+  private String upperWatermark;
 
   public DBSource(DBSourceConfig sourceConfig) {
     super(new ReferencePluginConfig(sourceConfig.referenceName));
@@ -86,6 +93,9 @@ public class DBSource extends ReferenceBatchSource<LongWritable, DBRecord, Struc
     super.configurePipeline(pipelineConfigurer);
     sourceConfig.validate();
     Class<? extends Driver> driverClass = dbManager.validateJDBCPluginPipeline(pipelineConfigurer, getJDBCPluginId());
+    if (!sourceConfig.containsMacro(DBSourceConfig.WATERMARK_TABLE_NAME) && sourceConfig.watermarkTableName != null) {
+      pipelineConfigurer.createDataset(sourceConfig.watermarkTableName, KeyValueTable.class.getName());
+    }
 
     Schema configuredSchema = sourceConfig.getSchema();
     if (configuredSchema != null) {
@@ -175,8 +185,19 @@ public class DBSource extends ReferenceBatchSource<LongWritable, DBRecord, Struc
       DBConfiguration.configureDB(hConf, driverClass.getName(), sourceConfig.connectionString,
                                   sourceConfig.user, sourceConfig.password);
     }
-    DataDrivenETLDBInputFormat.setInput(hConf, DBRecord.class,
-                                        sourceConfig.getImportQuery(), sourceConfig.getBoundingQuery(),
+    String importQuery = sourceConfig.getImportQuery();
+    String boundingQuery = sourceConfig.getBoundingQuery();
+    if (sourceConfig.incrementalColumn != null) {
+      String condition = getIncrementalCondition(context, driverClass, importQuery);
+      importQuery = importQuery.replace("$CONDITIONS", "$CONDITIONS AND (" + condition + ")");
+      if (boundingQuery != null) {
+        boundingQuery = getIncrementalBoundingQuery(boundingQuery, importQuery, sourceConfig.splitBy, condition);
+      }
+    }
+    if (boundingQuery != null) {
+      boundingQuery = boundingQuery.replace("$CONDITIONS", "(1 = 1)");
+    }
+    DataDrivenETLDBInputFormat.setInput(hConf, DBRecord.class, importQuery, boundingQuery,
                                         sourceConfig.getEnableAutoCommit());
     if (sourceConfig.transactionIsolationLevel != null) {
       hConf.set(TransactionIsolationLevel.CONF_KEY, sourceConfig.transactionIsolationLevel);
@@ -184,6 +205,8 @@ public class DBSource extends ReferenceBatchSource<LongWritable, DBRecord, Struc
     if (sourceConfig.connectionArguments != null) {
       hConf.set(DBUtils.CONNECTION_ARGUMENTS, sourceConfig.connectionArguments);
     }
+    hConf.setInt(ConnectionPool.CONF_KEY, sourceConfig.getConnectionPoolSize());
+    hConf.setInt(ConnectionPool.MAX_CONNECTIONS_CONF_KEY, sourceConfig.getMaxConnections());
     if (sourceConfig.numSplits == null || sourceConfig.numSplits != 1) {
       if (!sourceConfig.getImportQuery().contains("$CONDITIONS")) {
         throw new IllegalArgumentException(String.format("Import Query %s must contain the string '$CONDITIONS'.",
@@ -191,6 +214,15 @@ public class DBSource extends ReferenceBatchSource<LongWritable, DBRecord, Struc
       }
       hConf.set(DBConfiguration.INPUT_ORDER_BY_PROPERTY, sourceConfig.splitBy);
     }
+    if (sourceConfig.splitStrategy != null) {
+      hConf.set(SplitStrategy.CONF_KEY, sourceConfig.splitStrategy);
+    }
+    if (sourceConfig.fetchSize != null) {
+      hConf.setInt(DataDrivenETLDBInputFormat.FETCH_SIZE, sourceConfig.fetchSize);
+    }
+    if (sourceConfig.prefetchSize != null) {
+      hConf.setInt(DataDrivenETLDBInputFormat.PREFETCH_SIZE, sourceConfig.prefetchSize);
+    }
     if (sourceConfig.numSplits != null) {
       hConf.setInt(MRJobConfig.NUM_MAPS, sourceConfig.numSplits);
     }
@@ -203,6 +235,94 @@ public class DBSource extends ReferenceBatchSource<LongWritable, DBRecord, Struc
                               new SourceInputFormatProvider(DataDrivenETLDBInputFormat.class, hConf)));
   }
 
+  /**
+   * Returns the condition that restricts the import to the rows whose incremental column is greater than the
+   * watermark saved by the last successful run, and at most the current maximum of the column. The maximum becomes
+   * the new watermark once this run succeeds.
+   *
+   * The watermark is saved as the SQL type of the column and its value, and it is parsed and escaped according to
+   * the type whenever it is added to a query.
+   */
+  private String getIncrementalCondition(BatchSourceContext context, Class<? extends Driver> driverClass,
+                                         String importQuery) throws Exception {
+    // Create dataset if macros were provided at configure time
+    if (!context.datasetExists(sourceConfig.watermarkTableName)) {
+      context.createDataset(sourceConfig.watermarkTableName, KeyValueTable.class.getName(), DatasetProperties.EMPTY);
+    }
+    watermarkTable = context.getDataset(sourceConfig.watermarkTableName);
+    byte[] lowerWatermarkBytes = watermarkTable.read(sourceConfig.referenceName);
+    String lowerWatermark = lowerWatermarkBytes == null ? null : Bytes.toString(lowerWatermarkBytes);
+
+    String column = sourceConfig.incrementalColumn;
+    String lowerClause = lowerWatermark == null ? "1 = 1" : column + " > " + toLiteral(lowerWatermark);
+    String maxQuery = String.format("SELECT MAX(q.%s) FROM (%s) q", column.substring(column.lastIndexOf('.') + 1),
+                                    importQuery.replace("$CONDITIONS", "(" + lowerClause + ")"));
+    String upperLiteral;
+    DriverCleanup driverCleanup = loadPluginClassAndGetDriver(driverClass);
+    try (Connection connection = getConnection();
+         Statement statement = connection.createStatement();
+         ResultSet resultSet = statement.executeQuery(maxQuery)) {
+      resultSet.next();
+      int sqlType = resultSet.getMetaData().getColumnType(1);
+      String upperValue = QuantileSplitter.getValue(resultSet, sqlType);
+      upperWatermark = upperValue == null ? null : sqlType + WATERMARK_SEPARATOR + upperValue;
+      upperLiteral = upperValue == null ? null : QuantileSplitter.toLiteral(sqlType, upperValue);
+    } finally {
+      driverCleanup.destroy();
+    }
+
+    LOG.info("Reading rows with {} greater than {} and at most {}.", column, lowerWatermark, upperWatermark);
+    return upperLiteral == null ? "1 = 0" : lowerClause + " AND " + column + " <= " + upperLiteral;
+  }
+
+  /**
+   * Returns the SQL literal of a watermark saved by {@link #getIncrementalCondition}.
+   */
+  private String toLiteral(String watermark) {
+    int separator = watermark.indexOf(WATERMARK_SEPARATOR);
+    try {
+      return QuantileSplitter.toLiteral(Integer.parseInt(watermark.substring(0, Math.max(separator, 0))),
+                                        watermark.substring(separator + 1));
+    } catch (IllegalArgumentException e) {
+      throw new IllegalStateException(
+        String.format("Invalid watermark '%s' saved for '%s' in table '%s'. Delete it to read all the rows again.",
+                      watermark, sourceConfig.referenceName, sourceConfig.watermarkTableName), e);
+    }
+  }
+
+  /**
+   * Restricts a bounding query to the rows read by an incremental run, so that the splits divide the range of the new
+   * rows instead of the range of the whole table. If the bounding query contains the '$CONDITIONS' string, it is
+   * replaced with the incremental condition. Otherwise, the bounding query is replaced with a query of the minimum and
+   * maximum of the split-by column of the incremental import query.
+   *
+   * @param boundingQuery the bounding query
+   * @param importQuery the import query, already restricted by the incremental condition
+   * @param splitBy the split-by column, which must be returned by the import query
+   * @param condition the incremental condition
+   */
+  static String getIncrementalBoundingQuery(String boundingQuery, String importQuery, @Nullable String splitBy,
+                                            String condition) {
+    if (boundingQuery.contains("$CONDITIONS")) {
+      return boundingQuery.replace("$CONDITIONS", "(" + condition + ")");
+    }
+    if (splitBy == null) {
+      // the bounding query is not used without a split-by column
+      return boundingQuery;
+    }
+    String column = "q." + splitBy.substring(splitBy.lastIndexOf('.') + 1);
+    return String.format("SELECT MIN(%s), MAX(%s) FROM (%s) q", column, column,
+                         importQuery.replace("$CONDITIONS", "(1 = 1)"));
+  }
+
+  @Override
+  public void onRunFinish(boolean succeeded, BatchSourceContext context) {
+    super.onRunFinish(succeeded, context);
+    if (succeeded && watermarkTable != null && upperWatermark != null) {
+      watermarkTable.write(sourceConfig.referenceName, upperWatermark);
+    }
+  }
+
   @Override
   public void initialize(BatchRuntimeContext context) throws Exception {
     super.initialize(context);
@@ -238,6 +358,11 @@ public class DBSource extends ReferenceBatchSource<LongWritable, DBRecord, Struc
     public static final String NUM_SPLITS = "numSplits";
     public static final String SCHEMA = "schema";
     public static final String TRANSACTION_ISOLATION_LEVEL = "transactionIsolationLevel";
+    public static final String SPLIT_STRATEGY = "splitStrategy";
+    public static final String FETCH_SIZE = "fetchSize";
+    public static final String PREFETCH_SIZE = "prefetchSize";
+    public static final String INCREMENTAL_COLUMN = "incrementalColumn";
+    public static final String WATERMARK_TABLE_NAME = "watermarkTableName";
 
     // this is a hidden property, only used to fetch schema
     @Nullable
@@ -257,8 +382,9 @@ public class DBSource extends ReferenceBatchSource<LongWritable, DBRecord, Struc
     @Nullable
     @Name(BOUNDING_QUERY)
     @Description("Bounding Query should return the min and max of the " +
-      "values of the 'splitBy' field. For example, 'SELECT MIN(id),MAX(id) FROM table'. " +
-      "This is required unless numSplits is set to one.")
+      "values of the 'splitBy' field. For example, 'SELECT MIN(id),MAX(id) FROM table'. It may contain the " +
+      "'$CONDITIONS' string, which is replaced by the incremental condition if an incremental column is specified. " +
+      "This is required unless numSplits is set to one or splitStrategy is set to 'quantile'.")
     @Macro
     String boundingQuery;
 
@@ -276,6 +402,52 @@ public class DBSource extends ReferenceBatchSource<LongWritable, DBRecord, Struc
     @Macro
     Integer numSplits;
 
+    @Nullable
+    @Name(SPLIT_STRATEGY)
+    @Description("How to divide the values of the 'splitBy' field into splits. If set to 'range', the range " +
+      "returned by the bounding query is divided into intervals of equal width. If set to 'quantile', the database " +
+      "computes the n-tiles of the 'splitBy' field so that each split reads roughly the same number of rows, " +
+      "which works better for skewed values. The 'quantile' strategy requires a database that supports the NTILE " +
+      "window function, and requires the 'splitBy' field to be one of the columns returned by the import query. " +
+      "Numeric, date, time, timestamp and string columns are supported. Defaults to 'range'.")
+    @Macro
+    String splitStrategy;
+
+    @Nullable
+    @Name(FETCH_SIZE)
+    @Description("The number of rows to fetch from the database in each round trip. If not specified, the jdbc " +
+      "driver default is used, which is 10 rows for Oracle and the whole result set for PostgreSQL. " +
+      "PostgreSQL only uses a cursor to fetch rows if auto-commit is disabled. MySQL results are always streamed " +
+      "one row at a time, so this setting has no effect for MySQL.")
+    @Macro
+    Integer fetchSize;
+
+    @Nullable
+    @Name(PREFETCH_SIZE)
+    @Description("The number of rows to read and decode in a background thread while the previous rows are " +
+      "processed by the pipeline. If not specified or set to 0, rows are read in the same thread that processes " +
+      "them.")
+    @Macro
+    Integer prefetchSize;
+
+    @Nullable
+    @Name(INCREMENTAL_COLUMN)
+    @Description("A column whose values only increase as rows are added or updated, such as an auto-increment id " +
+      "or a last-updated timestamp. If specified, each run only reads the rows whose value is greater than the " +
+      "maximum value read by the last successful run. The column must be one of the columns returned by the " +
+      "import query, and the import query must contain the '$CONDITIONS' string. The bounding query is restricted " +
+      "to the same rows, either by replacing the '$CONDITIONS' string in the bounding query, or by replacing the " +
+      "bounding query with the min and max of the 'splitBy' field of the restricted import query.")
+    @Macro
+    String incrementalColumn;
+
+    @Nullable
+    @Name(WATERMARK_TABLE_NAME)
+    @Description("The name of the table used to store the maximum value of the incremental column read by the last " +
+      "successful run. This is required if an incremental column is specified.")
+    @Macro
+    String watermarkTableName;
+
     @Nullable
     @Name(TRANSACTION_ISOLATION_LEVEL)
     @Description("The transaction isolation level for queries run by this sink. " +
@@ -316,6 +488,25 @@ public class DBSource extends ReferenceBatchSource<LongWritable, DBRecord, Struc
         TransactionIsolationLevel.validate(transactionIsolationLevel);
       }
 
+      if (!containsMacro(FETCH_SIZE) && fetchSize != null && fetchSize < 1) {
+        throw new InvalidConfigPropertyException(
+          "Invalid value for fetchSize. Must be at least 1, but got " + fetchSize, FETCH_SIZE);
+      }
+
+      if (!containsMacro(PREFETCH_SIZE) && prefetchSize != null && prefetchSize < 0) {
+        throw new InvalidConfigPropertyException(
+          "Invalid value for prefetchSize. Must be at least 0, but got " + prefetchSize, PREFETCH_SIZE);
+      }
+
+      boolean hasQuantileSplits = false;
+      if (!containsMacro(SPLIT_STRATEGY)) {
+        try {
+          hasQuantileSplits = SplitStrategy.getStrategy(splitStrategy) == SplitStrategy.QUANTILE;
+        } catch (IllegalArgumentException e) {
+          throw new InvalidConfigPropertyException(e.getMessage(), SPLIT_STRATEGY);
+        }
+      }
+
       if (query != null) {
         return;
       }
@@ -325,6 +516,18 @@ public class DBSource extends ReferenceBatchSource<LongWritable, DBRecord, Struc
         throw new InvalidConfigPropertyException("An Import Query must be specified.", "importQuery");
       }
 
+      if (!containsMacro(INCREMENTAL_COLUMN) && incrementalColumn != null) {
+        if (!containsMacro(WATERMARK_TABLE_NAME) && (watermarkTableName == null || watermarkTableName.isEmpty())) {
+          throw new InvalidConfigPropertyException(
+            "The watermarkTableName must be specified if an incremental column is specified.", WATERMARK_TABLE_NAME);
+        }
+        if (!containsMacro("importQuery") && !getImportQuery().contains("$CONDITIONS")) {
+          throw new InvalidConfigPropertyException(
+            String.format("Import Query %s must contain the string '$CONDITIONS' if an incremental column is " +
+                            "specified.", importQuery), "importQuery");
+        }
+      }
+
       if (!hasOneSplit && !containsMacro("importQuery") && !getImportQuery().contains("$CONDITIONS")) {
         throw new InvalidConfigPropertyException(String.format("Import Query %s must contain the string '$CONDITIONS'.",
                                                                importQuery), "importQuery");
@@ -335,9 +538,10 @@ public class DBSource extends ReferenceBatchSource<LongWritable, DBRecord, Struc
                                                  "splitBy");
       }
 
-      if (!hasOneSplit && !containsMacro("boundingQuery") && (boundingQuery == null || boundingQuery.isEmpty())) {
-        throw new InvalidConfigPropertyException("The boundingQuery must be specified if numSplits is not set to 1.",
-                                                 "boundingQuery");
+      if (!hasOneSplit && !hasQuantileSplits && !containsMacro("boundingQuery")
+        && (boundingQuery == null || boundingQuery.isEmpty())) {
+        throw new InvalidConfigPropertyException("The boundingQuery must be specified if numSplits is not set to 1 " +
+                                                   "and splitStrategy is not set to 'quantile'.", "boundingQuery");
       }
 
     }
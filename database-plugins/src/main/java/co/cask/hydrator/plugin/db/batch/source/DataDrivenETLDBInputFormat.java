@@ -17,13 +17,19 @@
 package co.cask.hydrator.plugin.db.batch.source;
 
 import co.cask.hydrator.plugin.ConnectionConfig;
+import co.cask.hydrator.plugin.DBRecord;
 import co.cask.hydrator.plugin.DBUtils;
 import co.cask.hydrator.plugin.JDBCDriverShim;
+import co.cask.hydrator.plugin.db.batch.ConnectionPool;
+import co.cask.hydrator.plugin.db.batch.FetchSizeConnection;
 import co.cask.hydrator.plugin.db.batch.NoOpCommitConnection;
 import co.cask.hydrator.plugin.db.batch.TransactionIsolationLevel;
 import com.google.common.base.Throwables;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.MRJobConfig;
 import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.apache.hadoop.mapreduce.lib.db.DBConfiguration;
@@ -37,14 +43,20 @@ import java.io.IOException;
 import java.sql.Connection;
 import java.sql.Driver;
 import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
 import java.util.Properties;
+import javax.annotation.Nullable;
 
 /**
  * Class that extends {@link DBInputFormat} to load the database driver class correctly.
  */
 public class DataDrivenETLDBInputFormat extends DataDrivenDBInputFormat {
   public static final String AUTO_COMMIT_ENABLED = "co.cask.hydrator.db.autocommit.enabled";
+  public static final String FETCH_SIZE = "co.cask.hydrator.db.fetch.size";
+  public static final String PREFETCH_SIZE = "co.cask.hydrator.db.prefetch.size";
 
   private static final Logger LOG = LoggerFactory.getLogger(DataDrivenETLDBInputFormat.class);
   private Driver driver;
@@ -53,12 +65,15 @@ public class DataDrivenETLDBInputFormat extends DataDrivenDBInputFormat {
   static void setInput(Configuration conf,
                        Class<? extends DBWritable> inputClass,
                        String inputQuery,
-                       String inputBoundingQuery,
+                       @Nullable String inputBoundingQuery,
                        boolean enableAutoCommit) {
     DBConfiguration dbConf = new DBConfiguration(conf);
     dbConf.setInputClass(inputClass);
     dbConf.setInputQuery(inputQuery);
-    dbConf.setInputBoundingQuery(inputBoundingQuery);
+    // the bounding query is not needed for a single split or for quantile splits
+    if (inputBoundingQuery != null) {
+      dbConf.setInputBoundingQuery(inputBoundingQuery);
+    }
     conf.setBoolean(AUTO_COMMIT_ENABLED, enableAutoCommit);
   }
 
@@ -93,8 +108,12 @@ public class DataDrivenETLDBInputFormat extends DataDrivenDBInputFormat {
           ConnectionConfig.getConnectionArguments(conf.get(DBUtils.CONNECTION_ARGUMENTS),
                                                   conf.get(DBConfiguration.USERNAME_PROPERTY),
                                                   conf.get(DBConfiguration.PASSWORD_PROPERTY));
-        connection = DriverManager.getConnection(url, properties);
-
+        connection = ConnectionPool.getConnection(url, properties, conf.getInt(ConnectionPool.CONF_KEY, 0),
+                                                  conf.getInt(ConnectionPool.MAX_CONNECTIONS_CONF_KEY, 0));
+        int fetchSize = conf.getInt(FETCH_SIZE, 0);
+        if (fetchSize > 0) {
+          this.connection = new FetchSizeConnection(this.connection, fetchSize);
+        }
 
         boolean autoCommitEnabled = conf.getBoolean(AUTO_COMMIT_ENABLED, false);
         if (autoCommitEnabled) {
@@ -119,10 +138,32 @@ public class DataDrivenETLDBInputFormat extends DataDrivenDBInputFormat {
     return getConnection();
   }
 
+  @Override
+  public List<InputSplit> getSplits(JobContext job) throws IOException {
+    Configuration conf = job.getConfiguration();
+    if (conf.getInt(MRJobConfig.NUM_MAPS, 1) == 1 ||
+      SplitStrategy.getStrategy(conf.get(SplitStrategy.CONF_KEY)) != SplitStrategy.QUANTILE) {
+      return super.getSplits(job);
+    }
+
+    String splitBy = getDBConf().getInputOrderBy();
+    String query = QuantileSplitter.getQuantileQuery(getDBConf().getInputQuery(), splitBy,
+                                                     conf.getInt(MRJobConfig.NUM_MAPS, 1));
+    LOG.debug("Computing split boundaries using query {}", query);
+    try (Statement statement = getConnection().createStatement();
+         ResultSet results = statement.executeQuery(query)) {
+      return new QuantileSplitter().split(conf, results, splitBy);
+    } catch (SQLException e) {
+      throw new IOException("Unable to compute split boundaries using query " + query, e);
+    } finally {
+      closeConnection();
+    }
+  }
+
   @Override
   protected RecordReader createDBRecordReader(DBInputSplit split, Configuration conf) throws IOException {
     final RecordReader dbRecordReader = super.createDBRecordReader(split, conf);
-    return new RecordReader() {
+    RecordReader recordReader = new RecordReader() {
       @Override
       public void initialize(InputSplit split, TaskAttemptContext context) throws IOException, InterruptedException {
         dbRecordReader.initialize(split, context);
@@ -158,6 +199,14 @@ public class DataDrivenETLDBInputFormat extends DataDrivenDBInputFormat {
         }
       }
     };
+
+    int prefetchSize = conf.getInt(PREFETCH_SIZE, 0);
+    if (prefetchSize > 0) {
+      @SuppressWarnings("unchecked")
+      RecordReader<LongWritable, DBRecord> typedReader = (RecordReader<LongWritable, DBRecord>) recordReader;
+      return new PrefetchingRecordReader(typedReader, prefetchSize);
+    }
+    return recordReader;
   }
 
   @Override
@@ -0,0 +1,151 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.hydrator.plugin.db.batch.source;
+
+import co.cask.cdap.api.dataset.lib.KeyValue;
+import co.cask.hydrator.plugin.DBRecord;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A {@link RecordReader} that reads and decodes records from another reader in a background thread. While the
+ * caller processes one batch of records, the next batch is fetched from the database and decoded.
+ */
+class PrefetchingRecordReader extends RecordReader<LongWritable, DBRecord> {
+  private static final Logger LOG = LoggerFactory.getLogger(PrefetchingRecordReader.class);
+  // marker put on the queue once there are no more records, or the background thread failed
+  private static final List<KeyValue<LongWritable, DBRecord>> END_OF_INPUT = Collections.emptyList();
+
+  private final RecordReader<LongWritable, DBRecord> delegate;
+  private final int batchSize;
+  // a single slot, so that at most one batch is decoded ahead of the one being processed
+  private final BlockingQueue<List<KeyValue<LongWritable, DBRecord>>> batches = new ArrayBlockingQueue<>(1);
+  private Thread fetchThread;
+  private volatile Throwable failure;
+  private volatile boolean closed;
+  private Iterator<KeyValue<LongWritable, DBRecord>> currentBatch = Collections.emptyIterator();
+  private KeyValue<LongWritable, DBRecord> current;
+  private boolean finished;
+
+  PrefetchingRecordReader(RecordReader<LongWritable, DBRecord> delegate, int batchSize) {
+    this.delegate = delegate;
+    this.batchSize = batchSize;
+  }
+
+  @Override
+  public void initialize(InputSplit split, TaskAttemptContext context) throws IOException, InterruptedException {
+    delegate.initialize(split, context);
+    fetchThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        fetch();
+      }
+    }, "db-record-prefetch");
+    fetchThread.setDaemon(true);
+    fetchThread.start();
+  }
+
+  private void fetch() {
+    try {
+      List<KeyValue<LongWritable, DBRecord>> batch = new ArrayList<>(batchSize);
+      while (!closed && delegate.nextKeyValue()) {
+        // the delegate reuses its key and value objects, so they must be copied
+        batch.add(new KeyValue<>(new LongWritable(delegate.getCurrentKey().get()),
+                                 new DBRecord(delegate.getCurrentValue().getRecord(), null)));
+        if (batch.size() == batchSize) {
+          batches.put(batch);
+          batch = new ArrayList<>(batchSize);
+        }
+      }
+      if (!batch.isEmpty()) {
+        batches.put(batch);
+      }
+    } catch (InterruptedException e) {
+      // the reader was closed
+      return;
+    } catch (Throwable t) {
+      failure = t;
+    }
+
+    try {
+      batches.put(END_OF_INPUT);
+    } catch (InterruptedException e) {
+      LOG.trace("Interrupted while signaling the end of input. The reader was closed.");
+    }
+  }
+
+  @Override
+  public boolean nextKeyValue() throws IOException, InterruptedException {
+    while (!currentBatch.hasNext()) {
+      if (finished) {
+        return false;
+      }
+      List<KeyValue<LongWritable, DBRecord>> batch = batches.take();
+      if (batch == END_OF_INPUT) {
+        finished = true;
+        if (failure != null) {
+          throw new IOException("Failed to read records from the database.", failure);
+        }
+        return false;
+      }
+      currentBatch = batch.iterator();
+    }
+    current = currentBatch.next();
+    return true;
+  }
+
+  @Override
+  public LongWritable getCurrentKey() {
+    return current.getKey();
+  }
+
+  @Override
+  public DBRecord getCurrentValue() {
+    return current.getValue();
+  }
+
+  @Override
+  public float getProgress() throws IOException, InterruptedException {
+    return delegate.getProgress();
+  }
+
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    if (fetchThread != null) {
+      fetchThread.interrupt();
+      try {
+        fetchThread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    delegate.close();
+  }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.hydrator.plugin.db.batch.source;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.lib.db.DBSplitter;
+import org.apache.hadoop.mapreduce.lib.db.DataDrivenDBInputFormat;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link DBSplitter} that generates splits containing roughly the same number of rows. Instead of dividing
+ * the min and max of the split-by column into equal-width intervals, the database is asked for the upper bound of
+ * each of the n-tiles of the column, which keeps splits balanced for skewed ids, timestamps and strings.
+ *
+ * The result set passed to {@link #split(Configuration, ResultSet, String)} is expected to be the result of
+ * the query returned by {@link #getQuantileQuery(String, String, int)}.
+ */
+class QuantileSplitter implements DBSplitter {
+  private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+  private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+  private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss");
+  private static final DateTimeFormatter TIMESTAMP_FORMAT =
+    DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSSSSSSSS");
+
+  /**
+   * Returns the query that computes the upper bound of each n-tile of the split-by column. The import query is used
+   * as a derived table, so the split-by column must be part of its output.
+   *
+   * @param importQuery the import query, containing the $CONDITIONS string
+   * @param splitBy the column to split by. Any table qualifier is dropped when referencing the derived table
+   * @param numSplits the number of n-tiles to compute
+   * @return the query returning one upper bound per row, in ascending order
+   */
+  static String getQuantileQuery(String importQuery, String splitBy, int numSplits) {
+    String column = "q." + splitBy.substring(splitBy.lastIndexOf('.') + 1);
+    String query = importQuery.replace(DataDrivenDBInputFormat.SUBSTITUTE_TOKEN, "(1 = 1)");
+    return String.format("SELECT MAX(split_value) FROM (SELECT %s AS split_value, NTILE(%d) OVER (ORDER BY %s) " +
+                           "AS split_bucket FROM (%s) q WHERE %s IS NOT NULL) b GROUP BY split_bucket ORDER BY 1",
+                         column, numSplits, column, query, column);
+  }
+
+  @Override
+  public List<InputSplit> split(Configuration conf, ResultSet results, String colName) throws SQLException {
+    int sqlType = results.getMetaData().getColumnType(1);
+    List<String> boundaries = new ArrayList<>();
+    while (results.next()) {
+      String boundary = toLiteral(results, sqlType);
+      // n-tiles can share an upper bound if a single value spans several of them
+      if (boundary != null && (boundaries.isEmpty() || !boundaries.get(boundaries.size() - 1).equals(boundary))) {
+        boundaries.add(boundary);
+      }
+    }
+    return getSplits(colName, boundaries);
+  }
+
+  /**
+   * Creates one split per interval between consecutive boundaries, plus a split for null values. The first split
+   * is unbounded below and the last split is unbounded above, so that no rows are lost if the data changes between
+   * planning and reading.
+   *
+   * @param colName the column to split by
+   * @param boundaries the SQL literals of the upper bound of each interval, in ascending order
+   * @return the list of splits
+   */
+  static List<InputSplit> getSplits(String colName, List<String> boundaries) {
+    List<InputSplit> splits = new ArrayList<>();
+    String notNull = colName + " IS NOT NULL";
+    for (int i = 0; i < boundaries.size(); i++) {
+      String lowerClause = i == 0 ? notNull : colName + " > " + boundaries.get(i - 1);
+      String upperClause = i == boundaries.size() - 1 ? notNull : colName + " <= " + boundaries.get(i);
+      splits.add(new DataDrivenDBInputFormat.DataDrivenDBInputSplit(lowerClause, upperClause));
+    }
+    String isNull = colName + " IS NULL";
+    splits.add(new DataDrivenDBInputFormat.DataDrivenDBInputSplit(isNull, isNull));
+    return splits;
+  }
+
+  /**
+   * Returns the value of the first column of the current row as a SQL literal, or {@code null} if the value is null.
+   */
+  @Nullable
+  static String toLiteral(ResultSet results, int sqlType) throws SQLException {
+    String value = getValue(results, sqlType);
+    return value == null ? null : toLiteral(sqlType, value);
+  }
+
+  /**
+   * Returns the value of the first column of the current row as a string that can be turned into a SQL literal with
+   * {@link #toLiteral(int, String)}, or {@code null} if the value is null. Dates, times and timestamps are read and
+   * formatted in UTC, so that the value is the same as the one stored in the database, whatever the time zone of
+   * the JVM is.
+   */
+  @Nullable
+  static String getValue(ResultSet results, int sqlType) throws SQLException {
+    switch (sqlType) {
+      case Types.TINYINT:
+      case Types.SMALLINT:
+      case Types.INTEGER:
+      case Types.BIGINT:
+      case Types.REAL:
+      case Types.FLOAT:
+      case Types.DOUBLE:
+      case Types.NUMERIC:
+      case Types.DECIMAL:
+        BigDecimal number = results.getBigDecimal(1);
+        return number == null ? null : number.toPlainString();
+      case Types.DATE:
+        Date date = results.getDate(1, Calendar.getInstance(UTC));
+        return date == null ? null : toUTCDateTime(date.getTime()).toLocalDate().format(DATE_FORMAT);
+      case Types.TIME:
+        Time time = results.getTime(1, Calendar.getInstance(UTC));
+        return time == null ? null : toUTCDateTime(time.getTime()).toLocalTime().format(TIME_FORMAT);
+      case Types.TIMESTAMP:
+        Timestamp timestamp = results.getTimestamp(1, Calendar.getInstance(UTC));
+        return timestamp == null ? null :
+          toUTCDateTime(timestamp.getTime()).withNano(timestamp.getNanos()).format(TIMESTAMP_FORMAT);
+      case Types.CHAR:
+      case Types.VARCHAR:
+      case Types.LONGVARCHAR:
+      case Types.NCHAR:
+      case Types.NVARCHAR:
+      case Types.LONGNVARCHAR:
+        return results.getString(1);
+      default:
+        throw new SQLException("Unsupported SQL type for a split-by or incremental column: " + sqlType);
+    }
+  }
+
+  /**
+   * Returns a value returned by {@link #getValue(ResultSet, int)} as a SQL literal. The value is parsed according to
+   * its type before it is written, and string values are quoted and escaped, so that the literal cannot change the
+   * meaning of the query it is added to.
+   *
+   * @throws IllegalArgumentException if the value is not valid for the type
+   */
+  static String toLiteral(int sqlType, String value) {
+    try {
+      switch (sqlType) {
+        case Types.TINYINT:
+        case Types.SMALLINT:
+        case Types.INTEGER:
+        case Types.BIGINT:
+        case Types.REAL:
+        case Types.FLOAT:
+        case Types.DOUBLE:
+        case Types.NUMERIC:
+        case Types.DECIMAL:
+          return new BigDecimal(value).toPlainString();
+        // use JDBC escape syntax, which the driver translates into the database specific literal
+        case Types.DATE:
+          return "{d '" + LocalDate.parse(value, DATE_FORMAT).format(DATE_FORMAT) + "'}";
+        case Types.TIME:
+          return "{t '" + LocalTime.parse(value, TIME_FORMAT).format(TIME_FORMAT) + "'}";
+        case Types.TIMESTAMP:
+          return "{ts '" + LocalDateTime.parse(value, TIMESTAMP_FORMAT).format(TIMESTAMP_FORMAT) + "'}";
+        case Types.CHAR:
+        case Types.VARCHAR:
+        case Types.LONGVARCHAR:
+        case Types.NCHAR:
+        case Types.NVARCHAR:
+        case Types.LONGNVARCHAR:
+          return "'" + value.replace("'", "''") + "'";
+        default:
+          throw new IllegalArgumentException(
+            "Unsupported SQL type for a split-by or incremental column: " + sqlType);
+      }
+    } catch (NumberFormatException | DateTimeParseException e) {
+      throw new IllegalArgumentException(
+        String.format("Invalid value '%s' for SQL type %d: %s", value, sqlType, e.getMessage()), e);
+    }
+  }
+
+  private static LocalDateTime toUTCDateTime(long millis) {
+    return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000L), (int) Math.floorMod(millis, 1000L) * 1000000,
+                                       ZoneOffset.UTC);
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.hydrator.plugin.db.batch.source;
+
+import java.util.Arrays;
+import javax.annotation.Nullable;
+
+/**
+ * How the {@link DBSource} divides the rows returned by the import query into splits.
+ */
+public enum SplitStrategy {
+  /**
+   * Divides the range returned by the bounding query into equal-width intervals.
+   */
+  RANGE,
+  /**
+   * Divides the split-by column into intervals containing roughly the same number of rows,
+   * using quantiles computed by the database.
+   */
+  QUANTILE;
+
+  public static final String CONF_KEY = "co.cask.hydrator.db.split.strategy";
+
+  /**
+   * Returns the strategy for the given name, defaulting to {@link #RANGE} if the name is {@code null}.
+   *
+   * @param strategy name of the strategy, case insensitive
+   * @return the matching strategy
+   * @throws IllegalArgumentException if the name does not match any strategy
+   */
+  public static SplitStrategy getStrategy(@Nullable String strategy) {
+    if (strategy == null || strategy.isEmpty()) {
+      return RANGE;
+    }
+    try {
+      return valueOf(strategy.toUpperCase());
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException(String.format(
+        "Split strategy must be one of the following values: %s, but got: %s.",
+        Arrays.toString(values()), strategy));
+    }
+  }
+}
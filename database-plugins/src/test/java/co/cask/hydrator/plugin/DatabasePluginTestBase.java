@@ -20,6 +20,7 @@ import co.cask.cdap.api.artifact.ArtifactSummary;
 import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.api.plugin.PluginClass;
 import co.cask.cdap.api.plugin.PluginPropertyField;
+import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.datapipeline.DataPipelineApp;
 import co.cask.cdap.datapipeline.SmartWorkflow;
 import co.cask.cdap.etl.mock.test.HydratorTestBase;
@@ -265,6 +266,17 @@ public class DatabasePluginTestBase extends HydratorTestBase {
     workflowManager.waitForRuns(ProgramRunStatus.FAILED, runCount, 3, TimeUnit.MINUTES);
   }
 
+  /**
+   * Waits for a user metric of the given application to reach the expected value, and checks that it is not higher.
+   * Stage metrics are named by the stage, like 'action.rows.affected'.
+   */
+  protected static void validateMetric(ApplicationId appId, String metric, long expected) throws Exception {
+    Map<String, String> tags = ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, appId.getNamespace(),
+                                               Constants.Metrics.Tag.APP, appId.getApplication());
+    getMetricsManager().waitForTotalMetricCount(tags, "user." + metric, expected, 20, TimeUnit.SECONDS);
+    Assert.assertEquals(expected, getMetricsManager().getTotalMetric(tags, "user." + metric));
+  }
+
   protected ApplicationManager deployETL(ETLPlugin sourcePlugin, ETLPlugin sinkPlugin, String appName)
     throws Exception {
     ETLStage source = new ETLStage("source", sourcePlugin);
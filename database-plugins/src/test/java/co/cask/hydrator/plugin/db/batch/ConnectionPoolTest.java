@@ -0,0 +1,247 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.plugin.db.batch;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Tests for {@link ConnectionPool}.
+ */
+public class ConnectionPoolTest {
+
+  @BeforeClass
+  public static void loadDriver() throws ClassNotFoundException {
+    Class.forName("org.hsqldb.jdbc.JDBCDriver");
+  }
+
+  @Test
+  public void testReuse() throws Exception {
+    ConnectionPool pool = new ConnectionPool(TimeUnit.SECONDS.toMillis(10));
+    String url = getURL("reuse");
+    Connection physical;
+    int isolation;
+    try (Connection connection = pool.borrow(url, getProperties(), 1, 0)) {
+      physical = connection.unwrap(Connection.class);
+      isolation = connection.getTransactionIsolation();
+      try (Statement statement = connection.createStatement()) {
+        statement.execute("CREATE TABLE t (id INT)");
+      }
+      connection.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+      connection.setAutoCommit(false);
+      try (Statement statement = connection.createStatement()) {
+        statement.execute("INSERT INTO t VALUES (1)");
+      }
+    }
+
+    try (Connection connection = pool.borrow(url, getProperties(), 1, 0)) {
+      Assert.assertSame(physical, connection.unwrap(Connection.class));
+      connection.setReadOnly(true);
+    }
+
+    try (Connection connection = pool.borrow(url, getProperties(), 1, 0)) {
+      Assert.assertSame(physical, connection.unwrap(Connection.class));
+      // the uncommitted insert was rolled back, and the settings were reset
+      Assert.assertTrue(connection.getAutoCommit());
+      Assert.assertFalse(connection.isReadOnly());
+      Assert.assertEquals(isolation, connection.getTransactionIsolation());
+      Assert.assertEquals(0, count(connection, "t"));
+      try (Statement statement = connection.createStatement()) {
+        statement.execute("DROP TABLE t");
+      }
+    }
+    Assert.assertEquals(1, pool.getOpenConnections(url, getProperties()));
+  }
+
+  @Test
+  public void testClosedConnectionIsNotUsable() throws Exception {
+    ConnectionPool pool = new ConnectionPool(TimeUnit.SECONDS.toMillis(10));
+    Connection connection = pool.borrow(getURL("closed"), getProperties(), 1, 0);
+    connection.close();
+    Assert.assertTrue(connection.isClosed());
+    // closing twice must not return the connection to the pool twice
+    connection.close();
+    Assert.assertEquals(1, pool.getOpenConnections(getURL("closed"), getProperties()));
+  }
+
+  @Test
+  public void testKeysAreNotShared() throws Exception {
+    ConnectionPool pool = new ConnectionPool(TimeUnit.SECONDS.toMillis(10));
+    Connection physical;
+    try (Connection connection = pool.borrow(getURL("key1"), getProperties(), 1, 0)) {
+      physical = connection.unwrap(Connection.class);
+    }
+    try (Connection connection = pool.borrow(getURL("key2"), getProperties(), 1, 0)) {
+      Assert.assertNotSame(physical, connection.unwrap(Connection.class));
+    }
+    Assert.assertEquals(1, pool.getOpenConnections(getURL("key1"), getProperties()));
+    Assert.assertEquals(1, pool.getOpenConnections(getURL("key2"), getProperties()));
+  }
+
+  @Test
+  public void testMaxIdle() throws Exception {
+    ConnectionPool pool = new ConnectionPool(TimeUnit.SECONDS.toMillis(10));
+    String url = getURL("maxIdle");
+    Connection first = pool.borrow(url, getProperties(), 1, 0);
+    Connection second = pool.borrow(url, getProperties(), 1, 0);
+    Assert.assertNotSame(first.unwrap(Connection.class), second.unwrap(Connection.class));
+    Assert.assertEquals(2, pool.getOpenConnections(url, getProperties()));
+
+    Connection physical = second.unwrap(Connection.class);
+    first.close();
+    second.close();
+    // only one idle connection is kept, the other one is closed
+    Assert.assertTrue(physical.isClosed());
+    Assert.assertEquals(1, pool.getOpenConnections(url, getProperties()));
+  }
+
+  @Test
+  public void testNoIdleConnections() throws Exception {
+    ConnectionPool pool = new ConnectionPool(TimeUnit.SECONDS.toMillis(10));
+    String url = getURL("noIdle");
+    Connection connection = pool.borrow(url, getProperties(), 0, 1);
+    Connection physical = connection.unwrap(Connection.class);
+    connection.close();
+    Assert.assertTrue(physical.isClosed());
+    Assert.assertEquals(0, pool.getOpenConnections(url, getProperties()));
+  }
+
+  @Test(timeout = 10000)
+  public void testMaxConnectionsBlocks() throws Exception {
+    ConnectionPool pool = new ConnectionPool(TimeUnit.SECONDS.toMillis(10));
+    String url = getURL("maxOpen");
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Connection connection = pool.borrow(url, getProperties(), 1, 1);
+      Connection physical = connection.unwrap(Connection.class);
+      Future<Connection> waiting = executor.submit(new Callable<Connection>() {
+        @Override
+        public Connection call() throws Exception {
+          return pool.borrow(url, getProperties(), 1, 1);
+        }
+      });
+      try {
+        waiting.get(200, TimeUnit.MILLISECONDS);
+        Assert.fail("Expected the second connection to wait until the first one is returned.");
+      } catch (TimeoutException e) {
+        // expected
+      }
+
+      connection.close();
+      try (Connection returned = waiting.get(5, TimeUnit.SECONDS)) {
+        Assert.assertSame(physical, returned.unwrap(Connection.class));
+      }
+      Assert.assertEquals(1, pool.getOpenConnections(url, getProperties()));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testMaxConnectionsTimeout() throws Exception {
+    ConnectionPool pool = new ConnectionPool(100);
+    String url = getURL("timeout");
+    try (Connection connection = pool.borrow(url, getProperties(), 1, 1)) {
+      try {
+        pool.borrow(url, getProperties(), 1, 1);
+        Assert.fail("Expected borrowing a connection to time out.");
+      } catch (SQLException e) {
+        // expected
+      }
+    }
+    Assert.assertEquals(1, pool.getOpenConnections(url, getProperties()));
+  }
+
+  @Test
+  public void testEviction() throws Exception {
+    ConnectionPool pool = new ConnectionPool(TimeUnit.SECONDS.toMillis(10));
+    String url = getURL("eviction");
+    Connection physical;
+    try (Connection connection = pool.borrow(url, getProperties(), 1, 0)) {
+      physical = connection.unwrap(Connection.class);
+    }
+
+    pool.evictIdleConnections(TimeUnit.MINUTES.toMillis(1));
+    Assert.assertFalse(physical.isClosed());
+    Assert.assertEquals(1, pool.getOpenConnections(url, getProperties()));
+
+    TimeUnit.MILLISECONDS.sleep(10);
+    pool.evictIdleConnections(0);
+    Assert.assertTrue(physical.isClosed());
+    Assert.assertEquals(0, pool.getOpenConnections(url, getProperties()));
+    try (Connection connection = pool.borrow(url, getProperties(), 1, 0)) {
+      Assert.assertNotSame(physical, connection.unwrap(Connection.class));
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testBrokenConnectionIsReplaced() throws Exception {
+    ConnectionPool pool = new ConnectionPool(100);
+    String url = getURL("broken");
+    Connection physical;
+    try (Connection connection = pool.borrow(url, getProperties(), 1, 1)) {
+      physical = connection.unwrap(Connection.class);
+    }
+
+    // shutting down the database breaks the idle connection
+    try (Connection connection = DriverManager.getConnection(url, getProperties());
+         Statement statement = connection.createStatement()) {
+      statement.execute("SHUTDOWN");
+    }
+
+    // the broken connection must be replaced, and must not count against the maximum number of connections
+    try (Connection connection = pool.borrow(url, getProperties(), 1, 1)) {
+      Assert.assertNotSame(physical, connection.unwrap(Connection.class));
+      Assert.assertTrue(connection.isValid(1));
+    }
+    Assert.assertEquals(1, pool.getOpenConnections(url, getProperties()));
+  }
+
+  private static int count(Connection connection, String table) throws SQLException {
+    try (Statement statement = connection.createStatement();
+         ResultSet results = statement.executeQuery("SELECT COUNT(*) FROM " + table)) {
+      Assert.assertTrue(results.next());
+      return results.getInt(1);
+    }
+  }
+
+  private static String getURL(String database) {
+    return "jdbc:hsqldb:mem:connectionPoolTest_" + database;
+  }
+
+  private static Properties getProperties() {
+    Properties properties = new Properties();
+    properties.put("user", "SA");
+    properties.put("password", "");
+    return properties;
+  }
+}
@@ -33,6 +33,7 @@ import org.junit.Test;
 
 import java.sql.Connection;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
 
 /**
@@ -85,4 +86,102 @@ public class DBActionTestRun extends DatabasePluginTestBase {
       }
     }
   }
+
+  @Test
+  public void testDBActionMultipleStatements() throws Exception {
+    try (Connection connection = getConnection();
+         Statement statement = connection.createStatement()) {
+      statement.execute("create table \"dbActionMulti\" (x int, day varchar(10))");
+      statement.execute("insert into \"dbActionMulti\" values (1, '1970-01-01')");
+    }
+
+    // the statements depend on each other, so they must be executed in order
+    ApplicationId appId = NamespaceId.DEFAULT.app("actionMultiTest");
+    ApplicationManager appManager = deployApplication(appId, new AppRequest<>(DATAPIPELINE_ARTIFACT, getConfig(
+      "insert into \"dbActionMulti\" values (2, 'a;b'); " +
+        "update \"dbActionMulti\" set x = x + 1 where x = 2; " +
+        "delete from \"dbActionMulti\" where x = 1;", 1)));
+    runETLOnce(appManager);
+
+    try (Connection connection = getConnection();
+         Statement statement = connection.createStatement();
+         ResultSet results = statement.executeQuery("select * from \"dbActionMulti\"")) {
+      Assert.assertTrue(results.next());
+      Assert.assertEquals(3, results.getInt(1));
+      Assert.assertEquals("a;b", results.getString(2));
+      Assert.assertFalse(results.next());
+    }
+    validateMetric(appId, "action.statements.executed", 3);
+    validateMetric(appId, "action.rows.affected", 3);
+  }
+
+  @Test
+  public void testDBActionParallelStatements() throws Exception {
+    try (Connection connection = getConnection();
+         Statement statement = connection.createStatement()) {
+      for (String table : new String[] { "dbActionParallel1", "dbActionParallel2", "dbActionParallel3" }) {
+        statement.execute(String.format("create table \"%s\" (x int)", table));
+        statement.execute(String.format("insert into \"%s\" values (1), (2)", table));
+      }
+    }
+
+    ApplicationId appId = NamespaceId.DEFAULT.app("actionParallelTest");
+    ApplicationManager appManager = deployApplication(appId, new AppRequest<>(DATAPIPELINE_ARTIFACT, getConfig(
+      "delete from \"dbActionParallel1\"; delete from \"dbActionParallel2\"; " +
+        "delete from \"dbActionParallel3\" where x = 1", 2)));
+    runETLOnce(appManager);
+
+    try (Connection connection = getConnection();
+         Statement statement = connection.createStatement()) {
+      Assert.assertEquals(0, count(statement, "dbActionParallel1"));
+      Assert.assertEquals(0, count(statement, "dbActionParallel2"));
+      Assert.assertEquals(1, count(statement, "dbActionParallel3"));
+    }
+    validateMetric(appId, "action.statements.executed", 3);
+    validateMetric(appId, "action.rows.affected", 5);
+  }
+
+  @Test
+  public void testDBActionFailedStatement() throws Exception {
+    try (Connection connection = getConnection();
+         Statement statement = connection.createStatement()) {
+      statement.execute("create table \"dbActionFailure\" (x int)");
+    }
+
+    // a statement that fails fails the stage, even if it is executed in parallel with others
+    assertRuntimeFailure(NamespaceId.DEFAULT.app("actionFailureTest"), getConfig(
+      "delete from \"dbActionFailure\"; delete from \"dbActionMissingTable\"", 2),
+                         "Action with a failing statement should have failed the run.", 1);
+  }
+
+  private ETLBatchConfig getConfig(String query, int parallelism) {
+    ETLStage source = new ETLStage("source", MockSource.getPlugin("actionInput"));
+    ETLStage sink = new ETLStage("sink", MockSink.getPlugin("actionOutput"));
+    ETLStage action = new ETLStage("action", new ETLPlugin(
+      "Database",
+      Action.PLUGIN_TYPE,
+      ImmutableMap.<String, String>builder()
+        .put("connectionString", getConnectionURL())
+        .put("jdbcPluginName", "hypersql")
+        .put("query", query)
+        .put("multipleStatements", "true")
+        .put("parallelism", String.valueOf(parallelism))
+        .build(),
+      null));
+
+    return ETLBatchConfig.builder("* * * * *")
+      .addStage(source)
+      .addStage(sink)
+      .addStage(action)
+      .addConnection(sink.getName(), action.getName())
+      .addConnection(source.getName(), sink.getName())
+      .build();
+  }
+
+  private static int count(Statement statement, String table) throws SQLException {
+    try (ResultSet results = statement.executeQuery(String.format("select count(*) from \"%s\"", table))) {
+      results.next();
+      return results.getInt(1);
+    }
+  }
 }
@@ -86,4 +86,60 @@ public class DBQueryActionTestRun extends DatabasePluginTestBase {
       }
     }
   }
+
+  @Test
+  public void testActionMultipleStatements() throws Exception {
+    try (Connection connection = getConnection();
+         Statement statement = connection.createStatement()) {
+      statement.execute("create table \"postActionMulti1\" (x int)");
+      statement.execute("insert into \"postActionMulti1\" values (1), (2)");
+      statement.execute("create table \"postActionMulti2\" (x int)");
+      statement.execute("insert into \"postActionMulti2\" values (1), (2), (3)");
+    }
+
+    ETLStage source = new ETLStage("source", MockSource.getPlugin("actionInput"));
+    ETLStage sink = new ETLStage("sink", MockSink.getPlugin("actionOutput"));
+    ETLStage action = new ETLStage("action", new ETLPlugin(
+      "DatabaseQuery",
+      PostAction.PLUGIN_TYPE,
+      ImmutableMap.<String, String>builder()
+        .put("connectionString", getConnectionURL())
+        .put("jdbcPluginName", "hypersql")
+        .put("jdbcPluginType", "jdbc")
+        .put("query", "delete from \"postActionMulti1\" where x = 1; -- keep x = 2; \n" +
+          "delete from \"postActionMulti2\" where x > 1;")
+        .put("multipleStatements", "${multiple}")
+        .put("parallelism", "2")
+        .put("runCondition", "success")
+        .build(),
+      null));
+
+    ETLBatchConfig config = ETLBatchConfig.builder("* * * * *")
+      .addStage(source)
+      .addStage(sink)
+      .addPostAction(action)
+      .addConnection(source.getName(), sink.getName())
+      .build();
+
+    AppRequest<ETLBatchConfig> appRequest = new AppRequest<>(DATAPIPELINE_ARTIFACT, config);
+    ApplicationId appId = NamespaceId.DEFAULT.app("postActionMultiTest");
+    ApplicationManager appManager = deployApplication(appId, appRequest);
+    runETLOnce(appManager, ImmutableMap.of("multiple", "true"));
+
+    try (Connection connection = getConnection();
+         Statement statement = connection.createStatement()) {
+      try (ResultSet results = statement.executeQuery("select x from \"postActionMulti1\"")) {
+        Assert.assertTrue(results.next());
+        Assert.assertEquals(2, results.getInt(1));
+        Assert.assertFalse(results.next());
+      }
+      try (ResultSet results = statement.executeQuery("select x from \"postActionMulti2\"")) {
+        Assert.assertTrue(results.next());
+        Assert.assertEquals(1, results.getInt(1));
+        Assert.assertFalse(results.next());
+      }
+    }
+    validateMetric(appId, "action.statements.executed", 2);
+    validateMetric(appId, "action.rows.affected", 3);
+  }
 }
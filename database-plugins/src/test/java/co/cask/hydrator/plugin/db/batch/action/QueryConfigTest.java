@@ -0,0 +1,49 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.hydrator.plugin.db.batch.action;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link QueryConfig}.
+ */
+public class QueryConfigTest {
+
+  @Test
+  public void testSplitStatements() {
+    Assert.assertEquals(ImmutableList.of("DELETE FROM a", "DROP TABLE b"),
+                        QueryConfig.splitStatements("DELETE FROM a; DROP TABLE b;\n"));
+    Assert.assertEquals(ImmutableList.of("INSERT INTO a VALUES ('x;y', 'it''s')", "SELECT \"c;d\" FROM b"),
+                        QueryConfig.splitStatements("INSERT INTO a VALUES ('x;y', 'it''s'); SELECT \"c;d\" FROM b"));
+    Assert.assertEquals(ImmutableList.of("-- drop; old\nDROP TABLE a", "/* b; c */ DROP TABLE b"),
+                        QueryConfig.splitStatements("-- drop; old\nDROP TABLE a;; /* b; c */ DROP TABLE b"));
+    // quotes escaped with a backslash are not recognized, so they end the quoted string
+    Assert.assertEquals(ImmutableList.of("SELECT 'a\\'", "'b'"),
+                        QueryConfig.splitStatements("SELECT 'a\\'; 'b'"));
+  }
+
+  @Test
+  public void testSingleStatement() {
+    QueryConfig config = new QueryConfig();
+    config.query = "BEGIN DELETE FROM a; END;";
+    Assert.assertEquals(ImmutableList.of("BEGIN DELETE FROM a; END;"), config.getStatements());
+    config.multipleStatements = true;
+    Assert.assertEquals(ImmutableList.of("BEGIN DELETE FROM a", "END"), config.getStatements());
+  }
+}
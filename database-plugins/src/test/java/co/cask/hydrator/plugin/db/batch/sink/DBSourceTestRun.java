@@ -18,6 +18,7 @@ package co.cask.hydrator.plugin.db.batch.sink;
 
 import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.dataset.lib.KeyValueTable;
 import co.cask.cdap.api.dataset.table.Table;
 import co.cask.cdap.etl.api.batch.BatchSource;
 import co.cask.cdap.etl.mock.batch.MockSink;
@@ -34,19 +35,25 @@ import co.cask.hydrator.plugin.ConnectionConfig;
 import co.cask.hydrator.plugin.DBConfig;
 import co.cask.hydrator.plugin.DatabasePluginTestBase;
 import co.cask.hydrator.plugin.db.batch.source.DBSource;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.nio.ByteBuffer;
+import java.sql.Connection;
 import java.sql.Date;
+import java.sql.Statement;
 import java.sql.Time;
+import java.sql.Types;
 import java.text.SimpleDateFormat;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -261,6 +268,74 @@ public class DBSourceTestRun extends DatabasePluginTestBase {
     Assert.assertEquals(2, row2.<Integer>get("ID").intValue());
   }
 
+  @Test
+  public void testIncrementalImport() throws Exception {
+    try (Connection connection = getConnection();
+         Statement statement = connection.createStatement()) {
+      statement.execute("CREATE TABLE \"incremental_table\" (ID INT NOT NULL, UPDATED TIMESTAMP NOT NULL)");
+      statement.execute("INSERT INTO \"incremental_table\" VALUES (1, TIMESTAMP '2018-01-01 00:00:01'), " +
+                          "(2, TIMESTAMP '2018-01-01 00:00:02'), (3, TIMESTAMP '2018-01-01 00:00:03')");
+    }
+
+    // the bounding query does not contain $CONDITIONS, so it is replaced by the range of the new rows
+    ETLPlugin sourceConfig = new ETLPlugin(
+      "Database",
+      BatchSource.PLUGIN_TYPE,
+      ImmutableMap.<String, String>builder()
+        .put(DBConfig.CONNECTION_STRING, getConnectionURL())
+        .put(DBSource.DBSourceConfig.IMPORT_QUERY, "SELECT ID, UPDATED FROM \"incremental_table\" WHERE $CONDITIONS")
+        .put(DBSource.DBSourceConfig.BOUNDING_QUERY, "SELECT MIN(ID),MAX(ID) FROM \"incremental_table\"")
+        .put(DBSource.DBSourceConfig.SPLIT_BY, "ID")
+        .put(DBSource.DBSourceConfig.NUM_SPLITS, "2")
+        .put(DBSource.DBSourceConfig.INCREMENTAL_COLUMN, "UPDATED")
+        .put(DBSource.DBSourceConfig.WATERMARK_TABLE_NAME, "incrementalWatermark")
+        .put(DBConfig.JDBC_PLUGIN_NAME, "hypersql")
+        .put(Constants.Reference.REFERENCE_NAME, "DBIncrementalTest")
+        .build(),
+      null
+    );
+    String outputDatasetName = "output-incrementaltest";
+    ApplicationManager appManager = deployETL(sourceConfig, MockSink.getPlugin(outputDatasetName),
+                                              "testDBSourceIncremental");
+
+    runETLOnce(appManager);
+    Assert.assertEquals(ImmutableList.of(1, 2, 3), getSortedIds(outputDatasetName));
+    DataSetManager<KeyValueTable> watermarkManager = getDataset("incrementalWatermark");
+    Assert.assertEquals(Types.TIMESTAMP + ":2018-01-01 00:00:03.000000000",
+                        Bytes.toString(watermarkManager.get().read("DBIncrementalTest")));
+
+    // no new rows
+    runETLOnce(appManager);
+    Assert.assertEquals(ImmutableList.of(1, 2, 3), getSortedIds(outputDatasetName));
+
+    // only the new rows are read, including a row with a lower id than the rows already read
+    try (Connection connection = getConnection();
+         Statement statement = connection.createStatement()) {
+      statement.execute("INSERT INTO \"incremental_table\" VALUES (0, TIMESTAMP '2018-01-02 00:00:00'), " +
+                          "(4, TIMESTAMP '2018-01-02 00:00:01'), (5, TIMESTAMP '2018-01-02 00:00:02')");
+    }
+    runETLOnce(appManager);
+    Assert.assertEquals(ImmutableList.of(0, 1, 2, 3, 4, 5), getSortedIds(outputDatasetName));
+    watermarkManager.flush();
+    Assert.assertEquals(Types.TIMESTAMP + ":2018-01-02 00:00:02.000000000",
+                        Bytes.toString(watermarkManager.get().read("DBIncrementalTest")));
+
+    try (Connection connection = getConnection();
+         Statement statement = connection.createStatement()) {
+      statement.execute("DROP TABLE \"incremental_table\"");
+    }
+  }
+
+  private List<Integer> getSortedIds(String outputDatasetName) throws Exception {
+    DataSetManager<Table> outputManager = getDataset(outputDatasetName);
+    List<Integer> ids = new ArrayList<>();
+    for (StructuredRecord record : MockSink.readOutput(outputManager)) {
+      ids.add(record.<Integer>get("ID"));
+    }
+    Collections.sort(ids);
+    return ids;
+  }
+
   @Test
   public void testUserNamePasswordCombinations() throws Exception {
     String importQuery = "SELECT * FROM \"my_table\" WHERE $CONDITIONS";
@@ -0,0 +1,53 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.plugin.db.batch.source;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link DBSource}.
+ */
+public class DBSourceTest {
+  private static final String IMPORT_QUERY =
+    "SELECT * FROM users u WHERE $CONDITIONS AND (u.updated > {ts '2018-01-01 00:00:00.000000000'})";
+
+  @Test
+  public void testIncrementalBoundingQueryWithConditions() {
+    Assert.assertEquals(
+      "SELECT MIN(id), MAX(id) FROM users WHERE (updated > 5)",
+      DBSource.getIncrementalBoundingQuery("SELECT MIN(id), MAX(id) FROM users WHERE $CONDITIONS", IMPORT_QUERY,
+                                           "u.id", "updated > 5"));
+  }
+
+  @Test
+  public void testIncrementalBoundingQueryWithoutConditions() {
+    Assert.assertEquals(
+      "SELECT MIN(q.id), MAX(q.id) FROM (SELECT * FROM users u WHERE (1 = 1) AND " +
+        "(u.updated > {ts '2018-01-01 00:00:00.000000000'})) q",
+      DBSource.getIncrementalBoundingQuery("SELECT MIN(id), MAX(id) FROM users", IMPORT_QUERY, "u.id",
+                                           "u.updated > {ts '2018-01-01 00:00:00.000000000'}"));
+  }
+
+  @Test
+  public void testIncrementalBoundingQueryWithoutSplitBy() {
+    Assert.assertEquals(
+      "SELECT MIN(id), MAX(id) FROM users",
+      DBSource.getIncrementalBoundingQuery("SELECT MIN(id), MAX(id) FROM users", IMPORT_QUERY, null, "id > 5"));
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.hydrator.plugin.db.batch.source;
+
+import co.cask.hydrator.plugin.DBRecord;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.MRJobConfig;
+import org.apache.hadoop.mapreduce.lib.db.DBConfiguration;
+import org.apache.hadoop.mapreduce.lib.db.DataDrivenDBInputFormat.DataDrivenDBInputSplit;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * Tests for {@link DataDrivenETLDBInputFormat}.
+ */
+public class DataDrivenETLDBInputFormatTest {
+  private static final String IMPORT_QUERY = "SELECT * FROM users u WHERE $CONDITIONS";
+
+  @Test
+  public void testQuantileSplits() throws Exception {
+    Configuration conf = new Configuration();
+    DBConfiguration.configureDB(conf, "org.hsqldb.jdbc.JDBCDriver", "jdbc:hsqldb:mem:quantile");
+    // quantile splits do not need a bounding query
+    DataDrivenETLDBInputFormat.setInput(conf, DBRecord.class, IMPORT_QUERY, null, false);
+    conf.set(DBConfiguration.INPUT_ORDER_BY_PROPERTY, "u.id");
+    conf.set(SplitStrategy.CONF_KEY, "quantile");
+    conf.setInt(MRJobConfig.NUM_MAPS, 4);
+    Assert.assertNull(conf.get(DBConfiguration.INPUT_BOUNDING_QUERY));
+
+    List<String> queries = new ArrayList<>();
+    DataDrivenETLDBInputFormat format = new DataDrivenETLDBInputFormat() {
+      @Override
+      public Connection getConnection() {
+        if (connection == null) {
+          connection = createConnection(queries, 10, 200, 3000);
+        }
+        return connection;
+      }
+    };
+    format.setConf(conf);
+    List<InputSplit> splits = format.getSplits(Job.getInstance(conf));
+
+    Assert.assertEquals(1, queries.size());
+    Assert.assertEquals(QuantileSplitter.getQuantileQuery(IMPORT_QUERY, "u.id", 4), queries.get(0));
+    Assert.assertEquals(4, splits.size());
+    assertSplit("u.id IS NOT NULL", "u.id <= 10", splits.get(0));
+    assertSplit("u.id > 10", "u.id <= 200", splits.get(1));
+    assertSplit("u.id > 200", "u.id IS NOT NULL", splits.get(2));
+    assertSplit("u.id IS NULL", "u.id IS NULL", splits.get(3));
+  }
+
+  @Test
+  public void testBoundingQuery() {
+    Configuration conf = new Configuration();
+    DataDrivenETLDBInputFormat.setInput(conf, DBRecord.class, IMPORT_QUERY, "SELECT MIN(id), MAX(id) FROM users",
+                                        true);
+    Assert.assertEquals("SELECT MIN(id), MAX(id) FROM users", conf.get(DBConfiguration.INPUT_BOUNDING_QUERY));
+    Assert.assertTrue(conf.getBoolean(DataDrivenETLDBInputFormat.AUTO_COMMIT_ENABLED, false));
+  }
+
+  private static void assertSplit(String lowerClause, String upperClause, InputSplit split) {
+    DataDrivenDBInputSplit dbSplit = (DataDrivenDBInputSplit) split;
+    Assert.assertEquals(lowerClause, dbSplit.getLowerClause());
+    Assert.assertEquals(upperClause, dbSplit.getUpperClause());
+  }
+
+  /**
+   * Creates a connection whose queries are recorded, and always return the given values as a single integer column.
+   */
+  private static Connection createConnection(List<String> queries, int... values) {
+    return proxy(Connection.class, (proxy, method, args) -> {
+      switch (method.getName()) {
+        case "getMetaData":
+          return proxy(DatabaseMetaData.class, (metaProxy, metaMethod, metaArgs) ->
+            "getDatabaseProductName".equals(metaMethod.getName()) ? "HSQL Database Engine" : defaultValue(metaMethod));
+        case "createStatement":
+          return proxy(Statement.class, (statementProxy, statementMethod, statementArgs) -> {
+            if ("executeQuery".equals(statementMethod.getName())) {
+              queries.add((String) statementArgs[0]);
+              return createResultSet(values);
+            }
+            return defaultValue(statementMethod);
+          });
+        default:
+          return defaultValue(method);
+      }
+    });
+  }
+
+  private static ResultSet createResultSet(int... values) {
+    int[] row = { -1 };
+    return proxy(ResultSet.class, (proxy, method, args) -> {
+      switch (method.getName()) {
+        case "next":
+          return ++row[0] < values.length;
+        case "getBigDecimal":
+          return BigDecimal.valueOf(values[row[0]]);
+        case "getMetaData":
+          return proxy(ResultSetMetaData.class, (metaProxy, metaMethod, metaArgs) ->
+            "getColumnType".equals(metaMethod.getName()) ? Types.INTEGER : defaultValue(metaMethod));
+        default:
+          return defaultValue(method);
+      }
+    });
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+    return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, handler);
+  }
+
+  @Nullable
+  private static Object defaultValue(Method method) {
+    Class<?> type = method.getReturnType();
+    if (type == boolean.class) {
+      return false;
+    }
+    if (type == int.class) {
+      return 0;
+    }
+    if (type == long.class) {
+      return 0L;
+    }
+    return null;
+  }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.plugin.db.batch.source;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.hydrator.plugin.DBRecord;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+/**
+ * Tests for {@link PrefetchingRecordReader}.
+ */
+public class PrefetchingRecordReaderTest {
+  private static final Schema SCHEMA = Schema.recordOf("record", Schema.Field.of("id", Schema.of(Schema.Type.INT)));
+
+  @Test(timeout = 10000)
+  public void testOrder() throws Exception {
+    // batches that are full, and a last batch that is not
+    FakeRecordReader delegate = new FakeRecordReader(10, -1);
+    PrefetchingRecordReader reader = new PrefetchingRecordReader(delegate, 3);
+    reader.initialize(null, null);
+    for (int i = 0; i < 10; i++) {
+      Assert.assertTrue(reader.nextKeyValue());
+      Assert.assertEquals(i, reader.getCurrentKey().get());
+      Assert.assertEquals(i, (int) reader.getCurrentValue().getRecord().get("id"));
+    }
+    Assert.assertFalse(reader.nextKeyValue());
+    Assert.assertFalse(reader.nextKeyValue());
+    reader.close();
+    Assert.assertTrue(delegate.closed);
+  }
+
+  @Test(timeout = 10000)
+  public void testEmpty() throws Exception {
+    FakeRecordReader delegate = new FakeRecordReader(0, -1);
+    PrefetchingRecordReader reader = new PrefetchingRecordReader(delegate, 3);
+    reader.initialize(null, null);
+    Assert.assertFalse(reader.nextKeyValue());
+    reader.close();
+    Assert.assertTrue(delegate.closed);
+  }
+
+  @Test(timeout = 10000)
+  public void testFailure() throws Exception {
+    FakeRecordReader delegate = new FakeRecordReader(10, 5);
+    PrefetchingRecordReader reader = new PrefetchingRecordReader(delegate, 2);
+    reader.initialize(null, null);
+    // the records of the full batches before the failure are returned, and then the failure is thrown
+    int read = 0;
+    try {
+      while (reader.nextKeyValue()) {
+        Assert.assertEquals(read, reader.getCurrentKey().get());
+        read++;
+      }
+      Assert.fail("Expected the failure of the background thread to be thrown.");
+    } catch (IOException e) {
+      Assert.assertEquals("Failed to read record 5", e.getCause().getMessage());
+    }
+    Assert.assertEquals(4, read);
+    reader.close();
+    Assert.assertTrue(delegate.closed);
+  }
+
+  @Test(timeout = 10000)
+  public void testCloseBeforeEnd() throws Exception {
+    // the background thread blocks on the full queue until the reader is closed
+    FakeRecordReader delegate = new FakeRecordReader(-1, -1);
+    PrefetchingRecordReader reader = new PrefetchingRecordReader(delegate, 1);
+    reader.initialize(null, null);
+    Assert.assertTrue(reader.nextKeyValue());
+    Assert.assertEquals(0, reader.getCurrentKey().get());
+    reader.close();
+    Assert.assertTrue(delegate.closed);
+  }
+
+  /**
+   * A record reader that reuses its key, like the database record reader, and can fail after some records.
+   */
+  private static final class FakeRecordReader extends RecordReader<LongWritable, DBRecord> {
+    private final int numRecords;
+    private final int failAt;
+    private final LongWritable key = new LongWritable();
+    private DBRecord value;
+    private int next;
+    private volatile boolean closed;
+
+    /**
+     * @param numRecords the number of records, or -1 for an endless reader
+     * @param failAt the index of the record that fails to be read, or -1 to never fail
+     */
+    private FakeRecordReader(int numRecords, int failAt) {
+      this.numRecords = numRecords;
+      this.failAt = failAt;
+    }
+
+    @Override
+    public void initialize(InputSplit split, TaskAttemptContext context) {
+      // nothing to initialize
+    }
+
+    @Override
+    public boolean nextKeyValue() throws IOException {
+      if (next == failAt) {
+        throw new IOException("Failed to read record " + next);
+      }
+      if (numRecords >= 0 && next >= numRecords) {
+        return false;
+      }
+      key.set(next);
+      value = new DBRecord(StructuredRecord.builder(SCHEMA).set("id", next).build(), null);
+      next++;
+      return true;
+    }
+
+    @Override
+    public LongWritable getCurrentKey() {
+      return key;
+    }
+
+    @Override
+    public DBRecord getCurrentValue() {
+      return value;
+    }
+
+    @Override
+    public float getProgress() {
+      return 0.0f;
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.hydrator.plugin.db.batch.source;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.lib.db.DataDrivenDBInputFormat.DataDrivenDBInputSplit;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Collections;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * Tests for {@link QuantileSplitter}.
+ */
+public class QuantileSplitterTest {
+
+  @Test
+  public void testQuantileQuery() {
+    Assert.assertEquals(
+      "SELECT MAX(split_value) FROM (SELECT q.id AS split_value, NTILE(4) OVER (ORDER BY q.id) AS split_bucket " +
+        "FROM (SELECT * FROM users u WHERE (1 = 1)) q WHERE q.id IS NOT NULL) b GROUP BY split_bucket ORDER BY 1",
+      QuantileSplitter.getQuantileQuery("SELECT * FROM users u WHERE $CONDITIONS", "u.id", 4));
+  }
+
+  @Test
+  public void testSplits() {
+    List<InputSplit> splits = QuantileSplitter.getSplits("id", ImmutableList.of("10", "200", "3000"));
+    Assert.assertEquals(4, splits.size());
+    assertSplit("id IS NOT NULL", "id <= 10", splits.get(0));
+    assertSplit("id > 10", "id <= 200", splits.get(1));
+    assertSplit("id > 200", "id IS NOT NULL", splits.get(2));
+    assertSplit("id IS NULL", "id IS NULL", splits.get(3));
+  }
+
+  @Test
+  public void testNoBoundaries() {
+    List<InputSplit> splits = QuantileSplitter.getSplits("id", Collections.<String>emptyList());
+    Assert.assertEquals(1, splits.size());
+    assertSplit("id IS NULL", "id IS NULL", splits.get(0));
+  }
+
+  @Test
+  public void testValuesAreReadInUTC() throws Exception {
+    Class.forName("org.hsqldb.jdbc.JDBCDriver");
+    TimeZone timeZone = TimeZone.getDefault();
+    // 02:30 on 2018-03-11 does not exist in this time zone, since the clocks skip from 02:00 to 03:00
+    TimeZone.setDefault(TimeZone.getTimeZone("America/Los_Angeles"));
+    try (Connection connection = DriverManager.getConnection("jdbc:hsqldb:mem:quantileSplitterTest", "SA", "");
+         Statement statement = connection.createStatement()) {
+      statement.execute("CREATE TABLE t (ts TIMESTAMP, d DATE, tm TIME, n DECIMAL(10, 2), s VARCHAR(20))");
+      statement.execute("INSERT INTO t VALUES (TIMESTAMP '2018-03-11 02:30:00.123456', DATE '2018-03-11', " +
+                          "TIME '02:30:00', 12.50, 'o''brien')");
+      assertValue(statement, "ts", "2018-03-11 02:30:00.123456000", "{ts '2018-03-11 02:30:00.123456000'}");
+      assertValue(statement, "d", "2018-03-11", "{d '2018-03-11'}");
+      assertValue(statement, "tm", "02:30:00", "{t '02:30:00'}");
+      assertValue(statement, "n", "12.50", "12.50");
+      assertValue(statement, "s", "o'brien", "'o''brien'");
+      statement.execute("DROP TABLE t");
+    } finally {
+      TimeZone.setDefault(timeZone);
+    }
+  }
+
+  @Test
+  public void testLiteralsAreValidated() {
+    assertInvalidLiteral(Types.INTEGER, "1 OR 1 = 1");
+    assertInvalidLiteral(Types.DECIMAL, "abc");
+    assertInvalidLiteral(Types.DATE, "2018-01-01' OR '1' = '1");
+    assertInvalidLiteral(Types.TIME, "25:00:00");
+    assertInvalidLiteral(Types.TIMESTAMP, "2018-01-01");
+    assertInvalidLiteral(Types.BLOB, "abc");
+    Assert.assertEquals("-12000", QuantileSplitter.toLiteral(Types.BIGINT, "-1.2E4"));
+    Assert.assertEquals("'a'' OR ''1'' = ''1'", QuantileSplitter.toLiteral(Types.VARCHAR, "a' OR '1' = '1"));
+  }
+
+  private static void assertValue(Statement statement, String column, String expectedValue,
+                                  String expectedLiteral) throws SQLException {
+    try (ResultSet results = statement.executeQuery("SELECT " + column + " FROM t")) {
+      Assert.assertTrue(results.next());
+      int sqlType = results.getMetaData().getColumnType(1);
+      Assert.assertEquals(expectedValue, QuantileSplitter.getValue(results, sqlType));
+      Assert.assertEquals(expectedLiteral, QuantileSplitter.toLiteral(sqlType, expectedValue));
+    }
+  }
+
+  private static void assertInvalidLiteral(int sqlType, String value) {
+    try {
+      QuantileSplitter.toLiteral(sqlType, value);
+      Assert.fail(String.format("Expected '%s' to be rejected for SQL type %d.", value, sqlType));
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  private static void assertSplit(String lowerClause, String upperClause, InputSplit split) {
+    DataDrivenDBInputSplit dbSplit = (DataDrivenDBInputSplit) split;
+    Assert.assertEquals(lowerClause, dbSplit.getLowerClause());
+    Assert.assertEquals(upperClause, dbSplit.getUpperClause());
+  }
+}
@@ -17,21 +17,35 @@
 package co.cask.format.avro;
 
 import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.format.UnexpectedFormatException;
 import co.cask.cdap.api.data.schema.Schema;
 import co.cask.hydrator.common.RecordConverter;
-import com.google.common.collect.Maps;
 import org.apache.avro.generic.GenericRecord;
 
 import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 import javax.annotation.Nullable;
 
 /**
  * Create StructuredRecords from GenericRecords
+ *
+ * The conversion of each schema is compiled into a tree of converters the first time the schema is seen, so that
+ * the type of each field is only looked at once instead of once per value, nullable unions pick their branch with a
+ * null check, and the fields of each Avro record schema are resolved to positions once instead of by name.
+ * Schemas are looked up by identity first, since readers use the same schema instance for every record.
  */
 public class AvroToStructuredTransformer extends RecordConverter<GenericRecord, StructuredRecord> {
 
-  private final Map<Integer, Schema> schemaCache = Maps.newHashMap();
+  private final Map<org.apache.avro.Schema, Schema> schemaCache = new IdentityHashMap<>();
+  private final Map<Schema, CompiledRecord> converters = new HashMap<>();
+  private Schema lastSchema;
+  private CompiledRecord lastConverter;
 
   public StructuredRecord transform(GenericRecord genericRecord) throws IOException {
     org.apache.avro.Schema genericRecordSchema = genericRecord.getSchema();
@@ -40,37 +54,266 @@ public class AvroToStructuredTransformer extends RecordConverter<GenericRecord,
 
   @Override
   public StructuredRecord transform(GenericRecord genericRecord, Schema structuredSchema) throws IOException {
-    StructuredRecord.Builder builder = StructuredRecord.builder(structuredSchema);
-    for (Schema.Field field : structuredSchema.getFields()) {
-      String fieldName = field.getName();
-      builder.set(fieldName, convertField(genericRecord.get(fieldName), field.getSchema()));
-    }
-    return builder.build();
+    return getConverter(structuredSchema).transform(genericRecord, null).build();
   }
 
   public StructuredRecord.Builder transform(GenericRecord genericRecord, Schema structuredSchema,
                                             @Nullable String skipField) throws IOException {
-    StructuredRecord.Builder builder = StructuredRecord.builder(structuredSchema);
-    for (Schema.Field field : structuredSchema.getFields()) {
-      String fieldName = field.getName();
-      if (!fieldName.equals(skipField)) {
-        builder.set(fieldName, convertField(genericRecord.get(fieldName), field.getSchema()));
+    return getConverter(structuredSchema).transform(genericRecord, skipField);
+  }
+
+  public Schema convertSchema(org.apache.avro.Schema schema) throws IOException {
+    Schema structuredSchema = schemaCache.get(schema);
+    if (structuredSchema == null) {
+      structuredSchema = Schema.parseJson(schema.toString());
+      schemaCache.put(schema, structuredSchema);
+    }
+    return structuredSchema;
+  }
+
+  private CompiledRecord getConverter(Schema schema) {
+    if (schema != lastSchema) {
+      CompiledRecord converter = converters.get(schema);
+      if (converter == null) {
+        converter = new CompiledRecord(schema);
+        converters.put(schema, converter);
       }
+      lastSchema = schema;
+      lastConverter = converter;
     }
+    return lastConverter;
+  }
 
-    return builder;
+  private Converter compile(Schema schema) {
+    switch (schema.getType()) {
+      case RECORD:
+        CompiledRecord record = new CompiledRecord(schema);
+        return value -> value == null ? null : record.transform((GenericRecord) value, null).build();
+      case ARRAY:
+        return new ArrayConverter(compile(schema.getComponentSchema()));
+      case MAP:
+        Map.Entry<Schema, Schema> mapSchema = schema.getMapSchema();
+        return new MapConverter(compile(mapSchema.getKey()), compile(mapSchema.getValue()));
+      case UNION:
+        if (schema.isNullable()) {
+          Converter nonNullable = compile(schema.getNonNullable());
+          return value -> value == null ? null : nonNullable.convert(value);
+        }
+        return new UnionConverter(schema.getUnionSchemas());
+      case NULL:
+        return value -> null;
+      case STRING:
+        return value -> value == null ? null : value.toString();
+      case BYTES:
+        return value -> value == null ? null : convertBytes(value);
+      case INT:
+      case LONG:
+      case FLOAT:
+      case DOUBLE:
+      case BOOLEAN:
+        return value -> value;
+      default:
+        return value -> {
+          throw new UnexpectedFormatException("field type " + schema.getType() + " is not supported.");
+        };
+    }
   }
 
-  public Schema convertSchema(org.apache.avro.Schema schema) throws IOException {
-    int hashCode = schema.hashCode();
-    Schema structuredSchema;
+  /**
+   * Converts a value of an Avro record into the value of a StructuredRecord field.
+   */
+  private interface Converter {
+    Object convert(Object value) throws IOException;
+  }
 
-    if (schemaCache.containsKey(hashCode)) {
-      structuredSchema = schemaCache.get(hashCode);
-    } else {
-      structuredSchema = Schema.parseJson(schema.toString());
-      schemaCache.put(hashCode, structuredSchema);
+  /**
+   * Converts GenericRecords into StructuredRecords with a given schema. The converters for the fields are compiled
+   * the first time a record is converted, which allows recursive schemas. The position of each field in the Avro
+   * record is resolved again only when a record with a different Avro schema is seen.
+   */
+  private final class CompiledRecord {
+    private final Schema schema;
+    private final List<Schema.Field> fields;
+    private Converter[] fieldConverters;
+    private org.apache.avro.Schema avroSchema;
+    private int[] positions;
+
+    CompiledRecord(Schema schema) {
+      this.schema = schema;
+      this.fields = schema.getFields();
+    }
+
+    StructuredRecord.Builder transform(GenericRecord genericRecord, @Nullable String skipField) throws IOException {
+      if (fieldConverters == null) {
+        Converter[] converters = new Converter[fields.size()];
+        for (int i = 0; i < converters.length; i++) {
+          converters[i] = compile(fields.get(i).getSchema());
+        }
+        fieldConverters = converters;
+      }
+      org.apache.avro.Schema recordSchema = genericRecord.getSchema();
+      if (recordSchema != avroSchema) {
+        resolve(recordSchema);
+      }
+
+      StructuredRecord.Builder builder = StructuredRecord.builder(schema);
+      for (int i = 0; i < positions.length; i++) {
+        String fieldName = fields.get(i).getName();
+        if (!fieldName.equals(skipField)) {
+          Object value = positions[i] < 0 ? null : genericRecord.get(positions[i]);
+          builder.set(fieldName, fieldConverters[i].convert(value));
+        }
+      }
+      return builder;
+    }
+
+    private void resolve(org.apache.avro.Schema recordSchema) {
+      int[] recordPositions = new int[fields.size()];
+      for (int i = 0; i < recordPositions.length; i++) {
+        org.apache.avro.Schema.Field avroField = recordSchema.getField(fields.get(i).getName());
+        recordPositions[i] = avroField == null ? -1 : avroField.pos();
+      }
+      positions = recordPositions;
+      avroSchema = recordSchema;
+    }
+  }
+
+  /**
+   * Converts Avro arrays, or Java arrays, into Lists.
+   */
+  private static final class ArrayConverter implements Converter {
+    private final Converter elementConverter;
+
+    ArrayConverter(Converter elementConverter) {
+      this.elementConverter = elementConverter;
+    }
+
+    @Override
+    public Object convert(Object value) throws IOException {
+      if (value == null) {
+        return null;
+      }
+      List<Object> output;
+      if (value instanceof List) {
+        List<?> values = (List<?>) value;
+        output = new ArrayList<>(values.size());
+        for (Object element : values) {
+          output.add(elementConverter.convert(element));
+        }
+      } else {
+        int length = Array.getLength(value);
+        output = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+          output.add(elementConverter.convert(Array.get(value, i)));
+        }
+      }
+      return output;
+    }
+  }
+
+  /**
+   * Converts Avro maps, whose keys are usually Utf8, into HashMaps.
+   */
+  private static final class MapConverter implements Converter {
+    private final Converter keyConverter;
+    private final Converter valueConverter;
+
+    MapConverter(Converter keyConverter, Converter valueConverter) {
+      this.keyConverter = keyConverter;
+      this.valueConverter = valueConverter;
+    }
+
+    @Override
+    public Object convert(Object value) throws IOException {
+      if (value == null) {
+        return null;
+      }
+      Map<?, ?> map = (Map<?, ?>) value;
+      Map<Object, Object> converted = new HashMap<>((int) (map.size() / 0.75f) + 1);
+      for (Map.Entry<?, ?> entry : map.entrySet()) {
+        converted.put(keyConverter.convert(entry.getKey()), valueConverter.convert(entry.getValue()));
+      }
+      return converted;
+    }
+  }
+
+  /**
+   * Converts values of unions that are not just a nullable type. The branch is picked based on the type of the value,
+   * and if no branch has that type, by trying each branch in order.
+   */
+  private final class UnionConverter implements Converter {
+    private final boolean nullable;
+    private final List<Schema> schemas;
+    private final List<Converter> branches;
+
+    UnionConverter(List<Schema> unionSchemas) {
+      boolean hasNull = false;
+      List<Schema> branchSchemas = new ArrayList<>(unionSchemas.size());
+      List<Converter> converters = new ArrayList<>(unionSchemas.size());
+      for (Schema schema : unionSchemas) {
+        if (schema.getType() == Schema.Type.NULL) {
+          hasNull = true;
+        } else {
+          branchSchemas.add(schema);
+          converters.add(compile(schema));
+        }
+      }
+      this.nullable = hasNull;
+      this.schemas = branchSchemas;
+      this.branches = converters;
+    }
+
+    @Override
+    public Object convert(Object value) throws IOException {
+      if (value == null && nullable) {
+        return null;
+      }
+      for (int i = 0; i < branches.size(); i++) {
+        if (isInstance(schemas.get(i), value)) {
+          return branches.get(i).convert(value);
+        }
+      }
+      for (Converter branch : branches) {
+        try {
+          return branch.convert(value);
+        } catch (Exception e) {
+          // if we couldn't convert, move to the next possibility
+        }
+      }
+      if (nullable) {
+        return null;
+      }
+      throw new UnexpectedFormatException("unable to determine union type.");
+    }
+  }
+
+  /**
+   * Returns whether a value has the Java type used for the given schema type.
+   */
+  private static boolean isInstance(Schema schema, @Nullable Object value) {
+    switch (schema.getType()) {
+      case BOOLEAN:
+        return value instanceof Boolean;
+      case INT:
+        return value instanceof Integer;
+      case LONG:
+        return value instanceof Long;
+      case FLOAT:
+        return value instanceof Float;
+      case DOUBLE:
+        return value instanceof Double;
+      case STRING:
+        return value instanceof CharSequence;
+      case BYTES:
+        return value instanceof ByteBuffer || value instanceof byte[];
+      case RECORD:
+        return value instanceof GenericRecord;
+      case ARRAY:
+        return value instanceof List || (value != null && value.getClass().isArray());
+      case MAP:
+        return value instanceof Map;
+      default:
+        return false;
     }
-    return structuredSchema;
   }
 }
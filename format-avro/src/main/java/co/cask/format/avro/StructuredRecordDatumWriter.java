@@ -0,0 +1,309 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.format.avro;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.format.UnexpectedFormatException;
+import co.cask.cdap.api.data.schema.Schema;
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.io.DatumWriter;
+import org.apache.avro.io.Encoder;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link DatumWriter} that encodes StructuredRecords as Avro binary directly, without creating GenericRecords.
+ * The schema is compiled into a plan of field writers when the datum writer is created, so the type of each field is
+ * only looked at once. Records are written with the Avro schema of the given schema, and the value of each field is
+ * taken from the record by name. When used with a {@link org.apache.avro.file.DataFileWriter}, the records are
+ * encoded straight into the buffer of the current block.
+ */
+public class StructuredRecordDatumWriter implements DatumWriter<StructuredRecord> {
+  private final RecordWriter root;
+
+  /**
+   * @param schema the schema to write records with
+   */
+  public StructuredRecordDatumWriter(Schema schema) {
+    this.root = new RecordWriter(schema, new HashMap<>());
+  }
+
+  @Override
+  public void setSchema(org.apache.avro.Schema schema) {
+    // the plan is compiled from the schema given to the constructor, which the avro schema is derived from
+  }
+
+  @Override
+  public void write(StructuredRecord record, Encoder out) throws IOException {
+    root.write(record, out);
+  }
+
+  /**
+   * Compiles the writer of a schema. Record writers are shared by record name, which allows recursive schemas.
+   */
+  private static ValueWriter compile(Schema schema, Map<String, RecordWriter> records) {
+    switch (schema.getType()) {
+      case NULL:
+        return (value, out) -> out.writeNull();
+      case BOOLEAN:
+        return (value, out) -> out.writeBoolean((Boolean) value);
+      case INT:
+        return (value, out) -> {
+          // a long or double would silently lose its high bits or fraction if it were narrowed to an int
+          if (!(value instanceof Integer)) {
+            throw new UnexpectedFormatException(
+              String.format("Value '%s' of type '%s' cannot be written as an int.", value,
+                            value == null ? null : value.getClass().getName()));
+          }
+          out.writeInt((Integer) value);
+        };
+      case LONG:
+        return (value, out) -> out.writeLong(((Number) value).longValue());
+      case FLOAT:
+        return (value, out) -> out.writeFloat(((Number) value).floatValue());
+      case DOUBLE:
+        return (value, out) -> out.writeDouble(((Number) value).doubleValue());
+      case STRING:
+        return (value, out) -> out.writeString(value.toString());
+      case BYTES:
+        return (value, out) -> {
+          if (value instanceof ByteBuffer) {
+            ByteBuffer buffer = (ByteBuffer) value;
+            // the binary encoder only writes buffers that are backed by an array
+            out.writeBytes(buffer.hasArray() ? buffer : ByteBuffer.wrap(Bytes.getBytes(buffer)));
+          } else {
+            out.writeBytes((byte[]) value);
+          }
+        };
+      case ENUM:
+        return (value, out) -> {
+          int index = schema.getEnumIndex(value.toString());
+          if (index < 0) {
+            throw new UnexpectedFormatException(String.format("'%s' is not a value of enum %s.", value, schema));
+          }
+          out.writeEnum(index);
+        };
+      case ARRAY:
+        return new ArrayWriter(compile(schema.getComponentSchema(), records));
+      case MAP:
+        return new MapWriter(compile(schema.getMapSchema().getValue(), records));
+      case RECORD:
+        RecordWriter record = records.get(schema.getRecordName());
+        return record == null ? new RecordWriter(schema, records) : record;
+      case UNION:
+        return new UnionWriter(schema.getUnionSchemas(), records);
+      default:
+        throw new UnexpectedFormatException("field type " + schema.getType() + " is not supported.");
+    }
+  }
+
+  /**
+   * Writes a value that is not null, unless the schema of the value is null or a union.
+   */
+  private interface ValueWriter {
+    void write(Object value, Encoder out) throws IOException;
+  }
+
+  /**
+   * Writes the fields of a record in the order of the schema.
+   */
+  private static final class RecordWriter implements ValueWriter {
+    private final String[] names;
+    private final boolean[] acceptsNull;
+    private final ValueWriter[] writers;
+
+    RecordWriter(Schema schema, Map<String, RecordWriter> records) {
+      records.put(schema.getRecordName(), this);
+      List<Schema.Field> fields = schema.getFields();
+      this.names = new String[fields.size()];
+      this.acceptsNull = new boolean[fields.size()];
+      this.writers = new ValueWriter[fields.size()];
+      for (int i = 0; i < names.length; i++) {
+        Schema fieldSchema = fields.get(i).getSchema();
+        names[i] = fields.get(i).getName();
+        acceptsNull[i] = acceptsNull(fieldSchema);
+        writers[i] = compile(fieldSchema, records);
+      }
+    }
+
+    @Override
+    public void write(Object value, Encoder out) throws IOException {
+      StructuredRecord record = (StructuredRecord) value;
+      for (int i = 0; i < names.length; i++) {
+        Object fieldValue = record.get(names[i]);
+        if (fieldValue == null && !acceptsNull[i]) {
+          throw new AvroRuntimeException("Field " + names[i] + " does not accept null values");
+        }
+        writers[i].write(fieldValue, out);
+      }
+    }
+
+    private static boolean acceptsNull(Schema schema) {
+      if (schema.getType() == Schema.Type.NULL) {
+        return true;
+      }
+      if (schema.getType() == Schema.Type.UNION) {
+        for (Schema unionSchema : schema.getUnionSchemas()) {
+          if (unionSchema.getType() == Schema.Type.NULL) {
+            return true;
+          }
+        }
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Writes Collections and Java arrays as a single block of items.
+   */
+  private static final class ArrayWriter implements ValueWriter {
+    private final ValueWriter elementWriter;
+
+    ArrayWriter(ValueWriter elementWriter) {
+      this.elementWriter = elementWriter;
+    }
+
+    @Override
+    public void write(Object value, Encoder out) throws IOException {
+      out.writeArrayStart();
+      if (value instanceof Collection) {
+        Collection<?> values = (Collection<?>) value;
+        out.setItemCount(values.size());
+        for (Object element : values) {
+          out.startItem();
+          elementWriter.write(element, out);
+        }
+      } else {
+        // arrays of primitives, like int[], are not Object[]
+        int length = Array.getLength(value);
+        out.setItemCount(length);
+        for (int i = 0; i < length; i++) {
+          out.startItem();
+          elementWriter.write(Array.get(value, i), out);
+        }
+      }
+      out.writeArrayEnd();
+    }
+  }
+
+  /**
+   * Writes Maps as a single block of entries. Keys are written as strings, since Avro map keys are strings.
+   */
+  private static final class MapWriter implements ValueWriter {
+    private final ValueWriter valueWriter;
+
+    MapWriter(ValueWriter valueWriter) {
+      this.valueWriter = valueWriter;
+    }
+
+    @Override
+    public void write(Object value, Encoder out) throws IOException {
+      Map<?, ?> map = (Map<?, ?>) value;
+      out.writeMapStart();
+      out.setItemCount(map.size());
+      for (Map.Entry<?, ?> entry : map.entrySet()) {
+        out.startItem();
+        out.writeString(entry.getKey().toString());
+        valueWriter.write(entry.getValue(), out);
+      }
+      out.writeMapEnd();
+    }
+  }
+
+  /**
+   * Writes the index of the branch of a union, followed by the value. A null value is written with the null branch,
+   * and other values with the first branch whose type they are an instance of.
+   */
+  private static final class UnionWriter implements ValueWriter {
+    private final Schema[] branches;
+    private final ValueWriter[] writers;
+    private final int nullIndex;
+
+    UnionWriter(List<Schema> schemas, Map<String, RecordWriter> records) {
+      this.branches = schemas.toArray(new Schema[schemas.size()]);
+      this.writers = new ValueWriter[branches.length];
+      int nullIndex = -1;
+      for (int i = 0; i < branches.length; i++) {
+        if (branches[i].getType() == Schema.Type.NULL) {
+          nullIndex = i;
+        }
+        writers[i] = compile(branches[i], records);
+      }
+      this.nullIndex = nullIndex;
+    }
+
+    @Override
+    public void write(Object value, Encoder out) throws IOException {
+      int index = value == null ? nullIndex : resolve(value);
+      if (index < 0) {
+        throw new UnexpectedFormatException("unable to determine union type.");
+      }
+      out.writeIndex(index);
+      writers[index].write(value, out);
+    }
+
+    private int resolve(Object value) {
+      // most unions are a type and null, so a single non-null branch is taken without checking the value
+      if (branches.length == 2 && nullIndex >= 0) {
+        return 1 - nullIndex;
+      }
+      for (int i = 0; i < branches.length; i++) {
+        if (isInstance(branches[i], value)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    private static boolean isInstance(Schema schema, Object value) {
+      switch (schema.getType()) {
+        case BOOLEAN:
+          return value instanceof Boolean;
+        case INT:
+          return value instanceof Integer;
+        case LONG:
+          return value instanceof Long;
+        case FLOAT:
+          return value instanceof Float;
+        case DOUBLE:
+          return value instanceof Double;
+        case STRING:
+          return value instanceof String;
+        case ENUM:
+          return schema.getEnumIndex(value.toString()) >= 0;
+        case BYTES:
+          return value instanceof byte[] || value instanceof ByteBuffer;
+        case ARRAY:
+          return value instanceof Collection || value.getClass().isArray();
+        case MAP:
+          return value instanceof Map;
+        case RECORD:
+          return value instanceof StructuredRecord
+            && schema.getRecordName().equals(((StructuredRecord) value).getSchema().getRecordName());
+        default:
+          return false;
+      }
+    }
+  }
+}
@@ -1,4 +1,3 @@
-
 /*
  * Copyright © 2018 Cask Data, Inc.
  *
@@ -18,27 +17,38 @@
 package co.cask.format.avro;
 
 import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.format.UnexpectedFormatException;
 import co.cask.hydrator.common.RecordConverter;
-import com.google.common.collect.Maps;
+import org.apache.avro.AvroRuntimeException;
 import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericRecord;
-import org.apache.avro.generic.GenericRecordBuilder;
 
 import java.io.IOException;
+import java.lang.reflect.Array;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import javax.annotation.Nullable;
 
 /**
  * Creates GenericRecords from StructuredRecords
+ *
+ * The conversion of each schema is compiled into a tree of converters the first time the schema is seen, so that
+ * the type of each field is only looked at once instead of once per value, and nullable unions pick their branch
+ * with a null check. Schemas are looked up by identity first, since records usually share the same schema instance.
  */
 public class StructuredToAvroTransformer extends RecordConverter<StructuredRecord, GenericRecord> {
 
-  private final Map<Integer, Schema> schemaCache;
+  private final Map<co.cask.cdap.api.data.schema.Schema, CompiledRecord> converters;
   private final co.cask.cdap.api.data.schema.Schema outputCDAPSchema;
+  private co.cask.cdap.api.data.schema.Schema lastSchema;
+  private CompiledRecord lastConverter;
 
   public StructuredToAvroTransformer(@Nullable co.cask.cdap.api.data.schema.Schema outputSchema) {
-    this.schemaCache = Maps.newHashMap();
+    this.converters = new HashMap<>();
     this.outputCDAPSchema = outputSchema;
   }
 
@@ -50,20 +60,16 @@ public class StructuredToAvroTransformer extends RecordConverter<StructuredRecor
   @Override
   public GenericRecord transform(StructuredRecord structuredRecord,
                                  co.cask.cdap.api.data.schema.Schema schema) throws IOException {
-    co.cask.cdap.api.data.schema.Schema structuredRecordSchema = structuredRecord.getSchema();
-
-    Schema avroSchema = getAvroSchema(schema);
-
-    GenericRecordBuilder recordBuilder = new GenericRecordBuilder(avroSchema);
-    for (Schema.Field field : avroSchema.getFields()) {
-      String fieldName = field.name();
-      co.cask.cdap.api.data.schema.Schema.Field schemaField = structuredRecordSchema.getField(fieldName);
-      if (schemaField == null) {
-        throw new IllegalArgumentException("Input record does not contain the " + fieldName + " field.");
+    if (schema != lastSchema) {
+      CompiledRecord converter = converters.get(schema);
+      if (converter == null) {
+        converter = new CompiledRecord(schema);
+        converters.put(schema, converter);
       }
-      recordBuilder.set(fieldName, convertField(structuredRecord.get(fieldName), schemaField.getSchema()));
+      lastSchema = schema;
+      lastConverter = converter;
     }
-    return recordBuilder.build();
+    return lastConverter.transform(structuredRecord);
   }
 
   @Override
@@ -74,14 +80,253 @@ public class StructuredToAvroTransformer extends RecordConverter<StructuredRecor
     return ByteBuffer.wrap((byte[]) field);
   }
 
-  private Schema getAvroSchema(co.cask.cdap.api.data.schema.Schema cdapSchema) {
-    int hashCode = cdapSchema.hashCode();
-    if (schemaCache.containsKey(hashCode)) {
-      return schemaCache.get(hashCode);
-    } else {
-      Schema avroSchema = new Schema.Parser().parse(cdapSchema.toString());
-      schemaCache.put(hashCode, avroSchema);
-      return avroSchema;
+  private Converter compile(co.cask.cdap.api.data.schema.Schema schema) {
+    switch (schema.getType()) {
+      case RECORD:
+        CompiledRecord record = new CompiledRecord(schema);
+        return value -> value == null ? null : record.transform((StructuredRecord) value);
+      case ARRAY:
+        return new ArrayConverter(compile(schema.getComponentSchema()));
+      case MAP:
+        Map.Entry<co.cask.cdap.api.data.schema.Schema, co.cask.cdap.api.data.schema.Schema> mapSchema =
+          schema.getMapSchema();
+        return new MapConverter(compile(mapSchema.getKey()), compile(mapSchema.getValue()));
+      case UNION:
+        if (schema.isNullable()) {
+          Converter nonNullable = compile(schema.getNonNullable());
+          return value -> value == null ? null : nonNullable.convert(value);
+        }
+        return new UnionConverter(schema.getUnionSchemas());
+      case NULL:
+        return value -> null;
+      case STRING:
+        return value -> value == null ? null : value.toString();
+      case BYTES:
+        return value -> value == null ? null : convertBytes(value);
+      case INT:
+      case LONG:
+      case FLOAT:
+      case DOUBLE:
+      case BOOLEAN:
+        return value -> value;
+      default:
+        return value -> {
+          throw new UnexpectedFormatException("field type " + schema.getType() + " is not supported.");
+        };
+    }
+  }
+
+  /**
+   * Converts the value of a StructuredRecord field into the value of an Avro record field.
+   */
+  private interface Converter {
+    Object convert(Object value) throws IOException;
+  }
+
+  /**
+   * Converts StructuredRecords into GenericRecords with the Avro schema of a given schema. Each field is converted
+   * based on its schema in the input record. The field converters are compiled again only when a record with a
+   * different schema is seen, and the first time a record is converted, which allows recursive schemas.
+   */
+  private final class CompiledRecord {
+    private final Schema avroSchema;
+    private final Schema.Field[] avroFields;
+    private final boolean[] acceptsNull;
+    private co.cask.cdap.api.data.schema.Schema inputSchema;
+    private Converter[] fieldConverters;
+
+    CompiledRecord(co.cask.cdap.api.data.schema.Schema schema) {
+      this.avroSchema = new Schema.Parser().parse(schema.toString());
+      List<Schema.Field> fields = avroSchema.getFields();
+      this.avroFields = fields.toArray(new Schema.Field[fields.size()]);
+      this.acceptsNull = new boolean[avroFields.length];
+      for (int i = 0; i < avroFields.length; i++) {
+        acceptsNull[i] = acceptsNull(avroFields[i].schema()) || avroFields[i].defaultValue() != null;
+      }
+    }
+
+    GenericRecord transform(StructuredRecord structuredRecord) throws IOException {
+      co.cask.cdap.api.data.schema.Schema recordSchema = structuredRecord.getSchema();
+      if (recordSchema != inputSchema && (inputSchema == null || !inputSchema.equals(recordSchema))) {
+        resolve(recordSchema);
+      }
+      inputSchema = recordSchema;
+
+      GenericData.Record record = new GenericData.Record(avroSchema);
+      for (int i = 0; i < avroFields.length; i++) {
+        Object value = fieldConverters[i].convert(structuredRecord.get(avroFields[i].name()));
+        if (value == null && !acceptsNull[i]) {
+          throw new AvroRuntimeException("Field " + avroFields[i] + " does not accept null values");
+        }
+        record.put(i, value);
+      }
+      return record;
+    }
+
+    private void resolve(co.cask.cdap.api.data.schema.Schema recordSchema) {
+      Converter[] converters = new Converter[avroFields.length];
+      for (int i = 0; i < avroFields.length; i++) {
+        String fieldName = avroFields[i].name();
+        co.cask.cdap.api.data.schema.Schema.Field schemaField = recordSchema.getField(fieldName);
+        if (schemaField == null) {
+          throw new IllegalArgumentException("Input record does not contain the " + fieldName + " field.");
+        }
+        converters[i] = compile(schemaField.getSchema());
+      }
+      fieldConverters = converters;
+    }
+
+    private boolean acceptsNull(Schema schema) {
+      if (schema.getType() == Schema.Type.NULL) {
+        return true;
+      }
+      if (schema.getType() == Schema.Type.UNION) {
+        for (Schema unionSchema : schema.getTypes()) {
+          if (unionSchema.getType() == Schema.Type.NULL) {
+            return true;
+          }
+        }
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Converts Lists and Java arrays into Lists.
+   */
+  private static final class ArrayConverter implements Converter {
+    private final Converter elementConverter;
+
+    ArrayConverter(Converter elementConverter) {
+      this.elementConverter = elementConverter;
+    }
+
+    @Override
+    public Object convert(Object value) throws IOException {
+      if (value == null) {
+        return null;
+      }
+      List<Object> output;
+      if (value instanceof List) {
+        List<?> values = (List<?>) value;
+        output = new ArrayList<>(values.size());
+        for (Object element : values) {
+          output.add(elementConverter.convert(element));
+        }
+      } else {
+        int length = Array.getLength(value);
+        output = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+          output.add(elementConverter.convert(Array.get(value, i)));
+        }
+      }
+      return output;
+    }
+  }
+
+  /**
+   * Converts the keys and values of Maps.
+   */
+  private static final class MapConverter implements Converter {
+    private final Converter keyConverter;
+    private final Converter valueConverter;
+
+    MapConverter(Converter keyConverter, Converter valueConverter) {
+      this.keyConverter = keyConverter;
+      this.valueConverter = valueConverter;
+    }
+
+    @Override
+    public Object convert(Object value) throws IOException {
+      if (value == null) {
+        return null;
+      }
+      Map<?, ?> map = (Map<?, ?>) value;
+      Map<Object, Object> converted = new HashMap<>((int) (map.size() / 0.75f) + 1);
+      for (Map.Entry<?, ?> entry : map.entrySet()) {
+        converted.put(keyConverter.convert(entry.getKey()), valueConverter.convert(entry.getValue()));
+      }
+      return converted;
+    }
+  }
+
+  /**
+   * Converts values of unions that are not just a nullable type. The branch is picked based on the type of the value,
+   * and if no branch has that type, by trying each branch in order.
+   */
+  private final class UnionConverter implements Converter {
+    private final boolean nullable;
+    private final List<co.cask.cdap.api.data.schema.Schema> schemas;
+    private final List<Converter> branches;
+
+    UnionConverter(List<co.cask.cdap.api.data.schema.Schema> unionSchemas) {
+      boolean hasNull = false;
+      List<co.cask.cdap.api.data.schema.Schema> branchSchemas = new ArrayList<>(unionSchemas.size());
+      List<Converter> converters = new ArrayList<>(unionSchemas.size());
+      for (co.cask.cdap.api.data.schema.Schema schema : unionSchemas) {
+        if (schema.getType() == co.cask.cdap.api.data.schema.Schema.Type.NULL) {
+          hasNull = true;
+        } else {
+          branchSchemas.add(schema);
+          converters.add(compile(schema));
+        }
+      }
+      this.nullable = hasNull;
+      this.schemas = branchSchemas;
+      this.branches = converters;
+    }
+
+    @Override
+    public Object convert(Object value) throws IOException {
+      if (value == null && nullable) {
+        return null;
+      }
+      for (int i = 0; i < branches.size(); i++) {
+        if (isInstance(schemas.get(i), value)) {
+          return branches.get(i).convert(value);
+        }
+      }
+      for (Converter branch : branches) {
+        try {
+          return branch.convert(value);
+        } catch (Exception e) {
+          // if we couldn't convert, move to the next possibility
+        }
+      }
+      if (nullable) {
+        return null;
+      }
+      throw new UnexpectedFormatException("unable to determine union type.");
+    }
+  }
+
+  /**
+   * Returns whether a value has the Java type used for the given schema type.
+   */
+  private static boolean isInstance(co.cask.cdap.api.data.schema.Schema schema, @Nullable Object value) {
+    switch (schema.getType()) {
+      case BOOLEAN:
+        return value instanceof Boolean;
+      case INT:
+        return value instanceof Integer;
+      case LONG:
+        return value instanceof Long;
+      case FLOAT:
+        return value instanceof Float;
+      case DOUBLE:
+        return value instanceof Double;
+      case STRING:
+        return value instanceof CharSequence;
+      case BYTES:
+        return value instanceof ByteBuffer || value instanceof byte[];
+      case RECORD:
+        return value instanceof StructuredRecord;
+      case ARRAY:
+        return value instanceof List || (value != null && value.getClass().isArray());
+      case MAP:
+        return value instanceof Map;
+      default:
+        return false;
     }
   }
 }
@@ -0,0 +1,85 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.format.avro.output;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.format.avro.StructuredRecordDatumWriter;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileConstants;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+
+import java.io.IOException;
+
+/**
+ * Writes StructuredRecords to Avro data files with a {@link StructuredRecordDatumWriter}. The compression codec,
+ * compression level and sync interval are read from the same configuration keys as the Avro mapreduce output
+ * formats use.
+ */
+class AvroDataFileOutputFormat extends FileOutputFormat<StructuredRecord, NullWritable> {
+  private static final String EXTENSION = ".avro";
+
+  @Override
+  public RecordWriter<StructuredRecord, NullWritable> getRecordWriter(TaskAttemptContext context)
+    throws IOException {
+    Configuration conf = context.getConfiguration();
+    String schemaStr = conf.get(AvroOutputFormatProvider.SCHEMA_KEY);
+    Schema schema = Schema.parseJson(schemaStr);
+    org.apache.avro.Schema avroSchema = new org.apache.avro.Schema.Parser().parse(schemaStr);
+
+    DataFileWriter<StructuredRecord> writer = new DataFileWriter<>(new StructuredRecordDatumWriter(schema));
+    writer.setCodec(getCodec(context));
+    writer.setSyncInterval(conf.getInt(AvroOutputFormatProvider.SYNC_INTERVAL_KEY,
+                                       DataFileConstants.DEFAULT_SYNC_INTERVAL));
+    Path path = getDefaultWorkFile(context, EXTENSION);
+    writer.create(avroSchema, path.getFileSystem(conf).create(path));
+
+    return new RecordWriter<StructuredRecord, NullWritable>() {
+      @Override
+      public void write(StructuredRecord key, NullWritable value) throws IOException {
+        writer.append(key);
+      }
+
+      @Override
+      public void close(TaskAttemptContext context) throws IOException {
+        writer.close();
+      }
+    };
+  }
+
+  private static CodecFactory getCodec(TaskAttemptContext context) {
+    if (!getCompressOutput(context)) {
+      return CodecFactory.nullCodec();
+    }
+    Configuration conf = context.getConfiguration();
+    String codec = conf.get(AvroOutputFormatProvider.AVRO_OUTPUT_CODEC, DataFileConstants.DEFLATE_CODEC);
+    if (DataFileConstants.DEFLATE_CODEC.equals(codec)) {
+      return CodecFactory.deflateCodec(conf.getInt(AvroOutputFormatProvider.DEFLATE_LEVEL_KEY,
+                                                   CodecFactory.DEFAULT_DEFLATE_LEVEL));
+    }
+    if (DataFileConstants.XZ_CODEC.equals(codec)) {
+      return CodecFactory.xzCodec(conf.getInt(AvroOutputFormatProvider.XZ_LEVEL_KEY, CodecFactory.DEFAULT_XZ_LEVEL));
+    }
+    return CodecFactory.fromString(codec);
+  }
+}
@@ -25,6 +25,7 @@ import co.cask.cdap.api.plugin.PluginClass;
 import co.cask.cdap.api.plugin.PluginConfig;
 import co.cask.cdap.api.plugin.PluginPropertyField;
 import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileConstants;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -41,8 +42,14 @@ public class AvroOutputFormatProvider implements OutputFormatProvider {
   static final String SCHEMA_KEY = "avro.schema.output.key";
   static final String NAME = "avro";
   static final String DESC = "Plugin for writing files in avro format.";
-  private static final String AVRO_OUTPUT_CODEC = "avro.output.codec";
+  static final String AVRO_OUTPUT_CODEC = "avro.output.codec";
+  static final String DEFLATE_LEVEL_KEY = "avro.mapred.deflate.level";
+  static final String XZ_LEVEL_KEY = "avro.mapred.xz.level";
+  static final String SYNC_INTERVAL_KEY = "avro.mapred.sync.interval";
   private static final String MAPRED_OUTPUT_COMPRESS = "mapred.output.compress";
+  // the sync interval limits of DataFileWriter
+  private static final int MIN_SYNC_INTERVAL = 32;
+  private static final int MAX_SYNC_INTERVAL = 1 << 30;
   private final Conf conf;
 
   public AvroOutputFormatProvider(Conf conf) {
@@ -71,10 +78,42 @@ public class AvroOutputFormatProvider implements OutputFormatProvider {
       } catch (Exception e) {
         throw new IllegalArgumentException("Unsupported compression codec " + conf.compressionCodec);
       }
+
+      if (conf.compressionLevel != null && !conf.containsMacro("compressionLevel")) {
+        String codec = conf.compressionCodec.toLowerCase();
+        if (DataFileConstants.DEFLATE_CODEC.equals(codec)) {
+          checkLevel(conf.compressionLevel, 1, 9, codec);
+          configuration.put(DEFLATE_LEVEL_KEY, String.valueOf(conf.compressionLevel));
+        } else if (DataFileConstants.XZ_CODEC.equals(codec)) {
+          checkLevel(conf.compressionLevel, 0, 9, codec);
+          configuration.put(XZ_LEVEL_KEY, String.valueOf(conf.compressionLevel));
+        } else {
+          throw new IllegalArgumentException(
+            String.format("A compression level cannot be set for the '%s' codec. It can only be set for the "
+                            + "'deflate' and 'xz' codecs.", codec));
+        }
+      }
+    }
+
+    if (conf.syncInterval != null && !conf.containsMacro("syncInterval")) {
+      if (conf.syncInterval < MIN_SYNC_INTERVAL || conf.syncInterval > MAX_SYNC_INTERVAL) {
+        throw new IllegalArgumentException(
+          String.format("The sync interval must be between %d and %d bytes, but found %d.",
+                        MIN_SYNC_INTERVAL, MAX_SYNC_INTERVAL, conf.syncInterval));
+      }
+      configuration.put(SYNC_INTERVAL_KEY, String.valueOf(conf.syncInterval));
     }
     return configuration;
   }
 
+  private static void checkLevel(int level, int min, int max, String codec) {
+    if (level < min || level > max) {
+      throw new IllegalArgumentException(
+        String.format("The compression level for the '%s' codec must be between %d and %d, but found %d.",
+                      codec, min, max, level));
+    }
+  }
+
   /**
    * Configuration for the output format plugin.
    */
@@ -82,6 +121,10 @@ public class AvroOutputFormatProvider implements OutputFormatProvider {
     private static final String SCHEMA_DESC = "Schema of the data to write.";
     private static final String CODEC_DESC =
       "Compression codec to use when writing data. Must be 'snappy', 'deflate', 'bzip2', 'xz', or 'none.'";
+    private static final String LEVEL_DESC = "Compression level of the 'deflate' or 'xz' codec. Must be between "
+      + "1 and 9 for 'deflate' and between 0 and 9 for 'xz'. Higher levels compress more, but are slower.";
+    private static final String SYNC_INTERVAL_DESC = "Approximate number of uncompressed bytes in each block of "
+      + "the file. Larger blocks compress better, and smaller blocks allow finer splits. The default is 64000.";
 
     @Macro
     @Description(SCHEMA_DESC)
@@ -91,6 +134,16 @@ public class AvroOutputFormatProvider implements OutputFormatProvider {
     @Nullable
     @Description(CODEC_DESC)
     private String compressionCodec;
+
+    @Macro
+    @Nullable
+    @Description(LEVEL_DESC)
+    private Integer compressionLevel;
+
+    @Macro
+    @Nullable
+    @Description(SYNC_INTERVAL_DESC)
+    private Integer syncInterval;
   }
 
   private static PluginClass getPluginClass() {
@@ -98,6 +151,10 @@ public class AvroOutputFormatProvider implements OutputFormatProvider {
     properties.put("schema", new PluginPropertyField("schema", Conf.SCHEMA_DESC, "string", true, true));
     properties.put("compressionCodec",
                    new PluginPropertyField("compressionCodec", Conf.CODEC_DESC, "string", false, true));
+    properties.put("compressionLevel",
+                   new PluginPropertyField("compressionLevel", Conf.LEVEL_DESC, "int", false, true));
+    properties.put("syncInterval",
+                   new PluginPropertyField("syncInterval", Conf.SYNC_INTERVAL_DESC, "int", false, true));
     return new PluginClass("outputformat", NAME, DESC, AvroOutputFormatProvider.class.getName(),
                            "conf", properties);
   }
@@ -17,44 +17,28 @@
 package co.cask.format.avro.output;
 
 import co.cask.cdap.api.data.format.StructuredRecord;
-import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.api.dataset.lib.KeyValue;
-import co.cask.format.avro.StructuredToAvroTransformer;
 import co.cask.hydrator.format.output.DelegatingOutputFormat;
-import org.apache.avro.generic.GenericRecord;
-import org.apache.avro.mapred.AvroKey;
-import org.apache.avro.mapreduce.AvroKeyOutputFormat;
-import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapreduce.OutputFormat;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 
-import java.io.IOException;
 import java.util.function.Function;
 
 /**
- * Converts StructuredRecord into GenericRecord before delegating to AvroKeyOutputFormat.
+ * Writes StructuredRecords to Avro data files, encoding them directly instead of converting them into
+ * GenericRecords first.
  */
-public class StructuredAvroOutputFormat extends DelegatingOutputFormat<AvroKey<GenericRecord>, NullWritable> {
+public class StructuredAvroOutputFormat extends DelegatingOutputFormat<StructuredRecord, NullWritable> {
 
   @Override
-  protected OutputFormat<AvroKey<GenericRecord>, NullWritable> createDelegate() {
-    return new AvroKeyOutputFormat<>();
+  protected OutputFormat<StructuredRecord, NullWritable> createDelegate() {
+    return new AvroDataFileOutputFormat();
   }
 
   @Override
-  protected Function<StructuredRecord, KeyValue<AvroKey<GenericRecord>, NullWritable>> getConversion(
-    TaskAttemptContext context) throws IOException {
-
-    Configuration hConf = context.getConfiguration();
-    Schema schema = Schema.parseJson(hConf.get(AvroOutputFormatProvider.SCHEMA_KEY));
-    StructuredToAvroTransformer transformer = new StructuredToAvroTransformer(schema);
-    return record -> {
-      try {
-        return new KeyValue<>(new AvroKey<>(transformer.transform(record)), NullWritable.get());
-      } catch (IOException e) {
-        throw new RuntimeException("Unable to transform structured record into a generic record", e);
-      }
-    };
+  protected Function<StructuredRecord, KeyValue<StructuredRecord, NullWritable>> getConversion(
+    TaskAttemptContext context) {
+    return record -> new KeyValue<>(record, NullWritable.get());
   }
 }
@@ -0,0 +1,228 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.format.avro;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.util.Utf8;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for {@link AvroToStructuredTransformer} and {@link StructuredToAvroTransformer}, by converting records to
+ * Avro, serializing and deserializing them with Avro, and converting them back.
+ */
+public class AvroToStructuredTransformerTest {
+  static final Schema INNER_SCHEMA = Schema.recordOf(
+    "inner",
+    Schema.Field.of("id", Schema.of(Schema.Type.INT)),
+    Schema.Field.of("name", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+  static final Schema SCHEMA = Schema.recordOf(
+    "record",
+    Schema.Field.of("boolean", Schema.of(Schema.Type.BOOLEAN)),
+    Schema.Field.of("int", Schema.of(Schema.Type.INT)),
+    Schema.Field.of("long", Schema.of(Schema.Type.LONG)),
+    Schema.Field.of("float", Schema.of(Schema.Type.FLOAT)),
+    Schema.Field.of("double", Schema.of(Schema.Type.DOUBLE)),
+    Schema.Field.of("string", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("bytes", Schema.of(Schema.Type.BYTES)),
+    Schema.Field.of("nullableInt", Schema.nullableOf(Schema.of(Schema.Type.INT))),
+    Schema.Field.of("nullableString", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("date", Schema.of(Schema.LogicalType.DATE)),
+    Schema.Field.of("timestampMillis", Schema.of(Schema.LogicalType.TIMESTAMP_MILLIS)),
+    Schema.Field.of("timestampMicros", Schema.nullableOf(Schema.of(Schema.LogicalType.TIMESTAMP_MICROS))),
+    Schema.Field.of("timeMicros", Schema.of(Schema.LogicalType.TIME_MICROS)),
+    Schema.Field.of("array", Schema.arrayOf(Schema.nullableOf(Schema.of(Schema.Type.LONG)))),
+    Schema.Field.of("map", Schema.mapOf(Schema.of(Schema.Type.STRING), Schema.of(Schema.Type.DOUBLE))),
+    Schema.Field.of("record", INNER_SCHEMA),
+    Schema.Field.of("nullableRecord", Schema.nullableOf(INNER_SCHEMA)),
+    Schema.Field.of("records", Schema.arrayOf(INNER_SCHEMA)),
+    Schema.Field.of("union", Schema.unionOf(Schema.of(Schema.Type.INT), Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("nullableUnion", Schema.unionOf(Schema.of(Schema.Type.NULL), Schema.of(Schema.Type.LONG),
+                                                    Schema.of(Schema.Type.STRING))));
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    StructuredRecord record = createRecord(SCHEMA, 1, false);
+    StructuredRecord nulls = createRecord(SCHEMA, 2, true);
+    StructuredToAvroTransformer toAvro = new StructuredToAvroTransformer(SCHEMA);
+    AvroToStructuredTransformer fromAvro = new AvroToStructuredTransformer();
+    for (StructuredRecord input : ImmutableList.of(record, nulls, record)) {
+      GenericRecord avroRecord = serializeAndDeserialize(toAvro.transform(input));
+      // values read by Avro are Utf8 strings, GenericData.Arrays and maps with Utf8 keys
+      Assert.assertTrue(avroRecord.get("string") instanceof Utf8);
+      Assert.assertTrue(avroRecord.get("array") instanceof GenericData.Array);
+      assertRecordEquals(input, fromAvro.transform(avroRecord, SCHEMA));
+      // the schema of the Avro record can be converted too
+      assertRecordEquals(input, fromAvro.transform(avroRecord));
+    }
+  }
+
+  @Test
+  public void testAvroValues() throws IOException {
+    GenericRecord avroRecord = new StructuredToAvroTransformer(null).transform(createRecord(SCHEMA, 3, false));
+    Assert.assertEquals("string3", avroRecord.get("string"));
+    Assert.assertEquals(ByteBuffer.wrap("bytes3".getBytes(StandardCharsets.UTF_8)), avroRecord.get("bytes"));
+    Assert.assertEquals((int) LocalDate.of(2018, 1, 3).toEpochDay(), avroRecord.get("date"));
+    Assert.assertEquals(Arrays.asList(3L, null), avroRecord.get("array"));
+    Assert.assertEquals(ImmutableMap.of("k3", 3d), avroRecord.get("map"));
+    Assert.assertEquals(3, ((GenericRecord) avroRecord.get("record")).get("id"));
+    Assert.assertEquals(3, avroRecord.get("union"));
+    Assert.assertEquals("three", avroRecord.get("nullableUnion"));
+  }
+
+  @Test
+  public void testProjection() throws IOException {
+    Schema projection = Schema.recordOf(
+      "projection",
+      Schema.Field.of("string", Schema.of(Schema.Type.STRING)),
+      Schema.Field.of("missing", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+      Schema.Field.of("record", Schema.recordOf(
+        "innerProjection", Schema.Field.of("name", Schema.nullableOf(Schema.of(Schema.Type.STRING))))),
+      Schema.Field.of("path", Schema.of(Schema.Type.STRING)));
+    AvroToStructuredTransformer fromAvro = new AvroToStructuredTransformer();
+    for (int i = 1; i <= 2; i++) {
+      // a new Avro schema instance must be resolved again
+      GenericRecord avroRecord =
+        serializeAndDeserialize(new StructuredToAvroTransformer(SCHEMA).transform(createRecord(SCHEMA, i, false)));
+      StructuredRecord record = fromAvro.transform(avroRecord, projection, "path").set("path", "/" + i).build();
+      Assert.assertEquals("string" + i, record.get("string"));
+      Assert.assertNull(record.get("missing"));
+      Assert.assertEquals("name" + i, ((StructuredRecord) record.get("record")).get("name"));
+      Assert.assertEquals("/" + i, record.get("path"));
+    }
+  }
+
+  @Test
+  public void testWriteErrors() throws IOException {
+    Schema missingField = Schema.recordOf("missing", Schema.Field.of("int", Schema.of(Schema.Type.INT)));
+    try {
+      new StructuredToAvroTransformer(SCHEMA).transform(StructuredRecord.builder(missingField).set("int", 1).build());
+      Assert.fail("Expected a record without all the fields of the output schema to be rejected.");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+
+    Schema nullable =
+      Schema.recordOf("nullable", Schema.Field.of("int", Schema.nullableOf(Schema.of(Schema.Type.INT))));
+    try {
+      new StructuredToAvroTransformer(missingField).transform(StructuredRecord.builder(nullable).build());
+      Assert.fail("Expected a null value for a non-nullable field to be rejected.");
+    } catch (org.apache.avro.AvroRuntimeException e) {
+      // expected
+    }
+  }
+
+  static StructuredRecord createRecord(Schema schema, int i, boolean nulls) {
+    StructuredRecord inner = StructuredRecord.builder(INNER_SCHEMA).set("id", i).set("name", "name" + i).build();
+    StructuredRecord.Builder builder = StructuredRecord.builder(schema)
+      .set("boolean", i % 2 == 0)
+      .set("int", i)
+      .set("long", Long.MAX_VALUE - i)
+      .set("float", i + 0.5f)
+      .set("double", i + 0.25d)
+      .set("string", "string" + i)
+      .set("bytes", ("bytes" + i).getBytes(StandardCharsets.UTF_8))
+      .setDate("date", LocalDate.of(2018, 1, i))
+      .setTimestamp("timestampMillis", ZonedDateTime.of(2018, 1, i, 1, 2, 3, 4000000, ZoneOffset.UTC))
+      .setTime("timeMicros", LocalTime.of(1, 2, 3, 4000))
+      .set("array", Arrays.asList((long) i, null))
+      .set("map", ImmutableMap.of("k" + i, (double) i))
+      .set("record", inner)
+      .set("records", ImmutableList.of(inner, inner))
+      .set("union", i % 2 == 0 ? "two" : i);
+    if (!nulls) {
+      builder
+        .set("nullableInt", i)
+        .set("nullableString", "nullable" + i)
+        .setTimestamp("timestampMicros", ZonedDateTime.of(2018, 1, i, 1, 2, 3, 4000, ZoneOffset.UTC))
+        .set("nullableRecord", inner)
+        .set("nullableUnion", i % 2 == 0 ? (Object) (long) i : "three");
+    }
+    return builder.build();
+  }
+
+  /**
+   * Asserts that two records have the same values, comparing bytes by content.
+   */
+  static void assertRecordEquals(StructuredRecord expected, StructuredRecord actual) {
+    for (Schema.Field field : expected.getSchema().getFields()) {
+      assertValueEquals(field.getName(), expected.get(field.getName()), actual.get(field.getName()));
+    }
+  }
+
+  private static void assertValueEquals(String name, Object expected, Object actual) {
+    if (expected instanceof StructuredRecord) {
+      Assert.assertTrue(name, actual instanceof StructuredRecord);
+      assertRecordEquals((StructuredRecord) expected, (StructuredRecord) actual);
+    } else if (expected instanceof byte[] || expected instanceof ByteBuffer) {
+      Assert.assertEquals(name, toByteBuffer(expected), toByteBuffer(actual));
+    } else if (expected instanceof List) {
+      List<?> expectedList = (List<?>) expected;
+      List<?> actualList = (List<?>) actual;
+      Assert.assertEquals(name, expectedList.size(), actualList.size());
+      for (int i = 0; i < expectedList.size(); i++) {
+        assertValueEquals(name + "[" + i + "]", expectedList.get(i), actualList.get(i));
+      }
+    } else if (expected instanceof Map) {
+      Assert.assertEquals(name, ((Map<?, ?>) expected).size(), ((Map<?, ?>) actual).size());
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) expected).entrySet()) {
+        Object actualValue = ((Map<?, ?>) actual).get(entry.getKey());
+        assertValueEquals(name + "[" + entry.getKey() + "]", entry.getValue(), actualValue);
+      }
+    } else {
+      Assert.assertEquals(name, expected, actual);
+    }
+  }
+
+  private static ByteBuffer toByteBuffer(Object value) {
+    return value instanceof byte[] ? ByteBuffer.wrap((byte[]) value) : (ByteBuffer) value;
+  }
+
+  private static GenericRecord serializeAndDeserialize(GenericRecord record) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(os, null);
+    new GenericDatumWriter<GenericRecord>(record.getSchema()).write(record, encoder);
+    encoder.flush();
+    // parse the schema again, so that each record has its own Avro schema instance
+    org.apache.avro.Schema schema = new org.apache.avro.Schema.Parser().parse(record.getSchema().toString());
+    return new GenericDatumReader<GenericRecord>(schema)
+      .read(null, DecoderFactory.get().binaryDecoder(os.toByteArray(), null));
+  }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.format.avro;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.format.UnexpectedFormatException;
+import co.cask.cdap.api.data.schema.Schema;
+import com.google.common.collect.ImmutableList;
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for {@link StructuredRecordDatumWriter}, by writing Avro data files with it and reading them back with
+ * Avro's generic reader.
+ */
+public class StructuredRecordDatumWriterTest {
+
+  @ClassRule
+  public static final TemporaryFolder TMP_FOLDER = new TemporaryFolder();
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    // the schema has a field of each type, including nullable fields, unions and nullable unions
+    Schema schema = AvroToStructuredTransformerTest.SCHEMA;
+    List<StructuredRecord> records = new ArrayList<>();
+    for (int i = 1; i <= 4; i++) {
+      records.add(AvroToStructuredTransformerTest.createRecord(schema, i, i % 2 == 0));
+    }
+    List<GenericRecord> avroRecords = writeAndRead(schema, records);
+
+    AvroToStructuredTransformer fromAvro = new AvroToStructuredTransformer();
+    Assert.assertEquals(records.size(), avroRecords.size());
+    for (int i = 0; i < records.size(); i++) {
+      StructuredRecord actual = fromAvro.transform(avroRecords.get(i), schema);
+      AvroToStructuredTransformerTest.assertRecordEquals(records.get(i), actual);
+    }
+
+    // the encoding is the same as the encoding of the GenericRecords created from the records
+    StructuredToAvroTransformer toAvro = new StructuredToAvroTransformer(schema);
+    org.apache.avro.Schema avroSchema = new org.apache.avro.Schema.Parser().parse(schema.toString());
+    for (StructuredRecord record : records) {
+      Assert.assertArrayEquals(encode(new GenericDatumWriter<>(avroSchema), toAvro.transform(record)),
+                               encode(new StructuredRecordDatumWriter(schema), record));
+    }
+  }
+
+  @Test
+  public void testArraysBuffersAndRecursiveRecords() throws IOException {
+    Schema node = Schema.recordOf(
+      "node",
+      Schema.Field.of("value", Schema.of(Schema.Type.INT)),
+      Schema.Field.of("next", Schema.nullableOf(Schema.recordOf("node"))));
+    Schema schema = Schema.recordOf(
+      "record",
+      Schema.Field.of("ints", Schema.arrayOf(Schema.of(Schema.Type.INT))),
+      Schema.Field.of("bytes", Schema.of(Schema.Type.BYTES)),
+      Schema.Field.of("node", node),
+      Schema.Field.of("union", Schema.unionOf(Schema.of(Schema.Type.NULL), Schema.of(Schema.Type.STRING),
+                                              Schema.of(Schema.Type.BYTES), Schema.arrayOf(node))));
+
+    StructuredRecord last = StructuredRecord.builder(node).set("value", 2).build();
+    StructuredRecord first = StructuredRecord.builder(node).set("value", 1).set("next", last).build();
+    // byte buffers are written from their position, also when they are not backed by an array
+    ByteBuffer bytes = ByteBuffer.wrap("xxbytes".getBytes(StandardCharsets.UTF_8));
+    bytes.position(2);
+    ByteBuffer direct = ByteBuffer.allocateDirect(4);
+    direct.put("abcd".getBytes(StandardCharsets.UTF_8));
+    direct.position(1);
+    List<StructuredRecord> records = ImmutableList.of(
+      StructuredRecord.builder(schema).set("ints", new int[] { 1, 2 }).set("bytes", bytes).set("node", first)
+        .set("union", "e").build(),
+      StructuredRecord.builder(schema).set("ints", Arrays.asList(3)).set("bytes", direct).set("node", last)
+        .set("union", ImmutableList.of(last)).build(),
+      StructuredRecord.builder(schema).set("ints", new int[0]).set("bytes", new byte[0]).set("node", last)
+        .set("union", new byte[] { 1 }).build());
+    List<GenericRecord> avroRecords = writeAndRead(schema, records);
+
+    Assert.assertEquals(3, avroRecords.size());
+    GenericRecord record = avroRecords.get(0);
+    Assert.assertEquals(Arrays.asList(1, 2), record.get("ints"));
+    Assert.assertEquals(ByteBuffer.wrap("bytes".getBytes(StandardCharsets.UTF_8)), record.get("bytes"));
+    GenericRecord next = (GenericRecord) ((GenericRecord) record.get("node")).get("next");
+    Assert.assertEquals(2, next.get("value"));
+    Assert.assertNull(next.get("next"));
+    Assert.assertEquals("e", record.get("union").toString());
+
+    record = avroRecords.get(1);
+    Assert.assertEquals(Arrays.asList(3), record.get("ints"));
+    Assert.assertEquals(ByteBuffer.wrap("bcd".getBytes(StandardCharsets.UTF_8)), record.get("bytes"));
+    List<?> union = (List<?>) record.get("union");
+    Assert.assertEquals(1, union.size());
+    Assert.assertEquals(2, ((GenericRecord) union.get(0)).get("value"));
+
+    record = avroRecords.get(2);
+    Assert.assertEquals(new ArrayList<>(), record.get("ints"));
+    Assert.assertEquals(ByteBuffer.wrap(new byte[0]), record.get("bytes"));
+    Assert.assertEquals(ByteBuffer.wrap(new byte[] { 1 }), record.get("union"));
+  }
+
+  @Test
+  public void testEnums() throws IOException {
+    Schema schema = Schema.recordOf(
+      "record",
+      Schema.Field.of("enum", Schema.enumWith("a", "b")),
+      Schema.Field.of("nullableEnum", Schema.nullableOf(Schema.enumWith("c", "d"))));
+    // enums are written by index, so the avro schema only has to have the same symbols
+    org.apache.avro.Schema avroSchema = new org.apache.avro.Schema.Parser().parse(
+      "{\"type\":\"record\",\"name\":\"record\",\"fields\":[" +
+        "{\"name\":\"enum\",\"type\":{\"type\":\"enum\",\"name\":\"e1\",\"symbols\":[\"a\",\"b\"]}}," +
+        "{\"name\":\"nullableEnum\",\"type\":" +
+        "[{\"type\":\"enum\",\"name\":\"e2\",\"symbols\":[\"c\",\"d\"]},\"null\"]}]}");
+    StructuredRecordDatumWriter datumWriter = new StructuredRecordDatumWriter(schema);
+
+    GenericRecord record = decode(avroSchema, encode(datumWriter, StructuredRecord.builder(schema)
+      .set("enum", "b").set("nullableEnum", "d").build()));
+    Assert.assertEquals("b", record.get("enum").toString());
+    Assert.assertEquals("d", record.get("nullableEnum").toString());
+
+    record = decode(avroSchema, encode(datumWriter, StructuredRecord.builder(schema).set("enum", "a").build()));
+    Assert.assertEquals("a", record.get("enum").toString());
+    Assert.assertNull(record.get("nullableEnum"));
+  }
+
+  @Test
+  public void testInvalidValues() throws IOException {
+    Schema intSchema = Schema.recordOf("record", Schema.Field.of("x", Schema.of(Schema.Type.INT)));
+    Schema longSchema = Schema.recordOf("record", Schema.Field.of("x", Schema.of(Schema.Type.LONG)));
+    Schema doubleSchema = Schema.recordOf("record", Schema.Field.of("x", Schema.of(Schema.Type.DOUBLE)));
+    Schema nullableSchema =
+      Schema.recordOf("record", Schema.Field.of("x", Schema.nullableOf(Schema.of(Schema.Type.INT))));
+    // values are not narrowed to ints
+    assertInvalid(intSchema, StructuredRecord.builder(longSchema).set("x", 1L << 32).build(),
+                  UnexpectedFormatException.class);
+    assertInvalid(intSchema, StructuredRecord.builder(doubleSchema).set("x", 1.5d).build(),
+                  UnexpectedFormatException.class);
+    assertInvalid(intSchema, StructuredRecord.builder(nullableSchema).build(), AvroRuntimeException.class);
+
+    Schema enumSchema = Schema.recordOf("record", Schema.Field.of("x", Schema.enumWith("a")));
+    Schema stringSchema = Schema.recordOf("record", Schema.Field.of("x", Schema.of(Schema.Type.STRING)));
+    assertInvalid(enumSchema, StructuredRecord.builder(stringSchema).set("x", "b").build(),
+                  UnexpectedFormatException.class);
+
+    Schema unionSchema = Schema.recordOf("record", Schema.Field.of(
+      "x", Schema.unionOf(Schema.of(Schema.Type.INT), Schema.of(Schema.Type.STRING))));
+    assertInvalid(unionSchema, StructuredRecord.builder(longSchema).set("x", 1L).build(),
+                  UnexpectedFormatException.class);
+  }
+
+  private static void assertInvalid(Schema schema, StructuredRecord record,
+                                    Class<? extends Exception> expected) throws IOException {
+    try {
+      encode(new StructuredRecordDatumWriter(schema), record);
+      Assert.fail(String.format("Expected record %s to be rejected for schema %s.", record, schema));
+    } catch (RuntimeException e) {
+      Assert.assertTrue(e.toString(), expected.isInstance(e));
+    }
+  }
+
+  private static <T> byte[] encode(org.apache.avro.io.DatumWriter<T> datumWriter, T datum) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(os, null);
+    datumWriter.write(datum, encoder);
+    encoder.flush();
+    return os.toByteArray();
+  }
+
+  private static GenericRecord decode(org.apache.avro.Schema avroSchema, byte[] bytes) throws IOException {
+    return new GenericDatumReader<GenericRecord>(avroSchema)
+      .read(null, DecoderFactory.get().binaryDecoder(bytes, null));
+  }
+
+  /**
+   * Writes the records to a data file with the datum writer, and reads them back as GenericRecords.
+   */
+  private static List<GenericRecord> writeAndRead(Schema schema, List<StructuredRecord> records) throws IOException {
+    File file = new File(TMP_FOLDER.newFolder(), "data.avro");
+    org.apache.avro.Schema avroSchema = new org.apache.avro.Schema.Parser().parse(schema.toString());
+    try (DataFileWriter<StructuredRecord> writer = new DataFileWriter<>(new StructuredRecordDatumWriter(schema))) {
+      writer.setCodec(CodecFactory.deflateCodec(1));
+      writer.create(avroSchema, file);
+      for (StructuredRecord record : records) {
+        writer.append(record);
+      }
+    }
+
+    List<GenericRecord> avroRecords = new ArrayList<>();
+    try (DataFileReader<GenericRecord> reader = new DataFileReader<>(file, new GenericDatumReader<>())) {
+      for (GenericRecord record : reader) {
+        avroRecords.add(record);
+      }
+    }
+    return avroRecords;
+  }
+}
@@ -17,29 +17,36 @@
 package co.cask.format.blob.input;
 
 import co.cask.cdap.api.annotation.Description;
+import co.cask.cdap.api.annotation.Macro;
 import co.cask.cdap.api.annotation.Name;
 import co.cask.cdap.api.annotation.Plugin;
 import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.api.plugin.PluginClass;
+import co.cask.cdap.api.plugin.PluginPropertyField;
 import co.cask.hydrator.format.input.PathTrackingConfig;
 import co.cask.hydrator.format.input.PathTrackingInputFormatProvider;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
 
 /**
- * Reads the entire contents of a File into a single record
+ * Reads the entire contents of a File into a single record, or each chunk of a file into a separate record if a
+ * chunk size is given.
  */
 @Plugin(type = "inputformat")
 @Name(BlobInputFormatProvider.NAME)
 @Description(BlobInputFormatProvider.DESC)
 public class BlobInputFormatProvider extends PathTrackingInputFormatProvider<BlobInputFormatProvider.BlobConfig> {
+  public static final PluginClass PLUGIN_CLASS = getPluginClass();
   static final String NAME = "blob";
   static final String DESC = "Plugin for reading files in blob format.";
-  public static final PluginClass PLUGIN_CLASS =
-    new PluginClass("inputformat", NAME, DESC, BlobInputFormatProvider.class.getName(),
-                    "conf", PathTrackingConfig.FIELDS);
+  static final String BODY_FIELD = "body";
+  static final String OFFSET_FIELD = "offset";
+  static final String LENGTH_FIELD = "length";
 
   public BlobInputFormatProvider(BlobConfig conf) {
     super(conf);
@@ -52,13 +59,19 @@ public class BlobInputFormatProvider extends PathTrackingInputFormatProvider<Blo
 
   @Override
   protected void validate() {
+    if (!conf.containsMacro("chunkSize") && conf.chunkSize != null
+      && (conf.chunkSize <= 0 || conf.chunkSize > Integer.MAX_VALUE)) {
+      throw new IllegalArgumentException(
+        String.format("The chunk size must be a positive number of bytes that is at most %d, but found %d.",
+                      Integer.MAX_VALUE, conf.chunkSize));
+    }
     if (conf.containsMacro("schema")) {
       return;
     }
 
     Schema schema = conf.getSchema();
     String pathField = conf.getPathField();
-    Schema.Field bodyField = schema.getField("body");
+    Schema.Field bodyField = schema.getField(BODY_FIELD);
     if (bodyField == null) {
       throw new IllegalArgumentException("The schema for the 'blob' format must have a field named 'body'");
     }
@@ -72,25 +85,80 @@ public class BlobInputFormatProvider extends PathTrackingInputFormatProvider<Blo
     // blob must contain 'body' as type 'bytes'.
     // it can optionally contain a path field of type 'string'
     int numExpectedFields = pathField == null ? 1 : 2;
+    // when reading chunks, it can also contain the 'offset' of the chunk as a 'long' and its 'length' as an 'int'
+    boolean chunked = conf.isChunked() || conf.containsMacro("chunkSize");
+    if (chunked) {
+      numExpectedFields += validateChunkField(schema, OFFSET_FIELD, Schema.Type.LONG);
+      numExpectedFields += validateChunkField(schema, LENGTH_FIELD, Schema.Type.INT);
+    }
     int numFields = schema.getFields().size();
     if (numFields > numExpectedFields) {
       int numExtra = numFields - numExpectedFields;
+      String chunkFields = chunked ? ", the 'offset' and 'length' fields" : "";
       if (pathField == null) {
         throw new IllegalArgumentException(
-          String.format("The schema for the 'blob' format must only contain the 'body' field, "
-                          + "but found %d other field%s.", numFields - 1, numExtra > 1 ? "s" : ""));
+          String.format("The schema for the 'blob' format must only contain the 'body' field%s, "
+                          + "but found %d other field%s.", chunkFields, numExtra, numExtra > 1 ? "s" : ""));
       } else {
         throw new IllegalArgumentException(
-          String.format("The schema for the 'blob' format must only contain the 'body' field and the '%s' field, "
-                          + "but found %d other field%s.", pathField, numFields - 2, numExtra > 1 ? "s" : ""));
+          String.format("The schema for the 'blob' format must only contain the 'body' field%s and the '%s' field, "
+                          + "but found %d other field%s.", chunkFields, pathField, numExtra,
+                        numExtra > 1 ? "s" : ""));
       }
     }
   }
 
+  static int validateChunkField(Schema schema, String name, Schema.Type expectedType) {
+    Schema.Field field = schema.getField(name);
+    if (field == null) {
+      return 0;
+    }
+    Schema fieldSchema = field.getSchema();
+    Schema.Type type = fieldSchema.isNullable() ? fieldSchema.getNonNullable().getType() : fieldSchema.getType();
+    if (type != expectedType) {
+      throw new IllegalArgumentException(String.format("The '%s' field must be of type '%s', but found '%s'",
+                                                       name, expectedType.name().toLowerCase(),
+                                                       type.name().toLowerCase()));
+    }
+    return 1;
+  }
+
+  @Override
+  protected void addFormatProperties(Map<String, String> properties) {
+    if (conf.isChunked()) {
+      properties.put(PathTrackingBlobInputFormat.CHUNK_SIZE, String.valueOf(conf.chunkSize));
+    }
+    properties.put(PathTrackingBlobInputFormat.MEMORY_MAP, String.valueOf(conf.shouldMemoryMapFiles()));
+  }
+
   /**
    * Config for blob format. Overrides getSchema method to return the default schema if it is not provided.
    */
   public static class BlobConfig extends PathTrackingConfig {
+    private static final String CHUNK_SIZE_DESC = "Size in bytes of the chunks to read files in. "
+      + "When given, each chunk of a file is a separate record, which can contain the 'offset' of the chunk in the "
+      + "file as a long and its 'length' as an int, and large files can be split. "
+      + "When not given, each file is read into a single record.";
+    private static final String MEMORY_MAP_DESC = "Whether to memory map files on the local file system "
+      + "instead of copying their bytes. The default is false.";
+
+    @Macro
+    @Nullable
+    @Description(CHUNK_SIZE_DESC)
+    private Long chunkSize;
+
+    @Macro
+    @Nullable
+    @Description(MEMORY_MAP_DESC)
+    private Boolean memoryMapFiles;
+
+    boolean isChunked() {
+      return chunkSize != null;
+    }
+
+    boolean shouldMemoryMapFiles() {
+      return memoryMapFiles != null && memoryMapFiles;
+    }
 
     /**
      * Return the configured schema, or the default schema if none was given. Should never be called if the
@@ -113,11 +181,24 @@ public class BlobInputFormatProvider extends PathTrackingInputFormatProvider<Blo
 
     private Schema getDefaultSchema() {
       List<Schema.Field> fields = new ArrayList<>();
-      fields.add(Schema.Field.of("body", Schema.of(Schema.Type.BYTES)));
+      fields.add(Schema.Field.of(BODY_FIELD, Schema.of(Schema.Type.BYTES)));
+      if (isChunked()) {
+        fields.add(Schema.Field.of(OFFSET_FIELD, Schema.of(Schema.Type.LONG)));
+        fields.add(Schema.Field.of(LENGTH_FIELD, Schema.of(Schema.Type.INT)));
+      }
       if (pathField != null && !pathField.isEmpty()) {
         fields.add(Schema.Field.of(pathField, Schema.of(Schema.Type.STRING)));
       }
       return Schema.recordOf("blob", fields);
     }
   }
+
+  private static PluginClass getPluginClass() {
+    Map<String, PluginPropertyField> properties = new HashMap<>(PathTrackingConfig.FIELDS);
+    properties.put("chunkSize", new PluginPropertyField("chunkSize", BlobConfig.CHUNK_SIZE_DESC,
+                                                        "long", false, true));
+    properties.put("memoryMapFiles", new PluginPropertyField("memoryMapFiles", BlobConfig.MEMORY_MAP_DESC,
+                                                             "boolean", false, true));
+    return new PluginClass("inputformat", NAME, DESC, BlobInputFormatProvider.class.getName(), "conf", properties);
+  }
 }
@@ -0,0 +1,147 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.format.blob.input;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the bytes of a file as blob records. If a chunk size is given, every chunk of the file that starts in the
+ * split is a record, and the chunks start at multiples of the chunk size, so they do not depend on how the file is
+ * split. Otherwise, the whole file is a single record. If memory mapping is enabled and the file is on the local
+ * file system, the body of each record is a read only ByteBuffer mapped to the file instead of a copy of its bytes.
+ */
+final class BlobRecordReader extends RecordReader<NullWritable, StructuredRecord.Builder> {
+  private final Schema schema;
+  private final long chunkSize;
+  private final boolean memoryMap;
+  private final String bodyField;
+  private final boolean hasOffsetField;
+  private final boolean hasLengthField;
+  private FSDataInputStream fileIn;
+  private FileChannel channel;
+  private long start;
+  private long end;
+  private long fileLength;
+  private long nextChunkStart;
+  private StructuredRecord.Builder value;
+
+  /**
+   * @param schema the schema of the records
+   * @param chunkSize the size of each chunk, or 0 to read the whole file as a single record
+   * @param memoryMap whether to memory map local files
+   */
+  BlobRecordReader(Schema schema, long chunkSize, boolean memoryMap) {
+    this.schema = schema;
+    this.chunkSize = chunkSize;
+    this.memoryMap = memoryMap;
+    this.bodyField = schema.getField(BlobInputFormatProvider.BODY_FIELD) == null ?
+      schema.getFields().iterator().next().getName() : BlobInputFormatProvider.BODY_FIELD;
+    this.hasOffsetField = chunkSize > 0 && schema.getField(BlobInputFormatProvider.OFFSET_FIELD) != null;
+    this.hasLengthField = chunkSize > 0 && schema.getField(BlobInputFormatProvider.LENGTH_FIELD) != null;
+  }
+
+  @Override
+  public void initialize(InputSplit split, TaskAttemptContext context) throws IOException {
+    FileSplit fileSplit = (FileSplit) split;
+    Path path = fileSplit.getPath();
+    FileSystem fs = path.getFileSystem(context.getConfiguration());
+    fileLength = fs.getFileStatus(path).getLen();
+    start = fileSplit.getStart();
+    end = start + fileSplit.getLength();
+    // the first chunk that starts in the split. Files that are read whole are never split.
+    nextChunkStart = chunkSize > 0 ? (start + chunkSize - 1) / chunkSize * chunkSize : start;
+
+    Path qualifiedPath = fs.makeQualified(path);
+    if (memoryMap && "file".equals(qualifiedPath.toUri().getScheme())) {
+      channel = FileChannel.open(new File(qualifiedPath.toUri()).toPath(), StandardOpenOption.READ);
+    } else {
+      fileIn = fs.open(path);
+    }
+  }
+
+  @Override
+  public boolean nextKeyValue() throws IOException {
+    if (nextChunkStart >= end || nextChunkStart >= fileLength) {
+      return false;
+    }
+    long chunkStart = nextChunkStart;
+    int chunkLength = (int) (chunkSize > 0 ? Math.min(chunkSize, fileLength - chunkStart) : fileLength);
+    nextChunkStart = chunkStart + chunkLength;
+
+    value = StructuredRecord.builder(schema);
+    if (channel != null) {
+      value.set(bodyField, channel.map(FileChannel.MapMode.READ_ONLY, chunkStart, chunkLength));
+    } else {
+      byte[] body = new byte[chunkLength];
+      fileIn.readFully(chunkStart, body);
+      value.set(bodyField, body);
+    }
+    if (hasOffsetField) {
+      value.set(BlobInputFormatProvider.OFFSET_FIELD, chunkStart);
+    }
+    if (hasLengthField) {
+      value.set(BlobInputFormatProvider.LENGTH_FIELD, chunkLength);
+    }
+    return true;
+  }
+
+  @Override
+  public NullWritable getCurrentKey() {
+    return NullWritable.get();
+  }
+
+  @Override
+  public StructuredRecord.Builder getCurrentValue() {
+    return value;
+  }
+
+  @Override
+  public float getProgress() {
+    if (end == start) {
+      return 1.0f;
+    }
+    return Math.min(1.0f, (nextChunkStart - start) / (float) (end - start));
+  }
+
+  @Override
+  public void close() throws IOException {
+    // mapped buffers stay valid after the channel is closed
+    try {
+      if (channel != null) {
+        channel.close();
+      }
+    } finally {
+      if (fileIn != null) {
+        fileIn.close();
+      }
+    }
+  }
+}
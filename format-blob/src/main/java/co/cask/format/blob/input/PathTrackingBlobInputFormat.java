@@ -19,82 +19,39 @@ package co.cask.format.blob.input;
 import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.data.schema.Schema;
 import co.cask.hydrator.format.input.PathTrackingInputFormat;
-import com.google.common.io.ByteStreams;
-import org.apache.hadoop.fs.FSDataInputStream;
-import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.NullWritable;
-import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.apache.hadoop.mapreduce.lib.input.FileSplit;
 
-import java.io.IOException;
 import javax.annotation.Nullable;
 
 /**
- * Blob input format
+ * Blob input format. Each file is read into a single record, unless a chunk size is given, in which case each chunk
+ * of the file is a separate record and files can be split.
  */
 public class PathTrackingBlobInputFormat extends PathTrackingInputFormat {
+  static final String CHUNK_SIZE = "blob.chunk.size";
+  static final String MEMORY_MAP = "blob.memory.map";
+
+  @Override
+  protected boolean isSplitable(JobContext context, Path filename) {
+    // chunks start at multiples of the chunk size, so files can be split anywhere
+    return context.getConfiguration().getLong(CHUNK_SIZE, 0L) > 0;
+  }
 
   @Override
   protected RecordReader<NullWritable, StructuredRecord.Builder> createRecordReader(FileSplit split,
                                                                                     TaskAttemptContext context,
                                                                                     @Nullable String pathField,
                                                                                     @Nullable Schema schema) {
-    if (split.getLength() > Integer.MAX_VALUE) {
-      throw new IllegalArgumentException("Blob format cannot be used with files larger than 2GB");
+    long chunkSize = context.getConfiguration().getLong(CHUNK_SIZE, 0L);
+    if (chunkSize <= 0 && split.getLength() > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Blob format cannot be used with files larger than 2GB "
+                                           + "unless a chunk size is given");
     }
-    return new RecordReader<NullWritable, StructuredRecord.Builder>() {
-      boolean hasNext;
-      byte[] val;
-
-      @Override
-      public void initialize(InputSplit split, TaskAttemptContext context) {
-        hasNext = true;
-        val = null;
-      }
-
-      @Override
-      public boolean nextKeyValue() throws IOException {
-        if (!hasNext) {
-          return false;
-        }
-        hasNext = false;
-        if (split.getLength() == 0) {
-          return false;
-        }
-
-        Path path = split.getPath();
-        FileSystem fs = path.getFileSystem(context.getConfiguration());
-        try (FSDataInputStream input = fs.open(path)) {
-          val = new byte[(int) split.getLength()];
-          ByteStreams.readFully(input, val);
-        }
-        return true;
-      }
-
-      @Override
-      public NullWritable getCurrentKey() {
-        return NullWritable.get();
-      }
-
-      @Override
-      public StructuredRecord.Builder getCurrentValue() {
-        String fieldName = schema.getFields().iterator().next().getName();
-        return StructuredRecord.builder(schema).set(fieldName, val);
-      }
-
-      @Override
-      public float getProgress() {
-        return 0.0f;
-      }
-
-      @Override
-      public void close() {
-        // no-op
-      }
-    };
-
+    return new BlobRecordReader(schema, chunkSize, context.getConfiguration().getBoolean(MEMORY_MAP, false));
   }
 }
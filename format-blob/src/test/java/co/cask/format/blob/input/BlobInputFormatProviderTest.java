@@ -0,0 +1,57 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.format.blob.input;
+
+import co.cask.cdap.api.data.schema.Schema;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link BlobInputFormatProvider}.
+ */
+public class BlobInputFormatProviderTest {
+
+  @Test
+  public void testValidateChunkField() {
+    Schema schema = Schema.recordOf(
+      "blob",
+      Schema.Field.of("body", Schema.of(Schema.Type.BYTES)),
+      Schema.Field.of("offset", Schema.nullableOf(Schema.of(Schema.Type.LONG))),
+      Schema.Field.of("length", Schema.of(Schema.Type.INT)));
+    // fields of the expected type count as expected fields, whether they are nullable or not
+    Assert.assertEquals(1, BlobInputFormatProvider.validateChunkField(schema, "offset", Schema.Type.LONG));
+    Assert.assertEquals(1, BlobInputFormatProvider.validateChunkField(schema, "length", Schema.Type.INT));
+    // missing fields are allowed
+    Assert.assertEquals(0, BlobInputFormatProvider.validateChunkField(schema, "other", Schema.Type.LONG));
+
+    Schema wrongTypes = Schema.recordOf(
+      "blob",
+      Schema.Field.of("body", Schema.of(Schema.Type.BYTES)),
+      Schema.Field.of("offset", Schema.of(Schema.Type.INT)),
+      Schema.Field.of("length", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+    for (Schema.Field field : wrongTypes.getFields()) {
+      Schema.Type expectedType = "length".equals(field.getName()) ? Schema.Type.INT : Schema.Type.LONG;
+      try {
+        BlobInputFormatProvider.validateChunkField(wrongTypes, field.getName(), expectedType);
+        Assert.fail(String.format("Field '%s' should have been rejected.", field.getName()));
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.format.blob.input;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskType;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for {@link BlobRecordReader}.
+ */
+public class BlobRecordReaderTest {
+  private static final Schema SCHEMA = Schema.recordOf(
+    "blob",
+    Schema.Field.of(BlobInputFormatProvider.BODY_FIELD, Schema.of(Schema.Type.BYTES)),
+    Schema.Field.of(BlobInputFormatProvider.OFFSET_FIELD, Schema.of(Schema.Type.LONG)),
+    Schema.Field.of(BlobInputFormatProvider.LENGTH_FIELD, Schema.of(Schema.Type.INT)));
+  private static final Schema BODY_SCHEMA = Schema.recordOf(
+    "blob", Schema.Field.of(BlobInputFormatProvider.BODY_FIELD, Schema.of(Schema.Type.BYTES)));
+
+  @ClassRule
+  public static final TemporaryFolder TMP_FOLDER = new TemporaryFolder();
+
+  private static byte[] content;
+  private static Path file;
+  private static Path emptyFile;
+
+  @BeforeClass
+  public static void setupClass() throws IOException {
+    content = new byte[100];
+    for (int i = 0; i < content.length; i++) {
+      content[i] = (byte) i;
+    }
+    File dir = TMP_FOLDER.newFolder();
+    File dataFile = new File(dir, "data");
+    Files.write(dataFile.toPath(), content);
+    file = new Path(dataFile.toURI());
+    File empty = new File(dir, "empty");
+    Files.write(empty.toPath(), new byte[0]);
+    emptyFile = new Path(empty.toURI());
+  }
+
+  @Test
+  public void testChunks() throws Exception {
+    testChunks(false);
+  }
+
+  @Test
+  public void testMemoryMappedChunks() throws Exception {
+    testChunks(true);
+  }
+
+  private void testChunks(boolean memoryMap) throws Exception {
+    // a split reads the chunks that start in it, so the first split only reads the chunk at 0,
+    // and the chunk at 48 is read whole by the second split even though it crosses the end of the split
+    List<StructuredRecord> records = new ArrayList<>();
+    records.addAll(read(SCHEMA, 16L, memoryMap, file, 0L, 10L));
+    Assert.assertEquals(1, records.size());
+    records.addAll(read(SCHEMA, 16L, memoryMap, file, 10L, 40L));
+    Assert.assertEquals(4, records.size());
+    records.addAll(read(SCHEMA, 16L, memoryMap, file, 50L, 50L));
+
+    // every chunk is read exactly once, and the last chunk only has the rest of the file
+    Assert.assertEquals(7, records.size());
+    for (int i = 0; i < records.size(); i++) {
+      StructuredRecord record = records.get(i);
+      int offset = i * 16;
+      int length = Math.min(16, content.length - offset);
+      Assert.assertEquals(Long.valueOf(offset), record.get(BlobInputFormatProvider.OFFSET_FIELD));
+      Assert.assertEquals(Integer.valueOf(length), record.get(BlobInputFormatProvider.LENGTH_FIELD));
+      Assert.assertArrayEquals(Arrays.copyOfRange(content, offset, offset + length), getBody(record));
+    }
+    Assert.assertEquals(4, records.get(6).<Integer>get(BlobInputFormatProvider.LENGTH_FIELD).intValue());
+  }
+
+  @Test
+  public void testSplitInsideChunk() throws Exception {
+    // a split that starts and ends between two chunk boundaries does not read anything
+    Assert.assertTrue(read(SCHEMA, 16L, false, file, 17L, 10L).isEmpty());
+    // a split that starts in the last chunk does not read it
+    Assert.assertTrue(read(SCHEMA, 16L, false, file, 97L, 3L).isEmpty());
+  }
+
+  @Test
+  public void testChunksWithoutFields() throws Exception {
+    // the offset and length fields are optional
+    List<StructuredRecord> records = read(BODY_SCHEMA, 64L, false, file, 0L, 100L);
+    Assert.assertEquals(2, records.size());
+    Assert.assertArrayEquals(Arrays.copyOfRange(content, 0, 64), getBody(records.get(0)));
+    Assert.assertArrayEquals(Arrays.copyOfRange(content, 64, 100), getBody(records.get(1)));
+  }
+
+  @Test
+  public void testWholeFile() throws Exception {
+    for (boolean memoryMap : new boolean[] { false, true }) {
+      List<StructuredRecord> records = read(BODY_SCHEMA, 0L, memoryMap, file, 0L, 100L);
+      Assert.assertEquals(1, records.size());
+      Assert.assertArrayEquals(content, getBody(records.get(0)));
+    }
+  }
+
+  @Test
+  public void testMemoryMapping() throws Exception {
+    // local files are memory mapped if asked to, and copied otherwise
+    Object mapped = read(BODY_SCHEMA, 0L, true, file, 0L, 100L).get(0).get(BlobInputFormatProvider.BODY_FIELD);
+    Assert.assertTrue(mapped instanceof MappedByteBuffer);
+    Object copied = read(BODY_SCHEMA, 0L, false, file, 0L, 100L).get(0).get(BlobInputFormatProvider.BODY_FIELD);
+    Assert.assertTrue(copied instanceof byte[]);
+  }
+
+  @Test
+  public void testEmptyFile() throws Exception {
+    for (boolean memoryMap : new boolean[] { false, true }) {
+      Assert.assertTrue(read(SCHEMA, 16L, memoryMap, emptyFile, 0L, 0L).isEmpty());
+      Assert.assertTrue(read(BODY_SCHEMA, 0L, memoryMap, emptyFile, 0L, 0L).isEmpty());
+    }
+  }
+
+  private static List<StructuredRecord> read(Schema schema, long chunkSize, boolean memoryMap,
+                                             Path path, long start, long length) throws Exception {
+    TaskAttemptContext context = new TaskAttemptContextImpl(new Configuration(),
+                                                            new TaskAttemptID("test", 1, TaskType.MAP, 0, 0));
+    List<StructuredRecord> records = new ArrayList<>();
+    try (BlobRecordReader reader = new BlobRecordReader(schema, chunkSize, memoryMap)) {
+      reader.initialize(new FileSplit(path, start, length, new String[0]), context);
+      while (reader.nextKeyValue()) {
+        records.add(reader.getCurrentValue().build());
+      }
+      Assert.assertEquals(1.0f, reader.getProgress(), 0.0f);
+    }
+    return records;
+  }
+
+  private static byte[] getBody(StructuredRecord record) {
+    Object body = record.get(BlobInputFormatProvider.BODY_FIELD);
+    if (body instanceof byte[]) {
+      return (byte[]) body;
+    }
+    ByteBuffer buffer = ((ByteBuffer) body).duplicate();
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.get(bytes);
+    return bytes;
+  }
+}
@@ -35,7 +35,7 @@ public enum FileFormat {
   CSV(true, true),
   DELIMITED(true, true),
   JSON(true, true),
-  ORC(false, true),
+  ORC(true, true),
   PARQUET(true, true),
   TEXT(true, false),
   TSV(true, true);
@@ -0,0 +1,386 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.hydrator.format;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.hydrator.format.input.PushdownFilter;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Statistics of the records in a file: the number of records, and the number of null values of each top level field.
+ * For int, long, float, double and string fields without a logical type, it also contains the minimum and maximum
+ * value. The statistics are collected while the file is written, so they are available for every format, including
+ * formats like json and csv that do not store any statistics themselves.
+ *
+ * The statistics of a file are stored in a hidden side-car file in the same directory, named '.[file name].stats',
+ * so that it is not read as input. They are used to skip files that cannot contain any record that matches a
+ * {@link PushdownFilter}. The statistics also contain the length of the file, and are ignored if the length of the
+ * file no longer matches, since the file was then replaced or appended to after the statistics were written.
+ */
+public final class FileStatistics {
+  private static final int MAGIC = 0x46535453; // "FSTS"
+  private static final int VERSION = 2;
+  // longer strings are not used as bounds, so that the statistics stay small
+  private static final int MAX_STRING_LENGTH = 1024;
+  private final List<ColumnStatistics> columns;
+  private final Map<String, ColumnStatistics> columnsByName;
+  private long rowCount;
+
+  /**
+   * Creates empty statistics for records of the given schema.
+   */
+  public FileStatistics(Schema schema) {
+    this();
+    for (Schema.Field field : schema.getFields()) {
+      Schema fieldSchema = field.getSchema().isNullable() ? field.getSchema().getNonNullable() : field.getSchema();
+      addColumn(new ColumnStatistics(field.getName(), fieldSchema.getLogicalType() == null ?
+        Kind.of(fieldSchema.getType()) : Kind.NONE));
+    }
+  }
+
+  private FileStatistics() {
+    this.columns = new ArrayList<>();
+    this.columnsByName = new HashMap<>();
+  }
+
+  /**
+   * Returns the path of the statistics of a file.
+   */
+  public static Path getStatisticsPath(Path file) {
+    return new Path(file.getParent(), "." + file.getName() + ".stats");
+  }
+
+  /**
+   * Reads the statistics of a file.
+   *
+   * @return the statistics, or null if the file does not have statistics, or if its statistics do not match the
+   *         length of the file or were written without the length of the file
+   * @throws IOException if the statistics could not be read
+   */
+  @Nullable
+  public static FileStatistics read(FileSystem fs, Path file) throws IOException {
+    return read(fs, fs.getFileStatus(file));
+  }
+
+  /**
+   * Reads the statistics of a file, using the length of the file in the given status.
+   *
+   * @return the statistics, or null if the file does not have statistics, or if its statistics do not match the
+   *         length of the file or were written without the length of the file
+   * @throws IOException if the statistics could not be read
+   */
+  @Nullable
+  public static FileStatistics read(FileSystem fs, FileStatus file) throws IOException {
+    FileStatistics statistics = new FileStatistics();
+    try (FSDataInputStream in = fs.open(getStatisticsPath(file.getPath()))) {
+      if (in.readInt() != MAGIC) {
+        throw new IOException(String.format("Invalid statistics for file '%s'.", file.getPath()));
+      }
+      int version = in.readInt();
+      if (version == 1) {
+        // the first version did not contain the length of the file, so it cannot be checked
+        return null;
+      }
+      if (version != VERSION) {
+        throw new IOException(String.format("Unsupported version %d of the statistics for file '%s'.",
+                                            version, file.getPath()));
+      }
+      if (in.readLong() != file.getLen()) {
+        return null;
+      }
+      statistics.rowCount = in.readLong();
+      int count = in.readInt();
+      for (int i = 0; i < count; i++) {
+        ColumnStatistics column = new ColumnStatistics(in.readUTF(), Kind.values()[in.readByte()]);
+        column.nullCount = in.readLong();
+        column.bounded = in.readBoolean();
+        if (column.bounded) {
+          switch (column.kind) {
+            case LONG:
+              column.minLong = in.readLong();
+              column.maxLong = in.readLong();
+              break;
+            case DOUBLE:
+              column.minDouble = in.readDouble();
+              column.maxDouble = in.readDouble();
+              break;
+            case STRING:
+              column.minString = in.readUTF();
+              column.maxString = in.readUTF();
+              break;
+            default:
+              throw new IOException(String.format("Invalid statistics for file '%s'.", file.getPath()));
+          }
+        }
+        statistics.addColumn(column);
+      }
+    } catch (FileNotFoundException e) {
+      return null;
+    }
+    return statistics;
+  }
+
+  /**
+   * Writes the statistics of a file, replacing any existing statistics. The file must be complete, since its current
+   * length is stored with the statistics.
+   */
+  public void write(FileSystem fs, Path file) throws IOException {
+    long fileLength = fs.getFileStatus(file).getLen();
+    try (FSDataOutputStream out = fs.create(getStatisticsPath(file), true)) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeLong(fileLength);
+      out.writeLong(rowCount);
+      out.writeInt(columns.size());
+      for (ColumnStatistics column : columns) {
+        boolean bounded = column.hasBounds(rowCount);
+        out.writeUTF(column.name);
+        out.writeByte(column.kind.ordinal());
+        out.writeLong(column.nullCount);
+        out.writeBoolean(bounded);
+        if (bounded) {
+          switch (column.kind) {
+            case LONG:
+              out.writeLong(column.minLong);
+              out.writeLong(column.maxLong);
+              break;
+            case DOUBLE:
+              out.writeDouble(column.minDouble);
+              out.writeDouble(column.maxDouble);
+              break;
+            default:
+              out.writeUTF(column.minString);
+              out.writeUTF(column.maxString);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds a record to the statistics. Fields that are not in the schema the statistics were created with are ignored.
+   */
+  public void add(StructuredRecord record) {
+    rowCount++;
+    for (ColumnStatistics column : columns) {
+      column.add(record.get(column.name));
+    }
+  }
+
+  /**
+   * Returns the number of records.
+   */
+  public long getRowCount() {
+    return rowCount;
+  }
+
+  /**
+   * Returns whether the file can contain a record that matches a filter. This is false if the statistics show that
+   * one of the conditions of the filter does not match any record. Conditions on fields that do not have statistics,
+   * and conditions whose literal cannot be compared with the minimum and maximum of their field, can always match.
+   */
+  public boolean canMatch(PushdownFilter filter) {
+    if (rowCount == 0) {
+      return false;
+    }
+    for (PushdownFilter.Condition condition : filter.getConditions()) {
+      ColumnStatistics column = columnsByName.get(condition.getColumn());
+      if (column != null && !column.canMatch(condition, rowCount)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void addColumn(ColumnStatistics column) {
+    columns.add(column);
+    columnsByName.put(column.name, column);
+  }
+
+  /**
+   * How the minimum and maximum values of a field are kept.
+   */
+  private enum Kind {
+    NONE,
+    LONG,
+    DOUBLE,
+    STRING;
+
+    private static Kind of(Schema.Type type) {
+      switch (type) {
+        case INT:
+        case LONG:
+          return LONG;
+        case FLOAT:
+        case DOUBLE:
+          return DOUBLE;
+        case STRING:
+          return STRING;
+        default:
+          return NONE;
+      }
+    }
+  }
+
+  /**
+   * The statistics of a single field.
+   */
+  private static final class ColumnStatistics {
+    private final String name;
+    private final Kind kind;
+    private long nullCount;
+    // whether the minimum and maximum are known, which is false until a value is seen, and after a value is seen
+    // that cannot be used as a bound
+    private boolean bounded;
+    private boolean invalid;
+    private long minLong;
+    private long maxLong;
+    private double minDouble;
+    private double maxDouble;
+    private String minString;
+    private String maxString;
+
+    private ColumnStatistics(String name, Kind kind) {
+      this.name = name;
+      this.kind = kind;
+    }
+
+    private void add(@Nullable Object value) {
+      if (value == null) {
+        nullCount++;
+        return;
+      }
+      if (invalid || kind == Kind.NONE) {
+        return;
+      }
+      switch (kind) {
+        case LONG:
+          if (!(value instanceof Number)) {
+            invalidate();
+            return;
+          }
+          long longValue = ((Number) value).longValue();
+          minLong = bounded ? Math.min(minLong, longValue) : longValue;
+          maxLong = bounded ? Math.max(maxLong, longValue) : longValue;
+          break;
+        case DOUBLE:
+          if (!(value instanceof Number) || Double.isNaN(((Number) value).doubleValue())) {
+            invalidate();
+            return;
+          }
+          double doubleValue = ((Number) value).doubleValue();
+          minDouble = bounded ? Math.min(minDouble, doubleValue) : doubleValue;
+          maxDouble = bounded ? Math.max(maxDouble, doubleValue) : doubleValue;
+          break;
+        default:
+          String stringValue = value.toString();
+          if (stringValue.length() > MAX_STRING_LENGTH) {
+            invalidate();
+            return;
+          }
+          minString = bounded && minString.compareTo(stringValue) <= 0 ? minString : stringValue;
+          maxString = bounded && maxString.compareTo(stringValue) >= 0 ? maxString : stringValue;
+      }
+      bounded = true;
+    }
+
+    private void invalidate() {
+      invalid = true;
+      bounded = false;
+    }
+
+    private boolean hasBounds(long rowCount) {
+      return bounded && nullCount < rowCount;
+    }
+
+    private boolean canMatch(PushdownFilter.Condition condition, long rowCount) {
+      switch (condition.getOperator()) {
+        case IS_NULL:
+          return nullCount > 0;
+        case IS_NOT_NULL:
+          return nullCount < rowCount;
+        default:
+          // comparisons never match null values
+          if (nullCount == rowCount) {
+            return false;
+          }
+          if (!hasBounds(rowCount)) {
+            return true;
+          }
+      }
+
+      int minComparison;
+      int maxComparison;
+      try {
+        switch (kind) {
+          case LONG:
+            long longLiteral = condition.getLongLiteral();
+            minComparison = Long.compare(minLong, longLiteral);
+            maxComparison = Long.compare(maxLong, longLiteral);
+            break;
+          case DOUBLE:
+            double doubleLiteral = condition.getDoubleLiteral();
+            if (Double.isNaN(doubleLiteral)) {
+              return true;
+            }
+            // not Double.compare, which orders -0.0 before 0.0 even though they are equal
+            minComparison = minDouble < doubleLiteral ? -1 : minDouble > doubleLiteral ? 1 : 0;
+            maxComparison = maxDouble < doubleLiteral ? -1 : maxDouble > doubleLiteral ? 1 : 0;
+            break;
+          default:
+            String stringLiteral = condition.getStringLiteral();
+            minComparison = minString.compareTo(stringLiteral);
+            maxComparison = maxString.compareTo(stringLiteral);
+        }
+      } catch (IllegalArgumentException e) {
+        // the literal does not match the type the file was written with, such as an unquoted literal for a field
+        // that was a string when the file was written, so the statistics cannot rule the file out
+        return true;
+      }
+
+      switch (condition.getOperator()) {
+        case EQ:
+          return minComparison <= 0 && maxComparison >= 0;
+        case NE:
+          return minComparison != 0 || maxComparison != 0;
+        case LT:
+          return minComparison < 0;
+        case LE:
+          return minComparison <= 0;
+        case GT:
+          return maxComparison > 0;
+        case GE:
+          return maxComparison >= 0;
+        default:
+          return true;
+      }
+    }
+  }
+}
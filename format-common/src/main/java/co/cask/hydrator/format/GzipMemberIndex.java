@@ -0,0 +1,163 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.hydrator.format;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Arrays;
+import javax.annotation.Nullable;
+
+/**
+ * The positions of the members of a gzip file that consists of several independently compressed gzip members.
+ * Each member can be decompressed on its own, so a file with an index can be split at the start of any member.
+ *
+ * The index of a file is stored in a hidden side-car file in the same directory, named '.[file name].index', so that
+ * it is not read as input. It contains the length of the file and the compressed and uncompressed offset of the start
+ * of each member. The index is ignored if the length of the file no longer matches, since the file was then replaced
+ * or appended to after the index was written, and the offsets can no longer be trusted.
+ */
+public final class GzipMemberIndex {
+  private static final int MAGIC = 0x475a4958; // "GZIX"
+  private static final int VERSION = 2;
+  private long[] compressedOffsets;
+  private long[] uncompressedOffsets;
+  private int size;
+
+  public GzipMemberIndex() {
+    this.compressedOffsets = new long[16];
+    this.uncompressedOffsets = new long[16];
+  }
+
+  /**
+   * Returns the path of the index of a file.
+   */
+  public static Path getIndexPath(Path file) {
+    return new Path(file.getParent(), "." + file.getName() + ".index");
+  }
+
+  /**
+   * Reads the index of a file.
+   *
+   * @return the index, or null if the file does not have an index, or if its index does not match the length of
+   *         the file or was written without the length of the file
+   * @throws IOException if the index could not be read
+   */
+  @Nullable
+  public static GzipMemberIndex read(FileSystem fs, Path file) throws IOException {
+    GzipMemberIndex index = new GzipMemberIndex();
+    long fileLength;
+    try (FSDataInputStream in = fs.open(getIndexPath(file))) {
+      if (in.readInt() != MAGIC) {
+        throw new IOException(String.format("Invalid gzip index for file '%s'.", file));
+      }
+      int version = in.readInt();
+      if (version == 1) {
+        // the first version did not contain the length of the file, so it cannot be checked
+        return null;
+      }
+      if (version != VERSION) {
+        throw new IOException(String.format("Unsupported version %d of the gzip index for file '%s'.", version, file));
+      }
+      fileLength = in.readLong();
+      int count = in.readInt();
+      for (int i = 0; i < count; i++) {
+        index.add(in.readLong(), in.readLong());
+      }
+    } catch (FileNotFoundException e) {
+      return null;
+    }
+    if (fs.getFileStatus(file).getLen() != fileLength) {
+      return null;
+    }
+    return index;
+  }
+
+  /**
+   * Writes the index of a file, replacing any existing index. The file must be complete, since its current length
+   * is stored in the index.
+   */
+  public void write(FileSystem fs, Path file) throws IOException {
+    long fileLength = fs.getFileStatus(file).getLen();
+    try (FSDataOutputStream out = fs.create(getIndexPath(file), true)) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeLong(fileLength);
+      out.writeInt(size);
+      for (int i = 0; i < size; i++) {
+        out.writeLong(compressedOffsets[i]);
+        out.writeLong(uncompressedOffsets[i]);
+      }
+    }
+  }
+
+  /**
+   * Adds the next member of the file.
+   *
+   * @param compressedOffset the position of the member in the file
+   * @param uncompressedOffset the position of the data of the member in the uncompressed data
+   */
+  public void add(long compressedOffset, long uncompressedOffset) {
+    if (size > 0 && (compressedOffset <= compressedOffsets[size - 1]
+      || uncompressedOffset < uncompressedOffsets[size - 1])) {
+      throw new IllegalArgumentException(
+        String.format("Member offsets %d and %d must be after the offsets of the previous member.",
+                      compressedOffset, uncompressedOffset));
+    }
+    if (size == compressedOffsets.length) {
+      compressedOffsets = Arrays.copyOf(compressedOffsets, size * 2);
+      uncompressedOffsets = Arrays.copyOf(uncompressedOffsets, size * 2);
+    }
+    compressedOffsets[size] = compressedOffset;
+    uncompressedOffsets[size] = uncompressedOffset;
+    size++;
+  }
+
+  /**
+   * Returns the number of members.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the position of a member in the file.
+   */
+  public long getCompressedOffset(int member) {
+    return compressedOffsets[member];
+  }
+
+  /**
+   * Returns the position of the data of a member in the uncompressed data.
+   */
+  public long getUncompressedOffset(int member) {
+    return uncompressedOffsets[member];
+  }
+
+  /**
+   * Returns the first member that starts at or after a position in the file, or the number of members if no
+   * member starts at or after the position.
+   */
+  public int getMemberAtOrAfter(long compressedOffset) {
+    int index = Arrays.binarySearch(compressedOffsets, 0, size, compressedOffset);
+    return index >= 0 ? index : -index - 1;
+  }
+}
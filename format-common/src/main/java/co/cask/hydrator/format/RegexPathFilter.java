@@ -18,6 +18,7 @@ package co.cask.hydrator.format;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.PathFilter;
@@ -51,6 +52,18 @@ public class RegexPathFilter extends Configured implements PathFilter {
     }
   }
 
+  /**
+   * Same as {@link #accept(Path)}, but uses the given status of the path instead of looking it up in the file system.
+   */
+  public boolean accept(FileStatus status) {
+    if (status.isDirectory()) {
+      return true;
+    } else if (status.isFile()) {
+      return pattern == null || pattern.matcher(status.getPath().toUri().getPath()).matches();
+    }
+    return false;
+  }
+
   @Override
   public void setConf(Configuration conf) {
     super.setConf(conf);
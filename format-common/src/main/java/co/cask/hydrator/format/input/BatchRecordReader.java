@@ -0,0 +1,57 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.hydrator.format.input;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.RecordReader;
+
+import java.io.IOException;
+
+/**
+ * A record reader that reads a batch of records at a time, for formats that read or decode many records at once.
+ * The records are also available one at a time, as builders created from the rows of the batches, so that the
+ * reader can be used by anything that reads records one at a time.
+ */
+public abstract class BatchRecordReader extends RecordReader<NullWritable, StructuredRecord.Builder>
+  implements RecordBatchReader {
+  private StructuredRecordBatch batch;
+  private int row;
+
+  @Override
+  public boolean nextKeyValue() throws IOException, InterruptedException {
+    row++;
+    while (batch == null || row >= batch.size()) {
+      batch = nextBatch();
+      if (batch == null) {
+        return false;
+      }
+      row = 0;
+    }
+    return true;
+  }
+
+  @Override
+  public NullWritable getCurrentKey() {
+    return NullWritable.get();
+  }
+
+  @Override
+  public StructuredRecord.Builder getCurrentValue() {
+    return batch.toBuilder(row);
+  }
+}
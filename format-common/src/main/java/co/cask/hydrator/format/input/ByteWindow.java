@@ -0,0 +1,127 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.hydrator.format.input;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A window over a stream of bytes that is addressed by absolute position in the stream. Bytes are read from the
+ * stream as they are needed, and are kept until they are discarded, so that a {@link RecordScanner} can look ahead
+ * of the current record and come back to it.
+ */
+public final class ByteWindow {
+  private static final int INITIAL_SIZE = 64 * 1024;
+  private final InputStream in;
+  private final int maxSize;
+  private byte[] buffer;
+  private long bufferStart;
+  private long discardPosition;
+  private int size;
+  private boolean eof;
+
+  /**
+   * @param in the stream to read from
+   * @param position the position in the stream of the first byte that will be read
+   * @param maxSize the maximum number of bytes to keep, which limits the size of a record
+   */
+  public ByteWindow(InputStream in, long position, int maxSize) {
+    this.in = in;
+    this.maxSize = maxSize;
+    this.buffer = new byte[Math.min(INITIAL_SIZE, maxSize)];
+    this.bufferStart = position;
+    this.discardPosition = position;
+  }
+
+  /**
+   * Returns the byte at the given position, which must not have been discarded.
+   *
+   * @return the byte as an unsigned value, or -1 if the position is past the end of the stream
+   * @throws IOException if the stream could not be read, or the window would grow beyond its maximum size
+   */
+  public int get(long position) throws IOException {
+    long index = position - bufferStart;
+    if (index >= 0 && index < size) {
+      return buffer[(int) index] & 0xff;
+    }
+    if (index < 0) {
+      // should never happen
+      throw new IllegalStateException(String.format("Position %d has already been discarded.", position));
+    }
+    while (position - bufferStart >= size && !eof) {
+      fill();
+    }
+    index = position - bufferStart;
+    return index < size ? buffer[(int) index] & 0xff : -1;
+  }
+
+  /**
+   * Returns the buffer that contains the bytes of the window. The buffer is only valid until the next call to
+   * {@link #get(long)} or {@link #discardBefore(long)}.
+   */
+  public byte[] getBuffer() {
+    return buffer;
+  }
+
+  /**
+   * Returns the offset in the buffer of the given position, which must be in the window.
+   */
+  public int getOffset(long position) {
+    return (int) (position - bufferStart);
+  }
+
+  /**
+   * Allows the bytes before the given position to be dropped from the window.
+   */
+  public void discardBefore(long position) {
+    discardPosition = Math.max(discardPosition, position);
+    // only shift the bytes once enough of them can be dropped, so that each byte is copied a bounded number of times
+    if (discardPosition - bufferStart >= size / 2) {
+      compact();
+    }
+  }
+
+  private void compact() {
+    int discard = (int) Math.min(discardPosition - bufferStart, size);
+    if (discard > 0) {
+      System.arraycopy(buffer, discard, buffer, 0, size - discard);
+      size -= discard;
+      bufferStart += discard;
+    }
+  }
+
+  private void fill() throws IOException {
+    if (size == buffer.length) {
+      compact();
+    }
+    if (size == buffer.length) {
+      if (buffer.length == maxSize) {
+        throw new IOException(String.format("A record after position %d is larger than the maximum of %d bytes.",
+                                            bufferStart, maxSize));
+      }
+      byte[] newBuffer = new byte[(int) Math.min((long) buffer.length * 2, maxSize)];
+      System.arraycopy(buffer, 0, newBuffer, 0, size);
+      buffer = newBuffer;
+    }
+    int read = in.read(buffer, size, buffer.length - size);
+    if (read < 0) {
+      eof = true;
+    } else {
+      size += read;
+    }
+  }
+}
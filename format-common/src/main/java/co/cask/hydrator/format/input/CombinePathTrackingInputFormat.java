@@ -17,15 +17,18 @@
 package co.cask.hydrator.format.input;
 
 import co.cask.cdap.api.data.format.StructuredRecord;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.apache.hadoop.mapreduce.lib.input.CombineFileInputFormat;
-import org.apache.hadoop.mapreduce.lib.input.CombineFileRecordReader;
 import org.apache.hadoop.mapreduce.lib.input.CombineFileSplit;
 
 import java.io.IOException;
+import java.util.List;
 
 /**
  * Similar to CombineTextInputFormat except it uses PathTrackingInputFormat to keep track of filepaths that
@@ -35,18 +38,44 @@ public abstract class CombinePathTrackingInputFormat extends CombineFileInputFor
 
   /**
    * Creates a RecordReader that delegates to some other RecordReader for each path in the input split.
-   * The header for each file is set in the context Configuration to make it available to the delegate RecordReaders.
+   * The records can also be read a batch at a time, as described in {@link RecordBatchReader}.
    */
   @Override
   public RecordReader<NullWritable, StructuredRecord> createRecordReader(InputSplit split, TaskAttemptContext context)
     throws IOException {
-    return new CombineFileRecordReader<>((CombineFileSplit) split, context, getRecordReaderClass());
+    return new CombinePathTrackingRecordReader((CombineFileSplit) split, context, getRecordReaderClass());
+  }
+
+  /**
+   * Files compressed with a splittable codec like bzip2 can be split, as well as gzip files with an index,
+   * which are read by the {@link SplittableLineRecordReader}.
+   */
+  @Override
+  protected boolean isSplitable(JobContext context, Path file) {
+    if (super.isSplitable(context, file)) {
+      return true;
+    }
+    try {
+      return SplittableLineRecordReader.isIndexedGzip(context.getConfiguration(), file);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Lists the input files with a {@link ParallelFileLister}, so that directories are listed on several threads
+   * and the block locations of the files are listed with them.
+   */
+  @Override
+  protected List<FileStatus> listStatus(JobContext job) throws IOException {
+    return ParallelFileLister.listStatus(job);
   }
 
   /**
    * Get the wrapper record reader class that's responsible for delegating to a corresponding RecordReader in
    * {@link PathTrackingInputFormat}. All it does is pick the i'th path in the CombineFileSplit to create a
-   * FileSplit and use the delegate RecordReader to read that split.
+   * FileSplit and use the delegate RecordReader to read that split. Wrappers that extend
+   * {@link PathTrackingRecordReaderWrapper} can be read a batch at a time.
    */
   protected abstract Class<? extends RecordReader<NullWritable, StructuredRecord>> getRecordReaderClass();
 
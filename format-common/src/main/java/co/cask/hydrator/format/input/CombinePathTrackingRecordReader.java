@@ -0,0 +1,65 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.hydrator.format.input;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.CombineFileRecordReader;
+import org.apache.hadoop.mapreduce.lib.input.CombineFileSplit;
+
+import java.io.IOException;
+import javax.annotation.Nullable;
+
+/**
+ * Reads the files of a CombineFileSplit one after the other, the same as Hadoop's CombineFileRecordReader, except
+ * that the records can also be read a batch at a time, as described in {@link RecordBatchReader}. A batch only
+ * contains records of a single file. If the record reader of a file cannot be read in batches, the batches are
+ * filled with the records it reads one at a time.
+ */
+public class CombinePathTrackingRecordReader extends CombineFileRecordReader<NullWritable, StructuredRecord>
+  implements RecordBatchReader {
+  private StructuredRecordBatch batch;
+
+  public CombinePathTrackingRecordReader(CombineFileSplit split, TaskAttemptContext context,
+                                         Class<? extends RecordReader<NullWritable, StructuredRecord>> rrClass)
+    throws IOException {
+    super(split, context, rrClass);
+  }
+
+  @Nullable
+  @Override
+  public StructuredRecordBatch nextBatch() throws IOException, InterruptedException {
+    StructuredRecordBatch next = null;
+    while (curReader == null || (next = readBatch()) == null) {
+      if (!initNextRecordReader()) {
+        return null;
+      }
+    }
+    return next;
+  }
+
+  @Nullable
+  private StructuredRecordBatch readBatch() throws IOException, InterruptedException {
+    if (curReader instanceof RecordBatchReader) {
+      return ((RecordBatchReader) curReader).nextBatch();
+    }
+    batch = RecordBatches.read(curReader, batch);
+    return batch;
+  }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.hydrator.format.input;
+
+import co.cask.hydrator.format.FileStatistics;
+import co.cask.hydrator.format.RegexPathFilter;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocatedFileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathFilter;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.InvalidInputException;
+import org.apache.hadoop.mapreduce.security.TokenCache;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+
+/**
+ * Lists the input files of a FileInputFormat job the same way as {@link FileInputFormat#listStatus(JobContext)},
+ * but lists directories on several threads. This makes a big difference on object stores and for deep recursive
+ * directories, where every directory listing is a slow remote call.
+ *
+ * Directories are listed with {@link FileSystem#listLocatedStatus(Path)}, so the statuses of the files already
+ * contain their block locations, and planning the splits does not need another call for each file.
+ * The input path filter is applied while walking the directories. A {@link RegexPathFilter} is applied to the
+ * statuses that were listed, instead of looking up every path in the file system again.
+ *
+ * Files can also be limited to a range of modification times, which is used to read only the files that were
+ * modified since a previous run.
+ *
+ * If a statistics filter is given, files that have {@link FileStatistics} are skipped if their statistics show that
+ * none of their records can match the filter. The side-car files of the statistics are found in the listing of their
+ * directory, so only the statistics that exist are read, and they are read on the listing threads.
+ */
+public final class ParallelFileLister {
+  /**
+   * The number of threads to list directories with. The default is 1.
+   */
+  public static final String LISTING_THREADS = "path.tracking.listing.threads";
+  /**
+   * Files that were last modified at or before this time, in milliseconds since the epoch, are skipped.
+   */
+  public static final String MODIFIED_AFTER = "path.tracking.modified.after";
+  /**
+   * Files that were last modified after this time, in milliseconds since the epoch, are skipped.
+   */
+  public static final String MODIFIED_UNTIL = "path.tracking.modified.until";
+  /**
+   * A {@link PushdownFilter} that files with statistics must be able to match in order to be read.
+   */
+  public static final String STATISTICS_FILTER = "path.tracking.statistics.filter";
+  private static final AtomicInteger LISTER_ID = new AtomicInteger();
+  private final Configuration conf;
+  private final boolean recursive;
+  private final PathFilter filter;
+  private final long modifiedAfter;
+  private final long modifiedUntil;
+  private final PushdownFilter statisticsFilter;
+
+  private ParallelFileLister(Configuration conf, boolean recursive, @Nullable PathFilter filter) {
+    this.conf = conf;
+    this.recursive = recursive;
+    this.filter = filter;
+    this.modifiedAfter = conf.getLong(MODIFIED_AFTER, Long.MIN_VALUE);
+    this.modifiedUntil = conf.getLong(MODIFIED_UNTIL, Long.MAX_VALUE);
+    String statisticsFilter = conf.get(STATISTICS_FILTER);
+    this.statisticsFilter = statisticsFilter == null ? null : PushdownFilter.parse(statisticsFilter);
+  }
+
+  /**
+   * Lists the files of the input paths of a job, following the input path filter and the recursive setting
+   * of the FileInputFormat, and the modification time range and statistics filter if they are set.
+   *
+   * @throws InvalidInputException if an input path does not exist or does not match any files
+   */
+  public static List<FileStatus> listStatus(JobContext job) throws IOException {
+    Path[] dirs = FileInputFormat.getInputPaths(job);
+    if (dirs.length == 0) {
+      throw new IOException("No input paths specified in job");
+    }
+    Configuration conf = job.getConfiguration();
+    TokenCache.obtainTokensForNamenodes(job.getCredentials(), dirs, conf);
+    ParallelFileLister lister = new ParallelFileLister(conf, FileInputFormat.getInputDirRecursive(job),
+                                                       FileInputFormat.getInputPathFilter(job));
+    return lister.list(dirs, Math.max(1, conf.getInt(LISTING_THREADS, 1)));
+  }
+
+  private List<FileStatus> list(Path[] dirs, int threads) throws IOException {
+    List<FileStatus> result = new ArrayList<>();
+    List<IOException> errors = new ArrayList<>();
+    List<FileStatus> directories = new ArrayList<>();
+    for (Path dir : dirs) {
+      FileStatus[] matches = dir.getFileSystem(conf).globStatus(dir, ParallelFileLister::isVisible);
+      if (matches == null) {
+        errors.add(new IOException("Input path does not exist: " + dir));
+      } else if (matches.length == 0) {
+        errors.add(new IOException("Input Pattern " + dir + " matches 0 files"));
+      } else {
+        for (FileStatus match : matches) {
+          if (!accept(match) || (match.isFile() && !canMatch(match))) {
+            continue;
+          }
+          if (match.isDirectory()) {
+            directories.add(match);
+          } else {
+            result.add(match);
+          }
+        }
+      }
+    }
+    if (!errors.isEmpty()) {
+      throw new InvalidInputException(errors);
+    }
+    if (directories.isEmpty()) {
+      return result;
+    }
+
+    String threadPrefix = "file-lister-" + LISTER_ID.incrementAndGet() + "-";
+    AtomicInteger threadId = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+      Thread thread = new Thread(runnable, threadPrefix + threadId.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    try {
+      // listings are consumed in the order they were submitted, so the result is the same on every run
+      Deque<Future<List<FileStatus>>> pending = new ArrayDeque<>();
+      for (FileStatus directory : directories) {
+        pending.add(executor.submit(() -> listDirectory(directory.getPath())));
+      }
+      while (!pending.isEmpty()) {
+        for (FileStatus status : getListing(pending.poll())) {
+          if (!accept(status)) {
+            continue;
+          }
+          // like FileInputFormat, sub-directories are part of the result when the input is not read recursively
+          if (recursive && status.isDirectory()) {
+            pending.add(executor.submit(() -> listDirectory(status.getPath())));
+          } else {
+            result.add(status);
+          }
+        }
+      }
+      return result;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private List<FileStatus> listDirectory(Path dir) throws IOException {
+    List<FileStatus> statuses = new ArrayList<>();
+    RemoteIterator<LocatedFileStatus> iterator = dir.getFileSystem(conf).listLocatedStatus(dir);
+    while (iterator.hasNext()) {
+      statuses.add(iterator.next());
+    }
+    if (statisticsFilter == null) {
+      return statuses;
+    }
+
+    Set<String> names = new HashSet<>();
+    for (FileStatus status : statuses) {
+      names.add(status.getPath().getName());
+    }
+    List<FileStatus> matching = new ArrayList<>(statuses.size());
+    for (FileStatus status : statuses) {
+      if (!status.isFile() || !isVisible(status.getPath())
+        || !names.contains(FileStatistics.getStatisticsPath(status.getPath()).getName()) || canMatch(status)) {
+        matching.add(status);
+      }
+    }
+    return matching;
+  }
+
+  /**
+   * Returns whether a file can contain records that match the statistics filter, which is true unless the file has
+   * statistics that match its length and show otherwise.
+   */
+  private boolean canMatch(FileStatus file) throws IOException {
+    if (statisticsFilter == null) {
+      return true;
+    }
+    FileStatistics statistics = FileStatistics.read(file.getPath().getFileSystem(conf), file);
+    return statistics == null || statistics.canMatch(statisticsFilter);
+  }
+
+  private boolean accept(FileStatus status) {
+    if (!isVisible(status.getPath())) {
+      return false;
+    }
+    // directories are always walked, since their modification time does not change when a nested file changes
+    if (status.isFile()
+      && (status.getModificationTime() <= modifiedAfter || status.getModificationTime() > modifiedUntil)) {
+      return false;
+    }
+    if (filter instanceof RegexPathFilter) {
+      return ((RegexPathFilter) filter).accept(status);
+    }
+    return filter == null || filter.accept(status.getPath());
+  }
+
+  /**
+   * Files whose names start with '_' or '.' are never read, the same as in FileInputFormat.
+   */
+  private static boolean isVisible(Path path) {
+    String name = path.getName();
+    return !name.startsWith("_") && !name.startsWith(".");
+  }
+
+  private static List<FileStatus> getListing(Future<List<FileStatus>> listing) throws IOException {
+    try {
+      return listing.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while listing the input files.");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new IOException("Unable to list the input files.", cause);
+    }
+  }
+}
@@ -19,21 +19,25 @@ package co.cask.hydrator.format.input;
 import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.data.schema.Schema;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.input.FileSplit;
 
 import java.io.IOException;
+import java.util.List;
 import javax.annotation.Nullable;
 
 /**
  * An input format that tracks which the file path each record was read from. This InputFormat is a wrapper around
  * underlying input formats. The responsibility of this class is to keep track of which file each record is reading
  * from, and to add the file URI to each record. In addition, for text files, it can be configured to keep track
- * of the header for the file, which underlying record readers can use.
+ * of the header for the file, which underlying record readers can use. The record readers it creates are
+ * {@link RecordBatchReader}s, so the records can also be read a batch at a time.
  */
 public abstract class PathTrackingInputFormat extends FileInputFormat<NullWritable, StructuredRecord> {
   /**
@@ -69,17 +73,29 @@ public abstract class PathTrackingInputFormat extends FileInputFormat<NullWritab
     return new TrackingRecordReader(delegate, pathField, path);
   }
 
+  /**
+   * Lists the input files with a {@link ParallelFileLister}, so that directories are listed on several threads
+   * and the block locations of the files are listed with them.
+   */
+  @Override
+  protected List<FileStatus> listStatus(JobContext job) throws IOException {
+    return ParallelFileLister.listStatus(job);
+  }
+
   protected abstract RecordReader<NullWritable, StructuredRecord.Builder> createRecordReader(
     FileSplit split, TaskAttemptContext context,
     @Nullable String pathField, @Nullable Schema schema) throws IOException, InterruptedException;
 
   /**
    * Supports adding a field to each record that contains the path of the file the record was read from.
+   * Records can also be read a batch at a time. If the underlying record reader reads batches, the batches are
+   * read from it directly, otherwise the batches are filled with the records it reads one at a time.
    */
-  static class TrackingRecordReader extends RecordReader<NullWritable, StructuredRecord> {
+  static class TrackingRecordReader extends RecordReader<NullWritable, StructuredRecord> implements RecordBatchReader {
     private final RecordReader<NullWritable, StructuredRecord.Builder> delegate;
     private final String pathField;
     private final String path;
+    private StructuredRecordBatch batch;
 
     TrackingRecordReader(RecordReader<NullWritable, StructuredRecord.Builder> delegate,
                          @Nullable String pathField, String path) {
@@ -117,6 +133,23 @@ public abstract class PathTrackingInputFormat extends FileInputFormat<NullWritab
       return delegate.nextKeyValue();
     }
 
+    @Nullable
+    @Override
+    public StructuredRecordBatch nextBatch() throws IOException, InterruptedException {
+      if (!(delegate instanceof RecordBatchReader)) {
+        batch = RecordBatches.read(this, batch);
+        return batch;
+      }
+      StructuredRecordBatch next = ((RecordBatchReader) delegate).nextBatch();
+      int pathIndex = next == null || pathField == null ? -1 : next.getFieldIndex(pathField);
+      if (pathIndex >= 0) {
+        for (int row = 0; row < next.size(); row++) {
+          next.set(pathIndex, row, path);
+        }
+      }
+      return next;
+    }
+
     @Override
     public void close() throws IOException {
       delegate.close();
@@ -0,0 +1,89 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.hydrator.format.input;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.CombineFileSplit;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+
+import java.io.IOException;
+import javax.annotation.Nullable;
+
+/**
+ * Reads one of the files of a CombineFileSplit with the record reader of a {@link PathTrackingInputFormat}.
+ * This is the same as Hadoop's CombineFileRecordReaderWrapper, except that the records can also be read a batch at a
+ * time, as described in {@link RecordBatchReader}.
+ */
+public class PathTrackingRecordReaderWrapper extends RecordReader<NullWritable, StructuredRecord>
+  implements RecordBatchReader {
+  private final FileSplit fileSplit;
+  private final RecordReader<NullWritable, StructuredRecord> delegate;
+  private StructuredRecordBatch batch;
+
+  protected PathTrackingRecordReaderWrapper(PathTrackingInputFormat inputFormat, CombineFileSplit split,
+                                            TaskAttemptContext context,
+                                            Integer idx) throws IOException, InterruptedException {
+    this.fileSplit = new FileSplit(split.getPath(idx), split.getOffset(idx), split.getLength(idx),
+                                   split.getLocations());
+    this.delegate = inputFormat.createRecordReader(fileSplit, context);
+  }
+
+  @Override
+  public void initialize(InputSplit split, TaskAttemptContext context) throws IOException, InterruptedException {
+    // the delegate reads the file split of this wrapper, not the combined split
+    delegate.initialize(fileSplit, context);
+  }
+
+  @Override
+  public boolean nextKeyValue() throws IOException, InterruptedException {
+    return delegate.nextKeyValue();
+  }
+
+  @Override
+  public NullWritable getCurrentKey() throws IOException, InterruptedException {
+    return delegate.getCurrentKey();
+  }
+
+  @Override
+  public StructuredRecord getCurrentValue() throws IOException, InterruptedException {
+    return delegate.getCurrentValue();
+  }
+
+  @Nullable
+  @Override
+  public StructuredRecordBatch nextBatch() throws IOException, InterruptedException {
+    if (delegate instanceof RecordBatchReader) {
+      return ((RecordBatchReader) delegate).nextBatch();
+    }
+    batch = RecordBatches.read(delegate, batch);
+    return batch;
+  }
+
+  @Override
+  public float getProgress() throws IOException, InterruptedException {
+    return delegate.getProgress();
+  }
+
+  @Override
+  public void close() throws IOException {
+    delegate.close();
+  }
+}
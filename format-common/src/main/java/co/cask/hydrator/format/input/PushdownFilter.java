@@ -0,0 +1,238 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.hydrator.format.input;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+
+/**
+ * A filter that input formats can push down to the file reader, in order to skip the parts of a file whose statistics
+ * show that none of their rows can match. The filter is a conjunction of simple conditions on top level columns,
+ * for example {@code id >= 100 AND name = 'abc' AND deleted IS NULL}. Supported operators are =, !=, <>, <, <=, >,
+ * >=, IS NULL and IS NOT NULL. String, date and timestamp literals must be quoted with single quotes.
+ *
+ * Each format translates the conditions into the predicates understood by its reader.
+ */
+public final class PushdownFilter {
+  private static final Pattern NULL_CHECK =
+    Pattern.compile("(\\w+)\\s+IS\\s+(NOT\\s+)?NULL", Pattern.CASE_INSENSITIVE);
+  private static final Pattern COMPARISON = Pattern.compile("(\\w+)\\s*(<=|>=|<>|!=|=|<|>)\\s*(.+)");
+
+  private final List<Condition> conditions;
+
+  private PushdownFilter(List<Condition> conditions) {
+    this.conditions = Collections.unmodifiableList(conditions);
+  }
+
+  public List<Condition> getConditions() {
+    return conditions;
+  }
+
+  /**
+   * Parses the given filter expression.
+   *
+   * @throws IllegalArgumentException if the expression is invalid
+   */
+  public static PushdownFilter parse(String filter) {
+    List<Condition> conditions = new ArrayList<>();
+    for (String term : splitConjunction(filter)) {
+      term = term.trim();
+      Matcher matcher = NULL_CHECK.matcher(term);
+      if (matcher.matches()) {
+        Operator operator = matcher.group(2) == null ? Operator.IS_NULL : Operator.IS_NOT_NULL;
+        conditions.add(new Condition(matcher.group(1), operator, null, false));
+        continue;
+      }
+      matcher = COMPARISON.matcher(term);
+      if (!matcher.matches()) {
+        throw new IllegalArgumentException(
+          String.format("Invalid condition '%s' in filter '%s'. Conditions must be of the form " +
+                          "'column operator literal', 'column IS NULL' or 'column IS NOT NULL'.", term, filter));
+      }
+      String literal = matcher.group(3).trim();
+      boolean quoted = literal.length() >= 2 && literal.startsWith("'") && literal.endsWith("'");
+      if (quoted) {
+        literal = literal.substring(1, literal.length() - 1).replace("''", "'");
+      } else if (literal.contains("'") || literal.contains(" ")) {
+        throw new IllegalArgumentException(String.format("Invalid literal %s in filter '%s'.", literal, filter));
+      }
+      conditions.add(new Condition(matcher.group(1), Operator.fromSymbol(matcher.group(2)), literal, quoted));
+    }
+    return new PushdownFilter(conditions);
+  }
+
+  /**
+   * Splits the filter on the AND keyword, ignoring keywords inside quoted literals.
+   */
+  private static List<String> splitConjunction(String filter) {
+    List<String> terms = new ArrayList<>();
+    boolean quoted = false;
+    int start = 0;
+    for (int i = 0; i < filter.length(); i++) {
+      char c = filter.charAt(i);
+      if (c == '\'') {
+        quoted = !quoted;
+      } else if (!quoted && Character.isWhitespace(c) && filter.regionMatches(true, i + 1, "AND", 0, 3)
+        && i + 4 < filter.length() && Character.isWhitespace(filter.charAt(i + 4))) {
+        terms.add(filter.substring(start, i));
+        start = i + 4;
+        i += 3;
+      }
+    }
+    terms.add(filter.substring(start));
+    return terms;
+  }
+
+  /**
+   * Comparison operators.
+   */
+  public enum Operator {
+    EQ("="),
+    NE("!="),
+    LT("<"),
+    LE("<="),
+    GT(">"),
+    GE(">="),
+    IS_NULL("IS NULL"),
+    IS_NOT_NULL("IS NOT NULL");
+
+    private final String symbol;
+
+    Operator(String symbol) {
+      this.symbol = symbol;
+    }
+
+    private static Operator fromSymbol(String symbol) {
+      if ("<>".equals(symbol)) {
+        return NE;
+      }
+      for (Operator operator : values()) {
+        if (operator.symbol.equals(symbol)) {
+          return operator;
+        }
+      }
+      throw new IllegalArgumentException("Unsupported operator " + symbol);
+    }
+
+    @Override
+    public String toString() {
+      return symbol;
+    }
+  }
+
+  /**
+   * A condition on a single column.
+   */
+  public static final class Condition {
+    private final String column;
+    private final Operator operator;
+    private final String literal;
+    private final boolean quoted;
+
+    private Condition(String column, Operator operator, @Nullable String literal, boolean quoted) {
+      this.column = column;
+      this.operator = operator;
+      this.literal = literal;
+      this.quoted = quoted;
+    }
+
+    public String getColumn() {
+      return column;
+    }
+
+    public Operator getOperator() {
+      return operator;
+    }
+
+    /**
+     * @return the literal the column is compared with, or {@code null} for IS NULL and IS NOT NULL conditions
+     */
+    @Nullable
+    public String getLiteral() {
+      return literal;
+    }
+
+    /**
+     * @return the literal as a string. The literal must be quoted.
+     */
+    public String getStringLiteral() {
+      if (!quoted) {
+        throw invalidLiteral("string", "String, date and timestamp literals must be quoted.", null);
+      }
+      return literal;
+    }
+
+    /**
+     * @return the literal as a long. The literal must not be quoted.
+     */
+    public long getLongLiteral() {
+      try {
+        return Long.parseLong(getUnquotedLiteral("long"));
+      } catch (NumberFormatException e) {
+        throw invalidLiteral("long", e.getMessage(), e);
+      }
+    }
+
+    /**
+     * @return the literal as a double. The literal must not be quoted.
+     */
+    public double getDoubleLiteral() {
+      try {
+        return Double.parseDouble(getUnquotedLiteral("double"));
+      } catch (NumberFormatException e) {
+        throw invalidLiteral("double", e.getMessage(), e);
+      }
+    }
+
+    /**
+     * @return the literal as a boolean. The literal must be true or false, without quotes.
+     */
+    public boolean getBooleanLiteral() {
+      String value = getUnquotedLiteral("boolean").toLowerCase(Locale.ROOT);
+      if (!value.equals("true") && !value.equals("false")) {
+        throw invalidLiteral("boolean", "The literal must be true or false.", null);
+      }
+      return Boolean.parseBoolean(value);
+    }
+
+    private String getUnquotedLiteral(String type) {
+      if (quoted) {
+        throw invalidLiteral(type, "Only string, date and timestamp literals can be quoted.", null);
+      }
+      return literal;
+    }
+
+    private IllegalArgumentException invalidLiteral(String type, String reason, @Nullable Throwable cause) {
+      return new IllegalArgumentException(
+        String.format("Literal %s cannot be compared with column '%s' of type %s. %s",
+                      quoted ? "'" + literal + "'" : literal, column, type, reason), cause);
+    }
+
+    @Override
+    public String toString() {
+      if (literal == null) {
+        return column + " " + operator;
+      }
+      return column + " " + operator + " " + (quoted ? "'" + literal.replace("'", "''") + "'" : literal);
+    }
+  }
+}
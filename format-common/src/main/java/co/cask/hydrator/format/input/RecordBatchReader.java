@@ -0,0 +1,36 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.hydrator.format.input;
+
+import java.io.IOException;
+import javax.annotation.Nullable;
+
+/**
+ * A record reader that can be read a batch of records at a time, in addition to a record at a time.
+ * A reader must either be read a batch at a time or a record at a time, the two cannot be mixed.
+ */
+public interface RecordBatchReader {
+
+  /**
+   * Reads the next batch of records. The reader can reuse the same batch for every call, so the batch and its
+   * columns are only valid until the next call.
+   *
+   * @return the next batch, which contains at least one record, or null if there are no more records
+   */
+  @Nullable
+  StructuredRecordBatch nextBatch() throws IOException, InterruptedException;
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.hydrator.format.input;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import org.apache.hadoop.mapreduce.RecordReader;
+
+import java.io.IOException;
+import javax.annotation.Nullable;
+
+/**
+ * Reads batches of records from record readers that can only be read a record at a time.
+ */
+final class RecordBatches {
+
+  private RecordBatches() {
+  }
+
+  /**
+   * Reads up to a batch of records from a record reader. The given batch is reused if its schema is the same as the
+   * schema of the records read, otherwise a new batch is created. All the records of a batch must have the schema of
+   * its first record.
+   *
+   * @param reader the reader to read records from
+   * @param batch the batch that was returned by the previous call, or null if there is none
+   * @return the batch of records, or null if there are no more records
+   * @throws IOException if a record has a different schema than the first record of its batch
+   */
+  @Nullable
+  static StructuredRecordBatch read(RecordReader<?, StructuredRecord> reader,
+                                    @Nullable StructuredRecordBatch batch) throws IOException, InterruptedException {
+    if (!reader.nextKeyValue()) {
+      return null;
+    }
+    StructuredRecord record = reader.getCurrentValue();
+    if (batch == null || !batch.getSchema().equals(record.getSchema())) {
+      batch = new StructuredRecordBatch(record.getSchema());
+    } else {
+      batch.reset();
+    }
+    Schema schema = record.getSchema();
+    batch.add(record);
+    while (!batch.isFull() && reader.nextKeyValue()) {
+      record = reader.getCurrentValue();
+      // readers almost always use the same schema object for all their records, so this is usually a single comparison
+      if (record.getSchema() != schema && !record.getSchema().equals(schema)) {
+        throw new IOException(String.format("Record with schema '%s' cannot be read in a batch of records with "
+                                              + "schema '%s'.", record.getSchema(), schema));
+      }
+      batch.add(record);
+    }
+    return batch;
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.hydrator.format.input;
+
+import java.io.IOException;
+
+/**
+ * Finds the boundaries of records in a file whose records can span multiple lines. All positions are absolute
+ * positions in the file.
+ */
+public interface RecordScanner {
+
+  /**
+   * Returns the position of the first record in the file.
+   *
+   * @param window the bytes of the file, starting at position 0
+   * @return the position of the first record, or -1 if the file has no records
+   * @throws IOException if the file could not be read or is malformed
+   */
+  long firstRecord(ByteWindow window) throws IOException;
+
+  /**
+   * Returns the position of the first record that starts at or after the given position, which can be anywhere in
+   * the file, including in the middle of a record. All readers of a file must agree on where its records start,
+   * so scanners must find the start of a record from the bytes that follow the position.
+   *
+   * @param window the bytes of the file, starting at least one byte before the given position
+   * @param position the position to start looking at, which is greater than 0
+   * @return the position of the first record at or after the position, or -1 if there is none
+   * @throws IOException if the file could not be read, or the start of a record could not be found reliably
+   */
+  long findRecord(ByteWindow window, long position) throws IOException;
+
+  /**
+   * Returns the end of the content of the record that starts at the given position.
+   *
+   * @param window the bytes of the file, which contain the start of the record
+   * @param recordStart the position where the record starts
+   * @return the position just after the last byte of the record's content
+   * @throws IOException if the file could not be read or the record is malformed
+   */
+  long endOfRecord(ByteWindow window, long recordStart) throws IOException;
+
+  /**
+   * Returns the start of the record that follows the content of a record, skipping any separators.
+   *
+   * @param window the bytes of the file, which contain the end of the previous record
+   * @param contentEnd the end of the content of the previous record
+   * @return the position of the next record, or -1 if there are no more records
+   * @throws IOException if the file could not be read or is malformed
+   */
+  long nextRecord(ByteWindow window, long contentEnd) throws IOException;
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.hydrator.format.input;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.compress.CodecPool;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.Decompressor;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads records that can span multiple lines from a split of a file, using a {@link RecordScanner} to find where
+ * records start and end. A split reads every record that starts in the split, even if it ends after the split.
+ * If the split does not start at the beginning of the file, the scanner finds the first record that starts in the
+ * split. Compressed files are always read from the beginning, and must not be split.
+ */
+public abstract class ScanningRecordReader extends RecordReader<NullWritable, StructuredRecord.Builder> {
+  /**
+   * The maximum size of a record in bytes.
+   */
+  public static final String MAX_RECORD_SIZE = "path.tracking.max.record.size";
+  private static final int DEFAULT_MAX_RECORD_SIZE = 64 * 1024 * 1024;
+  private static final int HEAD_SIZE = 4096;
+  private FSDataInputStream fileIn;
+  private Decompressor decompressor;
+  private boolean compressed;
+  private ByteWindow window;
+  private RecordScanner scanner;
+  private Path path;
+  private long start;
+  private long end;
+  private long fileLength;
+  private long recordStart;
+  private StructuredRecord.Builder value;
+
+  /**
+   * Creates the scanner used to find records in the file.
+   *
+   * @param head the first bytes of the file, after decompression
+   * @param headLength the number of bytes in the head, which can be less than the size of the file
+   * @return the scanner for the file
+   */
+  protected abstract RecordScanner createScanner(byte[] head, int headLength);
+
+  /**
+   * Parses the content of a record.
+   *
+   * @param bytes a buffer that contains the record
+   * @param offset the offset of the record in the buffer
+   * @param length the length of the record
+   * @return a builder for the record
+   * @throws IOException if the record could not be parsed
+   */
+  protected abstract StructuredRecord.Builder parse(byte[] bytes, int offset, int length) throws IOException;
+
+  @Override
+  public void initialize(InputSplit split, TaskAttemptContext context) throws IOException {
+    FileSplit fileSplit = (FileSplit) split;
+    Configuration hConf = context.getConfiguration();
+    int maxRecordSize = hConf.getInt(MAX_RECORD_SIZE, DEFAULT_MAX_RECORD_SIZE);
+    path = fileSplit.getPath();
+    FileSystem fs = path.getFileSystem(hConf);
+    fileLength = fs.getFileStatus(path).getLen();
+    fileIn = fs.open(path);
+    start = fileSplit.getStart();
+    end = start + fileSplit.getLength();
+
+    CompressionCodec codec = new CompressionCodecFactory(hConf).getCodec(path);
+    byte[] head = new byte[HEAD_SIZE];
+    int headLength;
+    if (codec != null) {
+      if (start != 0) {
+        // should never happen, since the input formats do not split compressed files
+        throw new IllegalStateException(String.format("Compressed file '%s' cannot be split.", path));
+      }
+      compressed = true;
+      decompressor = CodecPool.getDecompressor(codec);
+      InputStream in = codec.createInputStream(fileIn, decompressor);
+      window = new ByteWindow(in, 0, maxRecordSize);
+      end = Long.MAX_VALUE;
+      headLength = 0;
+      while (headLength < HEAD_SIZE && window.get(headLength) >= 0) {
+        head[headLength] = (byte) window.get(headLength);
+        headLength++;
+      }
+    } else {
+      headLength = (int) Math.min(HEAD_SIZE, fileLength);
+      fileIn.readFully(0L, head, 0, headLength);
+      // the scanner needs the byte before the start of the split to know whether a record starts at the start
+      long windowStart = start == 0 ? 0 : start - 1;
+      fileIn.seek(windowStart);
+      window = new ByteWindow(fileIn, windowStart, maxRecordSize);
+    }
+    scanner = createScanner(head, headLength);
+    try {
+      recordStart = start == 0 ? scanner.firstRecord(window) : scanner.findRecord(window, start);
+    } catch (IOException e) {
+      throw new IOException(String.format("Failed to find the first record at or after position %d of file '%s': %s",
+                                          start, path, e.getMessage()), e);
+    }
+  }
+
+  @Override
+  public boolean nextKeyValue() throws IOException {
+    if (recordStart < 0 || recordStart >= end) {
+      return false;
+    }
+    long contentEnd;
+    try {
+      contentEnd = scanner.endOfRecord(window, recordStart);
+      value = parse(window.getBuffer(), window.getOffset(recordStart), (int) (contentEnd - recordStart));
+    } catch (IOException | RuntimeException e) {
+      throw new IOException(String.format("Failed to read the record at position %d of file '%s': %s",
+                                          recordStart, path, e.getMessage()), e);
+    }
+    recordStart = scanner.nextRecord(window, contentEnd);
+    window.discardBefore(recordStart < 0 ? contentEnd : recordStart);
+    return true;
+  }
+
+  @Override
+  public NullWritable getCurrentKey() {
+    return NullWritable.get();
+  }
+
+  @Override
+  public StructuredRecord.Builder getCurrentValue() {
+    return value;
+  }
+
+  @Override
+  public float getProgress() throws IOException {
+    if (compressed) {
+      return fileLength == 0 ? 1.0f : Math.min(1.0f, fileIn.getPos() / (float) fileLength);
+    }
+    if (recordStart < 0 || end == start) {
+      return 1.0f;
+    }
+    return Math.min(1.0f, (recordStart - start) / (float) (end - start));
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      if (fileIn != null) {
+        fileIn.close();
+      }
+    } finally {
+      if (decompressor != null) {
+        CodecPool.returnDecompressor(decompressor);
+        decompressor = null;
+      }
+    }
+  }
+}
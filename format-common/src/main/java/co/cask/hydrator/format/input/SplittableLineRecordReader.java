@@ -0,0 +1,235 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.hydrator.format.input;
+
+import co.cask.hydrator.format.GzipMemberIndex;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.GzipCodec;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import javax.annotation.Nullable;
+
+/**
+ * Reads lines of text from a split of a file, the same as the record reader of Hadoop's TextInputFormat, which
+ * already reads splits of files compressed with a splittable codec like bzip2. In addition, it reads splits of
+ * gzip files that have a {@link GzipMemberIndex}, by decompressing only the members of the split.
+ *
+ * A split of an indexed gzip file reads the lines that start in a member that starts in the split, and the line
+ * that starts at the beginning of the first member after the split. Unless the split starts with the first member,
+ * the first line is skipped, since it is read by the previous split. This is the same as how Hadoop reads splits of
+ * uncompressed files, with members instead of bytes. The key of each line is its offset in the uncompressed data,
+ * which is the same as if the whole file was read by a single record reader.
+ */
+public class SplittableLineRecordReader extends RecordReader<LongWritable, Text> {
+  private static final String RECORD_DELIMITER = "textinputformat.record.delimiter";
+  private final LongWritable key = new LongWritable();
+  private final Text value = new Text();
+  private RecordReader<LongWritable, Text> delegate;
+  private FSDataInputStream fileIn;
+  private GzipMemberIndex index;
+  private long fileLength;
+  private int firstMember;
+  // the first member that starts after the split
+  private int endMember;
+  private int member;
+  private byte[] compressed;
+  private byte[] data;
+  private int dataLength;
+  private int pos;
+  private boolean skipFirstLine;
+  private boolean done;
+
+  /**
+   * Returns whether a file can be split by this record reader, even though it is compressed with a codec that
+   * cannot be split. This is true for gzip files that have an index that matches the file, unless a custom record
+   * delimiter is set.
+   */
+  public static boolean isIndexedGzip(Configuration conf, Path file) throws IOException {
+    return canUseIndex(conf, file) && GzipMemberIndex.read(file.getFileSystem(conf), file) != null;
+  }
+
+  private static boolean canUseIndex(Configuration conf, Path file) {
+    return conf.get(RECORD_DELIMITER) == null && new CompressionCodecFactory(conf).getCodec(file) instanceof GzipCodec;
+  }
+
+  @Override
+  public void initialize(InputSplit split, TaskAttemptContext context) throws IOException, InterruptedException {
+    FileSplit fileSplit = (FileSplit) split;
+    Configuration conf = context.getConfiguration();
+    Path path = fileSplit.getPath();
+    FileSystem fs = path.getFileSystem(conf);
+    boolean indexedGzip = canUseIndex(conf, path);
+    index = indexedGzip ? GzipMemberIndex.read(fs, path) : null;
+    if (index == null) {
+      // the file was split when it had a valid index, but the index was removed or the file changed since then
+      if (indexedGzip
+        && (fileSplit.getStart() > 0 || fileSplit.getLength() < fs.getFileStatus(path).getLen())) {
+        throw new IOException(String.format("Cannot read a split of gzip file '%s', since its index is missing or "
+                                              + "does not match the file.", path));
+      }
+      delegate = new TextInputFormat().createRecordReader(split, context);
+      delegate.initialize(split, context);
+      return;
+    }
+
+    long start = fileSplit.getStart();
+    firstMember = index.getMemberAtOrAfter(start);
+    endMember = index.getMemberAtOrAfter(start + fileSplit.getLength());
+    skipFirstLine = firstMember > 0;
+    done = firstMember == endMember;
+    if (done) {
+      return;
+    }
+    fileLength = fs.getFileStatus(path).getLen();
+    fileIn = fs.open(path);
+    compressed = new byte[64 * 1024];
+    data = new byte[64 * 1024];
+    loadMember(firstMember);
+  }
+
+  @Override
+  public boolean nextKeyValue() throws IOException, InterruptedException {
+    if (delegate != null) {
+      return delegate.nextKeyValue();
+    }
+    if (done) {
+      return false;
+    }
+    if (skipFirstLine) {
+      skipFirstLine = false;
+      readLine(null);
+    }
+    // the line belongs to this split if it starts in one of its members, or at the start of the next member
+    if (!hasData() || member > endMember || (member == endMember && pos > 0)) {
+      done = true;
+      return false;
+    }
+    key.set(index.getUncompressedOffset(member) + pos);
+    value.clear();
+    readLine(value);
+    return true;
+  }
+
+  @Override
+  public LongWritable getCurrentKey() throws IOException, InterruptedException {
+    return delegate == null ? key : delegate.getCurrentKey();
+  }
+
+  @Override
+  public Text getCurrentValue() throws IOException, InterruptedException {
+    return delegate == null ? value : delegate.getCurrentValue();
+  }
+
+  @Override
+  public float getProgress() throws IOException, InterruptedException {
+    if (delegate != null) {
+      return delegate.getProgress();
+    }
+    if (done) {
+      return 1.0f;
+    }
+    return Math.min(1.0f, (member - firstMember) / (float) (endMember - firstMember));
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (delegate != null) {
+      delegate.close();
+    }
+    if (fileIn != null) {
+      fileIn.close();
+    }
+  }
+
+  /**
+   * Reads the rest of the current line, up to and including the line terminator, which is '\n', '\r' or "\r\n".
+   *
+   * @param line the text to append the line to, or null to skip the line
+   */
+  private void readLine(@Nullable Text line) throws IOException {
+    while (hasData()) {
+      int lineStart = pos;
+      while (pos < dataLength && data[pos] != '\n' && data[pos] != '\r') {
+        pos++;
+      }
+      if (line != null) {
+        line.append(data, lineStart, pos - lineStart);
+      }
+      if (pos < dataLength) {
+        byte terminator = data[pos++];
+        if (terminator == '\r' && hasData() && data[pos] == '\n') {
+          pos++;
+        }
+        return;
+      }
+    }
+  }
+
+  /**
+   * Loads the next members until there is data left to read.
+   *
+   * @return false if the end of the file was reached
+   */
+  private boolean hasData() throws IOException {
+    while (pos == dataLength) {
+      if (member + 1 >= index.size()) {
+        return false;
+      }
+      loadMember(member + 1);
+    }
+    return true;
+  }
+
+  private void loadMember(int memberIndex) throws IOException {
+    long memberStart = index.getCompressedOffset(memberIndex);
+    long memberEnd = memberIndex + 1 < index.size() ? index.getCompressedOffset(memberIndex + 1) : fileLength;
+    int compressedLength = (int) (memberEnd - memberStart);
+    if (compressed.length < compressedLength) {
+      compressed = new byte[compressedLength];
+    }
+    fileIn.readFully(memberStart, compressed, 0, compressedLength);
+
+    dataLength = 0;
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed, 0, compressedLength))) {
+      int read;
+      do {
+        if (dataLength == data.length) {
+          data = Arrays.copyOf(data, data.length * 2);
+        }
+        read = in.read(data, dataLength, data.length - dataLength);
+        dataLength += Math.max(read, 0);
+      } while (read >= 0);
+    }
+    member = memberIndex;
+    pos = 0;
+  }
+}
@@ -0,0 +1,366 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.hydrator.format.input;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * A batch of records with the same schema, stored by column. Each top level field of the schema is a column.
+ * Boolean, int, long, float and double fields, including logical types that are stored as one of these types,
+ * are stored in arrays of the primitive type, so that they can be read and written without creating an object for
+ * every value. Values of any other type are stored in an object array, the same way as in a StructuredRecord.
+ *
+ * Each column has a null bitmap, where the bit of a row is set if the value is null. The value in the array of a
+ * null row is undefined. When the batch is reset, every value of every row is null, and setting a value clears the
+ * null bit of its row. Resetting also clears the object arrays, so that a reused batch does not keep the values of
+ * earlier rows from being garbage collected.
+ */
+public final class StructuredRecordBatch {
+  /**
+   * The default number of rows in a batch.
+   */
+  public static final int DEFAULT_CAPACITY = 1024;
+  private final Schema schema;
+  private final List<Schema.Field> fields;
+  private final Map<String, Integer> fieldIndexes;
+  private final Schema.Type[] columnTypes;
+  private final Object[] columns;
+  private final long[][] nulls;
+  private final int capacity;
+  private int size;
+
+  public StructuredRecordBatch(Schema schema) {
+    this(schema, DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param schema the schema of the records, which must be a record schema
+   * @param capacity the maximum number of rows in the batch
+   */
+  public StructuredRecordBatch(Schema schema, int capacity) {
+    if (schema.getType() != Schema.Type.RECORD) {
+      throw new IllegalArgumentException(
+        String.format("The schema of a record batch must be a record, but found '%s'.", schema.getType()));
+    }
+    if (capacity <= 0) {
+      throw new IllegalArgumentException(
+        String.format("The capacity of a record batch must be positive, but found %d.", capacity));
+    }
+    this.schema = schema;
+    this.fields = schema.getFields();
+    this.capacity = capacity;
+    this.fieldIndexes = new HashMap<>();
+    this.columnTypes = new Schema.Type[fields.size()];
+    this.columns = new Object[fields.size()];
+    this.nulls = new long[fields.size()][(capacity + 63) >>> 6];
+    for (int i = 0; i < fields.size(); i++) {
+      Schema.Field field = fields.get(i);
+      fieldIndexes.put(field.getName(), i);
+      Schema fieldSchema = field.getSchema().isNullable() ? field.getSchema().getNonNullable() : field.getSchema();
+      switch (fieldSchema.getType()) {
+        case BOOLEAN:
+          columns[i] = new boolean[capacity];
+          columnTypes[i] = Schema.Type.BOOLEAN;
+          break;
+        case INT:
+          columns[i] = new int[capacity];
+          columnTypes[i] = Schema.Type.INT;
+          break;
+        case LONG:
+          columns[i] = new long[capacity];
+          columnTypes[i] = Schema.Type.LONG;
+          break;
+        case FLOAT:
+          columns[i] = new float[capacity];
+          columnTypes[i] = Schema.Type.FLOAT;
+          break;
+        case DOUBLE:
+          columns[i] = new double[capacity];
+          columnTypes[i] = Schema.Type.DOUBLE;
+          break;
+        default:
+          columns[i] = new Object[capacity];
+      }
+    }
+    reset();
+  }
+
+  public Schema getSchema() {
+    return schema;
+  }
+
+  /**
+   * @return the maximum number of rows in the batch
+   */
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * @return the number of rows in the batch
+   */
+  public int size() {
+    return size;
+  }
+
+  public boolean isFull() {
+    return size == capacity;
+  }
+
+  /**
+   * Removes all rows from the batch, and sets every value to null.
+   */
+  public void reset() {
+    size = 0;
+    for (int i = 0; i < columns.length; i++) {
+      Arrays.fill(nulls[i], -1L);
+      if (columnTypes[i] == null) {
+        Arrays.fill((Object[]) columns[i], null);
+      }
+    }
+  }
+
+  /**
+   * Adds a row to the batch. All values of the new row are null, unless they were set before the row was added.
+   *
+   * @return the index of the new row
+   * @throws IllegalStateException if the batch is full
+   */
+  public int addRow() {
+    if (size == capacity) {
+      throw new IllegalStateException(String.format("The record batch is full with %d rows.", capacity));
+    }
+    return size++;
+  }
+
+  /**
+   * Sets the number of rows in the batch, for writers that fill the columns before they know how many rows they
+   * have written.
+   */
+  public void setSize(int size) {
+    if (size < 0 || size > capacity) {
+      throw new IllegalArgumentException(
+        String.format("The size of the record batch must be between 0 and %d, but found %d.", capacity, size));
+    }
+    this.size = size;
+  }
+
+  /**
+   * @return the index of the column of a field, or -1 if the schema does not have the field
+   */
+  public int getFieldIndex(String name) {
+    Integer index = fieldIndexes.get(name);
+    return index == null ? -1 : index;
+  }
+
+  /**
+   * Returns the type of the primitive array that stores a column.
+   *
+   * @return {@link Schema.Type#BOOLEAN}, {@link Schema.Type#INT}, {@link Schema.Type#LONG},
+   *   {@link Schema.Type#FLOAT} or {@link Schema.Type#DOUBLE}, or null if the values are stored in an object array
+   */
+  @Nullable
+  public Schema.Type getColumnType(int field) {
+    return columnTypes[field];
+  }
+
+  public boolean[] getBooleans(int field) {
+    return (boolean[]) getColumn(field, Schema.Type.BOOLEAN);
+  }
+
+  public int[] getInts(int field) {
+    return (int[]) getColumn(field, Schema.Type.INT);
+  }
+
+  public long[] getLongs(int field) {
+    return (long[]) getColumn(field, Schema.Type.LONG);
+  }
+
+  public float[] getFloats(int field) {
+    return (float[]) getColumn(field, Schema.Type.FLOAT);
+  }
+
+  public double[] getDoubles(int field) {
+    return (double[]) getColumn(field, Schema.Type.DOUBLE);
+  }
+
+  public Object[] getObjects(int field) {
+    return (Object[]) getColumn(field, null);
+  }
+
+  /**
+   * Returns the null bitmap of a column. The bit of a row is bit {@code row % 64} of the long at {@code row / 64}.
+   */
+  public long[] getNulls(int field) {
+    return nulls[field];
+  }
+
+  public boolean isNull(int field, int row) {
+    return (nulls[field][row >>> 6] & (1L << row)) != 0;
+  }
+
+  public void setNull(int field, int row) {
+    nulls[field][row >>> 6] |= 1L << row;
+  }
+
+  /**
+   * Clears the null bit of a row, for writers that set the values in the column arrays directly.
+   */
+  public void setNotNull(int field, int row) {
+    nulls[field][row >>> 6] &= ~(1L << row);
+  }
+
+  public void setBoolean(int field, int row, boolean value) {
+    getBooleans(field)[row] = value;
+    setNotNull(field, row);
+  }
+
+  public void setInt(int field, int row, int value) {
+    getInts(field)[row] = value;
+    setNotNull(field, row);
+  }
+
+  public void setLong(int field, int row, long value) {
+    getLongs(field)[row] = value;
+    setNotNull(field, row);
+  }
+
+  public void setFloat(int field, int row, float value) {
+    getFloats(field)[row] = value;
+    setNotNull(field, row);
+  }
+
+  public void setDouble(int field, int row, double value) {
+    getDoubles(field)[row] = value;
+    setNotNull(field, row);
+  }
+
+  /**
+   * Sets a value of any type. Values of primitive columns are unboxed.
+   */
+  public void set(int field, int row, @Nullable Object value) {
+    if (value == null) {
+      setNull(field, row);
+      return;
+    }
+    Schema.Type columnType = columnTypes[field];
+    if (columnType == null) {
+      ((Object[]) columns[field])[row] = value;
+    } else {
+      switch (columnType) {
+        case BOOLEAN:
+          ((boolean[]) columns[field])[row] = (Boolean) value;
+          break;
+        case INT:
+          ((int[]) columns[field])[row] = ((Number) value).intValue();
+          break;
+        case LONG:
+          ((long[]) columns[field])[row] = ((Number) value).longValue();
+          break;
+        case FLOAT:
+          ((float[]) columns[field])[row] = ((Number) value).floatValue();
+          break;
+        case DOUBLE:
+          ((double[]) columns[field])[row] = ((Number) value).doubleValue();
+          break;
+        default:
+          // cannot happen, only the types above are stored in primitive arrays
+          throw new IllegalStateException("Unexpected column type " + columnType);
+      }
+    }
+    setNotNull(field, row);
+  }
+
+  /**
+   * Returns a value of any type. Values of primitive columns are boxed.
+   */
+  @Nullable
+  public Object get(int field, int row) {
+    if (isNull(field, row)) {
+      return null;
+    }
+    Schema.Type columnType = columnTypes[field];
+    if (columnType == null) {
+      return ((Object[]) columns[field])[row];
+    }
+    switch (columnType) {
+      case BOOLEAN:
+        return ((boolean[]) columns[field])[row];
+      case INT:
+        return ((int[]) columns[field])[row];
+      case LONG:
+        return ((long[]) columns[field])[row];
+      case FLOAT:
+        return ((float[]) columns[field])[row];
+      case DOUBLE:
+        return ((double[]) columns[field])[row];
+      default:
+        // cannot happen, only the types above are stored in primitive arrays
+        throw new IllegalStateException("Unexpected column type " + columnType);
+    }
+  }
+
+  /**
+   * Adds a record to the batch. Fields of the record that are not in the schema of the batch are ignored.
+   *
+   * @throws IllegalStateException if the batch is full
+   */
+  public void add(StructuredRecord record) {
+    int row = addRow();
+    for (int i = 0; i < fields.size(); i++) {
+      set(i, row, record.get(fields.get(i).getName()));
+    }
+  }
+
+  /**
+   * Returns a builder for a row of the batch, with every value that is not null set.
+   */
+  public StructuredRecord.Builder toBuilder(int row) {
+    StructuredRecord.Builder builder = StructuredRecord.builder(schema);
+    for (int i = 0; i < fields.size(); i++) {
+      Object value = get(i, row);
+      if (value != null) {
+        builder.set(fields.get(i).getName(), value);
+      }
+    }
+    return builder;
+  }
+
+  /**
+   * Returns a row of the batch as a record.
+   */
+  public StructuredRecord getRecord(int row) {
+    return toBuilder(row).build();
+  }
+
+  private Object getColumn(int field, @Nullable Schema.Type type) {
+    if (columnTypes[field] != type) {
+      throw new IllegalArgumentException(
+        String.format("Field '%s' is stored as %s values, not %s values.", fields.get(field).getName(),
+                      columnTypes[field] == null ? "object" : columnTypes[field].name().toLowerCase(),
+                      type == null ? "object" : type.name().toLowerCase()));
+    }
+    return columns[field];
+  }
+}
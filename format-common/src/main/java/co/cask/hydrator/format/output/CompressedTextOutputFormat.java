@@ -0,0 +1,130 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.hydrator.format.output;
+
+import co.cask.hydrator.format.GzipMemberIndex;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.BZip2Codec;
+import org.apache.hadoop.io.compress.DefaultCodec;
+import org.apache.hadoop.io.compress.GzipCodec;
+import org.apache.hadoop.io.compress.Lz4Codec;
+import org.apache.hadoop.io.compress.SnappyCodec;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link TextOutputFormat} that can compress gzip output on several threads. The codec is set with the standard
+ * Hadoop output compression properties, so that files compressed with a single thread are written by the
+ * TextOutputFormat itself. When the codec is gzip and more than one compression thread is configured, the file
+ * is written through a {@link ParallelGzipOutputStream} instead, along with a {@link GzipMemberIndex} of its members
+ * so that the file can be split when it is read.
+ *
+ * @param <K> type of key
+ * @param <V> type of value
+ */
+public class CompressedTextOutputFormat<K, V> extends TextOutputFormat<K, V> {
+  public static final String COMPRESSION_THREADS = "text.output.compression.threads";
+  public static final String COMPRESSION_BLOCK_SIZE = "text.output.compression.block.size";
+  private static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+  private static final Map<String, String> CODECS = getCodecs();
+
+  /**
+   * Returns the configuration that compresses the output with the given codec.
+   *
+   * @param codec the name of the codec, or null or 'none' to not compress the output
+   * @param threads the number of threads to compress with, or null to compress in the writing thread
+   * @throws IllegalArgumentException if the codec is unknown, or if more than one thread is given for a codec
+   *                                  other than gzip
+   */
+  public static Map<String, String> getCompressionConfiguration(@Nullable String codec, @Nullable Integer threads) {
+    Map<String, String> configuration = new HashMap<>();
+    if (threads != null && threads < 1) {
+      throw new IllegalArgumentException(
+        String.format("The number of compression threads must be positive, but found %d.", threads));
+    }
+    if (codec == null || "none".equalsIgnoreCase(codec)) {
+      return configuration;
+    }
+    String codecClass = CODECS.get(codec.toLowerCase());
+    if (codecClass == null) {
+      // Hadoop 2.3 has no zstd codec, so a job configured with it would only fail when the first file is written
+      if ("zstd".equalsIgnoreCase(codec)) {
+        throw new IllegalArgumentException(
+          "The 'zstd' compression codec is not supported, since it is not available in this version of Hadoop.");
+      }
+      throw new IllegalArgumentException(
+        String.format("Unsupported compression codec '%s'. The codec must be one of %s, or 'none'.",
+                      codec, String.join(", ", CODECS.keySet())));
+    }
+    if (threads != null && threads > 1 && !GzipCodec.class.getName().equals(codecClass)) {
+      throw new IllegalArgumentException(
+        String.format("Compressing with more than one thread is only supported for the 'gzip' codec, not '%s'.",
+                      codec));
+    }
+    configuration.put(FileOutputFormat.COMPRESS, "true");
+    configuration.put(FileOutputFormat.COMPRESS_CODEC, codecClass);
+    if (threads != null) {
+      configuration.put(COMPRESSION_THREADS, String.valueOf(threads));
+    }
+    return configuration;
+  }
+
+  @Override
+  public RecordWriter<K, V> getRecordWriter(TaskAttemptContext job) throws IOException, InterruptedException {
+    Configuration conf = job.getConfiguration();
+    int threads = conf.getInt(COMPRESSION_THREADS, 1);
+    if (threads <= 1 || !getCompressOutput(job)
+      || !GzipCodec.class.getName().equals(conf.get(FileOutputFormat.COMPRESS_CODEC))) {
+      return super.getRecordWriter(job);
+    }
+
+    String separator = conf.get(SEPERATOR, "\t");
+    int blockSize = conf.getInt(COMPRESSION_BLOCK_SIZE, DEFAULT_BLOCK_SIZE);
+    Path file = getDefaultWorkFile(job, new GzipCodec().getDefaultExtension());
+    FileSystem fs = file.getFileSystem(conf);
+    GzipMemberIndex index = new GzipMemberIndex();
+    ParallelGzipOutputStream out = new ParallelGzipOutputStream(fs.create(file, false), threads, blockSize, index);
+    return new LineRecordWriter<K, V>(new DataOutputStream(out), separator) {
+      @Override
+      public synchronized void close(TaskAttemptContext context) throws IOException {
+        super.close(context);
+        index.write(fs, file);
+      }
+    };
+  }
+
+  private static Map<String, String> getCodecs() {
+    Map<String, String> codecs = new LinkedHashMap<>();
+    codecs.put("gzip", GzipCodec.class.getName());
+    codecs.put("bzip2", BZip2Codec.class.getName());
+    codecs.put("snappy", SnappyCodec.class.getName());
+    codecs.put("lz4", Lz4Codec.class.getName());
+    codecs.put("deflate", DefaultCodec.class.getName());
+    return codecs;
+  }
+}
@@ -18,6 +18,7 @@ package co.cask.hydrator.format.output;
 
 import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.dataset.lib.KeyValue;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.OutputCommitter;
@@ -26,23 +27,62 @@ import org.apache.hadoop.mapreduce.RecordWriter;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.function.Function;
 
 /**
  * A output format that transforms a StructuredRecord into some other object, then delegates writing to another
- * output format.
+ * output format. If partition fields, a maximum number of records per file or a target file size are configured,
+ * records are written with a {@link PartitionedRecordWriter}. If statistics are enabled, the
+ * {@link co.cask.hydrator.format.FileStatistics} of each file are written next to it.
  *
  * @param <K> output key type of the delegate
  * @param <V> output value type of the delegate
  */
 public abstract class DelegatingOutputFormat<K, V> extends OutputFormat<NullWritable, StructuredRecord> {
+  /**
+   * Comma separated fields to partition the output by.
+   */
+  public static final String PARTITION_BY = "delegating.output.partition.by";
+  /**
+   * Maximum number of partition writers that a task keeps open at once.
+   */
+  public static final String MAX_OPEN_WRITERS = "delegating.output.max.open.writers";
+  /**
+   * Maximum number of records in each file.
+   */
+  public static final String MAX_RECORDS_PER_FILE = "delegating.output.max.records.per.file";
+  /**
+   * Size in bytes after which each file is closed and a new one is started.
+   */
+  public static final String TARGET_FILE_SIZE = "delegating.output.target.file.size";
+  /**
+   * Whether to write the statistics of each file next to it.
+   */
+  public static final String WRITE_STATISTICS = "delegating.output.write.statistics";
+  private static final int DEFAULT_MAX_OPEN_WRITERS = 100;
   private OutputFormat<K, V> delegate;
 
   @Override
   public RecordWriter<NullWritable, StructuredRecord> getRecordWriter(TaskAttemptContext context)
     throws IOException, InterruptedException {
+    Configuration conf = context.getConfiguration();
+    String partitionBy = conf.get(PARTITION_BY);
+    long maxRecordsPerFile = conf.getLong(MAX_RECORDS_PER_FILE, 0L);
+    long targetFileSize = conf.getLong(TARGET_FILE_SIZE, 0L);
+    boolean writeStatistics = conf.getBoolean(WRITE_STATISTICS, false);
+    if ((partitionBy != null && !partitionBy.isEmpty()) || maxRecordsPerFile > 0 || targetFileSize > 0) {
+      List<String> partitionFields = partitionBy == null || partitionBy.isEmpty() ?
+        Collections.emptyList() : Arrays.asList(partitionBy.split(","));
+      return new PartitionedRecordWriter<>(getDelegate(), getConversion(context), context, partitionFields,
+                                           conf.getInt(MAX_OPEN_WRITERS, DEFAULT_MAX_OPEN_WRITERS),
+                                           maxRecordsPerFile, targetFileSize, writeStatistics);
+    }
     RecordWriter<K, V> delegateWriter = getDelegate().getRecordWriter(context);
-    return new DelegatingRecordWriter<>(delegateWriter, getConversion(context));
+    return new DelegatingRecordWriter<>(delegateWriter, getConversion(context),
+                                        writeStatistics ? new FileStatisticsCollector(getDelegate(), context) : null);
   }
 
   @Override
@@ -24,9 +24,12 @@ import org.apache.hadoop.mapreduce.TaskAttemptContext;
 
 import java.io.IOException;
 import java.util.function.Function;
+import javax.annotation.Nullable;
 
 /**
  * A record writer that transforms a StructuredRecord into some other object and delegates the actual write.
+ * If a {@link FileStatisticsCollector} is given, the statistics of the records are written next to the file when the
+ * writer is closed.
  *
  * @param <K> output key type of the delegate
  * @param <V> output value type of the delegate
@@ -34,20 +37,33 @@ import java.util.function.Function;
 public class DelegatingRecordWriter<K, V> extends RecordWriter<NullWritable, StructuredRecord> {
   private final RecordWriter<K, V> delegate;
   private final Function<StructuredRecord, KeyValue<K, V>> conversion;
+  private final FileStatisticsCollector statistics;
 
   public DelegatingRecordWriter(RecordWriter<K, V> delegate, Function<StructuredRecord, KeyValue<K, V>> conversion) {
+    this(delegate, conversion, null);
+  }
+
+  DelegatingRecordWriter(RecordWriter<K, V> delegate, Function<StructuredRecord, KeyValue<K, V>> conversion,
+                         @Nullable FileStatisticsCollector statistics) {
     this.delegate = delegate;
     this.conversion = conversion;
+    this.statistics = statistics;
   }
 
   @Override
   public void write(NullWritable key, StructuredRecord value) throws IOException, InterruptedException {
     KeyValue<K, V> converted = conversion.apply(value);
     delegate.write(converted.getKey(), converted.getValue());
+    if (statistics != null) {
+      statistics.add(value);
+    }
   }
 
   @Override
   public void close(TaskAttemptContext context) throws IOException, InterruptedException {
     delegate.close(context);
+    if (statistics != null) {
+      statistics.write();
+    }
   }
 }
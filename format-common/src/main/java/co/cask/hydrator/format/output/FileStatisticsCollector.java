@@ -0,0 +1,84 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.hydrator.format.output;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.hydrator.format.FileStatistics;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.OutputCommitter;
+import org.apache.hadoop.mapreduce.OutputFormat;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputCommitter;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+
+import java.io.IOException;
+
+/**
+ * Collects the {@link FileStatistics} of the records written by a record writer, and writes them next to the file
+ * of the writer once it is closed. The statistics are written to the work directory of the task, so they are
+ * committed together with the file.
+ */
+final class FileStatisticsCollector {
+  private final OutputFormat<?, ?> format;
+  private final TaskAttemptContext context;
+  private FileStatistics statistics;
+
+  /**
+   * @param format the output format that created the record writer
+   * @param context the context the record writer was created with
+   */
+  FileStatisticsCollector(OutputFormat<?, ?> format, TaskAttemptContext context) {
+    this.format = format;
+    this.context = context;
+  }
+
+  void add(StructuredRecord record) {
+    if (statistics == null) {
+      statistics = new FileStatistics(record.getSchema());
+    }
+    statistics.add(record);
+  }
+
+  /**
+   * Writes the statistics next to the file of the record writer, which must be closed. The file is found by its name,
+   * which is the unique name that FileOutputFormat gives to the base output name of the writer, followed by the
+   * extension of the format. Nothing is written if no record was written, or if the format does not write files in
+   * the work directory of a FileOutputCommitter.
+   */
+  void write() throws IOException, InterruptedException {
+    if (statistics == null) {
+      return;
+    }
+    OutputCommitter committer = format.getOutputCommitter(context);
+    if (!(committer instanceof FileOutputCommitter)) {
+      return;
+    }
+    String baseName = context.getConfiguration().get(PartitionedRecordWriter.BASE_OUTPUT_NAME, "part");
+    Path prefix = new Path(((FileOutputCommitter) committer).getWorkPath(),
+                           FileOutputFormat.getUniqueFile(context, baseName, ""));
+    FileSystem fs = prefix.getFileSystem(context.getConfiguration());
+    String name = prefix.getName();
+    for (FileStatus status : fs.listStatus(prefix.getParent())) {
+      String fileName = status.getPath().getName();
+      if (status.isFile() && (fileName.equals(name) || fileName.startsWith(name + "."))) {
+        statistics.write(fs, status.getPath());
+      }
+    }
+  }
+}
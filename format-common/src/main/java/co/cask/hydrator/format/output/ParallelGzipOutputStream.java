@@ -0,0 +1,230 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.hydrator.format.output;
+
+import co.cask.hydrator.format.GzipMemberIndex;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+import javax.annotation.Nullable;
+
+/**
+ * An output stream that gzip compresses blocks of data on several threads. Each block is compressed into a
+ * separate gzip member, and the members are written to the underlying stream in order. A series of gzip members
+ * is a valid gzip file, which can be read by gunzip, Hadoop's GzipCodec and java's GZIPInputStream like any other
+ * gzip file, but is slightly larger than if it was compressed as a single member.
+ *
+ * The number of blocks that are compressed or waiting to be written is limited to twice the number of threads,
+ * so writes block when the threads cannot keep up.
+ *
+ * If an index is given, the offset of each member is added to it, so that the file can be split at the members
+ * when it is read.
+ *
+ * If a block cannot be compressed or written, the threads are stopped right away, since the caller may not close
+ * the stream after a failed write, and every later write fails.
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+  private static final AtomicInteger STREAM_ID = new AtomicInteger();
+  private final OutputStream out;
+  private final GzipMemberIndex index;
+  private final ExecutorService executor;
+  private final Deque<Future<Member>> pending;
+  private final Queue<byte[]> freeBlocks;
+  private final int maxPending;
+  private final int blockSize;
+  private byte[] block;
+  private int count;
+  private long compressedOffset;
+  private long uncompressedOffset;
+  private boolean submitted;
+  private boolean closed;
+  private IOException failure;
+
+  /**
+   * @param out the stream to write the gzip members to, which must be at the start of the file if an index is given
+   * @param threads the number of threads to compress with
+   * @param blockSize the number of uncompressed bytes in each member
+   * @param index the index to add the offset of each member to, or null to not index the members
+   */
+  public ParallelGzipOutputStream(OutputStream out, int threads, int blockSize, @Nullable GzipMemberIndex index) {
+    this.out = out;
+    this.index = index;
+    String threadPrefix = "parallel-gzip-" + STREAM_ID.incrementAndGet() + "-";
+    AtomicInteger threadId = new AtomicInteger();
+    this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+      Thread thread = new Thread(runnable, threadPrefix + threadId.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.pending = new ArrayDeque<>();
+    this.freeBlocks = new ConcurrentLinkedQueue<>();
+    this.maxPending = 2 * threads;
+    this.blockSize = blockSize;
+    this.block = new byte[blockSize];
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    if (count == blockSize) {
+      submitBlock();
+    }
+    block[count++] = (byte) b;
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    while (len > 0) {
+      if (count == blockSize) {
+        submitBlock();
+      }
+      int length = Math.min(len, blockSize - count);
+      System.arraycopy(b, off, block, count, length);
+      count += length;
+      off += length;
+      len -= length;
+    }
+  }
+
+  /**
+   * Writes the blocks that were submitted so far and flushes the underlying stream. The data of the current block
+   * is not flushed, since that would end the block early.
+   */
+  @Override
+  public void flush() throws IOException {
+    checkNotFailed();
+    while (!pending.isEmpty()) {
+      writeMember(pending.poll());
+    }
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      // after a failure the file is incomplete anyway, so only the underlying stream is closed
+      if (failure == null) {
+        // an empty stream is written as a single empty member, so that it is still a valid gzip file
+        if (count > 0 || !submitted) {
+          submitBlock();
+        }
+        while (!pending.isEmpty()) {
+          writeMember(pending.poll());
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+      out.close();
+    }
+  }
+
+  private void checkNotFailed() throws IOException {
+    if (failure != null) {
+      throw new IOException("Unable to write, since an earlier block could not be compressed or written.", failure);
+    }
+  }
+
+  private void submitBlock() throws IOException {
+    checkNotFailed();
+    byte[] data = block;
+    int length = count;
+    pending.add(executor.submit(() -> compress(data, length)));
+    submitted = true;
+    byte[] free = freeBlocks.poll();
+    block = free == null ? new byte[blockSize] : free;
+    count = 0;
+    while (pending.size() >= maxPending) {
+      writeMember(pending.poll());
+    }
+  }
+
+  private Member compress(byte[] data, int length) throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 2 + 64);
+    try (GZIPOutputStream gzip = new GZIPOutputStream(compressed, 64 * 1024)) {
+      gzip.write(data, 0, length);
+    }
+    freeBlocks.add(data);
+    return new Member(compressed.toByteArray(), length);
+  }
+
+  private void writeMember(Future<Member> future) throws IOException {
+    Member member;
+    try {
+      member = future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw fail(new InterruptedIOException("Interrupted while waiting for a block to be compressed."));
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw fail((IOException) cause);
+      }
+      throw fail(new IOException("Unable to compress a block.", cause));
+    }
+    try {
+      if (index != null) {
+        index.add(compressedOffset, uncompressedOffset);
+      }
+      out.write(member.compressed);
+    } catch (IOException e) {
+      throw fail(e);
+    }
+    compressedOffset += member.compressed.length;
+    uncompressedOffset += member.length;
+  }
+
+  /**
+   * Stops the compression threads and drops the blocks that were not written yet.
+   */
+  private IOException fail(IOException e) {
+    failure = e;
+    for (Future<Member> future : pending) {
+      future.cancel(true);
+    }
+    pending.clear();
+    executor.shutdownNow();
+    return e;
+  }
+
+  /**
+   * A compressed block and the number of bytes it contains before compression.
+   */
+  private static final class Member {
+    private final byte[] compressed;
+    private final int length;
+
+    private Member(byte[] compressed, int length) {
+      this.compressed = compressed;
+      this.length = length;
+    }
+  }
+}
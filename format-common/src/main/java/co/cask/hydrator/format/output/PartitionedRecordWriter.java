@@ -0,0 +1,261 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.hydrator.format.output;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.dataset.lib.KeyValue;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.OutputFormat;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+
+/**
+ * A record writer that writes each record to the partition directory given by the values of the partition fields,
+ * such as 'country=us/year=2018/', under the output directory. Each partition is written by its own delegate writer.
+ * The files of a partition are named by setting the base output name of the delegate to the partition directory,
+ * which works for any delegate that names its files with {@code FileOutputFormat.getDefaultWorkFile()}.
+ *
+ * At most a fixed number of writers are open at once. When another one is needed, the least recently used writer is
+ * closed, and the next record for its partition starts a new file. If a maximum number of records per file or a
+ * target file size is given, a new file is started for a partition once its current file has that many records or
+ * bytes. The bytes of a file are the bytes written to the output file system while its writer is writing a record,
+ * so formats that buffer data, like parquet, roll files at the granularity of their buffers. The file system
+ * statistics are shared by the whole process, so the bytes that other tasks write at the same time, such as in a
+ * Spark executor, are counted too, and files are rolled early.
+ *
+ * If statistics are enabled, the {@link co.cask.hydrator.format.FileStatistics} of each file are written next to it
+ * when it is closed.
+ *
+ * @param <K> output key type of the delegate
+ * @param <V> output value type of the delegate
+ */
+public class PartitionedRecordWriter<K, V> extends RecordWriter<NullWritable, StructuredRecord> {
+  static final String COUNTER_GROUP = "partitioned.output";
+  static final String WRITERS_OPENED_COUNTER = "writers.opened";
+  static final String WRITERS_EVICTED_COUNTER = "writers.evicted";
+  static final String FILES_ROLLED_COUNTER = "files.rolled";
+  static final String MAX_OPEN_WRITERS_COUNTER = "writers.open.max";
+  // the same as FileOutputFormat.BASE_OUTPUT_NAME, which is not public
+  static final String BASE_OUTPUT_NAME = "mapreduce.output.basename";
+  private static final String NULL_PARTITION = "__DEFAULT_PARTITION__";
+  private static final String ESCAPED_CHARS = "\"#%'*/:=?\\{[]^";
+  private final OutputFormat<K, V> delegateFormat;
+  private final Function<StructuredRecord, KeyValue<K, V>> conversion;
+  private final TaskAttemptContext context;
+  private final List<String> partitionFields;
+  private final int maxOpenWriters;
+  private final long maxRecordsPerFile;
+  private final long targetFileSize;
+  private final boolean writeStatistics;
+  // bytes written to the output file system by all threads of the process
+  @Nullable
+  private final FileSystem.Statistics statistics;
+  private final String baseName;
+  // in least recently used order
+  private final LinkedHashMap<String, PartitionWriter> writers;
+  private final Map<String, Integer> nextFileIndex;
+  private final StringBuilder partitionBuilder;
+  private int maxOpened;
+
+  /**
+   * @param delegateFormat the output format to create the writers of the partitions with
+   * @param conversion the conversion of records to the key and value of the delegate
+   * @param context the context of the task
+   * @param partitionFields the fields to partition by, which can be empty to only roll files
+   * @param maxOpenWriters the maximum number of writers that are open at once
+   * @param maxRecordsPerFile the maximum number of records in a file, or 0 for no maximum
+   * @param targetFileSize the size in bytes after which a new file is started, or 0 for no maximum
+   * @param writeStatistics whether to write the statistics of each file next to it
+   * @throws IOException if the file system of the output could not be determined
+   */
+  public PartitionedRecordWriter(OutputFormat<K, V> delegateFormat,
+                                 Function<StructuredRecord, KeyValue<K, V>> conversion,
+                                 TaskAttemptContext context, List<String> partitionFields,
+                                 int maxOpenWriters, long maxRecordsPerFile, long targetFileSize,
+                                 boolean writeStatistics) throws IOException {
+    this.delegateFormat = delegateFormat;
+    this.conversion = conversion;
+    this.context = context;
+    this.partitionFields = partitionFields;
+    this.maxOpenWriters = maxOpenWriters;
+    this.maxRecordsPerFile = maxRecordsPerFile;
+    this.targetFileSize = targetFileSize;
+    this.writeStatistics = writeStatistics;
+    this.statistics = targetFileSize > 0 ? getStatistics(context) : null;
+    this.baseName = context.getConfiguration().get(BASE_OUTPUT_NAME, "part");
+    this.writers = new LinkedHashMap<>(16, 0.75f, true);
+    this.nextFileIndex = new HashMap<>();
+    this.partitionBuilder = new StringBuilder();
+  }
+
+  @Override
+  public void write(NullWritable key, StructuredRecord value) throws IOException, InterruptedException {
+    String partition = getPartition(value);
+    PartitionWriter writer = writers.get(partition);
+    if (writer != null && ((maxRecordsPerFile > 0 && writer.records >= maxRecordsPerFile)
+      || (targetFileSize > 0 && writer.bytes >= targetFileSize))) {
+      writers.remove(partition);
+      writer.close();
+      context.getCounter(COUNTER_GROUP, FILES_ROLLED_COUNTER).increment(1L);
+      writer = null;
+    }
+    if (writer == null) {
+      writer = open(partition);
+    }
+    KeyValue<K, V> converted = conversion.apply(value);
+    if (statistics == null) {
+      writer.delegate.write(converted.getKey(), converted.getValue());
+    } else {
+      long bytesWritten = statistics.getBytesWritten();
+      writer.delegate.write(converted.getKey(), converted.getValue());
+      writer.bytes += statistics.getBytesWritten() - bytesWritten;
+    }
+    if (writer.statistics != null) {
+      writer.statistics.add(value);
+    }
+    writer.records++;
+  }
+
+  @Override
+  public void close(TaskAttemptContext context) throws IOException, InterruptedException {
+    IOException failure = null;
+    for (PartitionWriter writer : writers.values()) {
+      try {
+        writer.close();
+      } catch (IOException e) {
+        if (failure == null) {
+          failure = e;
+        } else {
+          failure.addSuppressed(e);
+        }
+      }
+    }
+    writers.clear();
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  private PartitionWriter open(String partition) throws IOException, InterruptedException {
+    if (writers.size() >= maxOpenWriters) {
+      Iterator<PartitionWriter> leastRecentlyUsed = writers.values().iterator();
+      PartitionWriter evicted = leastRecentlyUsed.next();
+      leastRecentlyUsed.remove();
+      evicted.close();
+      context.getCounter(COUNTER_GROUP, WRITERS_EVICTED_COUNTER).increment(1L);
+    }
+
+    // every file of a partition written by this task needs a different name
+    int fileIndex = nextFileIndex.getOrDefault(partition, 0);
+    nextFileIndex.put(partition, fileIndex + 1);
+    String name = fileIndex == 0 ? baseName : baseName + "-" + fileIndex;
+    Configuration conf = new Configuration(context.getConfiguration());
+    conf.set(BASE_OUTPUT_NAME, partition + name);
+    TaskAttemptContext partitionContext = new TaskAttemptContextImpl(conf, context.getTaskAttemptID());
+
+    PartitionWriter writer = new PartitionWriter(
+      delegateFormat.getRecordWriter(partitionContext),
+      writeStatistics ? new FileStatisticsCollector(delegateFormat, partitionContext) : null);
+    writers.put(partition, writer);
+    context.getCounter(COUNTER_GROUP, WRITERS_OPENED_COUNTER).increment(1L);
+    if (writers.size() > maxOpened) {
+      context.getCounter(COUNTER_GROUP, MAX_OPEN_WRITERS_COUNTER).increment(writers.size() - maxOpened);
+      maxOpened = writers.size();
+    }
+    return writer;
+  }
+
+  @Nullable
+  private static FileSystem.Statistics getStatistics(TaskAttemptContext context) throws IOException {
+    Path outputPath = FileOutputFormat.getOutputPath(context);
+    if (outputPath == null) {
+      return null;
+    }
+    FileSystem fs = outputPath.getFileSystem(context.getConfiguration());
+    return FileSystem.getStatistics(fs.getUri().getScheme(), fs.getClass());
+  }
+
+  /**
+   * Returns the directory of the partition of the record, relative to the output directory, which is empty or ends
+   * with a '/'. Values are escaped the same way Hive escapes them.
+   */
+  private String getPartition(StructuredRecord record) {
+    if (partitionFields.isEmpty()) {
+      return "";
+    }
+    partitionBuilder.setLength(0);
+    for (String field : partitionFields) {
+      partitionBuilder.append(field).append('=');
+      Object value = record.get(field);
+      if (value == null) {
+        partitionBuilder.append(NULL_PARTITION);
+      } else {
+        String str = value.toString();
+        if (str.isEmpty()) {
+          partitionBuilder.append(NULL_PARTITION);
+        }
+        for (int i = 0; i < str.length(); i++) {
+          char c = str.charAt(i);
+          if (c < 0x20 || c == 0x7f || ESCAPED_CHARS.indexOf(c) >= 0) {
+            partitionBuilder.append('%').append(Character.toUpperCase(Character.forDigit(c >> 4, 16)))
+              .append(Character.toUpperCase(Character.forDigit(c & 0xf, 16)));
+          } else {
+            partitionBuilder.append(c);
+          }
+        }
+      }
+      partitionBuilder.append('/');
+    }
+    return partitionBuilder.toString();
+  }
+
+  /**
+   * The writer of a partition, along with the number of records and bytes written to its current file.
+   */
+  private final class PartitionWriter {
+    private final RecordWriter<K, V> delegate;
+    private final FileStatisticsCollector statistics;
+    private long records;
+    private long bytes;
+
+    private PartitionWriter(RecordWriter<K, V> delegate, @Nullable FileStatisticsCollector statistics) {
+      this.delegate = delegate;
+      this.statistics = statistics;
+    }
+
+    private void close() throws IOException, InterruptedException {
+      delegate.close(context);
+      if (statistics != null) {
+        statistics.write();
+      }
+    }
+  }
+}
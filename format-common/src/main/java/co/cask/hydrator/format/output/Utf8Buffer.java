@@ -0,0 +1,170 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.hydrator.format.output;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A growable buffer of UTF-8 encoded text, which is cleared and reused to encode one record after another without
+ * creating a String for each record. Characters are encoded the same way as {@link String#getBytes} encodes them
+ * with UTF-8, so unpaired surrogates are encoded as '?'.
+ */
+public final class Utf8Buffer {
+  private static final byte[] TRUE = { 't', 'r', 'u', 'e' };
+  private static final byte[] FALSE = { 'f', 'a', 'l', 's', 'e' };
+  private static final byte[] MIN_LONG = String.valueOf(Long.MIN_VALUE).getBytes(StandardCharsets.US_ASCII);
+  private byte[] bytes;
+  private int length;
+
+  public Utf8Buffer(int capacity) {
+    this.bytes = new byte[capacity];
+  }
+
+  /**
+   * Returns the array that backs the buffer. The array is replaced when the buffer grows.
+   */
+  public byte[] getBytes() {
+    return bytes;
+  }
+
+  /**
+   * Returns the number of bytes in the buffer.
+   */
+  public int getLength() {
+    return length;
+  }
+
+  /**
+   * Sets the number of bytes in the buffer. The buffer must have at least the given capacity.
+   */
+  public void setLength(int length) {
+    if (length < 0 || length > bytes.length) {
+      throw new IndexOutOfBoundsException(
+        String.format("Length %d is outside of the capacity %d of the buffer.", length, bytes.length));
+    }
+    this.length = length;
+  }
+
+  /**
+   * Removes all bytes from the buffer, keeping its capacity.
+   */
+  public void clear() {
+    length = 0;
+  }
+
+  /**
+   * Makes sure the buffer can hold the given number of bytes without growing.
+   */
+  public void ensureCapacity(int capacity) {
+    if (capacity > bytes.length) {
+      byte[] newBytes = new byte[Math.max(capacity, bytes.length * 2)];
+      System.arraycopy(bytes, 0, newBytes, 0, length);
+      bytes = newBytes;
+    }
+  }
+
+  public void append(byte b) {
+    ensureCapacity(length + 1);
+    bytes[length++] = b;
+  }
+
+  public void append(byte[] b, int off, int len) {
+    ensureCapacity(length + len);
+    System.arraycopy(b, off, bytes, length, len);
+    length += len;
+  }
+
+  public void append(byte[] b) {
+    append(b, 0, b.length);
+  }
+
+  public void append(boolean value) {
+    append(value ? TRUE : FALSE);
+  }
+
+  /**
+   * Appends the decimal representation of a long, the same as {@link Long#toString(long)}.
+   */
+  public void append(long value) {
+    if (value == Long.MIN_VALUE) {
+      append(MIN_LONG);
+      return;
+    }
+    if (value < 0) {
+      append((byte) '-');
+      value = -value;
+    }
+    int digits = 1;
+    for (long power = 10; digits < 19 && value >= power; power *= 10) {
+      digits++;
+    }
+    ensureCapacity(length + digits);
+    for (int i = length + digits - 1; i >= length; i--) {
+      bytes[i] = (byte) ('0' + value % 10);
+      value /= 10;
+    }
+    length += digits;
+  }
+
+  /**
+   * Appends the UTF-8 encoding of the characters.
+   */
+  public void append(CharSequence chars) {
+    int size = chars.length();
+    ensureCapacity(length + size);
+    for (int i = 0; i < size; i++) {
+      char c = chars.charAt(i);
+      if (c < 0x80) {
+        if (length == bytes.length) {
+          ensureCapacity(length + size - i);
+        }
+        bytes[length++] = (byte) c;
+      } else {
+        i = appendNonAscii(chars, i);
+      }
+    }
+  }
+
+  /**
+   * Appends the UTF-8 encoding of the character at the given index, which is not an ASCII character.
+   *
+   * @return the index of the last character that was encoded, which is the next index for a surrogate pair
+   */
+  public int appendNonAscii(CharSequence chars, int index) {
+    char c = chars.charAt(index);
+    ensureCapacity(length + 4);
+    if (c < 0x800) {
+      bytes[length++] = (byte) (0xc0 | (c >> 6));
+      bytes[length++] = (byte) (0x80 | (c & 0x3f));
+    } else if (!Character.isSurrogate(c)) {
+      bytes[length++] = (byte) (0xe0 | (c >> 12));
+      bytes[length++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+      bytes[length++] = (byte) (0x80 | (c & 0x3f));
+    } else if (Character.isHighSurrogate(c) && index + 1 < chars.length()
+      && Character.isLowSurrogate(chars.charAt(index + 1))) {
+      int codePoint = Character.toCodePoint(c, chars.charAt(index + 1));
+      bytes[length++] = (byte) (0xf0 | (codePoint >> 18));
+      bytes[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+      bytes[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+      bytes[length++] = (byte) (0x80 | (codePoint & 0x3f));
+      return index + 1;
+    } else {
+      bytes[length++] = '?';
+    }
+    return index;
+  }
+}
@@ -29,6 +29,7 @@ import co.cask.cdap.etl.api.batch.BatchSinkContext;
 import co.cask.hydrator.common.LineageRecorder;
 import co.cask.hydrator.common.batch.sink.SinkOutputFormatProvider;
 import co.cask.hydrator.format.FileFormat;
+import co.cask.hydrator.format.output.DelegatingOutputFormat;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 
@@ -38,6 +39,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 
 /**
  * Writes data to files on Google Cloud Storage.
@@ -64,6 +66,8 @@ public abstract class AbstractFileSink<T extends PluginConfig & FileSinkProperti
       throw new IllegalArgumentException(String.format("Could not find the '%s' output format plugin.",
                                                        format.name().toLowerCase()));
     }
+    Schema schema = config.getSchema();
+    validatePartitionFields(schema == null ? pipelineConfigurer.getStageConfigurer().getInputSchema() : schema);
   }
 
   @Override
@@ -86,9 +90,28 @@ public abstract class AbstractFileSink<T extends PluginConfig & FileSinkProperti
                     schema.getFields().stream().map(Schema.Field::getName).collect(Collectors.toList()));
     }
 
+    validatePartitionFields(schema);
+
     Map<String, String> outputProperties = new HashMap<>(outputFormatProvider.getOutputFormatConfiguration());
     outputProperties.putAll(getFileSystemProperties(context));
     outputProperties.put(FileOutputFormat.OUTDIR, getOutputDir(context.getLogicalStartTime()));
+    List<String> partitionFields = config.getPartitionFields();
+    if (!partitionFields.isEmpty()) {
+      outputProperties.put(DelegatingOutputFormat.PARTITION_BY, String.join(",", partitionFields));
+    }
+    if (config.getMaxOpenWriters() != null) {
+      outputProperties.put(DelegatingOutputFormat.MAX_OPEN_WRITERS, String.valueOf(config.getMaxOpenWriters()));
+    }
+    if (config.getMaxRecordsPerFile() != null) {
+      outputProperties.put(DelegatingOutputFormat.MAX_RECORDS_PER_FILE,
+                           String.valueOf(config.getMaxRecordsPerFile()));
+    }
+    if (config.getTargetFileSize() != null) {
+      outputProperties.put(DelegatingOutputFormat.TARGET_FILE_SIZE, String.valueOf(config.getTargetFileSize()));
+    }
+    if (config.shouldWriteStatistics()) {
+      outputProperties.put(DelegatingOutputFormat.WRITE_STATISTICS, Boolean.TRUE.toString());
+    }
 
     context.addOutput(Output.of(config.getReferenceName(),
                                 new SinkOutputFormatProvider(outputFormatProvider.getOutputFormatClassName(),
@@ -117,6 +140,28 @@ public abstract class AbstractFileSink<T extends PluginConfig & FileSinkProperti
                                 outputFields);
   }
 
+  /**
+   * Checks that the partition fields are in the schema and have a simple type, if the schema is known.
+   */
+  private void validatePartitionFields(@Nullable Schema schema) {
+    if (schema == null || schema.getFields() == null) {
+      return;
+    }
+    for (String fieldName : config.getPartitionFields()) {
+      Schema.Field field = schema.getField(fieldName);
+      if (field == null) {
+        throw new IllegalArgumentException(
+          String.format("Partition field '%s' is not present in the schema.", fieldName));
+      }
+      Schema fieldSchema = field.getSchema().isNullable() ? field.getSchema().getNonNullable() : field.getSchema();
+      if (!fieldSchema.getType().isSimpleType() || fieldSchema.getType() == Schema.Type.BYTES) {
+        throw new IllegalArgumentException(
+          String.format("Partition field '%s' must be of a simple type other than bytes, but found '%s'.",
+                        fieldName, fieldSchema.getType().name().toLowerCase()));
+      }
+    }
+  }
+
   private String getOutputDir(long logicalStartTime) {
     String suffix = config.getSuffix();
     String timeSuffix = suffix == null || suffix.isEmpty() ? "" : new SimpleDateFormat(suffix).format(logicalStartTime);
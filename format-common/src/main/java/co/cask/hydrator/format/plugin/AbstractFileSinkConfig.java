@@ -22,9 +22,16 @@ import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.api.plugin.PluginConfig;
 import co.cask.hydrator.common.IdUtils;
 import co.cask.hydrator.format.FileFormat;
+import co.cask.hydrator.format.output.CompressedTextOutputFormat;
 
 import java.io.IOException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import javax.annotation.Nullable;
 
 /**
@@ -32,6 +39,10 @@ import javax.annotation.Nullable;
  */
 @SuppressWarnings("unused")
 public abstract class AbstractFileSinkConfig extends PluginConfig implements FileSinkProperties {
+  // formats that are written with a CompressedTextOutputFormat
+  private static final Set<FileFormat> TEXT_FORMATS =
+    EnumSet.of(FileFormat.CSV, FileFormat.DELIMITED, FileFormat.JSON, FileFormat.TSV);
+
   @Description("Name be used to uniquely identify this sink for lineage, annotating metadata, etc.")
   private String referenceName;
 
@@ -57,6 +68,55 @@ public abstract class AbstractFileSinkConfig extends PluginConfig implements Fil
   @Description("The schema of the data to write.")
   private String schema;
 
+  @Macro
+  @Nullable
+  @Description("Comma separated list of fields to partition the output by. Each record is written to a directory "
+    + "such as 'field1=value1/field2=value2/' under the output directory, based on its values for the fields. "
+    + "The fields must be of a simple type. If not specified, the output is not partitioned.")
+  private String partitionBy;
+
+  @Macro
+  @Nullable
+  @Description("Maximum number of files that each task writes to at once when the output is partitioned. "
+    + "When more are needed, the least recently written file is closed, and a new file is started the next time "
+    + "its partition is written to. The default is 100.")
+  private Integer maxOpenWriters;
+
+  @Macro
+  @Nullable
+  @Description("Maximum number of records to write to each file. When a file reaches the maximum, a new file is "
+    + "started. If not specified, there is no maximum.")
+  private Long maxRecordsPerFile;
+
+  @Macro
+  @Nullable
+  @Description("Size in bytes after which a file is closed and a new file is started. Use this to avoid writing "
+    + "many small files. The size is measured as the bytes written to the file system by the whole process, so when "
+    + "several tasks write at once in the same process, as in Spark executors, files are rolled early and can be "
+    + "much smaller than the target. If not specified, each task writes a single file for each partition.")
+  private Long targetFileSize;
+
+  @Macro
+  @Nullable
+  @Description("Compression codec to use when writing data. The codecs that can be used depend on the format: "
+    + "'snappy', 'deflate', 'bzip2', or 'xz' for avro, 'snappy' or 'gzip' for parquet, 'snappy' or 'zlib' for orc, "
+    + "and 'gzip', 'bzip2', 'snappy', 'lz4', or 'deflate' for json, csv, tsv, and delimited. "
+    + "If not specified, the data is not compressed.")
+  private String compressionCodec;
+
+  @Macro
+  @Nullable
+  @Description("Number of threads to compress each file with when the format is json, csv, tsv, or delimited. "
+    + "More than one thread can only be used with the 'gzip' codec. The default is 1.")
+  private Integer compressionThreads;
+
+  @Macro
+  @Nullable
+  @Description("Whether to write the number of records, and the number of nulls and the minimum and maximum value of "
+    + "each field, of every file to a hidden file next to it. The File source uses them to skip the files that "
+    + "cannot contain rows matching its pushdown filter, for any format. The default is false.")
+  private Boolean writeStatistics;
+
   public void validate() {
     IdUtils.validateId(referenceName);
     if (suffix != null && !containsMacro("suffix")) {
@@ -65,6 +125,25 @@ public abstract class AbstractFileSinkConfig extends PluginConfig implements Fil
     if (!containsMacro("format")) {
       getFormat();
     }
+    if (!containsMacro("partitionBy")) {
+      getPartitionFields();
+    }
+    if (!containsMacro("maxOpenWriters") && maxOpenWriters != null && maxOpenWriters <= 0) {
+      throw new IllegalArgumentException(
+        String.format("The maximum number of open writers must be positive, but found %d.", maxOpenWriters));
+    }
+    if (!containsMacro("maxRecordsPerFile") && maxRecordsPerFile != null && maxRecordsPerFile <= 0) {
+      throw new IllegalArgumentException(
+        String.format("The maximum number of records per file must be positive, but found %d.", maxRecordsPerFile));
+    }
+    if (!containsMacro("targetFileSize") && targetFileSize != null && targetFileSize <= 0) {
+      throw new IllegalArgumentException(
+        String.format("The target file size must be positive, but found %d.", targetFileSize));
+    }
+    if (!containsMacro("format") && !containsMacro("compressionCodec") && !containsMacro("compressionThreads")
+      && TEXT_FORMATS.contains(getFormat())) {
+      CompressedTextOutputFormat.getCompressionConfiguration(compressionCodec, compressionThreads);
+    }
     getSchema();
   }
 
@@ -99,4 +178,47 @@ public abstract class AbstractFileSinkConfig extends PluginConfig implements Fil
   public FileFormat getFormat() {
     return FileFormat.from(format, FileFormat::canWrite);
   }
+
+  @Override
+  public List<String> getPartitionFields() {
+    if (containsMacro("partitionBy") || partitionBy == null || partitionBy.trim().isEmpty()) {
+      return Collections.emptyList();
+    }
+    List<String> fields = new ArrayList<>();
+    Set<String> seen = new HashSet<>();
+    for (String field : partitionBy.split(",")) {
+      field = field.trim();
+      if (field.isEmpty()) {
+        throw new IllegalArgumentException(String.format("Invalid partition fields '%s'.", partitionBy));
+      }
+      if (!seen.add(field)) {
+        throw new IllegalArgumentException(String.format("Partition field '%s' is given more than once.", field));
+      }
+      fields.add(field);
+    }
+    return fields;
+  }
+
+  @Override
+  @Nullable
+  public Integer getMaxOpenWriters() {
+    return maxOpenWriters;
+  }
+
+  @Override
+  @Nullable
+  public Long getMaxRecordsPerFile() {
+    return maxRecordsPerFile;
+  }
+
+  @Override
+  @Nullable
+  public Long getTargetFileSize() {
+    return targetFileSize;
+  }
+
+  @Override
+  public boolean shouldWriteStatistics() {
+    return writeStatistics != null && writeStatistics;
+  }
 }
@@ -16,11 +16,14 @@
 
 package co.cask.hydrator.format.plugin;
 
+import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.data.batch.Input;
 import co.cask.cdap.api.data.batch.InputFormatProvider;
 import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.dataset.DatasetProperties;
 import co.cask.cdap.api.dataset.lib.KeyValue;
+import co.cask.cdap.api.dataset.lib.KeyValueTable;
 import co.cask.cdap.api.plugin.PluginConfig;
 import co.cask.cdap.etl.api.Emitter;
 import co.cask.cdap.etl.api.PipelineConfigurer;
@@ -32,6 +35,7 @@ import co.cask.hydrator.common.batch.JobUtils;
 import co.cask.hydrator.format.FileFormat;
 import co.cask.hydrator.format.RegexPathFilter;
 import co.cask.hydrator.format.input.EmptyInputFormat;
+import co.cask.hydrator.format.input.ParallelFileLister;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
@@ -57,6 +61,13 @@ import java.util.stream.Collectors;
  * by their specific FileSystem, such as credential information.
  * Their PluginConfig should implement FileSourceProperties and be passed into the constructor of this class.
  *
+ * If a tracking table is given, the source reads files incrementally. The table stores, for each path, the logical
+ * start time of the last successful run. A run only reads the files that were modified after that time and at or
+ * before its own logical start time, and the table is only updated when the run succeeds.
+ *
+ * If a pushdown filter is given, files that were written with statistics by an {@link AbstractFileSink} are skipped
+ * when the splits are planned if their statistics show that none of their records can match the filter.
+ *
  * @param <T> type of config
  */
 public abstract class AbstractFileSource<T extends PluginConfig & FileSourceProperties>
@@ -101,6 +112,11 @@ public abstract class AbstractFileSource<T extends PluginConfig & FileSourceProp
       }
     }
 
+    String trackingTable = config.getTrackingTable();
+    if (trackingTable != null) {
+      pipelineConfigurer.createDataset(trackingTable, KeyValueTable.class.getName());
+    }
+
     pipelineConfigurer.getStageConfigurer().setOutputSchema(config.getSchema());
   }
 
@@ -119,6 +135,27 @@ public abstract class AbstractFileSource<T extends PluginConfig & FileSourceProp
       FileInputFormat.setInputPathFilter(job, RegexPathFilter.class);
     }
     FileInputFormat.setInputDirRecursive(job, config.shouldReadRecursively());
+    Integer listingThreads = config.getListingThreads();
+    if (listingThreads != null) {
+      conf.setInt(ParallelFileLister.LISTING_THREADS, listingThreads);
+    }
+    String trackingTable = config.getTrackingTable();
+    if (trackingTable != null) {
+      // create the table if macros were provided at configure time
+      if (!context.datasetExists(trackingTable)) {
+        context.createDataset(trackingTable, KeyValueTable.class.getName(), DatasetProperties.EMPTY);
+      }
+      KeyValueTable table = context.getDataset(trackingTable);
+      byte[] lastRunTime = table.read(config.getPath());
+      if (lastRunTime != null) {
+        conf.setLong(ParallelFileLister.MODIFIED_AFTER, Bytes.toLong(lastRunTime));
+      }
+      conf.setLong(ParallelFileLister.MODIFIED_UNTIL, context.getLogicalStartTime());
+    }
+    String pushdownFilter = config.getPushdownFilter();
+    if (pushdownFilter != null) {
+      conf.set(ParallelFileLister.STATISTICS_FILTER, pushdownFilter);
+    }
 
     Schema schema = config.getSchema();
     LineageRecorder lineageRecorder = new LineageRecorder(context, config.getReferenceName());
@@ -164,6 +201,21 @@ public abstract class AbstractFileSource<T extends PluginConfig & FileSourceProp
     context.setInput(Input.of(config.getReferenceName(), new SourceInputFormatProvider(inputFormatClass, conf)));
   }
 
+  @Override
+  public void onRunFinish(boolean succeeded, BatchSourceContext context) {
+    super.onRunFinish(succeeded, context);
+    String trackingTable = config.getTrackingTable();
+    if (!succeeded || trackingTable == null) {
+      return;
+    }
+    KeyValueTable table = context.getDataset(trackingTable);
+    byte[] lastRunTime = table.read(config.getPath());
+    // never move back, so that running an earlier logical start time again does not read the same files again
+    if (lastRunTime == null || Bytes.toLong(lastRunTime) < context.getLogicalStartTime()) {
+      table.write(config.getPath(), Bytes.toBytes(context.getLogicalStartTime()));
+    }
+  }
+
   @Override
   public void transform(KeyValue<NullWritable, StructuredRecord> input,
                         Emitter<StructuredRecord> emitter) throws Exception {
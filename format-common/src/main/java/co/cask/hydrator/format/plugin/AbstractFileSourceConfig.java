@@ -23,6 +23,7 @@ import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.api.plugin.PluginConfig;
 import co.cask.hydrator.common.IdUtils;
 import co.cask.hydrator.format.FileFormat;
+import co.cask.hydrator.format.input.PushdownFilter;
 
 import java.util.regex.Pattern;
 import javax.annotation.Nullable;
@@ -48,7 +49,7 @@ public abstract class AbstractFileSourceConfig extends PluginConfig implements F
   @Macro
   @Nullable
   @Description("Format of the data to read. Supported formats are 'avro', 'blob', 'csv', 'delimited', 'json', "
-    + "'parquet', 'text', or 'tsv'. ")
+    + "'orc', 'parquet', 'text', or 'tsv'. ")
   private String format;
 
   @Nullable
@@ -67,6 +68,24 @@ public abstract class AbstractFileSourceConfig extends PluginConfig implements F
   @Description("Whether to recursively read directories within the input directory. The default is false.")
   private Boolean recursive;
 
+  @Macro
+  @Nullable
+  @Description("Number of threads to list the input directories with when planning the partitions. "
+    + "More threads make planning faster when there are many directories, especially on object stores "
+    + "like S3 or GCS. The default is 1.")
+  private Integer listingThreads;
+
+  @Macro
+  @Nullable
+  @Description("Name of a table to keep track of the files that were read. When given, each run only reads the files "
+    + "that were modified since the previous successful run, up to the logical start time of the run. "
+    + "The table is only updated when the run succeeds. If no value is given, every run reads all the files. "
+    + "Files are selected only by their modification time, so files that appear in the path with an older "
+    + "modification time, such as files that are renamed into the path or copied with their times preserved, "
+    + "are never read, and files that are still being written when a run starts can be read partially and then "
+    + "read again in full by a later run.")
+  private String trackingTable;
+
   @Name(FileSourceProperties.PATH_FIELD)
   @Nullable
   @Description("Output field to place the path of the file that the record was read from. "
@@ -90,6 +109,37 @@ public abstract class AbstractFileSourceConfig extends PluginConfig implements F
     + "is anything other than 'delimited'.")
   private String delimiter;
 
+  @Macro
+  @Nullable
+  @Description("Conditions used to skip parts of the files that cannot contain matching rows if the format is 'orc' "
+    + "or 'parquet', such as \"id >= 100 AND name = 'abc'\". Conditions on top level columns can be joined with AND, "
+    + "and can use the =, !=, <, <=, >, >=, IS NULL and IS NOT NULL operators. String, date and timestamp literals "
+    + "must be quoted. With 'orc', rows that do not match can still be read, so a separate filter is needed to "
+    + "remove them. With 'parquet', a schema containing the filtered columns is required. "
+    + "With any format, files that were written with statistics are skipped if their statistics show that they "
+    + "cannot contain matching rows.")
+  private String pushdownFilter;
+
+  @Macro
+  @Nullable
+  @Description("Whether records can span multiple lines if the format is 'csv' or 'json'. For 'csv', quoted values "
+    + "can contain line breaks. For 'json', the file can contain a sequence of objects or an array of objects. "
+    + "The default is false.")
+  private Boolean enableMultilineSupport;
+
+  @Macro
+  @Nullable
+  @Description("Size in bytes of the chunks to read files in if the format is 'blob'. When given, each chunk of a file "
+    + "is a separate record, which can contain the 'offset' of the chunk in the file as a long and its 'length' as an "
+    + "int, and large files can be split. When not given, each file is read into a single record.")
+  private Long chunkSize;
+
+  @Macro
+  @Nullable
+  @Description("Whether to memory map files on the local file system instead of copying their bytes if the format is "
+    + "'blob'. The default is false.")
+  private Boolean memoryMapFiles;
+
   // this is a hidden property that only exists for wrangler's parse-as-csv that uses the header as the schema
   // when this is true and the format is text, the header will be the first record returned by every record reader
   @Nullable
@@ -116,6 +166,14 @@ public abstract class AbstractFileSourceConfig extends PluginConfig implements F
     if (!containsMacro("schema")) {
       getSchema();
     }
+
+    if (!containsMacro("listingThreads") && listingThreads != null && listingThreads < 1) {
+      throw new IllegalArgumentException(
+        String.format("The number of listing threads must be positive, but found %d.", listingThreads));
+    }
+    if (!containsMacro("pushdownFilter") && pushdownFilter != null) {
+      PushdownFilter.parse(pushdownFilter);
+    }
   }
 
   @Override
@@ -149,6 +207,24 @@ public abstract class AbstractFileSourceConfig extends PluginConfig implements F
     return recursive;
   }
 
+  @Nullable
+  @Override
+  public Integer getListingThreads() {
+    return listingThreads;
+  }
+
+  @Nullable
+  @Override
+  public String getTrackingTable() {
+    return trackingTable;
+  }
+
+  @Nullable
+  @Override
+  public String getPushdownFilter() {
+    return pushdownFilter;
+  }
+
   @Nullable
   @Override
   public String getPathField() {
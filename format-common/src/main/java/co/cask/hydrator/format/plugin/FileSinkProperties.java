@@ -19,6 +19,8 @@ package co.cask.hydrator.format.plugin;
 import co.cask.cdap.api.data.schema.Schema;
 import co.cask.hydrator.format.FileFormat;
 
+import java.util.Collections;
+import java.util.List;
 import javax.annotation.Nullable;
 
 /**
@@ -65,4 +67,44 @@ public interface FileSinkProperties {
    */
   @Nullable
   String getSuffix();
+
+  /**
+   * Get the fields to partition the output by. Each record is written to a directory such as 'field1=value1/' under
+   * the output directory. If empty, the output is not partitioned.
+   */
+  default List<String> getPartitionFields() {
+    return Collections.emptyList();
+  }
+
+  /**
+   * Get the maximum number of files that each task writes to at once, or null to use the default.
+   */
+  @Nullable
+  default Integer getMaxOpenWriters() {
+    return null;
+  }
+
+  /**
+   * Get the maximum number of records in each file, or null if there is no maximum.
+   */
+  @Nullable
+  default Long getMaxRecordsPerFile() {
+    return null;
+  }
+
+  /**
+   * Get the size in bytes after which each file is closed and a new one is started, or null if there is no target.
+   */
+  @Nullable
+  default Long getTargetFileSize() {
+    return null;
+  }
+
+  /**
+   * Whether to write the statistics of each file next to it, so that sources can skip the files that cannot contain
+   * the records they filter for.
+   */
+  default boolean shouldWriteStatistics() {
+    return false;
+  }
 }
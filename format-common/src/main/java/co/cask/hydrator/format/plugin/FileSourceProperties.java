@@ -74,6 +74,32 @@ public interface FileSourceProperties {
    */
   boolean shouldReadRecursively();
 
+  /**
+   * The number of threads to list the input directories with, or null to list them on a single thread.
+   */
+  @Nullable
+  default Integer getListingThreads() {
+    return null;
+  }
+
+  /**
+   * The name of the table that tracks the files that were already read, if only files that were modified
+   * since the last successful run should be read.
+   */
+  @Nullable
+  default String getTrackingTable() {
+    return null;
+  }
+
+  /**
+   * The filter that files with statistics must be able to match in order to be read, or null to read all files.
+   * The filter is in the syntax of a {@link co.cask.hydrator.format.input.PushdownFilter}.
+   */
+  @Nullable
+  default String getPushdownFilter() {
+    return null;
+  }
+
   /**
    * The output field to place the file path that the record was read from, if path tracking should be done.
    */
@@ -0,0 +1,149 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.format;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.hydrator.format.input.PushdownFilter;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+
+/**
+ * Tests for {@link FileStatistics}.
+ */
+public class FileStatisticsTest {
+  private static final Schema SCHEMA = Schema.recordOf(
+    "record",
+    Schema.Field.of("i", Schema.of(Schema.Type.INT)),
+    Schema.Field.of("d", Schema.nullableOf(Schema.of(Schema.Type.DOUBLE))),
+    Schema.Field.of("s", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("day", Schema.nullableOf(Schema.of(Schema.LogicalType.DATE))),
+    Schema.Field.of("empty", Schema.nullableOf(Schema.of(Schema.Type.LONG))));
+
+  @ClassRule
+  public static final TemporaryFolder TMP_FOLDER = new TemporaryFolder();
+
+  @Test
+  public void testCanMatch() throws IOException {
+    FileStatistics statistics = readBack(createStatistics());
+    Assert.assertEquals(3L, statistics.getRowCount());
+
+    assertCanMatch(statistics, true, "i = 1", "i >= 3", "i <= 0", "i != 1", "d <= -1.5", "d >= 2.25", "s = 'def'",
+                   "s > 'abc'", "s IS NULL", "d IS NOT NULL", "day = '2018-01-01'", "empty IS NULL",
+                   "i = 0 AND s = 'abc' AND d = -1.5");
+    assertCanMatch(statistics, false, "i = 4", "i > 3", "i < 0", "d < -1.5", "d > 2.25", "s < 'abc'", "s > 'def'",
+                   "i IS NULL", "empty IS NOT NULL", "empty = 1", "i = 0 AND s = 'xyz'");
+  }
+
+  @Test
+  public void testLiteralsOfOtherTypes() throws IOException {
+    FileStatistics statistics = readBack(createStatistics());
+    // literals that cannot be compared with the values of the file never rule it out
+    assertCanMatch(statistics, true, "i = 'abc'", "i < 1.5", "d = 'abc'", "s > 5", "s = true");
+    assertCanMatch(statistics, false, "s > 5 AND i > 3", "i = 'abc' AND empty = 1");
+  }
+
+  @Test
+  public void testEmptyFile() throws IOException {
+    FileStatistics statistics = readBack(new FileStatistics(SCHEMA));
+    Assert.assertEquals(0L, statistics.getRowCount());
+    assertCanMatch(statistics, false, "i IS NULL", "i IS NOT NULL", "s = 'abc'");
+  }
+
+  @Test
+  public void testStaleStatistics() throws IOException {
+    File file = new File(TMP_FOLDER.newFolder(), "data.csv");
+    Files.write(file.toPath(), new byte[100]);
+    Path path = new Path(file.toURI());
+    FileSystem fs = path.getFileSystem(new Configuration());
+    Assert.assertNull(FileStatistics.read(fs, path));
+
+    createStatistics().write(fs, path);
+    Assert.assertTrue(new File(file.getParentFile(), ".data.csv.stats").exists());
+    Assert.assertNotNull(FileStatistics.read(fs, path));
+    Assert.assertNotNull(FileStatistics.read(fs, fs.getFileStatus(path)));
+
+    // the statistics are ignored once the file is appended to or replaced with a file of a different length
+    try (FileOutputStream out = new FileOutputStream(file, true)) {
+      out.write(new byte[10]);
+    }
+    Assert.assertNull(FileStatistics.read(fs, path));
+    Files.write(file.toPath(), new byte[50]);
+    Assert.assertNull(FileStatistics.read(fs, fs.getFileStatus(path)));
+
+    createStatistics().write(fs, path);
+    Assert.assertNotNull(FileStatistics.read(fs, path));
+  }
+
+  @Test
+  public void testStatisticsWithoutFileLength() throws IOException {
+    File file = new File(TMP_FOLDER.newFolder(), "data.csv");
+    Files.write(file.toPath(), new byte[100]);
+    Path path = new Path(file.toURI());
+    // statistics of the first version, which did not contain the length of the file, cannot be checked
+    try (DataOutputStream out = new DataOutputStream(
+      new FileOutputStream(new File(FileStatistics.getStatisticsPath(path).toUri())))) {
+      out.writeInt(0x46535453);
+      out.writeInt(1);
+      out.writeLong(0);
+      out.writeInt(0);
+    }
+    Assert.assertNull(FileStatistics.read(path.getFileSystem(new Configuration()), path));
+  }
+
+  private static FileStatistics createStatistics() {
+    FileStatistics statistics = new FileStatistics(SCHEMA);
+    statistics.add(StructuredRecord.builder(SCHEMA).set("i", 0).set("d", -1.5d).set("s", "abc")
+                     .setDate("day", LocalDate.of(2018, 1, 1)).build());
+    statistics.add(StructuredRecord.builder(SCHEMA).set("i", 3).set("d", 2.25d).build());
+    statistics.add(StructuredRecord.builder(SCHEMA).set("i", 1).set("s", "def").build());
+    return statistics;
+  }
+
+  /**
+   * Writes the statistics next to a file and reads them back.
+   */
+  private static FileStatistics readBack(FileStatistics statistics) throws IOException {
+    File file = new File(TMP_FOLDER.newFolder(), "data");
+    Files.write(file.toPath(), new byte[] { 1, 2, 3 });
+    Path path = new Path(file.toURI());
+    FileSystem fs = path.getFileSystem(new Configuration());
+    statistics.write(fs, path);
+    FileStatistics read = FileStatistics.read(fs, path);
+    Assert.assertNotNull(read);
+    return read;
+  }
+
+  private static void assertCanMatch(FileStatistics statistics, boolean expected, String... filters) {
+    for (String filter : filters) {
+      Assert.assertEquals(filter, expected, statistics.canMatch(PushdownFilter.parse(filter)));
+    }
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.format;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Tests for {@link GzipMemberIndex}.
+ */
+public class GzipMemberIndexTest {
+
+  @ClassRule
+  public static final TemporaryFolder TMP_FOLDER = new TemporaryFolder();
+
+  @Test
+  public void testWriteAndRead() throws IOException {
+    File file = new File(TMP_FOLDER.newFolder(), "data.gz");
+    Files.write(file.toPath(), new byte[1000]);
+    Path path = new Path(file.toURI());
+    FileSystem fs = path.getFileSystem(new Configuration());
+    Assert.assertNull(GzipMemberIndex.read(fs, path));
+
+    GzipMemberIndex index = new GzipMemberIndex();
+    // more members than the initial capacity
+    for (int i = 0; i < 40; i++) {
+      index.add(i * 20, i * 100);
+    }
+    index.write(fs, path);
+    Assert.assertTrue(new File(file.getParentFile(), ".data.gz.index").exists());
+
+    GzipMemberIndex read = GzipMemberIndex.read(fs, path);
+    Assert.assertNotNull(read);
+    Assert.assertEquals(40, read.size());
+    for (int i = 0; i < 40; i++) {
+      Assert.assertEquals(i * 20, read.getCompressedOffset(i));
+      Assert.assertEquals(i * 100, read.getUncompressedOffset(i));
+    }
+  }
+
+  @Test
+  public void testStaleIndex() throws IOException {
+    File file = new File(TMP_FOLDER.newFolder(), "data.gz");
+    Files.write(file.toPath(), new byte[1000]);
+    Path path = new Path(file.toURI());
+    FileSystem fs = path.getFileSystem(new Configuration());
+    GzipMemberIndex index = new GzipMemberIndex();
+    index.add(0, 0);
+    index.add(500, 5000);
+    index.write(fs, path);
+    Assert.assertNotNull(GzipMemberIndex.read(fs, path));
+
+    // the index is ignored once the file is appended to or replaced with a file of a different length
+    try (FileOutputStream out = new FileOutputStream(file, true)) {
+      out.write(new byte[10]);
+    }
+    Assert.assertNull(GzipMemberIndex.read(fs, path));
+    Files.write(file.toPath(), new byte[500]);
+    Assert.assertNull(GzipMemberIndex.read(fs, path));
+
+    // it is used again once it is rewritten for the new file
+    index.write(fs, path);
+    Assert.assertNotNull(GzipMemberIndex.read(fs, path));
+  }
+
+  @Test
+  public void testIndexWithoutFileLength() throws IOException {
+    File file = new File(TMP_FOLDER.newFolder(), "data.gz");
+    Files.write(file.toPath(), new byte[1000]);
+    Path path = new Path(file.toURI());
+    // an index of the first version, which did not contain the length of the file, cannot be checked
+    try (DataOutputStream out = new DataOutputStream(
+      new FileOutputStream(new File(GzipMemberIndex.getIndexPath(path).toUri())))) {
+      out.writeInt(0x475a4958);
+      out.writeInt(1);
+      out.writeInt(1);
+      out.writeLong(0);
+      out.writeLong(0);
+    }
+    Assert.assertNull(GzipMemberIndex.read(path.getFileSystem(new Configuration()), path));
+  }
+
+  @Test
+  public void testMemberAtOrAfter() {
+    GzipMemberIndex index = new GzipMemberIndex();
+    index.add(0, 0);
+    index.add(100, 1000);
+    index.add(250, 2000);
+    Assert.assertEquals(0, index.getMemberAtOrAfter(0));
+    Assert.assertEquals(1, index.getMemberAtOrAfter(1));
+    Assert.assertEquals(1, index.getMemberAtOrAfter(100));
+    Assert.assertEquals(2, index.getMemberAtOrAfter(101));
+    Assert.assertEquals(2, index.getMemberAtOrAfter(250));
+    Assert.assertEquals(3, index.getMemberAtOrAfter(251));
+  }
+
+  @Test
+  public void testOffsetsMustIncrease() {
+    GzipMemberIndex index = new GzipMemberIndex();
+    index.add(0, 0);
+    index.add(100, 1000);
+    // an empty member does not move the uncompressed offset
+    index.add(120, 1000);
+    for (long[] offsets : new long[][] { { 120, 2000 }, { 50, 2000 }, { 200, 999 } }) {
+      try {
+        index.add(offsets[0], offsets[1]);
+        Assert.fail(String.format("Expected offsets %d and %d to be rejected.", offsets[0], offsets[1]));
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+    Assert.assertEquals(3, index.size());
+  }
+}
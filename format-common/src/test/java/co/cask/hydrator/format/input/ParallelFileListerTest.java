@@ -0,0 +1,225 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.format.input;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathFilter;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.InvalidInputException;
+import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests for {@link ParallelFileLister}, which compare its listings with the listings of {@link FileInputFormat}.
+ */
+public class ParallelFileListerTest {
+
+  @ClassRule
+  public static final TemporaryFolder TMP_FOLDER = new TemporaryFolder();
+
+  private static File root;
+
+  @BeforeClass
+  public static void setup() throws IOException {
+    root = TMP_FOLDER.newFolder("input");
+    for (String path : Arrays.asList("a.txt", "b.csv", "_SUCCESS", ".hidden", "sub1/c.txt", "sub1/_tmp/d.txt",
+                                     "sub1/.hidden/e.txt", "sub1/nested/f.txt", "sub1/nested/deeper/g.csv",
+                                     "sub2/h.txt", "_logs/i.txt", "empty/")) {
+      File file = new File(root, path);
+      if (path.endsWith("/")) {
+        Assert.assertTrue(file.mkdirs());
+      } else {
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), path.getBytes(StandardCharsets.UTF_8));
+      }
+    }
+  }
+
+  @Test
+  public void testNonRecursive() throws IOException {
+    for (int threads : new int[] { 1, 4 }) {
+      Job job = createJob(threads, false, path(""));
+      List<String> listed = list(job);
+      // like FileInputFormat, the directories of the input directory are part of the result
+      Assert.assertEquals(Arrays.asList("a.txt", "b.csv", "empty", "sub1", "sub2"), listed);
+      Assert.assertEquals(listWithFileInputFormat(job), listed);
+    }
+  }
+
+  @Test
+  public void testRecursive() throws IOException {
+    for (int threads : new int[] { 1, 4 }) {
+      Job job = createJob(threads, true, path(""));
+      List<String> listed = list(job);
+      // hidden files and directories, whose names start with '_' or '.', are skipped at any depth
+      Assert.assertEquals(Arrays.asList("a.txt", "b.csv", "sub1/c.txt", "sub1/nested/deeper/g.csv",
+                                        "sub1/nested/f.txt", "sub2/h.txt"), listed);
+      Assert.assertEquals(listWithFileInputFormat(job), listed);
+    }
+  }
+
+  @Test
+  public void testGlobsAndMultiplePaths() throws IOException {
+    Job job = createJob(2, true, path("sub*"), path("*.txt"));
+    List<String> listed = list(job);
+    Assert.assertEquals(Arrays.asList("a.txt", "sub1/c.txt", "sub1/nested/deeper/g.csv", "sub1/nested/f.txt",
+                                      "sub2/h.txt"), listed);
+    Assert.assertEquals(listWithFileInputFormat(job), listed);
+
+    // a file can be given directly
+    job = createJob(2, false, path("sub1/nested/f.txt"));
+    Assert.assertEquals(Collections.singletonList("sub1/nested/f.txt"), list(job));
+    Assert.assertEquals(listWithFileInputFormat(job), list(job));
+  }
+
+  @Test
+  public void testPathFilter() throws IOException {
+    Job job = createJob(3, true, path(""));
+    FileInputFormat.setInputPathFilter(job, NoCsvFilter.class);
+    List<String> listed = list(job);
+    Assert.assertEquals(Arrays.asList("a.txt", "sub1/c.txt", "sub1/nested/f.txt", "sub2/h.txt"), listed);
+    Assert.assertEquals(listWithFileInputFormat(job), listed);
+  }
+
+  @Test
+  public void testInvalidPaths() throws IOException {
+    // a path that does not exist, a glob that does not match anything, and a hidden file are errors
+    for (Path path : new Path[] { path("missing"), path("*.json"), path(".hidden") }) {
+      for (boolean fileInputFormat : new boolean[] { true, false }) {
+        Job job = createJob(2, true, path(""), path);
+        try {
+          if (fileInputFormat) {
+            listWithFileInputFormat(job);
+          } else {
+            list(job);
+          }
+          Assert.fail("Expected listing to fail for " + path);
+        } catch (InvalidInputException e) {
+          Assert.assertEquals(1, e.getProblems().size());
+        }
+      }
+    }
+
+    try {
+      ParallelFileLister.listStatus(Job.getInstance(new Configuration()));
+      Assert.fail("Expected listing to fail without input paths.");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testModificationTimes() throws IOException {
+    File dir = TMP_FOLDER.newFolder("times");
+    File nested = new File(dir, "nested");
+    Assert.assertTrue(nested.mkdirs());
+    long[] times = { 1000000000000L, 2000000000000L, 3000000000000L };
+    for (int i = 0; i < times.length; i++) {
+      for (File parent : new File[] { dir, nested }) {
+        File file = new File(parent, "file" + i);
+        Files.write(file.toPath(), new byte[] { (byte) i });
+        Assert.assertTrue(file.setLastModified(times[i]));
+      }
+    }
+    // directories are walked whatever their modification time is
+    Assert.assertTrue(nested.setLastModified(0L));
+
+    Job job = createJob(2, true, new Path(dir.toURI()));
+    // files modified after the first time, up to and including the second time
+    job.getConfiguration().setLong(ParallelFileLister.MODIFIED_AFTER, times[0]);
+    job.getConfiguration().setLong(ParallelFileLister.MODIFIED_UNTIL, times[1]);
+    List<String> listed = new ArrayList<>();
+    for (FileStatus status : ParallelFileLister.listStatus(job)) {
+      listed.add(new File(status.getPath().toUri()).getAbsolutePath());
+    }
+    Collections.sort(listed);
+    Assert.assertEquals(Arrays.asList(new File(dir, "file1").getAbsolutePath(),
+                                      new File(nested, "file1").getAbsolutePath()), listed);
+  }
+
+  /**
+   * Accepts every path that does not end with '.csv'.
+   */
+  public static final class NoCsvFilter implements PathFilter {
+    @Override
+    public boolean accept(Path path) {
+      return !path.getName().endsWith(".csv");
+    }
+  }
+
+  private static Path path(String relativePath) {
+    return relativePath.isEmpty() ? new Path(root.toURI()) : new Path(new Path(root.toURI()), relativePath);
+  }
+
+  private static Job createJob(int threads, boolean recursive, Path... paths) throws IOException {
+    Job job = Job.getInstance(new Configuration());
+    FileInputFormat.setInputPaths(job, paths);
+    FileInputFormat.setInputDirRecursive(job, recursive);
+    job.getConfiguration().setInt(ParallelFileLister.LISTING_THREADS, threads);
+    return job;
+  }
+
+  private static List<String> list(JobContext job) throws IOException {
+    return toRelativePaths(ParallelFileLister.listStatus(job));
+  }
+
+  private static List<String> listWithFileInputFormat(JobContext job) throws IOException {
+    return toRelativePaths(new ListingInputFormat().list(job));
+  }
+
+  /**
+   * Returns the paths relative to the input directory, sorted, since the order of a listing is not specified.
+   */
+  private static List<String> toRelativePaths(List<FileStatus> statuses) {
+    String prefix = root.getAbsolutePath() + File.separator;
+    List<String> paths = new ArrayList<>();
+    for (FileStatus status : statuses) {
+      String path = new File(status.getPath().toUri()).getAbsolutePath();
+      Assert.assertTrue(path, path.startsWith(prefix));
+      paths.add(path.substring(prefix.length()).replace(File.separatorChar, '/'));
+    }
+    Collections.sort(paths);
+    return paths;
+  }
+
+  /**
+   * Exposes the listing of FileInputFormat.
+   */
+  private static final class ListingInputFormat extends TextInputFormat {
+    List<FileStatus> list(JobContext job) throws IOException {
+      return listStatus(job);
+    }
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.format.input;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * Tests for {@link PushdownFilter}.
+ */
+public class PushdownFilterTest {
+
+  @Test
+  public void testOperators() {
+    List<PushdownFilter.Condition> conditions = PushdownFilter.parse(
+      "a = 1 AND b != 2 AND c <> 3 AND d < 4 AND e <= 5 AND f > 6 AND g >= 7 AND h IS NULL AND i is not null")
+      .getConditions();
+    Assert.assertEquals(9, conditions.size());
+    assertCondition("a", PushdownFilter.Operator.EQ, "1", conditions.get(0));
+    assertCondition("b", PushdownFilter.Operator.NE, "2", conditions.get(1));
+    assertCondition("c", PushdownFilter.Operator.NE, "3", conditions.get(2));
+    assertCondition("d", PushdownFilter.Operator.LT, "4", conditions.get(3));
+    assertCondition("e", PushdownFilter.Operator.LE, "5", conditions.get(4));
+    assertCondition("f", PushdownFilter.Operator.GT, "6", conditions.get(5));
+    assertCondition("g", PushdownFilter.Operator.GE, "7", conditions.get(6));
+    assertCondition("h", PushdownFilter.Operator.IS_NULL, null, conditions.get(7));
+    assertCondition("i", PushdownFilter.Operator.IS_NOT_NULL, null, conditions.get(8));
+  }
+
+  @Test
+  public void testQuotedLiterals() {
+    List<PushdownFilter.Condition> conditions =
+      PushdownFilter.parse("name = 'a AND b' and other='o''brien' AND ts >= '2018-01-01 00:00:00'").getConditions();
+    Assert.assertEquals(3, conditions.size());
+    assertCondition("name", PushdownFilter.Operator.EQ, "a AND b", conditions.get(0));
+    Assert.assertEquals("a AND b", conditions.get(0).getStringLiteral());
+    assertCondition("other", PushdownFilter.Operator.EQ, "o'brien", conditions.get(1));
+    Assert.assertEquals("other = 'o''brien'", conditions.get(1).toString());
+    Assert.assertEquals("2018-01-01 00:00:00", conditions.get(2).getStringLiteral());
+  }
+
+  @Test
+  public void testTypedLiterals() {
+    List<PushdownFilter.Condition> conditions =
+      PushdownFilter.parse("a = -12 AND b = 1.5e3 AND c = TRUE AND d = '12'").getConditions();
+    Assert.assertEquals(-12L, conditions.get(0).getLongLiteral());
+    Assert.assertEquals(-12d, conditions.get(0).getDoubleLiteral(), 0d);
+    Assert.assertEquals(1500d, conditions.get(1).getDoubleLiteral(), 0d);
+    Assert.assertTrue(conditions.get(2).getBooleanLiteral());
+
+    assertInvalidLiteral(conditions.get(1), "long");
+    assertInvalidLiteral(conditions.get(2), "long");
+    assertInvalidLiteral(conditions.get(0), "boolean");
+    assertInvalidLiteral(conditions.get(0), "string");
+    // quoted literals can only be compared with strings
+    assertInvalidLiteral(conditions.get(3), "long");
+    assertInvalidLiteral(conditions.get(3), "double");
+    assertInvalidLiteral(conditions.get(3), "boolean");
+    Assert.assertEquals("12", conditions.get(3).getStringLiteral());
+  }
+
+  @Test
+  public void testParseErrors() {
+    assertParseError("id");
+    assertParseError("= 5");
+    assertParseError("id = 5 AND");
+    assertParseError("id = 5 OR id = 6");
+    assertParseError("id = abc def");
+    assertParseError("id = o'brien");
+    assertParseError("id LIKE 'a%'");
+    assertParseError("id IS NOT");
+    assertParseError("a.b = 1");
+  }
+
+  private static void assertCondition(String column, PushdownFilter.Operator operator, String literal,
+                                      PushdownFilter.Condition condition) {
+    Assert.assertEquals(column, condition.getColumn());
+    Assert.assertEquals(operator, condition.getOperator());
+    Assert.assertEquals(literal, condition.getLiteral());
+  }
+
+  private static void assertInvalidLiteral(PushdownFilter.Condition condition, String type) {
+    try {
+      switch (type) {
+        case "long":
+          condition.getLongLiteral();
+          break;
+        case "double":
+          condition.getDoubleLiteral();
+          break;
+        case "boolean":
+          condition.getBooleanLiteral();
+          break;
+        default:
+          condition.getStringLiteral();
+          break;
+      }
+      Assert.fail(String.format("Expected '%s' to be an invalid %s literal.", condition, type));
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  private static void assertParseError(String filter) {
+    try {
+      PushdownFilter.parse(filter);
+      Assert.fail(String.format("Expected filter '%s' to be invalid.", filter));
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+}
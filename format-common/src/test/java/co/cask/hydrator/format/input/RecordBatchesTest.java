@@ -0,0 +1,108 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.format.input;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Tests for {@link RecordBatches}.
+ */
+public class RecordBatchesTest {
+  private static final Schema SCHEMA = Schema.recordOf("x", Schema.Field.of("i", Schema.of(Schema.Type.INT)));
+
+  @Test
+  public void testEqualSchemas() throws Exception {
+    // records with equal schemas that are different objects can be read in the same batch
+    Schema copy = Schema.parseJson(SCHEMA.toString());
+    ListReader reader = new ListReader(Arrays.asList(StructuredRecord.builder(SCHEMA).set("i", 0).build(),
+                                                     StructuredRecord.builder(copy).set("i", 1).build()));
+    StructuredRecordBatch batch = RecordBatches.read(reader, null);
+    Assert.assertNotNull(batch);
+    Assert.assertEquals(2, batch.size());
+    Assert.assertArrayEquals(new int[] { 0, 1 }, Arrays.copyOf(batch.getInts(0), 2));
+    Assert.assertNull(RecordBatches.read(reader, batch));
+  }
+
+  @Test
+  public void testDifferentSchemas() throws Exception {
+    Schema other = Schema.recordOf("x", Schema.Field.of("l", Schema.of(Schema.Type.LONG)));
+    ListReader reader = new ListReader(Arrays.asList(StructuredRecord.builder(SCHEMA).set("i", 0).build(),
+                                                     StructuredRecord.builder(other).set("l", 1L).build()));
+    try {
+      RecordBatches.read(reader, null);
+      Assert.fail("A record with a different schema should not be added to the batch.");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  /**
+   * Reads the records of a list.
+   */
+  private static final class ListReader extends RecordReader<NullWritable, StructuredRecord> {
+    private final Iterator<StructuredRecord> records;
+    private StructuredRecord current;
+
+    private ListReader(List<StructuredRecord> records) {
+      this.records = records.iterator();
+    }
+
+    @Override
+    public void initialize(InputSplit split, TaskAttemptContext context) {
+      // nothing to initialize
+    }
+
+    @Override
+    public boolean nextKeyValue() {
+      current = records.hasNext() ? records.next() : null;
+      return current != null;
+    }
+
+    @Override
+    public NullWritable getCurrentKey() {
+      return NullWritable.get();
+    }
+
+    @Override
+    public StructuredRecord getCurrentValue() {
+      return current;
+    }
+
+    @Override
+    public float getProgress() {
+      return 0;
+    }
+
+    @Override
+    public void close() {
+      // nothing to close
+    }
+  }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.format.input;
+
+import co.cask.hydrator.format.GzipMemberIndex;
+import co.cask.hydrator.format.output.ParallelGzipOutputStream;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for {@link SplittableLineRecordReader} with indexed gzip files.
+ */
+public class SplittableLineRecordReaderTest {
+
+  @ClassRule
+  public static final TemporaryFolder TMP_FOLDER = new TemporaryFolder();
+
+  // small enough that lines span members, and that most splits contain several members
+  private static final int BLOCK_SIZE = 64;
+
+  @Test
+  public void testSplits() throws Exception {
+    List<String> lines = createLines(200);
+    Path path = writeIndexedGzip(lines, "lines.gz", BLOCK_SIZE);
+    Configuration conf = new Configuration();
+    Assert.assertTrue(SplittableLineRecordReader.isIndexedGzip(conf, path));
+    GzipMemberIndex index = GzipMemberIndex.read(path.getFileSystem(conf), path);
+    Assert.assertTrue(index.size() > 20);
+
+    long fileLength = new File(path.toUri()).length();
+    // splits that start and end inside a member, that contain a single member or none, and that contain many members
+    for (long splitSize : new long[] { 3, 7, index.getCompressedOffset(1), 100, 1000, fileLength / 2 + 1,
+                                       fileLength }) {
+      List<Long> keys = new ArrayList<>();
+      List<String> values = new ArrayList<>();
+      for (long start = 0; start < fileLength; start += splitSize) {
+        read(conf, new FileSplit(path, start, Math.min(splitSize, fileLength - start), new String[0]), keys, values);
+      }
+      // every line is read once, with its offset in the uncompressed data as the key
+      Assert.assertEquals("Split size " + splitSize, lines, values);
+      Assert.assertEquals("Split size " + splitSize, getOffsets(lines), keys);
+    }
+  }
+
+  @Test
+  public void testSplitAtMembers() throws Exception {
+    List<String> lines = createLines(50);
+    Path path = writeIndexedGzip(lines, "members.gz", BLOCK_SIZE);
+    Configuration conf = new Configuration();
+    GzipMemberIndex index = GzipMemberIndex.read(path.getFileSystem(conf), path);
+    long fileLength = new File(path.toUri()).length();
+
+    // one split for each member, that ends exactly at the start of the next member
+    List<Long> keys = new ArrayList<>();
+    List<String> values = new ArrayList<>();
+    for (int member = 0; member < index.size(); member++) {
+      long start = index.getCompressedOffset(member);
+      long end = member + 1 < index.size() ? index.getCompressedOffset(member + 1) : fileLength;
+      read(conf, new FileSplit(path, start, end - start, new String[0]), keys, values);
+    }
+    Assert.assertEquals(lines, values);
+    Assert.assertEquals(getOffsets(lines), keys);
+  }
+
+  @Test
+  public void testStaleIndex() throws Exception {
+    List<String> lines = createLines(100);
+    Path path = writeIndexedGzip(lines, "stale.gz", BLOCK_SIZE);
+    Configuration conf = new Configuration();
+    Assert.assertTrue(SplittableLineRecordReader.isIndexedGzip(conf, path));
+
+    // replace the file with a file of a different length, without replacing its index
+    List<String> newLines = createLines(120);
+    try (OutputStream out = new ParallelGzipOutputStream(new FileOutputStream(new File(path.toUri())), 2,
+                                                         BLOCK_SIZE * 2, null)) {
+      for (String line : newLines) {
+        out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+      }
+    }
+    Assert.assertFalse(SplittableLineRecordReader.isIndexedGzip(conf, path));
+
+    // the whole file is still read, without the index
+    long fileLength = new File(path.toUri()).length();
+    List<Long> keys = new ArrayList<>();
+    List<String> values = new ArrayList<>();
+    read(conf, new FileSplit(path, 0, fileLength, new String[0]), keys, values);
+    Assert.assertEquals(newLines, values);
+
+    // a part of the file cannot be read
+    try {
+      read(conf, new FileSplit(path, 0, fileLength / 2, new String[0]), keys, values);
+      Assert.fail("Expected reading a split of a gzip file with a stale index to fail.");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testCustomDelimiter() throws Exception {
+    Path path = writeIndexedGzip(createLines(10), "delimiter.gz", BLOCK_SIZE);
+    Configuration conf = new Configuration();
+    conf.set("textinputformat.record.delimiter", "|");
+    Assert.assertFalse(SplittableLineRecordReader.isIndexedGzip(conf, path));
+  }
+
+  private static List<String> createLines(int count) {
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      StringBuilder line = new StringBuilder("line ").append(i);
+      // lines of different lengths, some longer than a member, and some empty
+      for (int j = 0; j < (i * 7) % 23; j++) {
+        line.append(" word").append(j);
+      }
+      lines.add(i % 17 == 5 ? "" : line.toString());
+    }
+    return lines;
+  }
+
+  private static List<Long> getOffsets(List<String> lines) {
+    List<Long> offsets = new ArrayList<>();
+    long offset = 0;
+    for (String line : lines) {
+      offsets.add(offset);
+      offset += line.getBytes(StandardCharsets.UTF_8).length + 1;
+    }
+    return offsets;
+  }
+
+  private static Path writeIndexedGzip(List<String> lines, String name, int blockSize) throws IOException {
+    File file = new File(TMP_FOLDER.newFolder(), name);
+    GzipMemberIndex index = new GzipMemberIndex();
+    try (OutputStream out = new ParallelGzipOutputStream(new FileOutputStream(file), 3, blockSize, index)) {
+      for (String line : lines) {
+        out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+      }
+    }
+    Path path = new Path(file.toURI());
+    FileSystem fs = path.getFileSystem(new Configuration());
+    index.write(fs, path);
+    return path;
+  }
+
+  private static void read(Configuration conf, FileSplit split, List<Long> keys,
+                           List<String> values) throws Exception {
+    TaskAttemptContext context = new TaskAttemptContextImpl(conf, new TaskAttemptID());
+    try (SplittableLineRecordReader reader = new SplittableLineRecordReader()) {
+      reader.initialize(split, context);
+      while (reader.nextKeyValue()) {
+        keys.add(reader.getCurrentKey().get());
+        values.add(reader.getCurrentValue().toString());
+      }
+    }
+  }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.format.input;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for {@link StructuredRecordBatch}.
+ */
+public class StructuredRecordBatchTest {
+  private static final Schema SCHEMA = Schema.recordOf(
+    "record",
+    Schema.Field.of("b", Schema.of(Schema.Type.BOOLEAN)),
+    Schema.Field.of("i", Schema.nullableOf(Schema.of(Schema.Type.INT))),
+    Schema.Field.of("l", Schema.of(Schema.Type.LONG)),
+    Schema.Field.of("f", Schema.of(Schema.Type.FLOAT)),
+    Schema.Field.of("d", Schema.nullableOf(Schema.of(Schema.Type.DOUBLE))),
+    Schema.Field.of("s", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("date", Schema.nullableOf(Schema.of(Schema.LogicalType.DATE))),
+    Schema.Field.of("a", Schema.nullableOf(Schema.arrayOf(Schema.of(Schema.Type.STRING)))));
+
+  @Test
+  public void testColumns() {
+    StructuredRecordBatch batch = new StructuredRecordBatch(SCHEMA, 10);
+    Assert.assertEquals(Schema.Type.BOOLEAN, batch.getColumnType(0));
+    Assert.assertEquals(Schema.Type.INT, batch.getColumnType(1));
+    Assert.assertEquals(Schema.Type.LONG, batch.getColumnType(2));
+    Assert.assertEquals(Schema.Type.FLOAT, batch.getColumnType(3));
+    Assert.assertEquals(Schema.Type.DOUBLE, batch.getColumnType(4));
+    Assert.assertNull(batch.getColumnType(5));
+    // dates are stored as ints
+    Assert.assertEquals(Schema.Type.INT, batch.getColumnType(6));
+    Assert.assertNull(batch.getColumnType(7));
+    Assert.assertEquals(6, batch.getFieldIndex("date"));
+    Assert.assertEquals(-1, batch.getFieldIndex("missing"));
+
+    try {
+      batch.getLongs(1);
+      Assert.fail("Expected an int column not to be returned as longs.");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    try {
+      batch.getObjects(0);
+      Assert.fail("Expected a boolean column not to be returned as objects.");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testSetAndGet() {
+    StructuredRecordBatch batch = new StructuredRecordBatch(SCHEMA, 10);
+    int row = batch.addRow();
+    Assert.assertEquals(0, row);
+    for (int field = 0; field < SCHEMA.getFields().size(); field++) {
+      Assert.assertTrue(batch.isNull(field, row));
+    }
+    batch.setBoolean(0, row, true);
+    batch.setInt(1, row, 5);
+    batch.setLong(2, row, Long.MAX_VALUE);
+    batch.setFloat(3, row, 1.5f);
+    batch.setDouble(4, row, -2.5d);
+    batch.set(5, row, "abc");
+    batch.set(6, row, 100);
+    batch.set(7, row, Arrays.asList("x", "y"));
+    Assert.assertEquals(true, batch.get(0, row));
+    Assert.assertEquals(5, batch.get(1, row));
+    Assert.assertEquals(Long.MAX_VALUE, batch.get(2, row));
+    Assert.assertEquals(1.5f, batch.get(3, row));
+    Assert.assertEquals(-2.5d, batch.get(4, row));
+    Assert.assertEquals("abc", batch.get(5, row));
+    Assert.assertEquals(100, batch.get(6, row));
+    Assert.assertEquals(Arrays.asList("x", "y"), batch.get(7, row));
+
+    // values set through the generic setter are unboxed into the primitive arrays
+    batch.set(1, row, 7L);
+    Assert.assertEquals(7, batch.getInts(1)[row]);
+    batch.set(1, row, null);
+    Assert.assertTrue(batch.isNull(1, row));
+    Assert.assertNull(batch.get(1, row));
+
+    // values set in the arrays directly are null until their null bit is cleared
+    int second = batch.addRow();
+    batch.getLongs(2)[second] = 42L;
+    Assert.assertNull(batch.get(2, second));
+    batch.setNotNull(2, second);
+    Assert.assertEquals(42L, batch.get(2, second));
+    batch.setNull(2, second);
+    Assert.assertNull(batch.get(2, second));
+  }
+
+  @Test
+  public void testNullBitmapAcrossWords() {
+    StructuredRecordBatch batch = new StructuredRecordBatch(SCHEMA, 200);
+    for (int row = 0; row < 200; row++) {
+      Assert.assertEquals(row, batch.addRow());
+      if (row % 3 == 0) {
+        batch.setInt(1, row, row);
+      }
+    }
+    Assert.assertTrue(batch.isFull());
+    Assert.assertEquals(4, batch.getNulls(1).length);
+    for (int row = 0; row < 200; row++) {
+      Assert.assertEquals("Row " + row, row % 3 == 0 ? row : null, batch.get(1, row));
+    }
+  }
+
+  @Test
+  public void testRecords() {
+    List<StructuredRecord> records = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      StructuredRecord.Builder builder = StructuredRecord.builder(SCHEMA)
+        .set("b", i % 2 == 0)
+        .set("l", (long) i * 1000)
+        .set("f", i / 2f);
+      if (i != 3) {
+        builder.set("i", i).set("d", i / 4d).set("s", "value " + i).set("a", Arrays.asList("a", String.valueOf(i)));
+        builder.setDate("date", LocalDate.of(2018, 1, i + 1));
+      }
+      records.add(builder.build());
+    }
+
+    StructuredRecordBatch batch = new StructuredRecordBatch(SCHEMA, 5);
+    for (StructuredRecord record : records) {
+      batch.add(record);
+    }
+    Assert.assertEquals(5, batch.size());
+    for (int row = 0; row < 5; row++) {
+      Assert.assertEquals(records.get(row), batch.getRecord(row));
+    }
+    Assert.assertEquals(LocalDate.of(2018, 1, 3), batch.getRecord(2).getDate("date"));
+
+    try {
+      batch.add(records.get(0));
+      Assert.fail("Expected a full batch to reject another record.");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testReset() {
+    StructuredRecordBatch batch = new StructuredRecordBatch(SCHEMA, 100);
+    for (int row = 0; row < 100; row++) {
+      batch.addRow();
+      batch.setInt(1, row, row);
+      batch.set(5, row, "value " + row);
+      batch.set(7, row, Arrays.asList("a", "b"));
+    }
+    batch.reset();
+    Assert.assertEquals(0, batch.size());
+    Assert.assertFalse(batch.isFull());
+    for (int row = 0; row < 100; row++) {
+      Assert.assertTrue(batch.isNull(1, row));
+      Assert.assertTrue(batch.isNull(5, row));
+    }
+    // the objects of the previous rows are released, so that a reused batch does not keep them alive
+    Assert.assertTrue(Arrays.stream(batch.getObjects(5)).allMatch(value -> value == null));
+    Assert.assertTrue(Arrays.stream(batch.getObjects(7)).allMatch(value -> value == null));
+
+    batch.addRow();
+    Assert.assertNull(batch.get(5, 0));
+    Assert.assertNull(batch.get(1, 0));
+  }
+
+  @Test
+  public void testSize() {
+    StructuredRecordBatch batch = new StructuredRecordBatch(SCHEMA, 10);
+    // writers can fill the columns first, and then set the number of rows
+    for (int row = 0; row < 4; row++) {
+      batch.setLong(2, row, row);
+    }
+    batch.setSize(4);
+    Assert.assertEquals(4, batch.size());
+    Assert.assertEquals(3L, batch.get(2, 3));
+    for (int size : new int[] { -1, 11 }) {
+      try {
+        batch.setSize(size);
+        Assert.fail(String.format("Expected size %d to be rejected.", size));
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testInvalidBatches() {
+    try {
+      new StructuredRecordBatch(Schema.of(Schema.Type.STRING));
+      Assert.fail("Expected a schema that is not a record to be rejected.");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    try {
+      new StructuredRecordBatch(SCHEMA, 0);
+      Assert.fail("Expected a capacity of 0 to be rejected.");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.format.output;
+
+import co.cask.hydrator.format.GzipMemberIndex;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.GzipCodec;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskType;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for {@link CompressedTextOutputFormat}.
+ */
+public class CompressedTextOutputFormatTest {
+
+  @ClassRule
+  public static final TemporaryFolder TMP_FOLDER = new TemporaryFolder();
+
+  @Test
+  public void testCompressionConfiguration() {
+    Assert.assertTrue(CompressedTextOutputFormat.getCompressionConfiguration(null, null).isEmpty());
+    Assert.assertTrue(CompressedTextOutputFormat.getCompressionConfiguration("none", 4).isEmpty());
+
+    Map<String, String> configuration = CompressedTextOutputFormat.getCompressionConfiguration("GZIP", 4);
+    Assert.assertEquals("true", configuration.get(FileOutputFormat.COMPRESS));
+    Assert.assertEquals(GzipCodec.class.getName(), configuration.get(FileOutputFormat.COMPRESS_CODEC));
+    Assert.assertEquals("4", configuration.get(CompressedTextOutputFormat.COMPRESSION_THREADS));
+
+    // zstd is rejected when the pipeline is configured, since Hadoop 2.3 has no codec for it
+    assertInvalid("zstd", null);
+    assertInvalid("lzo", null);
+    assertInvalid("bzip2", 2);
+    assertInvalid("gzip", 0);
+  }
+
+  @Test
+  public void testParallelGzip() throws Exception {
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < 10000; i++) {
+      lines.add("line " + i);
+    }
+    // a small block size, so that the file has many members
+    File file = write(lines, 3, 1000);
+    Assert.assertEquals(lines, read(file));
+
+    Path path = new Path(file.toURI());
+    GzipMemberIndex index = GzipMemberIndex.read(path.getFileSystem(new Configuration()), path);
+    Assert.assertNotNull(index);
+    Assert.assertTrue(index.size() > 10);
+
+    // an empty file is still a valid gzip file
+    Assert.assertEquals(new ArrayList<>(), read(write(new ArrayList<>(), 3, 1000)));
+  }
+
+  @Test
+  public void testSingleThread() throws Exception {
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      lines.add("line " + i);
+    }
+    File file = write(lines, 1, 1000);
+    Assert.assertEquals(lines, read(file));
+    Path path = new Path(file.toURI());
+    Assert.assertFalse(new File(GzipMemberIndex.getIndexPath(path).toUri()).exists());
+  }
+
+  private static void assertInvalid(String codec, Integer threads) {
+    try {
+      CompressedTextOutputFormat.getCompressionConfiguration(codec, threads);
+      Assert.fail(String.format("Expected codec '%s' with %s threads to be rejected.", codec, threads));
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  /**
+   * Writes the lines with a record writer of the output format, and returns the file that was written.
+   */
+  private static File write(List<String> lines, int threads, int blockSize) throws Exception {
+    File outputDir = new File(TMP_FOLDER.newFolder(), "output");
+    Configuration conf = new Configuration();
+    for (Map.Entry<String, String> entry :
+      CompressedTextOutputFormat.getCompressionConfiguration("gzip", threads).entrySet()) {
+      conf.set(entry.getKey(), entry.getValue());
+    }
+    conf.setInt(CompressedTextOutputFormat.COMPRESSION_BLOCK_SIZE, blockSize);
+    conf.set(FileOutputFormat.OUTDIR, outputDir.toURI().toString());
+    TaskAttemptContext context =
+      new TaskAttemptContextImpl(conf, new TaskAttemptID("test", 1, TaskType.MAP, 0, 0));
+
+    RecordWriter<NullWritable, Text> writer = new CompressedTextOutputFormat<NullWritable, Text>()
+      .getRecordWriter(context);
+    for (String line : lines) {
+      writer.write(NullWritable.get(), new Text(line));
+    }
+    writer.close(context);
+
+    List<File> files = new ArrayList<>();
+    findFiles(outputDir, ".gz", files);
+    Assert.assertEquals(1, files.size());
+    return files.get(0);
+  }
+
+  private static void findFiles(File dir, String extension, List<File> files) {
+    File[] children = dir.listFiles();
+    if (children == null) {
+      return;
+    }
+    for (File child : children) {
+      if (child.isDirectory()) {
+        findFiles(child, extension, files);
+      } else if (child.getName().endsWith(extension) && !child.getName().startsWith(".")) {
+        files.add(child);
+      }
+    }
+  }
+
+  /**
+   * Reads the lines of a file with Hadoop's gzip codec.
+   */
+  private static List<String> read(File file) throws IOException {
+    Configuration conf = new Configuration();
+    Path path = new Path(file.toURI());
+    FileSystem fs = path.getFileSystem(conf);
+    CompressionCodec codec = ReflectionUtils.newInstance(GzipCodec.class, conf);
+    List<String> lines = new ArrayList<>();
+    try (InputStream in = codec.createInputStream(fs.open(path));
+         BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        lines.add(line);
+      }
+    }
+    return lines;
+  }
+}
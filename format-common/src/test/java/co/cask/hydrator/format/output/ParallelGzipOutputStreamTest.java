@@ -0,0 +1,206 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.format.output;
+
+import co.cask.hydrator.format.GzipMemberIndex;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.GzipCodec;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Tests for {@link ParallelGzipOutputStream}.
+ */
+public class ParallelGzipOutputStreamTest {
+  private static final int BLOCK_SIZE = 1000;
+
+  @Test
+  public void testBlockBoundaries() throws IOException {
+    for (int length : new int[] { 0, 1, BLOCK_SIZE - 1, BLOCK_SIZE, BLOCK_SIZE + 1, 2 * BLOCK_SIZE,
+                                  10 * BLOCK_SIZE + 17 }) {
+      byte[] data = createData(length);
+      GzipMemberIndex index = new GzipMemberIndex();
+      byte[] compressed = compress(data, 3, index);
+
+      String message = "Length " + length;
+      Assert.assertArrayEquals(message, data, decompress(new GZIPInputStream(new ByteArrayInputStream(compressed))));
+      CompressionCodec codec = ReflectionUtils.newInstance(GzipCodec.class, new Configuration());
+      Assert.assertArrayEquals(message, data,
+                               decompress(codec.createInputStream(new ByteArrayInputStream(compressed))));
+
+      // every block is a member, and an empty stream is a single empty member
+      int members = Math.max(1, (length + BLOCK_SIZE - 1) / BLOCK_SIZE);
+      Assert.assertEquals(message, members, index.size());
+      for (int i = 0; i < members; i++) {
+        Assert.assertEquals(message, (long) i * BLOCK_SIZE, index.getUncompressedOffset(i));
+        // each member can be decompressed on its own, starting at its offset
+        int start = (int) index.getCompressedOffset(i);
+        byte[] member = decompress(new GZIPInputStream(
+          new ByteArrayInputStream(compressed, start, compressed.length - start)));
+        Assert.assertEquals(message, length - i * BLOCK_SIZE, member.length);
+      }
+    }
+  }
+
+  @Test
+  public void testSingleThread() throws IOException {
+    byte[] data = createData(5 * BLOCK_SIZE + 1);
+    byte[] compressed = compress(data, 1, null);
+    Assert.assertArrayEquals(data, decompress(new GZIPInputStream(new ByteArrayInputStream(compressed))));
+  }
+
+  @Test
+  public void testFlush() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ParallelGzipOutputStream out = new ParallelGzipOutputStream(bytes, 2, BLOCK_SIZE, null);
+    byte[] data = createData(2 * BLOCK_SIZE + 10);
+    out.write(data);
+    // the blocks that are full are written, the rest of the data stays in the current block
+    out.flush();
+    Assert.assertArrayEquals(Arrays.copyOf(data, 2 * BLOCK_SIZE),
+                             decompress(new GZIPInputStream(new ByteArrayInputStream(bytes.toByteArray()))));
+    out.close();
+    Assert.assertArrayEquals(data, decompress(new GZIPInputStream(new ByteArrayInputStream(bytes.toByteArray()))));
+  }
+
+  @Test
+  public void testFailureStopsThreads() throws Exception {
+    FailingOutputStream failing = new FailingOutputStream();
+    ParallelGzipOutputStream out = new ParallelGzipOutputStream(failing, 2, BLOCK_SIZE, null);
+    byte[] data = createData(BLOCK_SIZE);
+    try {
+      // blocks are written once more than twice the number of threads are pending
+      for (int i = 0; i < 10; i++) {
+        out.write(data);
+      }
+      Assert.fail("Expected the failure of the underlying stream to be thrown.");
+    } catch (IOException e) {
+      Assert.assertEquals("write failed", e.getMessage());
+    }
+
+    // the threads are stopped without closing the stream
+    long deadline = System.currentTimeMillis() + 10000;
+    while (hasCompressionThreads() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertFalse(hasCompressionThreads());
+
+    // later writes fail, and closing the stream only closes the underlying stream
+    try {
+      out.write(data);
+      out.write(data);
+      Assert.fail("Expected writes after a failure to fail.");
+    } catch (IOException e) {
+      // expected
+    }
+    out.close();
+    Assert.assertTrue(failing.closed);
+  }
+
+  private static boolean hasCompressionThreads() {
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      if (thread.isAlive() && thread.getName().startsWith("parallel-gzip-")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Creates compressible data, so that the members have different lengths.
+   */
+  private static byte[] createData(int length) {
+    StringBuilder builder = new StringBuilder();
+    Random random = new Random(length);
+    int line = 0;
+    while (builder.length() < length) {
+      builder.append("line ").append(line++).append(',').append(random.nextInt(1000)).append('\n');
+    }
+    return builder.substring(0, length).getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Compresses the data, writing it in chunks of different sizes and single bytes.
+   */
+  private static byte[] compress(byte[] data, int threads, GzipMemberIndex index) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (OutputStream out = new ParallelGzipOutputStream(bytes, threads, BLOCK_SIZE, index)) {
+      int offset = 0;
+      int chunk = 1;
+      while (offset < data.length) {
+        if (chunk % 5 == 0) {
+          out.write(data[offset++]);
+        } else {
+          int length = Math.min(chunk * 97, data.length - offset);
+          out.write(data, offset, length);
+          offset += length;
+        }
+        chunk++;
+      }
+    }
+    return bytes.toByteArray();
+  }
+
+  private static byte[] decompress(InputStream in) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try {
+      byte[] buffer = new byte[4096];
+      int read;
+      while ((read = in.read(buffer)) >= 0) {
+        bytes.write(buffer, 0, read);
+      }
+    } finally {
+      in.close();
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * An output stream whose writes fail.
+   */
+  private static final class FailingOutputStream extends OutputStream {
+    private boolean closed;
+
+    @Override
+    public void write(int b) throws IOException {
+      throw new IOException("write failed");
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      throw new IOException("write failed");
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.format.output;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.dataset.lib.KeyValue;
+import co.cask.hydrator.format.FileStatistics;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.StatusReporter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskType;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputCommitter;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Tests for {@link PartitionedRecordWriter}.
+ */
+public class PartitionedRecordWriterTest {
+  private static final Schema SCHEMA = Schema.recordOf(
+    "record",
+    Schema.Field.of("country", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("year", Schema.of(Schema.Type.INT)),
+    Schema.Field.of("v", Schema.of(Schema.Type.STRING)));
+
+  @ClassRule
+  public static final TemporaryFolder TMP_FOLDER = new TemporaryFolder();
+
+  @Test
+  public void testPartitions() throws Exception {
+    TestWriter writer = new TestWriter(Arrays.asList("country", "year"), 100, 0L, false);
+    writer.write("us", 2018, "a");
+    writer.write("us", 2017, "b");
+    writer.write("us", 2018, "c");
+    // null and empty values are written to the default partition, like in Hive
+    writer.write(null, 2018, "d");
+    writer.write("", 2018, "e");
+    // characters that are not allowed in a path, or that have a meaning in a partition directory, are escaped
+    writer.write("a/b=c", 2018, "f");
+    writer.write("x y%", 2018, "g");
+    Map<String, String> files = writer.close();
+
+    Map<String, String> expected = new TreeMap<>();
+    expected.put("country=us/year=2018/part-m-00000", "a\nc\n");
+    expected.put("country=us/year=2017/part-m-00000", "b\n");
+    expected.put("country=__DEFAULT_PARTITION__/year=2018/part-m-00000", "d\ne\n");
+    expected.put("country=a%2Fb%3Dc/year=2018/part-m-00000", "f\n");
+    expected.put("country=x y%25/year=2018/part-m-00000", "g\n");
+    Assert.assertEquals(expected, files);
+    Assert.assertEquals(5L, writer.getCounter(PartitionedRecordWriter.WRITERS_OPENED_COUNTER));
+    Assert.assertEquals(0L, writer.getCounter(PartitionedRecordWriter.WRITERS_EVICTED_COUNTER));
+    Assert.assertEquals(5L, writer.getCounter(PartitionedRecordWriter.MAX_OPEN_WRITERS_COUNTER));
+  }
+
+  @Test
+  public void testEviction() throws Exception {
+    TestWriter writer = new TestWriter(Collections.singletonList("country"), 2, 0L, false);
+    writer.write("a", 0, "1");
+    writer.write("b", 0, "2");
+    writer.write("a", 0, "3");
+    // b is the least recently used writer, so it is closed to open the writer of c
+    writer.write("c", 0, "4");
+    writer.write("a", 0, "5");
+    // the next record of b starts a new file, and closes the writer of c
+    writer.write("b", 0, "6");
+    Map<String, String> files = writer.close();
+
+    Map<String, String> expected = new TreeMap<>();
+    expected.put("country=a/part-m-00000", "1\n3\n5\n");
+    expected.put("country=b/part-m-00000", "2\n");
+    expected.put("country=b/part-1-m-00000", "6\n");
+    expected.put("country=c/part-m-00000", "4\n");
+    Assert.assertEquals(expected, files);
+    Assert.assertEquals(4L, writer.getCounter(PartitionedRecordWriter.WRITERS_OPENED_COUNTER));
+    Assert.assertEquals(2L, writer.getCounter(PartitionedRecordWriter.WRITERS_EVICTED_COUNTER));
+    Assert.assertEquals(2L, writer.getCounter(PartitionedRecordWriter.MAX_OPEN_WRITERS_COUNTER));
+  }
+
+  @Test
+  public void testRollOver() throws Exception {
+    // without partition fields, files are only rolled
+    TestWriter writer = new TestWriter(Collections.emptyList(), 100, 3L, true);
+    for (int i = 0; i < 10; i++) {
+      writer.write("us", 2018, String.valueOf(i));
+    }
+    Map<String, String> files = writer.close();
+
+    Map<String, String> expected = new TreeMap<>();
+    expected.put("part-m-00000", "0\n1\n2\n");
+    expected.put("part-1-m-00000", "3\n4\n5\n");
+    expected.put("part-2-m-00000", "6\n7\n8\n");
+    expected.put("part-3-m-00000", "9\n");
+    Assert.assertEquals(expected, files);
+    Assert.assertEquals(3L, writer.getCounter(PartitionedRecordWriter.FILES_ROLLED_COUNTER));
+
+    // each file has the statistics of its own records
+    for (Map.Entry<String, String> file : files.entrySet()) {
+      Path path = new Path(writer.workDir.toURI().resolve(file.getKey()));
+      FileStatistics statistics = FileStatistics.read(path.getFileSystem(new Configuration()), path);
+      Assert.assertNotNull(file.getKey(), statistics);
+      Assert.assertEquals(file.getKey(), file.getValue().split("\n").length, statistics.getRowCount());
+    }
+  }
+
+  @Test
+  public void testRollOverPartitions() throws Exception {
+    TestWriter writer = new TestWriter(Collections.singletonList("year"), 100, 2L, false);
+    for (int i = 0; i < 5; i++) {
+      writer.write("us", 2017 + i % 2, String.valueOf(i));
+    }
+    Map<String, String> files = writer.close();
+
+    Map<String, String> expected = new TreeMap<>();
+    expected.put("year=2017/part-m-00000", "0\n2\n");
+    expected.put("year=2017/part-1-m-00000", "4\n");
+    expected.put("year=2018/part-m-00000", "1\n3\n");
+    Assert.assertEquals(expected, files);
+    Assert.assertEquals(1L, writer.getCounter(PartitionedRecordWriter.FILES_ROLLED_COUNTER));
+  }
+
+  /**
+   * A partitioned writer of text files, which writes the 'v' field of each record as a line.
+   */
+  private static final class TestWriter {
+    private final Counters counters;
+    private final TaskAttemptContext context;
+    private final PartitionedRecordWriter<NullWritable, Text> writer;
+    private final File workDir;
+
+    private TestWriter(List<String> partitionFields, int maxOpenWriters, long maxRecordsPerFile,
+                       boolean writeStatistics) throws Exception {
+      File outputDir = new File(TMP_FOLDER.newFolder(), "output");
+      Configuration conf = new Configuration();
+      conf.set(FileOutputFormat.OUTDIR, outputDir.toURI().toString());
+      counters = new Counters();
+      context = new TaskAttemptContextImpl(conf, new TaskAttemptID("test", 1, TaskType.MAP, 0, 0),
+                                           new CountersReporter(counters));
+      TextOutputFormat<NullWritable, Text> format = new TextOutputFormat<>();
+      workDir = new File(((FileOutputCommitter) format.getOutputCommitter(context)).getWorkPath().toUri());
+      writer = new PartitionedRecordWriter<>(
+        format, record -> new KeyValue<>(NullWritable.get(), new Text(record.<String>get("v"))), context,
+        partitionFields, maxOpenWriters, maxRecordsPerFile, 0L, writeStatistics);
+    }
+
+    private void write(String country, int year, String value) throws Exception {
+      writer.write(NullWritable.get(), StructuredRecord.builder(SCHEMA)
+        .set("country", country).set("year", year).set("v", value).build());
+    }
+
+    /**
+     * Closes the writer, and returns the content of the files that were written, by their path relative to the work
+     * directory of the task.
+     */
+    private Map<String, String> close() throws Exception {
+      writer.close(context);
+      Map<String, String> files = new TreeMap<>();
+      collect(workDir, "", files);
+      return files;
+    }
+
+    private long getCounter(String name) {
+      return counters.findCounter(PartitionedRecordWriter.COUNTER_GROUP, name).getValue();
+    }
+
+    private static void collect(File dir, String prefix, Map<String, String> files) throws IOException {
+      File[] children = dir.listFiles();
+      if (children == null) {
+        return;
+      }
+      for (File child : children) {
+        if (child.isDirectory()) {
+          collect(child, prefix + child.getName() + "/", files);
+        } else if (!child.getName().startsWith(".")) {
+          files.put(prefix + child.getName(), new String(Files.readAllBytes(child.toPath()), StandardCharsets.UTF_8));
+        }
+      }
+    }
+  }
+
+  /**
+   * Keeps the counters of a task attempt.
+   */
+  private static final class CountersReporter extends StatusReporter {
+    private final Counters counters;
+
+    private CountersReporter(Counters counters) {
+      this.counters = counters;
+    }
+
+    @Override
+    public Counter getCounter(Enum<?> name) {
+      return counters.findCounter(name);
+    }
+
+    @Override
+    public Counter getCounter(String group, String name) {
+      return counters.findCounter(group, name);
+    }
+
+    @Override
+    public void progress() {
+      // nothing to report
+    }
+
+    @Override
+    public float getProgress() {
+      return 0;
+    }
+
+    @Override
+    public void setStatus(String status) {
+      // nothing to report
+    }
+  }
+}
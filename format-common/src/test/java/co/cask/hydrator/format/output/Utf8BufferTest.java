@@ -0,0 +1,112 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.format.output;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Tests for {@link Utf8Buffer}.
+ */
+public class Utf8BufferTest {
+
+  @Test
+  public void testStrings() {
+    String[] strings = {
+      "",
+      "ascii only",
+      "two bytes: é ß ñ \u0080 ߿",
+      "three bytes: ࠀ € 中文 ￿",
+      // surrogate pairs are encoded as a single four byte character
+      "four bytes: 😀 𐀀 􏿿",
+      // unpaired surrogates are encoded as '?', like String.getBytes does
+      "unpaired: \ud800 x \udc00 \ud83d",
+      "\udc00\ud800",
+      "\ud83d😀"
+    };
+    for (String string : strings) {
+      Utf8Buffer buffer = new Utf8Buffer(1);
+      buffer.append(string);
+      assertBytes(string, string.getBytes(StandardCharsets.UTF_8), buffer);
+
+      // characters can be appended after other bytes, and from other kinds of char sequences
+      buffer.clear();
+      buffer.append((byte) 'x');
+      buffer.append(new StringBuilder(string));
+      assertBytes(string, ("x" + string).getBytes(StandardCharsets.UTF_8), buffer);
+    }
+  }
+
+  @Test
+  public void testNonAsciiIndex() {
+    Utf8Buffer buffer = new Utf8Buffer(8);
+    // a surrogate pair is encoded at once, so the index of its second char is returned
+    Assert.assertEquals(1, buffer.appendNonAscii("😀a", 0));
+    Assert.assertEquals(0, buffer.appendNonAscii("éa", 0));
+    Assert.assertEquals(0, buffer.appendNonAscii("\ud83d", 0));
+    assertBytes("non ascii", "😀é?".getBytes(StandardCharsets.UTF_8), buffer);
+  }
+
+  @Test
+  public void testLongs() {
+    long[] values = { 0, 1, -1, 9, 10, -10, 99, 100, 123456789, Integer.MAX_VALUE, Integer.MIN_VALUE,
+      999999999999999999L, 1000000000000000000L, -1000000000000000000L, Long.MAX_VALUE, Long.MIN_VALUE,
+      Long.MIN_VALUE + 1 };
+    Utf8Buffer buffer = new Utf8Buffer(1);
+    for (long value : values) {
+      buffer.clear();
+      buffer.append(value);
+      assertBytes(String.valueOf(value), Long.toString(value).getBytes(StandardCharsets.US_ASCII), buffer);
+    }
+    for (long value = 1; value > 0 && value < Long.MAX_VALUE / 3; value *= 3) {
+      buffer.clear();
+      buffer.append(value);
+      buffer.append(-value);
+      assertBytes(String.valueOf(value), (Long.toString(value) + -value).getBytes(StandardCharsets.US_ASCII), buffer);
+    }
+  }
+
+  @Test
+  public void testBytesAndBooleans() {
+    Utf8Buffer buffer = new Utf8Buffer(2);
+    buffer.append(true);
+    buffer.append((byte) ',');
+    buffer.append(false);
+    buffer.append("abcdef".getBytes(StandardCharsets.US_ASCII), 1, 3);
+    assertBytes("booleans", "true,falsebcd".getBytes(StandardCharsets.US_ASCII), buffer);
+
+    // the length can be set within the capacity, and the contents are kept when the buffer grows
+    buffer.setLength(4);
+    buffer.ensureCapacity(1000);
+    Assert.assertTrue(buffer.getBytes().length >= 1000);
+    assertBytes("grown", "true".getBytes(StandardCharsets.US_ASCII), buffer);
+    try {
+      buffer.setLength(buffer.getBytes().length + 1);
+      Assert.fail("Expected a length larger than the capacity to be rejected.");
+    } catch (IndexOutOfBoundsException e) {
+      // expected
+    }
+  }
+
+  private static void assertBytes(String message, byte[] expected, Utf8Buffer buffer) {
+    Assert.assertArrayEquals(message, expected, Arrays.copyOf(buffer.getBytes(), buffer.getLength()));
+  }
+}
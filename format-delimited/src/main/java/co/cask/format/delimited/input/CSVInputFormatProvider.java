@@ -17,28 +17,30 @@
 package co.cask.format.delimited.input;
 
 import co.cask.cdap.api.annotation.Description;
+import co.cask.cdap.api.annotation.Macro;
 import co.cask.cdap.api.annotation.Name;
 import co.cask.cdap.api.annotation.Plugin;
 import co.cask.cdap.api.plugin.PluginClass;
+import co.cask.cdap.api.plugin.PluginPropertyField;
 import co.cask.hydrator.format.input.PathTrackingConfig;
 import co.cask.hydrator.format.input.PathTrackingInputFormatProvider;
 
+import java.util.HashMap;
 import java.util.Map;
+import javax.annotation.Nullable;
 
 /**
- * Reads delimited text into StructuredRecords.
+ * Reads comma separated text into StructuredRecords. Values can be quoted as described in RFC 4180.
  */
 @Plugin(type = "inputformat")
 @Name(CSVInputFormatProvider.NAME)
 @Description(CSVInputFormatProvider.DESC)
-public class CSVInputFormatProvider extends PathTrackingInputFormatProvider<PathTrackingConfig> {
+public class CSVInputFormatProvider extends PathTrackingInputFormatProvider<CSVInputFormatProvider.Conf> {
+  public static final PluginClass PLUGIN_CLASS = getPluginClass();
   static final String NAME = "csv";
   static final String DESC = "Plugin for reading files in csv format.";
-  public static final PluginClass PLUGIN_CLASS =
-    new PluginClass("inputformat", NAME, DESC, CSVInputFormatProvider.class.getName(),
-                    "conf", PathTrackingConfig.FIELDS);
 
-  public CSVInputFormatProvider(PathTrackingConfig conf) {
+  public CSVInputFormatProvider(Conf conf) {
     super(conf);
   }
 
@@ -57,5 +59,31 @@ public class CSVInputFormatProvider extends PathTrackingInputFormatProvider<Path
   @Override
   protected void addFormatProperties(Map<String, String> properties) {
     properties.put(PathTrackingDelimitedInputFormat.DELIMITER, ",");
+    properties.put(PathTrackingDelimitedInputFormat.QUOTED_VALUES, "true");
+    properties.put(PathTrackingDelimitedInputFormat.MULTILINE, String.valueOf(conf.isMultilineSupportEnabled()));
+  }
+
+  /**
+   * Plugin config for csv input format
+   */
+  public static class Conf extends PathTrackingConfig {
+    private static final String MULTILINE_DESC = "Whether quoted values can contain line breaks. "
+      + "Files are still split, and each split finds the first record that starts in it. The default is false.";
+
+    @Macro
+    @Nullable
+    @Description(MULTILINE_DESC)
+    private Boolean enableMultilineSupport;
+
+    boolean isMultilineSupportEnabled() {
+      return enableMultilineSupport != null && enableMultilineSupport;
+    }
+  }
+
+  private static PluginClass getPluginClass() {
+    Map<String, PluginPropertyField> properties = new HashMap<>(PathTrackingConfig.FIELDS);
+    properties.put("enableMultilineSupport", new PluginPropertyField("enableMultilineSupport", Conf.MULTILINE_DESC,
+                                                                     "boolean", false, true));
+    return new PluginClass("inputformat", NAME, DESC, CSVInputFormatProvider.class.getName(), "conf", properties);
   }
 }
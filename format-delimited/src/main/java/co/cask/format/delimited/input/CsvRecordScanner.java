@@ -0,0 +1,210 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.format.delimited.input;
+
+import co.cask.hydrator.format.input.ByteWindow;
+import co.cask.hydrator.format.input.RecordScanner;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Finds the records of delimited text whose quoted values can contain line breaks. A record ends at the first line
+ * break that is not in a quoted value. Quotes are handled the same way as in {@link DelimitedRecordParser}.
+ *
+ * When a split starts in the middle of a file, there is no way to know whether a line break is in a quoted value
+ * without reading the file from the start. Instead, each line break after the start of the split is tried in turn,
+ * and the first one that is followed by a run of well formed records, that all have the same number of values, is
+ * used. This works for files that follow RFC 4180. Near the end of the file, where too few records are left to be
+ * sure, the first line break that is followed by well formed records with any number of values is used.
+ * If no line break in the first {@link #MAX_RESYNC_BYTES} of the split is followed by well formed records, the split
+ * fails instead of guessing where its records start, since a wrong guess would silently lose or repeat records.
+ */
+final class CsvRecordScanner implements RecordScanner {
+  private static final int QUOTE = '"';
+  private static final int NEWLINE = '\n';
+  private static final int CARRIAGE_RETURN = '\r';
+  private static final int VALIDATE_RECORDS = 16;
+  private static final int VALIDATE_BYTES = 64 * 1024;
+  private static final int MAX_RESYNC_BYTES = 1024 * 1024;
+  // results of checking the records that follow a line break
+  private static final int INVALID = 0;
+  private static final int AT_END = 1;
+  private static final int VALID = 2;
+  private final byte[] delimiter;
+  private final int maxValues;
+  private int values;
+
+  /**
+   * @param delimiter the delimiter between values
+   * @param maxValues the maximum number of values in a record
+   */
+  CsvRecordScanner(String delimiter, int maxValues) {
+    this.delimiter = delimiter.getBytes(StandardCharsets.UTF_8);
+    this.maxValues = maxValues;
+  }
+
+  @Override
+  public long firstRecord(ByteWindow window) throws IOException {
+    return window.get(0) < 0 ? -1 : 0;
+  }
+
+  @Override
+  public long findRecord(ByteWindow window, long position) throws IOException {
+    long wellFormed = -1;
+    long pos = position - 1;
+    while (true) {
+      int b = window.get(pos);
+      if (b < 0) {
+        return wellFormed;
+      }
+      pos++;
+      if (b != NEWLINE) {
+        continue;
+      }
+      if (window.get(pos) < 0) {
+        return wellFormed;
+      }
+      if (pos - position > MAX_RESYNC_BYTES) {
+        throw new IOException(String.format(
+          "Could not find the start of a record within %d bytes after position %d. Either the file is not " +
+            "well formed, its records do not all have the same number of values, or a record that starts before " +
+            "the position is larger than %d bytes. Such files cannot be split.",
+          MAX_RESYNC_BYTES, position, MAX_RESYNC_BYTES));
+      }
+      int result = check(window, pos, true);
+      if (result == VALID) {
+        return pos;
+      }
+      if (result == AT_END) {
+        // the records of every later line break also run into the end of the file, so none of them is a better guess
+        return wellFormed < 0 ? pos : wellFormed;
+      }
+      if (wellFormed < 0 && check(window, pos, false) != INVALID) {
+        wellFormed = pos;
+      }
+    }
+  }
+
+  @Override
+  public long endOfRecord(ByteWindow window, long recordStart) throws IOException {
+    long end = scan(window, recordStart, false);
+    // a carriage return before the line feed is not part of the record
+    return end > recordStart && window.get(end) == NEWLINE && window.get(end - 1) == CARRIAGE_RETURN ? end - 1 : end;
+  }
+
+  @Override
+  public long nextRecord(ByteWindow window, long contentEnd) throws IOException {
+    long pos = contentEnd;
+    int b = window.get(pos);
+    if (b == CARRIAGE_RETURN) {
+      b = window.get(++pos);
+    }
+    if (b != NEWLINE) {
+      return -1;
+    }
+    pos++;
+    return window.get(pos) < 0 ? -1 : pos;
+  }
+
+  /**
+   * Checks whether the records that start at the given position are well formed, and, if sameValues, whether they
+   * have the same number of values.
+   *
+   * @return {@link #VALID} if enough records were checked, {@link #AT_END} if the end of the file was reached before
+   *   that, or {@link #INVALID}
+   */
+  private int check(ByteWindow window, long recordStart, boolean sameValues) throws IOException {
+    long pos = recordStart;
+    int records = 0;
+    int expectedValues = -1;
+    while (records < VALIDATE_RECORDS || pos - recordStart < VALIDATE_BYTES) {
+      long end = scan(window, pos, true);
+      if (end < 0 || values > maxValues || (sameValues && expectedValues >= 0 && values != expectedValues)) {
+        return INVALID;
+      }
+      expectedValues = values;
+      records++;
+      pos = nextRecord(window, end);
+      if (pos < 0) {
+        return AT_END;
+      }
+    }
+    return VALID;
+  }
+
+  /**
+   * Finds the end of the record that starts at the given position, and sets the number of values in the record.
+   * If strict, quotes can only be at the start and end of a value, and -1 is returned for anything else.
+   *
+   * @return the position of the line feed that ends the record, or of the end of the file
+   */
+  private long scan(ByteWindow window, long recordStart, boolean strict) throws IOException {
+    long pos = recordStart;
+    values = 1;
+    while (true) {
+      int b = window.get(pos);
+      if (b == QUOTE) {
+        pos++;
+        while (true) {
+          b = window.get(pos++);
+          if (b < 0) {
+            // an unterminated quoted value runs until the end of the file
+            return strict ? -1 : pos - 1;
+          }
+          if (b == QUOTE) {
+            if (window.get(pos) != QUOTE) {
+              break;
+            }
+            pos++;
+          }
+        }
+        b = window.get(pos);
+        if (strict && b >= 0 && b != NEWLINE && b != CARRIAGE_RETURN && !isDelimiter(window, pos, b)) {
+          return -1;
+        }
+      }
+      while (true) {
+        b = window.get(pos);
+        if (b < 0 || b == NEWLINE) {
+          return pos;
+        }
+        if (isDelimiter(window, pos, b)) {
+          pos += delimiter.length;
+          values++;
+          break;
+        }
+        if (strict && b == QUOTE) {
+          return -1;
+        }
+        pos++;
+      }
+    }
+  }
+
+  private boolean isDelimiter(ByteWindow window, long pos, int b) throws IOException {
+    if (b != (delimiter[0] & 0xff)) {
+      return false;
+    }
+    for (int i = 1; i < delimiter.length; i++) {
+      if (window.get(pos + i) != (delimiter[i] & 0xff)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
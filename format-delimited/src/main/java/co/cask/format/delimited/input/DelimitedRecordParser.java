@@ -0,0 +1,343 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.format.delimited.input;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.hydrator.format.input.StructuredRecordBatch;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Parses lines of delimited text into StructuredRecords. Lines are scanned as UTF-8 bytes, so that the line does not
+ * need to be decoded into a String before it is split, and only string values are decoded. Values are assigned to the
+ * fields of the schema in order, and empty values are set to null.
+ *
+ * The parser for each field is chosen once, based on the schema of the field. Int, long, float, double, boolean
+ * and string fields are parsed directly. Fields of other types are converted with
+ * {@link StructuredRecord.Builder#convertAndSet(String, String)}.
+ *
+ * Lines can also be parsed into the rows of a {@link StructuredRecordBatch}, where int, long, float, double and
+ * boolean values are stored without boxing them. This is only possible if every field is parsed directly.
+ *
+ * If quoted values are enabled, values can be enclosed in double quotes as described in RFC 4180. A quoted value can
+ * contain the delimiter, and a double quote is escaped by another double quote. A quoted value can also contain line
+ * breaks if the whole record is given to the parser, as found by a {@link CsvRecordScanner}.
+ */
+final class DelimitedRecordParser {
+  private static final byte QUOTE = '"';
+  private final Schema schema;
+  private final byte[] delimiter;
+  private final boolean quotedValues;
+  private final Column[] columns;
+  private final boolean canParseBatches;
+  private byte[] quotedBuffer;
+  // where the values of the line being parsed are set, either a builder or a row of a batch
+  private StructuredRecord.Builder builder;
+  private StructuredRecordBatch batch;
+  private int row;
+
+  /**
+   * @param schema the schema of the records to create
+   * @param delimiter the delimiter between values
+   * @param quotedValues whether values can be enclosed in double quotes
+   */
+  DelimitedRecordParser(Schema schema, String delimiter, boolean quotedValues) {
+    if (delimiter.isEmpty()) {
+      throw new IllegalArgumentException("The delimiter cannot be empty.");
+    }
+    this.schema = schema;
+    this.delimiter = delimiter.getBytes(StandardCharsets.UTF_8);
+    this.quotedValues = quotedValues;
+    List<Schema.Field> fields = schema.getFields();
+    this.columns = new Column[fields.size()];
+    for (int i = 0; i < columns.length; i++) {
+      columns[i] = new Column(fields.get(i), i);
+    }
+    this.canParseBatches = Arrays.stream(columns).allMatch(column -> column.parser != null);
+    this.quotedBuffer = new byte[256];
+  }
+
+  /**
+   * Parses a line of delimited text.
+   *
+   * @param bytes a buffer containing the UTF-8 encoded line, which is not modified
+   * @param offset the offset of the line in the buffer
+   * @param length the number of bytes in the line
+   * @return a builder for the record, with a value set for every field that has a value in the line
+   * @throws IllegalArgumentException if the line has more values than there are fields in the schema
+   */
+  StructuredRecord.Builder parse(byte[] bytes, int offset, int length) {
+    StructuredRecord.Builder builder = StructuredRecord.builder(schema);
+    this.builder = builder;
+    this.batch = null;
+    parseValues(bytes, offset, length);
+    return builder;
+  }
+
+  /**
+   * Returns whether lines can be parsed into a batch, which is the case if every field is parsed directly.
+   */
+  boolean canParseBatches() {
+    return canParseBatches;
+  }
+
+  /**
+   * Parses a line of delimited text into a row of a batch, which must have the schema of the parser.
+   *
+   * @param bytes a buffer containing the UTF-8 encoded line, which is not modified
+   * @param offset the offset of the line in the buffer
+   * @param length the number of bytes in the line
+   * @param batch the batch to set the values in
+   * @param row the row of the batch, whose values must all be null
+   * @throws IllegalArgumentException if the line has more values than there are fields in the schema
+   * @throws IllegalStateException if not every field is parsed directly
+   */
+  void parse(byte[] bytes, int offset, int length, StructuredRecordBatch batch, int row) {
+    if (!canParseBatches) {
+      throw new IllegalStateException("Lines cannot be parsed into batches for fields of schema " + schema);
+    }
+    this.builder = null;
+    this.batch = batch;
+    this.row = row;
+    parseValues(bytes, offset, length);
+  }
+
+  private void parseValues(byte[] bytes, int offset, int length) {
+    int pos = offset;
+    int end = offset + length;
+    int columnIndex = 0;
+    while (true) {
+      if (columnIndex == columns.length) {
+        throw new IllegalArgumentException(
+          String.format("Found more than %d values in line '%s'.", columns.length,
+                        new String(bytes, offset, length, StandardCharsets.UTF_8)));
+      }
+      Column column = columns[columnIndex++];
+      if (quotedValues && pos < end && bytes[pos] == QUOTE) {
+        pos = parseQuoted(bytes, pos + 1, end, column);
+      } else {
+        int valueEnd = indexOfDelimiter(bytes, pos, end);
+        set(column, bytes, pos, valueEnd - pos, false);
+        pos = valueEnd;
+      }
+      if (pos >= end) {
+        return;
+      }
+      pos += delimiter.length;
+    }
+  }
+
+  /**
+   * Parses a quoted value that starts at the given position, which is just after the opening quote.
+   * Any text between the closing quote and the next delimiter is added to the value.
+   *
+   * @return the position of the delimiter after the value, or the end of the line
+   */
+  private int parseQuoted(byte[] bytes, int pos, int lineEnd, Column column) {
+    int valueLength = 0;
+    boolean closed = false;
+    while (pos < lineEnd) {
+      byte b = bytes[pos++];
+      if (b == QUOTE) {
+        if (pos < lineEnd && bytes[pos] == QUOTE) {
+          pos++;
+        } else {
+          closed = true;
+          break;
+        }
+      }
+      valueLength = append(valueLength, b);
+    }
+    int end = closed ? indexOfDelimiter(bytes, pos, lineEnd) : lineEnd;
+    for (; pos < end; pos++) {
+      valueLength = append(valueLength, bytes[pos]);
+    }
+    set(column, quotedBuffer, 0, valueLength, true);
+    return end;
+  }
+
+  private void set(Column column, byte[] bytes, int start, int length, boolean quoted) {
+    if (batch == null) {
+      column.set(builder, bytes, start, length, quoted);
+    } else {
+      column.set(batch, row, bytes, start, length, quoted);
+    }
+  }
+
+  private int append(int valueLength, byte b) {
+    if (valueLength == quotedBuffer.length) {
+      byte[] newBuffer = new byte[quotedBuffer.length * 2];
+      System.arraycopy(quotedBuffer, 0, newBuffer, 0, valueLength);
+      quotedBuffer = newBuffer;
+    }
+    quotedBuffer[valueLength] = b;
+    return valueLength + 1;
+  }
+
+  private int indexOfDelimiter(byte[] bytes, int from, int lineEnd) {
+    byte first = delimiter[0];
+    int last = lineEnd - delimiter.length;
+    for (int i = from; i <= last; i++) {
+      if (bytes[i] == first && matchesDelimiter(bytes, i)) {
+        return i;
+      }
+    }
+    return lineEnd;
+  }
+
+  private boolean matchesDelimiter(byte[] bytes, int pos) {
+    for (int i = 1; i < delimiter.length; i++) {
+      if (bytes[pos + i] != delimiter[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Sets the value of a field from a part of the line.
+   */
+  private static final class Column {
+    private final String name;
+    private final int index;
+    private final Schema.Type type;
+    private final boolean isString;
+    private final ValueParser parser;
+
+    Column(Schema.Field field, int index) {
+      this.name = field.getName();
+      this.index = index;
+      Schema fieldSchema = field.getSchema().isNullable() ? field.getSchema().getNonNullable() : field.getSchema();
+      this.type = fieldSchema.getType();
+      this.isString = fieldSchema.getType() == Schema.Type.STRING && fieldSchema.getLogicalType() == null;
+      this.parser = fieldSchema.getLogicalType() == null ? getParser(fieldSchema.getType()) : null;
+    }
+
+    void set(StructuredRecord.Builder builder, byte[] bytes, int start, int length, boolean quoted) {
+      // a quoted empty value is an empty string, any other empty value is null
+      if (length == 0 && !(quoted && isString)) {
+        builder.set(name, null);
+      } else if (parser == null) {
+        builder.convertAndSet(name, new String(bytes, start, length, StandardCharsets.UTF_8));
+      } else {
+        builder.set(name, parser.parse(bytes, start, length));
+      }
+    }
+
+    /**
+     * Sets the value in a row of a batch. Primitive values are parsed without boxing them.
+     */
+    void set(StructuredRecordBatch batch, int row, byte[] bytes, int start, int length, boolean quoted) {
+      // a quoted empty value is an empty string, any other empty value is null, which every value of the row already is
+      if (length == 0 && !(quoted && isString)) {
+        return;
+      }
+      switch (type) {
+        case INT:
+          batch.setInt(index, row, (int) parseLong(bytes, start, length, true));
+          break;
+        case LONG:
+          batch.setLong(index, row, parseLong(bytes, start, length, false));
+          break;
+        case FLOAT:
+          batch.setFloat(index, row, Float.parseFloat(new String(bytes, start, length, StandardCharsets.UTF_8)));
+          break;
+        case DOUBLE:
+          batch.setDouble(index, row, Double.parseDouble(new String(bytes, start, length, StandardCharsets.UTF_8)));
+          break;
+        case BOOLEAN:
+          batch.setBoolean(index, row, parseBoolean(bytes, start, length));
+          break;
+        default:
+          batch.set(index, row, parser.parse(bytes, start, length));
+      }
+    }
+
+    private static ValueParser getParser(Schema.Type type) {
+      switch (type) {
+        case STRING:
+          return (bytes, start, length) -> new String(bytes, start, length, StandardCharsets.UTF_8);
+        case INT:
+          return (bytes, start, length) -> (int) parseLong(bytes, start, length, true);
+        case LONG:
+          return (bytes, start, length) -> parseLong(bytes, start, length, false);
+        case FLOAT:
+          return (bytes, start, length) -> Float.parseFloat(new String(bytes, start, length, StandardCharsets.UTF_8));
+        case DOUBLE:
+          return (bytes, start, length) ->
+            Double.parseDouble(new String(bytes, start, length, StandardCharsets.UTF_8));
+        case BOOLEAN:
+          return DelimitedRecordParser::parseBoolean;
+        default:
+          return null;
+      }
+    }
+  }
+
+  /**
+   * Parses part of a line into a value.
+   */
+  private interface ValueParser {
+    Object parse(byte[] bytes, int start, int length);
+  }
+
+  /**
+   * Parses an int or long made of ASCII digits, with an optional sign. Anything else, including numbers that could
+   * overflow, is parsed as a String, so that the result and any error is the same as with
+   * {@link Integer#parseInt(String)} or {@link Long#parseLong(String)}.
+   */
+  private static long parseLong(byte[] bytes, int start, int length, boolean isInt) {
+    int maxDigits = isInt ? 9 : 18;
+    int pos = start;
+    int end = start + length;
+    boolean negative = bytes[pos] == '-';
+    if (negative || bytes[pos] == '+') {
+      pos++;
+    }
+    if (pos == end || end - pos > maxDigits) {
+      return parseString(bytes, start, length, isInt);
+    }
+    long value = 0;
+    for (; pos < end; pos++) {
+      int digit = bytes[pos] - '0';
+      if (digit < 0 || digit > 9) {
+        return parseString(bytes, start, length, isInt);
+      }
+      value = value * 10 + digit;
+    }
+    return negative ? -value : value;
+  }
+
+  private static long parseString(byte[] bytes, int start, int length, boolean isInt) {
+    String value = new String(bytes, start, length, StandardCharsets.UTF_8);
+    return isInt ? Integer.parseInt(value) : Long.parseLong(value);
+  }
+
+  /**
+   * Parses a boolean the same way as {@link Boolean#parseBoolean(String)}.
+   */
+  private static boolean parseBoolean(byte[] bytes, int start, int length) {
+    return length == 4
+      && (bytes[start] | 0x20) == 't'
+      && (bytes[start + 1] | 0x20) == 'r'
+      && (bytes[start + 2] | 0x20) == 'u'
+      && (bytes[start + 3] | 0x20) == 'e';
+  }
+}
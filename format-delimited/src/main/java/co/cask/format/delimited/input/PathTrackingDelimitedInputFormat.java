@@ -19,7 +19,11 @@ package co.cask.format.delimited.input;
 import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.data.schema.Schema;
 import co.cask.hydrator.format.input.PathTrackingInputFormat;
-import com.google.common.base.Splitter;
+import co.cask.hydrator.format.input.RecordBatchReader;
+import co.cask.hydrator.format.input.RecordScanner;
+import co.cask.hydrator.format.input.ScanningRecordReader;
+import co.cask.hydrator.format.input.SplittableLineRecordReader;
+import co.cask.hydrator.format.input.StructuredRecordBatch;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
@@ -27,17 +31,22 @@ import org.apache.hadoop.mapreduce.InputSplit;
 import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.apache.hadoop.mapreduce.lib.input.FileSplit;
-import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
 
 import java.io.IOException;
-import java.util.Iterator;
 import javax.annotation.Nullable;
 
 /**
- * Delimited text format that tracks which file each record was read from.
+ * Delimited text format that tracks which file each record was read from. Each line is parsed by a
+ * {@link DelimitedRecordParser} directly from the bytes read, without decoding it into a String first.
+ * If multi-line records are enabled, quoted values can contain line breaks, and records are found with a
+ * {@link CsvRecordScanner} instead of being read line by line. When the records are read a batch at a time, lines are
+ * parsed directly into the columns of the batches if the parser can parse every field of the schema without
+ * converting it.
  */
 public class PathTrackingDelimitedInputFormat extends PathTrackingInputFormat {
   static final String DELIMITER = "delimiter";
+  static final String QUOTED_VALUES = "delimited.quoted.values";
+  static final String MULTILINE = "delimited.multiline";
 
   @Override
   protected RecordReader<NullWritable, StructuredRecord.Builder> createRecordReader(FileSplit split,
@@ -45,52 +54,101 @@ public class PathTrackingDelimitedInputFormat extends PathTrackingInputFormat {
                                                                                     @Nullable String pathField,
                                                                                     @Nullable Schema schema) {
 
-    RecordReader<LongWritable, Text> delegate = (new TextInputFormat()).createRecordReader(split, context);
     String delimiter = context.getConfiguration().get(DELIMITER);
+    boolean quotedValues = context.getConfiguration().getBoolean(QUOTED_VALUES, false);
+    DelimitedRecordParser parser = new DelimitedRecordParser(schema, delimiter, quotedValues);
+    if (quotedValues && context.getConfiguration().getBoolean(MULTILINE, false)) {
+      int maxValues = schema.getFields().size();
+      return new ScanningRecordReader() {
+        @Override
+        protected RecordScanner createScanner(byte[] head, int headLength) {
+          return new CsvRecordScanner(delimiter, maxValues);
+        }
 
-    return new RecordReader<NullWritable, StructuredRecord.Builder>() {
+        @Override
+        protected StructuredRecord.Builder parse(byte[] bytes, int offset, int length) {
+          return parser.parse(bytes, offset, length);
+        }
+      };
+    }
 
-      @Override
-      public void initialize(InputSplit split, TaskAttemptContext context) throws IOException, InterruptedException {
-        delegate.initialize(split, context);
-      }
+    RecordReader<LongWritable, Text> delegate = new SplittableLineRecordReader();
+    return parser.canParseBatches()
+      ? new BatchingLineRecordReader(delegate, parser, schema) : new LineRecordReader(delegate, parser);
+  }
 
-      @Override
-      public boolean nextKeyValue() throws IOException, InterruptedException {
-        return delegate.nextKeyValue();
-      }
+  /**
+   * Parses each line read by a line record reader into a record.
+   */
+  private static class LineRecordReader extends RecordReader<NullWritable, StructuredRecord.Builder> {
+    final RecordReader<LongWritable, Text> delegate;
+    final DelimitedRecordParser parser;
 
-      @Override
-      public NullWritable getCurrentKey() {
-        return NullWritable.get();
-      }
+    LineRecordReader(RecordReader<LongWritable, Text> delegate, DelimitedRecordParser parser) {
+      this.delegate = delegate;
+      this.parser = parser;
+    }
 
-      @Override
-      public StructuredRecord.Builder getCurrentValue() throws IOException, InterruptedException {
-        String delimitedString = delegate.getCurrentValue().toString();
+    @Override
+    public void initialize(InputSplit split, TaskAttemptContext context) throws IOException, InterruptedException {
+      delegate.initialize(split, context);
+    }
 
-        StructuredRecord.Builder builder = StructuredRecord.builder(schema);
-        Iterator<Schema.Field> fields = schema.getFields().iterator();
+    @Override
+    public boolean nextKeyValue() throws IOException, InterruptedException {
+      return delegate.nextKeyValue();
+    }
 
-        for (String part : Splitter.on(delimiter).split(delimitedString)) {
-          if (part.isEmpty()) {
-            builder.set(fields.next().getName(), null);
-          } else {
-            builder.convertAndSet(fields.next().getName(), part);
-          }
-        }
-        return builder;
-      }
+    @Override
+    public NullWritable getCurrentKey() {
+      return NullWritable.get();
+    }
 
-      @Override
-      public float getProgress() throws IOException, InterruptedException {
-        return delegate.getProgress();
-      }
+    @Override
+    public StructuredRecord.Builder getCurrentValue() throws IOException, InterruptedException {
+      Text line = delegate.getCurrentValue();
+      return parser.parse(line.getBytes(), 0, line.getLength());
+    }
+
+    @Override
+    public float getProgress() throws IOException, InterruptedException {
+      return delegate.getProgress();
+    }
+
+    @Override
+    public void close() throws IOException {
+      delegate.close();
+    }
+  }
 
-      @Override
-      public void close() throws IOException {
-        delegate.close();
+  /**
+   * A line record reader that can also be read a batch at a time, in which case the lines are parsed directly into
+   * the columns of the batch. Records that are read one at a time are still parsed directly into builders, without
+   * going through a batch.
+   */
+  private static final class BatchingLineRecordReader extends LineRecordReader implements RecordBatchReader {
+    private final Schema schema;
+    private StructuredRecordBatch batch;
+
+    BatchingLineRecordReader(RecordReader<LongWritable, Text> delegate, DelimitedRecordParser parser,
+                             Schema schema) {
+      super(delegate, parser);
+      this.schema = schema;
+    }
+
+    @Nullable
+    @Override
+    public StructuredRecordBatch nextBatch() throws IOException, InterruptedException {
+      if (batch == null) {
+        batch = new StructuredRecordBatch(schema);
+      } else {
+        batch.reset();
+      }
+      while (!batch.isFull() && delegate.nextKeyValue()) {
+        Text line = delegate.getCurrentValue();
+        parser.parse(line.getBytes(), 0, line.getLength(), batch, batch.addRow());
       }
-    };
+      return batch.size() == 0 ? null : batch;
+    }
   }
 }
@@ -24,8 +24,8 @@ import co.cask.cdap.api.data.batch.OutputFormatProvider;
 import co.cask.cdap.api.plugin.PluginClass;
 import co.cask.cdap.api.plugin.PluginConfig;
 import co.cask.cdap.api.plugin.PluginPropertyField;
+import co.cask.hydrator.format.output.CompressedTextOutputFormat;
 
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import javax.annotation.Nullable;
@@ -53,10 +53,15 @@ public class DelimitedOutputFormatProvider implements OutputFormatProvider {
 
   @Override
   public Map<String, String> getOutputFormatConfiguration() {
-    if (conf.containsMacro("delimiter")) {
-      return Collections.emptyMap();
+    Map<String, String> configuration = new HashMap<>();
+    if (!conf.containsMacro("delimiter")) {
+      configuration.putAll(StructuredDelimitedOutputFormat.getConfiguration(conf.delimiter, false));
     }
-    return StructuredDelimitedOutputFormat.getConfiguration(conf.delimiter);
+    if (!conf.containsMacro("compressionCodec") && !conf.containsMacro("compressionThreads")) {
+      configuration.putAll(CompressedTextOutputFormat.getCompressionConfiguration(conf.compressionCodec,
+                                                                                  conf.compressionThreads));
+    }
+    return configuration;
   }
 
   /**
@@ -64,12 +69,26 @@ public class DelimitedOutputFormatProvider implements OutputFormatProvider {
    */
   public static class Conf extends PluginConfig {
     private static final String DELIMITER_DESC = "Delimiter to use to separate record fields.";
+    private static final String CODEC_DESC = "Compression codec to use when writing data. Must be 'gzip', 'bzip2', "
+      + "'snappy', 'lz4', 'deflate', or 'none'.";
+    private static final String THREADS_DESC = "Number of threads to compress each file with. More than one "
+      + "thread can only be used with the 'gzip' codec. The default is 1.";
 
     @Macro
     @Nullable
     @Description(DELIMITER_DESC)
     private String delimiter;
 
+    @Macro
+    @Nullable
+    @Description(CODEC_DESC)
+    private String compressionCodec;
+
+    @Macro
+    @Nullable
+    @Description(THREADS_DESC)
+    private Integer compressionThreads;
+
     public Conf() {
       delimiter = ",";
     }
@@ -78,6 +97,10 @@ public class DelimitedOutputFormatProvider implements OutputFormatProvider {
   private static PluginClass getPluginClass() {
     Map<String, PluginPropertyField> properties = new HashMap<>();
     properties.put("delimiter", new PluginPropertyField("delimiter", Conf.DELIMITER_DESC, "string", false, true));
+    properties.put("compressionCodec",
+                   new PluginPropertyField("compressionCodec", Conf.CODEC_DESC, "string", false, true));
+    properties.put("compressionThreads",
+                   new PluginPropertyField("compressionThreads", Conf.THREADS_DESC, "int", false, true));
     return new PluginClass("outputformat", NAME, DESC, DelimitedOutputFormatProvider.class.getName(),
                            "conf", properties);
   }
@@ -0,0 +1,185 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.format.delimited.output;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.format.StructuredRecordStringConverter;
+import co.cask.hydrator.format.output.Utf8Buffer;
+import org.apache.hadoop.io.Text;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Encodes StructuredRecords as lines of delimited text, directly into a reused UTF-8 buffer. This is the reverse of
+ * the DelimitedRecordParser. Values are written in the order of the fields of the schema, and null values are
+ * written as empty values, the same as {@link StructuredRecordStringConverter#toDelimitedString}.
+ *
+ * The encoder of each field is chosen once for each schema. Int, long, float, double, boolean and string values
+ * are encoded directly. Values of other types, and of logical types, are converted with
+ * StructuredRecordStringConverter, so they are written the same way as before.
+ *
+ * If quoted values are enabled, values that contain the delimiter, a double quote or a line break are enclosed
+ * in double quotes as described in RFC 4180, and a double quote is escaped by another double quote. Empty strings
+ * are written as a pair of double quotes, so that they are not read back as null.
+ */
+final class DelimitedRecordEncoder {
+  private static final byte QUOTE = '"';
+  private final String delimiter;
+  private final byte[] delimiterBytes;
+  private final boolean quotedValues;
+  private final Utf8Buffer buffer;
+  private Schema schema;
+  private String[] names;
+  private ValueEncoder[] encoders;
+
+  /**
+   * @param delimiter the delimiter between values
+   * @param quotedValues whether to enclose values in double quotes when needed
+   */
+  DelimitedRecordEncoder(String delimiter, boolean quotedValues) {
+    this.delimiter = delimiter;
+    this.delimiterBytes = delimiter.getBytes(StandardCharsets.UTF_8);
+    this.quotedValues = quotedValues;
+    this.buffer = new Utf8Buffer(1024);
+  }
+
+  /**
+   * Encodes a record into the given text, replacing its contents.
+   */
+  void encode(StructuredRecord record, Text text) {
+    Schema recordSchema = record.getSchema();
+    // records usually share the same schema instance, so only compare the schemas if they are different instances
+    if (recordSchema != schema && (schema == null || !schema.equals(recordSchema))) {
+      compile(recordSchema);
+    }
+    buffer.clear();
+    for (int i = 0; i < names.length; i++) {
+      if (i > 0) {
+        buffer.append(delimiterBytes);
+      }
+      Object value = record.get(names[i]);
+      if (value == null) {
+        continue;
+      }
+      int start = buffer.getLength();
+      encoders[i].encode(value, buffer);
+      if (quotedValues) {
+        quoteIfNeeded(start);
+      }
+    }
+    text.set(buffer.getBytes(), 0, buffer.getLength());
+  }
+
+  private void compile(Schema recordSchema) {
+    List<Schema.Field> fields = recordSchema.getFields();
+    String[] fieldNames = new String[fields.size()];
+    ValueEncoder[] fieldEncoders = new ValueEncoder[fields.size()];
+    for (int i = 0; i < fieldNames.length; i++) {
+      fieldNames[i] = fields.get(i).getName();
+      fieldEncoders[i] = createEncoder(fields.get(i));
+    }
+    this.schema = recordSchema;
+    this.names = fieldNames;
+    this.encoders = fieldEncoders;
+  }
+
+  private ValueEncoder createEncoder(Schema.Field field) {
+    Schema fieldSchema = field.getSchema().isNullable() ? field.getSchema().getNonNullable() : field.getSchema();
+    if (fieldSchema.getLogicalType() == null) {
+      switch (fieldSchema.getType()) {
+        case INT:
+        case LONG:
+          return (value, out) -> out.append(((Number) value).longValue());
+        case BOOLEAN:
+          return (value, out) -> out.append((boolean) (Boolean) value);
+        case FLOAT:
+        case DOUBLE:
+          return (value, out) -> out.append(value.toString());
+        case STRING:
+          return (value, out) -> out.append(value instanceof CharSequence ? (CharSequence) value : value.toString());
+        default:
+          break;
+      }
+    }
+    // convert other types as a record with just this field, so they are written exactly as before
+    Schema single = Schema.recordOf("record", field);
+    String name = field.getName();
+    return (value, out) -> {
+      StructuredRecord record = StructuredRecord.builder(single).set(name, value).build();
+      out.append(StructuredRecordStringConverter.toDelimitedString(record, delimiter));
+    };
+  }
+
+  /**
+   * Encloses the value that starts at the given position in double quotes, if it is empty or contains the
+   * delimiter, a double quote or a line break.
+   */
+  private void quoteIfNeeded(int start) {
+    int end = buffer.getLength();
+    byte[] bytes = buffer.getBytes();
+    int quotes = 0;
+    boolean needsQuotes = start == end;
+    for (int i = start; i < end; i++) {
+      byte b = bytes[i];
+      if (b == QUOTE) {
+        quotes++;
+        needsQuotes = true;
+      } else if (b == '\n' || b == '\r' || (b == delimiterBytes[0] && matchesDelimiter(bytes, i, end))) {
+        needsQuotes = true;
+      }
+    }
+    if (!needsQuotes) {
+      return;
+    }
+
+    // shift the value to make room for the quotes, starting from the end so nothing is overwritten
+    int newEnd = end + quotes + 2;
+    buffer.ensureCapacity(newEnd);
+    bytes = buffer.getBytes();
+    int pos = newEnd;
+    bytes[--pos] = QUOTE;
+    for (int i = end - 1; i >= start; i--) {
+      bytes[--pos] = bytes[i];
+      if (bytes[i] == QUOTE) {
+        bytes[--pos] = QUOTE;
+      }
+    }
+    bytes[--pos] = QUOTE;
+    buffer.setLength(newEnd);
+  }
+
+  private boolean matchesDelimiter(byte[] bytes, int pos, int end) {
+    if (pos + delimiterBytes.length > end) {
+      return false;
+    }
+    for (int i = 1; i < delimiterBytes.length; i++) {
+      if (bytes[pos + i] != delimiterBytes[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Encodes a value that is not null.
+   */
+  private interface ValueEncoder {
+    void encode(Object value, Utf8Buffer out);
+  }
+}
@@ -18,38 +18,42 @@ package co.cask.format.delimited.output;
 
 import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.dataset.lib.KeyValue;
-import co.cask.cdap.format.StructuredRecordStringConverter;
+import co.cask.hydrator.format.output.CompressedTextOutputFormat;
 import co.cask.hydrator.format.output.DelegatingOutputFormat;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.OutputFormat;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
-import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
 
 import java.nio.charset.StandardCharsets;
 import java.util.Base64;
-import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.function.Function;
 
 /**
- * Converts StructuredRecord into string before delegating to TextOutputFormat.
+ * Encodes StructuredRecords as delimited text before delegating to CompressedTextOutputFormat. Each task encodes
+ * its records into a single reused Text with a {@link DelimitedRecordEncoder}.
  */
 public class StructuredDelimitedOutputFormat extends DelegatingOutputFormat<NullWritable, Text> {
   static final String DELIMITER_KEY = "delimiter";
+  static final String QUOTED_VALUES_KEY = "delimited.output.quoted.values";
 
-  static Map<String, String> getConfiguration(String delimiter) {
+  static Map<String, String> getConfiguration(String delimiter, boolean quotedValues) {
+    Map<String, String> configuration = new HashMap<>();
     // base64 encode the delimiter to deal with some common delimiters that are illegal XML characters.
     // most control characters fall into this category.
     // trying to set it in the Hadoop conf will cause parse errors
     String encoded = Base64.getEncoder().encodeToString(delimiter.getBytes(StandardCharsets.UTF_8));
-    return Collections.singletonMap(DELIMITER_KEY, encoded);
+    configuration.put(DELIMITER_KEY, encoded);
+    configuration.put(QUOTED_VALUES_KEY, String.valueOf(quotedValues));
+    return configuration;
   }
 
   @Override
   protected OutputFormat<NullWritable, Text> createDelegate() {
-    return new TextOutputFormat<>();
+    return new CompressedTextOutputFormat<>();
   }
 
   @Override
@@ -57,8 +61,14 @@ public class StructuredDelimitedOutputFormat extends DelegatingOutputFormat<Null
     Configuration hConf = context.getConfiguration();
     String encodedDelimiter = hConf.get(DELIMITER_KEY);
     String delimiter = new String(Base64.getDecoder().decode(encodedDelimiter), StandardCharsets.UTF_8);
-    return record -> new KeyValue<>(NullWritable.get(),
-                                    new Text(StructuredRecordStringConverter.toDelimitedString(record, delimiter)));
+    DelimitedRecordEncoder encoder = new DelimitedRecordEncoder(delimiter, hConf.getBoolean(QUOTED_VALUES_KEY, false));
+    // the delegate writes the text before the next record is converted, so the same text is used for every record
+    Text text = new Text();
+    KeyValue<NullWritable, Text> keyValue = new KeyValue<>(NullWritable.get(), text);
+    return record -> {
+      encoder.encode(record, text);
+      return keyValue;
+    };
   }
 
 }
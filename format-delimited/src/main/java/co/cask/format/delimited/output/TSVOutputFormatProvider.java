@@ -17,14 +17,18 @@
 package co.cask.format.delimited.output;
 
 import co.cask.cdap.api.annotation.Description;
+import co.cask.cdap.api.annotation.Macro;
 import co.cask.cdap.api.annotation.Name;
 import co.cask.cdap.api.annotation.Plugin;
 import co.cask.cdap.api.data.batch.OutputFormatProvider;
 import co.cask.cdap.api.plugin.PluginClass;
+import co.cask.cdap.api.plugin.PluginConfig;
 import co.cask.cdap.api.plugin.PluginPropertyField;
+import co.cask.hydrator.format.output.CompressedTextOutputFormat;
 
 import java.util.HashMap;
 import java.util.Map;
+import javax.annotation.Nullable;
 
 /**
  * Output format plugin for tsv.
@@ -36,6 +40,11 @@ public class TSVOutputFormatProvider implements OutputFormatProvider {
   public static final PluginClass PLUGIN_CLASS = getPluginClass();
   static final String NAME = "tsv";
   static final String DESC = "Plugin for writing files in tsv format.";
+  private final Conf conf;
+
+  public TSVOutputFormatProvider(Conf conf) {
+    this.conf = conf;
+  }
 
   @Override
   public String getOutputFormatClassName() {
@@ -44,12 +53,41 @@ public class TSVOutputFormatProvider implements OutputFormatProvider {
 
   @Override
   public Map<String, String> getOutputFormatConfiguration() {
-    return StructuredDelimitedOutputFormat.getConfiguration("\t");
+    Map<String, String> configuration = StructuredDelimitedOutputFormat.getConfiguration("\t", false);
+    if (!conf.containsMacro("compressionCodec") && !conf.containsMacro("compressionThreads")) {
+      configuration.putAll(CompressedTextOutputFormat.getCompressionConfiguration(conf.compressionCodec,
+                                                                                  conf.compressionThreads));
+    }
+    return configuration;
+  }
+
+  /**
+   * Configuration for the tsv format.
+   */
+  public static class Conf extends PluginConfig {
+    private static final String CODEC_DESC = "Compression codec to use when writing data. Must be 'gzip', 'bzip2', "
+      + "'snappy', 'lz4', 'deflate', or 'none'.";
+    private static final String THREADS_DESC = "Number of threads to compress each file with. More than one "
+      + "thread can only be used with the 'gzip' codec. The default is 1.";
+
+    @Macro
+    @Nullable
+    @Description(CODEC_DESC)
+    private String compressionCodec;
+
+    @Macro
+    @Nullable
+    @Description(THREADS_DESC)
+    private Integer compressionThreads;
   }
 
   private static PluginClass getPluginClass() {
     Map<String, PluginPropertyField> properties = new HashMap<>();
+    properties.put("compressionCodec",
+                   new PluginPropertyField("compressionCodec", Conf.CODEC_DESC, "string", false, true));
+    properties.put("compressionThreads",
+                   new PluginPropertyField("compressionThreads", Conf.THREADS_DESC, "int", false, true));
     return new PluginClass("outputformat", NAME, DESC, TSVOutputFormatProvider.class.getName(),
-                           null, properties);
+                           "conf", properties);
   }
 }
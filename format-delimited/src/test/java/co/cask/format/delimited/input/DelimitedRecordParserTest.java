@@ -0,0 +1,201 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.format.delimited.input;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.hydrator.format.input.StructuredRecordBatch;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Tests for {@link DelimitedRecordParser}.
+ */
+public class DelimitedRecordParserTest {
+  private static final Schema SCHEMA = Schema.recordOf(
+    "record",
+    Schema.Field.of("i", Schema.nullableOf(Schema.of(Schema.Type.INT))),
+    Schema.Field.of("l", Schema.nullableOf(Schema.of(Schema.Type.LONG))),
+    Schema.Field.of("f", Schema.nullableOf(Schema.of(Schema.Type.FLOAT))),
+    Schema.Field.of("d", Schema.nullableOf(Schema.of(Schema.Type.DOUBLE))),
+    Schema.Field.of("b", Schema.nullableOf(Schema.of(Schema.Type.BOOLEAN))),
+    Schema.Field.of("s", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+  private static final Schema STRINGS = Schema.recordOf(
+    "strings",
+    Schema.Field.of("a", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("b", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("c", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+
+  @Test
+  public void testTypes() {
+    DelimitedRecordParser parser = new DelimitedRecordParser(SCHEMA, ",", false);
+    StructuredRecord record = parse(parser, "-12,+34,1.5,-2.25E3,TRUE,héllo 😀");
+    Assert.assertEquals(-12, (int) record.<Integer>get("i"));
+    Assert.assertEquals(34L, (long) record.<Long>get("l"));
+    Assert.assertEquals(1.5f, record.<Float>get("f"), 0f);
+    Assert.assertEquals(-2250d, record.<Double>get("d"), 0d);
+    Assert.assertTrue(record.<Boolean>get("b"));
+    Assert.assertEquals("héllo 😀", record.get("s"));
+
+    record = parse(parser, "2147483647,-9223372036854775808,0,0,yes,");
+    Assert.assertEquals(Integer.MAX_VALUE, (int) record.<Integer>get("i"));
+    Assert.assertEquals(Long.MIN_VALUE, (long) record.<Long>get("l"));
+    Assert.assertFalse(record.<Boolean>get("b"));
+  }
+
+  @Test
+  public void testInvalidNumbers() {
+    DelimitedRecordParser parser = new DelimitedRecordParser(SCHEMA, ",", false);
+    for (String line : new String[] { "2147483648", "-", "12a", "1.0", ",9223372036854775808", ",,abc", ",,,1..2" }) {
+      try {
+        parse(parser, line);
+        Assert.fail(String.format("Expected line '%s' to be rejected.", line));
+      } catch (NumberFormatException e) {
+        // expected, the same error as Integer.parseInt, Long.parseLong, Float.parseFloat or Double.parseDouble
+      }
+    }
+  }
+
+  @Test
+  public void testEmptyAndMissingValues() {
+    DelimitedRecordParser parser = new DelimitedRecordParser(STRINGS, ",", true);
+    assertValues(parser, "a,,c", "a", null, "c");
+    assertValues(parser, ",,", null, null, null);
+    // quoted empty values are empty strings
+    assertValues(parser, "\"\",,\"\"", "", null, "");
+    // values missing at the end of the line are null
+    assertValues(parser, "a", "a", null, null);
+    assertValues(parser, "", null, null, null);
+    assertValues(parser, "a,b,", "a", "b", null);
+
+    // a quoted empty value of a non-string field is null
+    StructuredRecord record = parse(new DelimitedRecordParser(SCHEMA, ",", true), "\"\",\"5\"");
+    Assert.assertNull(record.get("i"));
+    Assert.assertEquals(5L, (long) record.<Long>get("l"));
+    Assert.assertNull(record.get("s"));
+  }
+
+  @Test
+  public void testTooManyValues() {
+    try {
+      parse(new DelimitedRecordParser(STRINGS, ",", true), "a,b,c,d");
+      Assert.fail("Expected a line with too many values to be rejected.");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testQuotedValues() {
+    DelimitedRecordParser parser = new DelimitedRecordParser(STRINGS, ",", true);
+    // RFC 4180 quoting, with delimiters, escaped quotes and line breaks in quoted values
+    assertValues(parser, "\"a,b\",\"say \"\"hi\"\"\",\"line\r\nbreak\"", "a,b", "say \"hi\"", "line\r\nbreak");
+    assertValues(parser, "\"\"\"\",x,\"\"\"a\"\"\"", "\"", "x", "\"a\"");
+    // quotes are only special at the start of a value
+    assertValues(parser, "a\"b,c\"\"d,\"e\"", "a\"b", "c\"\"d", "e");
+    // text between the closing quote and the delimiter is part of the value
+    assertValues(parser, "\"ab\"cd,\"e\" f,g", "abcd", "e f", "g");
+    // an unterminated quoted value ends at the end of the line
+    assertValues(parser, "a,\"b,c", "a", "b,c", null);
+    // long quoted values
+    StringBuilder longValue = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      longValue.append("é,");
+    }
+    assertValues(parser, "x,\"" + longValue + "\",y", "x", longValue.toString(), "y");
+  }
+
+  @Test
+  public void testQuotesDisabled() {
+    DelimitedRecordParser parser = new DelimitedRecordParser(STRINGS, ",", false);
+    assertValues(parser, "\"a,b\",\"\"", "\"a", "b\"", "\"\"");
+  }
+
+  @Test
+  public void testMultiByteDelimiters() {
+    assertValues(new DelimitedRecordParser(STRINGS, "::", true), "a:b::\"c::d\"::", "a:b", "c::d", null);
+    assertValues(new DelimitedRecordParser(STRINGS, "§", false), "é§§😀", "é", null, "😀");
+    try {
+      new DelimitedRecordParser(STRINGS, "", false);
+      Assert.fail("Expected an empty delimiter to be rejected.");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testOffset() {
+    DelimitedRecordParser parser = new DelimitedRecordParser(STRINGS, ",", true);
+    byte[] bytes = "xx\"a\",b,c\"yy".getBytes(StandardCharsets.UTF_8);
+    StructuredRecord record = parser.parse(bytes, 2, bytes.length - 4).build();
+    Assert.assertEquals("a", record.get("a"));
+    Assert.assertEquals("b", record.get("b"));
+    Assert.assertEquals("c", record.get("c"));
+  }
+
+  @Test
+  public void testBatches() {
+    DelimitedRecordParser parser = new DelimitedRecordParser(SCHEMA, ",", true);
+    Assert.assertTrue(parser.canParseBatches());
+    StructuredRecordBatch batch = new StructuredRecordBatch(SCHEMA, 4);
+    String[] lines = { "1,2,3.5,4.5,true,\"a,b\"", ",,,,,", "-7", ",,,,,\"\"" };
+    for (String line : lines) {
+      byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+      parser.parse(bytes, 0, bytes.length, batch, batch.addRow());
+    }
+    Assert.assertEquals(4, batch.size());
+    // the rows of the batch have the same values as the records parsed one at a time
+    for (int row = 0; row < lines.length; row++) {
+      StructuredRecord expected = parse(parser, lines[row]);
+      StructuredRecord actual = batch.toBuilder(row).build();
+      for (Schema.Field field : SCHEMA.getFields()) {
+        Assert.assertEquals(lines[row] + ": " + field.getName(), expected.get(field.getName()),
+                            actual.get(field.getName()));
+      }
+    }
+    Assert.assertEquals(1, batch.getInts(0)[0]);
+    Assert.assertEquals(2L, batch.getLongs(1)[0]);
+    Assert.assertTrue(batch.isNull(0, 1));
+    Assert.assertEquals(-7, batch.getInts(0)[2]);
+
+    Schema withDate = Schema.recordOf("date",
+                                      Schema.Field.of("d", Schema.nullableOf(Schema.of(Schema.LogicalType.DATE))));
+    DelimitedRecordParser dateParser = new DelimitedRecordParser(withDate, ",", true);
+    Assert.assertFalse(dateParser.canParseBatches());
+    try {
+      dateParser.parse(new byte[0], 0, 0, new StructuredRecordBatch(withDate), 0);
+      Assert.fail("Expected parsing a batch to fail for a date field.");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+  }
+
+  private static void assertValues(DelimitedRecordParser parser, String line, String a, String b, String c) {
+    StructuredRecord record = parse(parser, line);
+    Assert.assertEquals(line, a, record.get("a"));
+    Assert.assertEquals(line, b, record.get("b"));
+    Assert.assertEquals(line, c, record.get("c"));
+  }
+
+  private static StructuredRecord parse(DelimitedRecordParser parser, String line) {
+    byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+    return parser.parse(bytes, 0, bytes.length).build();
+  }
+}
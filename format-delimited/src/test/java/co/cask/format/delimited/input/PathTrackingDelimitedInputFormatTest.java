@@ -0,0 +1,225 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.format.delimited.input;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.hydrator.format.input.RecordBatchReader;
+import co.cask.hydrator.format.input.StructuredRecordBatch;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests for reading delimited files with {@link PathTrackingDelimitedInputFormat}.
+ */
+public class PathTrackingDelimitedInputFormatTest {
+  private static final Schema SCHEMA = Schema.recordOf(
+    "record",
+    Schema.Field.of("id", Schema.of(Schema.Type.INT)),
+    Schema.Field.of("text", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("n", Schema.nullableOf(Schema.of(Schema.Type.LONG))));
+  private static final String[] WORDS = { "a", "bc", "déf", "ghij", "😀" };
+  private static final String[] SEPARATORS = { " ", ", ", "\n", "\r\n", " \"", "\" " };
+
+  @ClassRule
+  public static final TemporaryFolder TMP_FOLDER = new TemporaryFolder();
+
+  @Test
+  public void testMultilineSplits() throws Exception {
+    // quoted values contain delimiters, quotes and line breaks, so most line breaks are not the end of a record
+    Random random = new Random(0);
+    StringBuilder csv = new StringBuilder();
+    List<String> expected = new ArrayList<>();
+    for (int id = 0; id < 3000; id++) {
+      StringBuilder text = new StringBuilder(WORDS[random.nextInt(WORDS.length)]);
+      for (int i = random.nextInt(6); i > 0; i--) {
+        text.append(SEPARATORS[random.nextInt(SEPARATORS.length)]).append(WORDS[random.nextInt(WORDS.length)]);
+      }
+      boolean quoted = random.nextBoolean() || text.toString().matches("(?s).*[,\"\r\n].*");
+      csv.append(id).append(',')
+        .append(quoted ? "\"" + text.toString().replace("\"", "\"\"") + "\"" : text).append(',')
+        .append(id * 1000L).append(random.nextBoolean() ? "\n" : "\r\n");
+      expected.add(id + "|" + text + "|" + id * 1000L);
+    }
+    File file = write(csv.toString());
+
+    Assert.assertEquals(expected, read(file, file.length()));
+    for (long splitSize : new long[] { 101, 500, 10000, file.length() / 2 + 1 }) {
+      Assert.assertEquals("Split size " + splitSize, expected, read(file, splitSize));
+    }
+  }
+
+  @Test
+  public void testDifferentNumberOfValuesAtEnd() throws Exception {
+    // there are too few records after the start of the last splits to compare their number of values
+    File file = write("1,a,2\n3\n4,\"b\nc\"\n5,d,6\n7,\"e,f\"\n");
+    List<String> expected = read(file, file.length());
+    Assert.assertEquals(5, expected.size());
+    Assert.assertEquals("4|b\nc|null", expected.get(2));
+    for (long splitSize = 1; splitSize < file.length(); splitSize++) {
+      Assert.assertEquals("Split size " + splitSize, expected, read(file, splitSize));
+    }
+  }
+
+  @Test
+  public void testNoRecordStartFound() throws Exception {
+    // records with different numbers of values cannot be told apart from line breaks in quoted values
+    StringBuilder csv = new StringBuilder();
+    for (int id = 0; csv.length() < 4 * 1024 * 1024; id++) {
+      csv.append(id).append(id % 2 == 0 ? "\n" : ",a\n");
+    }
+    File file = write(csv.toString());
+    Assert.assertEquals(csv.toString().split("\n").length, read(file, file.length()).size());
+    try {
+      read(file, file.length() / 2);
+      Assert.fail("Expected the start of a record not to be found.");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testBatches() throws Exception {
+    StringBuilder csv = new StringBuilder();
+    for (int id = 0; id < 2500; id++) {
+      csv.append(id).append(',').append(id % 10 == 0 ? "" : WORDS[id % WORDS.length]).append(',')
+        .append(id % 7 == 0 ? "" : String.valueOf(id * 1000L)).append(id % 3 == 0 ? "\r\n" : "\n");
+    }
+    File file = write(csv.toString());
+
+    // records read one at a time are parsed directly, and must be the same as the rows of the batches
+    List<StructuredRecord> records = readRecords(file, SCHEMA);
+    Assert.assertEquals(2500, records.size());
+    Assert.assertEquals(Integer.valueOf(2499), records.get(2499).get("id"));
+    List<Integer> batchSizes = new ArrayList<>();
+    Assert.assertEquals(records, readBatches(file, SCHEMA, batchSizes));
+    Assert.assertEquals(Arrays.asList(StructuredRecordBatch.DEFAULT_CAPACITY, StructuredRecordBatch.DEFAULT_CAPACITY,
+                                      2500 - 2 * StructuredRecordBatch.DEFAULT_CAPACITY), batchSizes);
+  }
+
+  @Test
+  public void testBatchesOfConvertedFields() throws Exception {
+    // dates are converted after they are parsed, so they cannot be parsed into batches
+    Schema schema = Schema.recordOf("record",
+                                    Schema.Field.of("id", Schema.of(Schema.Type.INT)),
+                                    Schema.Field.of("day", Schema.nullableOf(Schema.of(Schema.LogicalType.DATE))));
+    File file = write("1,2018-01-01\n2,\n");
+    try (RecordReader<NullWritable, StructuredRecord.Builder> reader = createReader(file, schema)) {
+      Assert.assertFalse(reader instanceof RecordBatchReader);
+    }
+    List<StructuredRecord> records = readRecords(file, schema);
+    Assert.assertEquals(2, records.size());
+    Assert.assertEquals(LocalDate.of(2018, 1, 1), records.get(0).getDate("day"));
+    Assert.assertNull(records.get(1).get("day"));
+  }
+
+  private static File write(String content) throws IOException {
+    File file = new File(TMP_FOLDER.newFolder(), "data.csv");
+    Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    return file;
+  }
+
+  /**
+   * Reads the records of every split of the file, in order, and returns their values separated by '|'.
+   */
+  private static List<String> read(File file, long splitSize) throws Exception {
+    Configuration conf = new Configuration();
+    conf.set(PathTrackingDelimitedInputFormat.DELIMITER, ",");
+    conf.setBoolean(PathTrackingDelimitedInputFormat.QUOTED_VALUES, true);
+    conf.setBoolean(PathTrackingDelimitedInputFormat.MULTILINE, true);
+    TaskAttemptContextImpl context = new TaskAttemptContextImpl(conf, new TaskAttemptID());
+    PathTrackingDelimitedInputFormat inputFormat = new PathTrackingDelimitedInputFormat();
+    List<String> values = new ArrayList<>();
+    for (long start = 0; start < file.length(); start += splitSize) {
+      FileSplit split = new FileSplit(new Path(file.toURI()), start, Math.min(splitSize, file.length() - start),
+                                      new String[0]);
+      try (RecordReader<NullWritable, StructuredRecord.Builder> reader =
+             inputFormat.createRecordReader(split, context, null, SCHEMA)) {
+        reader.initialize(split, context);
+        while (reader.nextKeyValue()) {
+          StructuredRecord record = reader.getCurrentValue().build();
+          values.add(record.get("id") + "|" + record.get("text") + "|" + record.get("n"));
+        }
+      }
+    }
+    return values;
+  }
+
+  private static RecordReader<NullWritable, StructuredRecord.Builder> createReader(File file, Schema schema)
+    throws Exception {
+    Configuration conf = new Configuration();
+    conf.set(PathTrackingDelimitedInputFormat.DELIMITER, ",");
+    TaskAttemptContextImpl context = new TaskAttemptContextImpl(conf, new TaskAttemptID());
+    FileSplit split = new FileSplit(new Path(file.toURI()), 0, file.length(), new String[0]);
+    RecordReader<NullWritable, StructuredRecord.Builder> reader =
+      new PathTrackingDelimitedInputFormat().createRecordReader(split, context, null, schema);
+    reader.initialize(split, context);
+    return reader;
+  }
+
+  /**
+   * Reads the records of a file without multi-line records one at a time.
+   */
+  private static List<StructuredRecord> readRecords(File file, Schema schema) throws Exception {
+    List<StructuredRecord> records = new ArrayList<>();
+    try (RecordReader<NullWritable, StructuredRecord.Builder> reader = createReader(file, schema)) {
+      while (reader.nextKeyValue()) {
+        records.add(reader.getCurrentValue().build());
+      }
+    }
+    return records;
+  }
+
+  /**
+   * Reads the records of a file without multi-line records a batch at a time.
+   */
+  private static List<StructuredRecord> readBatches(File file, Schema schema,
+                                                    List<Integer> batchSizes) throws Exception {
+    List<StructuredRecord> records = new ArrayList<>();
+    try (RecordReader<NullWritable, StructuredRecord.Builder> reader = createReader(file, schema)) {
+      Assert.assertTrue(reader instanceof RecordBatchReader);
+      StructuredRecordBatch batch;
+      while ((batch = ((RecordBatchReader) reader).nextBatch()) != null) {
+        batchSizes.add(batch.size());
+        for (int row = 0; row < batch.size(); row++) {
+          records.add(batch.getRecord(row));
+        }
+      }
+    }
+    return records;
+  }
+}
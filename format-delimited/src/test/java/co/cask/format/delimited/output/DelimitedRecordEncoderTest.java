@@ -0,0 +1,141 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.format.delimited.output;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.format.StructuredRecordStringConverter;
+import org.apache.hadoop.io.Text;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+/**
+ * Tests for {@link DelimitedRecordEncoder}.
+ */
+public class DelimitedRecordEncoderTest {
+  private static final Schema SCHEMA = Schema.recordOf(
+    "record",
+    Schema.Field.of("i", Schema.nullableOf(Schema.of(Schema.Type.INT))),
+    Schema.Field.of("l", Schema.of(Schema.Type.LONG)),
+    Schema.Field.of("f", Schema.of(Schema.Type.FLOAT)),
+    Schema.Field.of("d", Schema.of(Schema.Type.DOUBLE)),
+    Schema.Field.of("b", Schema.of(Schema.Type.BOOLEAN)),
+    Schema.Field.of("s", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+
+  @Test
+  public void testTypes() {
+    DelimitedRecordEncoder encoder = new DelimitedRecordEncoder(",", true);
+    Assert.assertEquals("-1,9223372036854775807,1.25,-2.5E-10,true,héllo 😀",
+                        encode(encoder, record(-1, Long.MAX_VALUE, "héllo 😀")));
+    Assert.assertEquals("2147483647,-9223372036854775808,1.25,-2.5E-10,true,x",
+                        encode(encoder, record(Integer.MAX_VALUE, Long.MIN_VALUE, "x")));
+    // null values are empty
+    Assert.assertEquals(",0,1.25,-2.5E-10,true,", encode(encoder, record(null, 0L, null)));
+  }
+
+  @Test
+  public void testQuotes() {
+    DelimitedRecordEncoder encoder = new DelimitedRecordEncoder(",", true);
+    Assert.assertEquals("1,2,1.25,-2.5E-10,true,\"a,b\"", encode(encoder, record(1, 2L, "a,b")));
+    Assert.assertEquals("1,2,1.25,-2.5E-10,true,\"say \"\"hi\"\"\"", encode(encoder, record(1, 2L, "say \"hi\"")));
+    Assert.assertEquals("1,2,1.25,-2.5E-10,true,\"\"\"\"", encode(encoder, record(1, 2L, "\"")));
+    Assert.assertEquals("1,2,1.25,-2.5E-10,true,\"two\nlines\"", encode(encoder, record(1, 2L, "two\nlines")));
+    Assert.assertEquals("1,2,1.25,-2.5E-10,true,\"a\rb\"", encode(encoder, record(1, 2L, "a\rb")));
+    // empty strings are quoted, so that they are not read back as null
+    Assert.assertEquals("1,2,1.25,-2.5E-10,true,\"\"", encode(encoder, record(1, 2L, "")));
+    Assert.assertEquals(",2,1.25,-2.5E-10,true,", encode(encoder, record(null, 2L, null)));
+    // multi-byte characters are kept when a value is quoted
+    Assert.assertEquals("1,2,1.25,-2.5E-10,true,\"😀\"\"é\"", encode(encoder, record(1, 2L, "😀\"é")));
+
+    // without quoting, values are written as they are
+    encoder = new DelimitedRecordEncoder(",", false);
+    Assert.assertEquals("1,2,1.25,-2.5E-10,true,say \"hi\", ok",
+                        encode(encoder, record(1, 2L, "say \"hi\", ok")));
+    Assert.assertEquals("1,2,1.25,-2.5E-10,true,", encode(encoder, record(1, 2L, "")));
+  }
+
+  @Test
+  public void testMultiByteDelimiters() {
+    DelimitedRecordEncoder encoder = new DelimitedRecordEncoder("||", true);
+    Assert.assertEquals("1||2||1.25||-2.5E-10||true||a|b", encode(encoder, record(1, 2L, "a|b")));
+    Assert.assertEquals("1||2||1.25||-2.5E-10||true||ab|", encode(encoder, record(1, 2L, "ab|")));
+    Assert.assertEquals("1||2||1.25||-2.5E-10||true||\"a||b\"", encode(encoder, record(1, 2L, "a||b")));
+
+    // the delimiter is matched by its UTF-8 bytes, which other characters do not share
+    encoder = new DelimitedRecordEncoder("¦", true);
+    Assert.assertEquals("1¦2¦1.25¦-2.5E-10¦true¦é£", encode(encoder, record(1, 2L, "é£")));
+    Assert.assertEquals("1¦2¦1.25¦-2.5E-10¦true¦\"a¦b\"", encode(encoder, record(1, 2L, "a¦b")));
+  }
+
+  @Test
+  public void testOtherTypes() {
+    Schema schema = Schema.recordOf(
+      "other",
+      Schema.Field.of("date", Schema.of(Schema.LogicalType.DATE)),
+      Schema.Field.of("timestamp", Schema.nullableOf(Schema.of(Schema.LogicalType.TIMESTAMP_MICROS))),
+      Schema.Field.of("bytes", Schema.of(Schema.Type.BYTES)),
+      Schema.Field.of("s", Schema.of(Schema.Type.STRING)));
+    StructuredRecord record = StructuredRecord.builder(schema)
+      .setDate("date", LocalDate.of(2018, 3, 4))
+      .setTimestamp("timestamp", ZonedDateTime.of(2018, 3, 4, 5, 6, 7, 8000, ZoneOffset.UTC))
+      .set("bytes", new byte[] { 'a', 'b' })
+      .set("s", "x")
+      .build();
+    // types that are not encoded directly are written the same as by StructuredRecordStringConverter
+    Assert.assertEquals(StructuredRecordStringConverter.toDelimitedString(record, ","),
+                        encode(new DelimitedRecordEncoder(",", false), record));
+  }
+
+  @Test
+  public void testReuse() {
+    DelimitedRecordEncoder encoder = new DelimitedRecordEncoder(",", true);
+    Text text = new Text();
+    StringBuilder longValue = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      longValue.append("value ").append(i).append(',');
+    }
+    encoder.encode(record(1, 2L, longValue.toString()), text);
+    Assert.assertEquals("1,2,1.25,-2.5E-10,true,\"" + longValue + "\"", text.toString());
+    // the text is replaced by a shorter record
+    encoder.encode(record(3, 4L, "x"), text);
+    Assert.assertEquals("3,4,1.25,-2.5E-10,true,x", text.toString());
+
+    // records of another schema are encoded with the fields of their schema
+    Schema other = Schema.recordOf("other", Schema.Field.of("s", Schema.of(Schema.Type.STRING)),
+                                   Schema.Field.of("i", Schema.of(Schema.Type.INT)));
+    encoder.encode(StructuredRecord.builder(other).set("s", "a").set("i", 5).build(), text);
+    Assert.assertEquals("a,5", text.toString());
+    encoder.encode(record(6, 7L, "y"), text);
+    Assert.assertEquals("6,7,1.25,-2.5E-10,true,y", text.toString());
+  }
+
+  private static StructuredRecord record(Integer i, long l, String s) {
+    return StructuredRecord.builder(SCHEMA)
+      .set("i", i).set("l", l).set("f", 1.25f).set("d", -2.5E-10d).set("b", true).set("s", s).build();
+  }
+
+  private static String encode(DelimitedRecordEncoder encoder, StructuredRecord record) {
+    Text text = new Text();
+    encoder.encode(record, text);
+    return text.toString();
+  }
+}
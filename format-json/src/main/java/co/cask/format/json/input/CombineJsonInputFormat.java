@@ -17,14 +17,15 @@
 package co.cask.format.json.input;
 
 import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.hydrator.format.input.CombinePathTrackingInputFormat;
 import co.cask.hydrator.format.input.PathTrackingInputFormat;
+import co.cask.hydrator.format.input.PathTrackingRecordReaderWrapper;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.NullWritable;
-import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
-import org.apache.hadoop.mapreduce.lib.input.CombineFileInputFormat;
-import org.apache.hadoop.mapreduce.lib.input.CombineFileRecordReader;
-import org.apache.hadoop.mapreduce.lib.input.CombineFileRecordReaderWrapper;
 import org.apache.hadoop.mapreduce.lib.input.CombineFileSplit;
 
 import java.io.IOException;
@@ -32,15 +33,21 @@ import java.io.IOException;
 /**
  * Combined input format that tracks which file each json record was read from.
  */
-public class CombineJsonInputFormat extends CombineFileInputFormat<NullWritable, StructuredRecord> {
+public class CombineJsonInputFormat extends CombinePathTrackingInputFormat {
+
+  @Override
+  protected boolean isSplitable(JobContext context, Path file) {
+    // multi-line records are read from the decompressed stream, so compressed files cannot be split at all
+    if (context.getConfiguration().getBoolean(PathTrackingJsonInputFormat.MULTILINE, false)
+      && new CompressionCodecFactory(context.getConfiguration()).getCodec(file) != null) {
+      return false;
+    }
+    return super.isSplitable(context, file);
+  }
 
-  /**
-   * Creates a RecordReader that delegates to some other RecordReader for each path in the input split.
-   */
   @Override
-  public RecordReader<NullWritable, StructuredRecord> createRecordReader(InputSplit split, TaskAttemptContext context)
-    throws IOException {
-    return new CombineFileRecordReader<>((CombineFileSplit) split, context, WrapperReader.class);
+  protected Class<? extends RecordReader<NullWritable, StructuredRecord>> getRecordReaderClass() {
+    return WrapperReader.class;
   }
 
   /**
@@ -48,7 +55,7 @@ public class CombineJsonInputFormat extends CombineFileInputFormat<NullWritable,
    * {@link PathTrackingInputFormat}. All it does is pick the i'th path in the CombineFileSplit to create a
    * FileSplit and use the delegate RecordReader to read that split.
    */
-  public static class WrapperReader extends CombineFileRecordReaderWrapper<NullWritable, StructuredRecord> {
+  public static class WrapperReader extends PathTrackingRecordReaderWrapper {
 
     public WrapperReader(CombineFileSplit split, TaskAttemptContext context,
                          Integer idx) throws IOException, InterruptedException {
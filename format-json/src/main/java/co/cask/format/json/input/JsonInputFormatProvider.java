@@ -17,26 +17,30 @@
 package co.cask.format.json.input;
 
 import co.cask.cdap.api.annotation.Description;
+import co.cask.cdap.api.annotation.Macro;
 import co.cask.cdap.api.annotation.Name;
 import co.cask.cdap.api.annotation.Plugin;
 import co.cask.cdap.api.plugin.PluginClass;
+import co.cask.cdap.api.plugin.PluginPropertyField;
 import co.cask.hydrator.format.input.PathTrackingConfig;
 import co.cask.hydrator.format.input.PathTrackingInputFormatProvider;
 
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+
 /**
  * Reads json into StructuredRecords.
  */
 @Plugin(type = "inputformat")
 @Name(JsonInputFormatProvider.NAME)
 @Description(JsonInputFormatProvider.DESC)
-public class JsonInputFormatProvider extends PathTrackingInputFormatProvider<PathTrackingConfig> {
+public class JsonInputFormatProvider extends PathTrackingInputFormatProvider<JsonInputFormatProvider.Conf> {
+  public static final PluginClass PLUGIN_CLASS = getPluginClass();
   static final String NAME = "json";
   static final String DESC = "Plugin for reading files in json format.";
-  public static final PluginClass PLUGIN_CLASS =
-    new PluginClass("inputformat", NAME, DESC, JsonInputFormatProvider.class.getName(),
-                    "conf", PathTrackingConfig.FIELDS);
 
-  public JsonInputFormatProvider(PathTrackingConfig conf) {
+  public JsonInputFormatProvider(Conf conf) {
     super(conf);
   }
 
@@ -51,4 +55,34 @@ public class JsonInputFormatProvider extends PathTrackingInputFormatProvider<Pat
       throw new IllegalArgumentException("Json format cannot be used without specifying a schema.");
     }
   }
+
+  @Override
+  protected void addFormatProperties(Map<String, String> properties) {
+    properties.put(PathTrackingJsonInputFormat.MULTILINE, String.valueOf(conf.isMultilineSupportEnabled()));
+  }
+
+  /**
+   * Plugin config for json input format
+   */
+  public static class Conf extends PathTrackingConfig {
+    private static final String MULTILINE_DESC = "Whether json objects can span multiple lines. The file can either "
+      + "contain a sequence of objects or an array of objects. Files are still split, and each split finds the first "
+      + "object that starts in it. The default is false.";
+
+    @Macro
+    @Nullable
+    @Description(MULTILINE_DESC)
+    private Boolean enableMultilineSupport;
+
+    boolean isMultilineSupportEnabled() {
+      return enableMultilineSupport != null && enableMultilineSupport;
+    }
+  }
+
+  private static PluginClass getPluginClass() {
+    Map<String, PluginPropertyField> properties = new HashMap<>(PathTrackingConfig.FIELDS);
+    properties.put("enableMultilineSupport", new PluginPropertyField("enableMultilineSupport", Conf.MULTILINE_DESC,
+                                                                     "boolean", false, true));
+    return new PluginClass("inputformat", NAME, DESC, JsonInputFormatProvider.class.getName(), "conf", properties);
+  }
 }
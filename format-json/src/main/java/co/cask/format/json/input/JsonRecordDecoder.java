@@ -0,0 +1,313 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.format.json.input;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Decodes JSON objects into StructuredRecords with a streaming parser. Values are set directly on the builder of the
+ * record as they are parsed, and the values of fields that are not in the schema are skipped without being decoded.
+ * The decoder for each field is chosen once, based on the schema of the field.
+ *
+ * Only schemas made of records, arrays, maps with string keys, nullable unions and the boolean, int, long, float,
+ * double and string types are supported, which can be checked with {@link #isSupported(Schema)}.
+ * As with {@link co.cask.cdap.format.StructuredRecordStringConverter}, numbers can be given as strings, and strings
+ * can be given as numbers.
+ */
+final class JsonRecordDecoder {
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+  private final RecordDecoder decoder;
+
+  /**
+   * @param schema the schema of the records to create, which must be supported
+   * @param skipField a field in the schema that is not decoded, such as the path field
+   */
+  JsonRecordDecoder(Schema schema, @Nullable String skipField) {
+    this.decoder = new RecordDecoder(schema, skipField);
+  }
+
+  /**
+   * Returns whether records with the given schema can be decoded.
+   */
+  static boolean isSupported(Schema schema) {
+    switch (schema.getType()) {
+      case RECORD:
+        for (Schema.Field field : schema.getFields()) {
+          if (!isSupported(field.getSchema())) {
+            return false;
+          }
+        }
+        return true;
+      case ARRAY:
+        return isSupported(schema.getComponentSchema());
+      case MAP:
+        Map.Entry<Schema, Schema> mapSchema = schema.getMapSchema();
+        return mapSchema.getKey().getType() == Schema.Type.STRING && isSupported(mapSchema.getValue());
+      case UNION:
+        return schema.isNullable() && isSupported(schema.getNonNullable());
+      case NULL:
+      case BOOLEAN:
+      case INT:
+      case LONG:
+      case FLOAT:
+      case DOUBLE:
+      case STRING:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Decodes a JSON object.
+   *
+   * @param bytes the UTF-8 encoded JSON, which is not modified
+   * @param offset the offset of the JSON in the bytes
+   * @param length the number of bytes to decode
+   * @return a builder for the record, with a value set for every field in the object
+   * @throws IOException if the bytes are not a JSON object that matches the schema
+   */
+  StructuredRecord.Builder decode(byte[] bytes, int offset, int length) throws IOException {
+    try (JsonParser parser = JSON_FACTORY.createJsonParser(bytes, offset, length)) {
+      parser.nextToken();
+      return decoder.decodeBuilder(parser);
+    }
+  }
+
+  private static Decoder createDecoder(Schema schema) {
+    switch (schema.getType()) {
+      case RECORD:
+        RecordDecoder recordDecoder = new RecordDecoder(schema, null);
+        return parser -> recordDecoder.decodeBuilder(parser).build();
+      case ARRAY:
+        return new ArrayDecoder(createDecoder(schema.getComponentSchema()));
+      case MAP:
+        return new MapDecoder(createDecoder(schema.getMapSchema().getValue()));
+      case UNION:
+        Decoder nonNullable = createDecoder(schema.getNonNullable());
+        return parser -> parser.getCurrentToken() == JsonToken.VALUE_NULL ? null : nonNullable.decode(parser);
+      case NULL:
+        return parser -> {
+          expect(parser, JsonToken.VALUE_NULL, schema);
+          return null;
+        };
+      case BOOLEAN:
+        return parser -> {
+          JsonToken token = parser.getCurrentToken();
+          if (token != JsonToken.VALUE_TRUE && token != JsonToken.VALUE_FALSE) {
+            throw unexpected(parser, schema);
+          }
+          return token == JsonToken.VALUE_TRUE;
+        };
+      case INT:
+        return parser -> {
+          long value = decodeLong(parser, schema);
+          if (value != (int) value) {
+            throw new IOException(String.format("Value %d at %s is out of range for an int.",
+                                                value, parser.getCurrentLocation()));
+          }
+          return (int) value;
+        };
+      case LONG:
+        return parser -> decodeLong(parser, schema);
+      case FLOAT:
+        return parser -> (float) decodeDouble(parser, schema);
+      case DOUBLE:
+        return parser -> decodeDouble(parser, schema);
+      case STRING:
+        return parser -> {
+          JsonToken token = parser.getCurrentToken();
+          if (token != JsonToken.VALUE_STRING && token != JsonToken.VALUE_NUMBER_INT
+            && token != JsonToken.VALUE_NUMBER_FLOAT) {
+            throw unexpected(parser, schema);
+          }
+          return parser.getText();
+        };
+      default:
+        // should never happen, since the schema is checked before a decoder is created
+        throw new IllegalArgumentException("Unsupported schema " + schema);
+    }
+  }
+
+  private static long decodeLong(JsonParser parser, Schema schema) throws IOException {
+    JsonToken token = parser.getCurrentToken();
+    if (token == null) {
+      throw unexpected(parser, schema);
+    }
+    switch (token) {
+      case VALUE_NUMBER_INT:
+        return parser.getLongValue();
+      case VALUE_NUMBER_FLOAT:
+        double doubleValue = parser.getDoubleValue();
+        long value = (long) doubleValue;
+        if (value != doubleValue) {
+          throw unexpected(parser, schema);
+        }
+        return value;
+      case VALUE_STRING:
+        try {
+          return Long.parseLong(parser.getText());
+        } catch (NumberFormatException e) {
+          throw unexpected(parser, schema);
+        }
+      default:
+        throw unexpected(parser, schema);
+    }
+  }
+
+  private static double decodeDouble(JsonParser parser, Schema schema) throws IOException {
+    JsonToken token = parser.getCurrentToken();
+    if (token == null) {
+      throw unexpected(parser, schema);
+    }
+    switch (token) {
+      case VALUE_NUMBER_INT:
+      case VALUE_NUMBER_FLOAT:
+        return parser.getDoubleValue();
+      case VALUE_STRING:
+        try {
+          return Double.parseDouble(parser.getText());
+        } catch (NumberFormatException e) {
+          throw unexpected(parser, schema);
+        }
+      default:
+        throw unexpected(parser, schema);
+    }
+  }
+
+  private static void expect(JsonParser parser, JsonToken token, Schema schema) throws IOException {
+    if (parser.getCurrentToken() != token) {
+      throw unexpected(parser, schema);
+    }
+  }
+
+  private static IOException unexpected(JsonParser parser, Schema schema) throws IOException {
+    return new IOException(String.format("Unexpected JSON value '%s' at %s for a value of type '%s'.",
+                                         parser.getText(), parser.getCurrentLocation(), schema.getType()));
+  }
+
+  /**
+   * Decodes the JSON value at the current token of a parser. After decoding, the current token is the last token
+   * of the value.
+   */
+  private interface Decoder {
+    Object decode(JsonParser parser) throws IOException;
+  }
+
+  /**
+   * Decodes JSON objects into records. The decoders of the fields are created the first time an object is decoded,
+   * which allows recursive schemas.
+   */
+  private static final class RecordDecoder {
+    private final Schema schema;
+    private final String skipField;
+    private Map<String, Decoder> fieldDecoders;
+
+    RecordDecoder(Schema schema, @Nullable String skipField) {
+      this.schema = schema;
+      this.skipField = skipField;
+    }
+
+    StructuredRecord.Builder decodeBuilder(JsonParser parser) throws IOException {
+      expect(parser, JsonToken.START_OBJECT, schema);
+      if (fieldDecoders == null) {
+        Map<String, Decoder> decoders = new HashMap<>();
+        for (Schema.Field field : schema.getFields()) {
+          if (!field.getName().equals(skipField)) {
+            decoders.put(field.getName(), createDecoder(field.getSchema()));
+          }
+        }
+        fieldDecoders = decoders;
+      }
+
+      StructuredRecord.Builder builder = StructuredRecord.builder(schema);
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String name = parser.getCurrentName();
+        parser.nextToken();
+        Decoder fieldDecoder = fieldDecoders.get(name);
+        if (fieldDecoder == null) {
+          parser.skipChildren();
+        } else {
+          builder.set(name, fieldDecoder.decode(parser));
+        }
+      }
+      expect(parser, JsonToken.END_OBJECT, schema);
+      return builder;
+    }
+  }
+
+  /**
+   * Decodes JSON arrays into Lists.
+   */
+  private static final class ArrayDecoder implements Decoder {
+    private final Decoder elementDecoder;
+
+    ArrayDecoder(Decoder elementDecoder) {
+      this.elementDecoder = elementDecoder;
+    }
+
+    @Override
+    public Object decode(JsonParser parser) throws IOException {
+      if (parser.getCurrentToken() != JsonToken.START_ARRAY) {
+        throw new IOException(String.format("Expected a JSON array at %s, but found '%s'.",
+                                            parser.getCurrentLocation(), parser.getText()));
+      }
+      List<Object> values = new ArrayList<>();
+      while (parser.nextToken() != JsonToken.END_ARRAY) {
+        values.add(elementDecoder.decode(parser));
+      }
+      return values;
+    }
+  }
+
+  /**
+   * Decodes JSON objects into Maps with string keys.
+   */
+  private static final class MapDecoder implements Decoder {
+    private final Decoder valueDecoder;
+
+    MapDecoder(Decoder valueDecoder) {
+      this.valueDecoder = valueDecoder;
+    }
+
+    @Override
+    public Object decode(JsonParser parser) throws IOException {
+      if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+        throw new IOException(String.format("Expected a JSON object at %s, but found '%s'.",
+                                            parser.getCurrentLocation(), parser.getText()));
+      }
+      Map<String, Object> values = new HashMap<>();
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String key = parser.getCurrentName();
+        parser.nextToken();
+        values.put(key, valueDecoder.decode(parser));
+      }
+      return values;
+    }
+  }
+}
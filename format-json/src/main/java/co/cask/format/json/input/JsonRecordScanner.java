@@ -0,0 +1,328 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.format.json.input;
+
+import co.cask.hydrator.format.input.ByteWindow;
+import co.cask.hydrator.format.input.RecordScanner;
+
+import java.io.IOException;
+
+/**
+ * Finds JSON objects that can span multiple lines. The file either contains a top level array of objects, or a
+ * sequence of objects separated by whitespace. Each object is a record. Objects are found by tracking the depth of
+ * brackets and braces, skipping over strings.
+ *
+ * When a split starts in the middle of a file, each '{' after the start of the split is tried in turn, and the first
+ * one that is followed by a run of well formed objects, that are separated the way records are separated in the file,
+ * is used. A '{' in a string is rarely followed by well formed JSON, and objects nested in a record are usually
+ * followed by a key or by the end of their parent, so neither is mistaken for a record. The exception is a long array
+ * of objects nested in an array of records. If no '{' in the first {@link #MAX_RESYNC_BYTES} of the split is followed
+ * by well formed objects, the split fails instead of guessing where its records start. If the end of the file is
+ * reached first, the split started in the last record, and has no records.
+ */
+final class JsonRecordScanner implements RecordScanner {
+  private static final int VALIDATE_RECORDS = 16;
+  private static final int VALIDATE_BYTES = 64 * 1024;
+  private static final int MAX_RESYNC_BYTES = 1024 * 1024;
+  private static final long INVALID = -2;
+  // what is expected next when validating an object
+  private static final int VALUE = 0;
+  private static final int VALUE_OR_END = 1;
+  private static final int KEY = 2;
+  private static final int KEY_OR_END = 3;
+  private static final int AFTER_VALUE = 4;
+  private final boolean array;
+  private byte[] stack;
+
+  /**
+   * @param head the first bytes of the file
+   * @param headLength the number of bytes in the head
+   */
+  JsonRecordScanner(byte[] head, int headLength) {
+    int pos = skipByteOrderMark(head, headLength);
+    while (pos < headLength && isWhitespace(head[pos])) {
+      pos++;
+    }
+    this.array = pos < headLength && head[pos] == '[';
+    this.stack = new byte[64];
+  }
+
+  @Override
+  public long firstRecord(ByteWindow window) throws IOException {
+    long pos = skipWhitespace(window, 0);
+    if (window.get(pos) == 0xef && window.get(pos + 1) == 0xbb && window.get(pos + 2) == 0xbf) {
+      pos = skipWhitespace(window, pos + 3);
+    }
+    if (array) {
+      if (window.get(pos) != '[') {
+        throw unexpected(window, pos, "'['");
+      }
+      pos = skipWhitespace(window, pos + 1);
+      if (window.get(pos) == ']') {
+        return checkEnd(window, pos + 1, false);
+      }
+    }
+    int b = window.get(pos);
+    if (b < 0 && !array) {
+      return -1;
+    }
+    if (b != '{') {
+      throw unexpected(window, pos, "'{'");
+    }
+    return pos;
+  }
+
+  @Override
+  public long findRecord(ByteWindow window, long position) throws IOException {
+    for (long pos = position; ; pos++) {
+      int b = window.get(pos);
+      if (b < 0) {
+        return -1;
+      }
+      if (pos - position > MAX_RESYNC_BYTES) {
+        throw new IOException(String.format(
+          "Could not find the start of a record within %d bytes after position %d. Either the file is not " +
+            "well formed, or a record that starts before the position is larger than %d bytes. Such files cannot " +
+            "be split.", MAX_RESYNC_BYTES, position, MAX_RESYNC_BYTES));
+      }
+      if (b == '{' && isValid(window, pos)) {
+        return pos;
+      }
+    }
+  }
+
+  @Override
+  public long endOfRecord(ByteWindow window, long recordStart) throws IOException {
+    return scanObject(window, recordStart);
+  }
+
+  @Override
+  public long nextRecord(ByteWindow window, long contentEnd) throws IOException {
+    return next(window, contentEnd, false);
+  }
+
+  /**
+   * Returns whether the objects that start at the given position are well formed and separated like records.
+   */
+  private boolean isValid(ByteWindow window, long recordStart) throws IOException {
+    long pos = recordStart;
+    int records = 0;
+    while (records < VALIDATE_RECORDS || pos - recordStart < VALIDATE_BYTES) {
+      long end = validateObject(window, pos);
+      if (end == INVALID) {
+        return false;
+      }
+      records++;
+      pos = next(window, end, true);
+      if (pos == INVALID) {
+        return false;
+      }
+      if (pos < 0) {
+        return true;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the position just after the end of the object that starts at the given position. Only brackets, braces
+   * and strings are looked at, since the object is checked when it is decoded.
+   */
+  private long scanObject(ByteWindow window, long start) throws IOException {
+    long pos = start;
+    int depth = 0;
+    while (true) {
+      int b = window.get(pos++);
+      switch (b) {
+        case -1:
+          throw unexpected(window, pos - 1, "the end of the object");
+        case '"':
+          pos = skipString(window, pos, false);
+          if (pos < 0) {
+            throw unexpected(window, -pos, "the end of the string");
+          }
+          break;
+        case '{':
+        case '[':
+          push(depth++, b);
+          break;
+        case '}':
+        case ']':
+          if (depth == 0 || stack[--depth] != b) {
+            throw unexpected(window, pos - 1, depth == 0 ? "a value" : "'" + (char) stack[depth] + "'");
+          }
+          if (depth == 0) {
+            return pos;
+          }
+          break;
+        default:
+          break;
+      }
+    }
+  }
+
+  /**
+   * Checks that the object that starts at the given position is well formed JSON, and returns the position just
+   * after the end of the object, or {@link #INVALID} if it is not well formed.
+   */
+  private long validateObject(ByteWindow window, long start) throws IOException {
+    if (window.get(start) != '{') {
+      return INVALID;
+    }
+    push(0, '{');
+    long pos = start + 1;
+    int depth = 1;
+    int state = KEY_OR_END;
+    while (depth > 0) {
+      pos = skipWhitespace(window, pos);
+      int b = window.get(pos++);
+      if ((state == KEY_OR_END || state == VALUE_OR_END || state == AFTER_VALUE) && b == stack[depth - 1]) {
+        depth--;
+        state = AFTER_VALUE;
+      } else if (state == KEY || state == KEY_OR_END) {
+        if (b != '"') {
+          return INVALID;
+        }
+        pos = skipString(window, pos, true);
+        if (pos < 0) {
+          return INVALID;
+        }
+        pos = skipWhitespace(window, pos);
+        if (window.get(pos++) != ':') {
+          return INVALID;
+        }
+        state = VALUE;
+      } else if (state == VALUE || state == VALUE_OR_END) {
+        if (b == '{' || b == '[') {
+          push(depth++, b);
+          state = b == '{' ? KEY_OR_END : VALUE_OR_END;
+        } else if (b == '"') {
+          pos = skipString(window, pos, true);
+          if (pos < 0) {
+            return INVALID;
+          }
+          state = AFTER_VALUE;
+        } else if (isLiteral(b)) {
+          while (isLiteral(window.get(pos))) {
+            pos++;
+          }
+          state = AFTER_VALUE;
+        } else {
+          return INVALID;
+        }
+      } else if (b == ',') {
+        state = stack[depth - 1] == '}' ? KEY : VALUE;
+      } else {
+        return INVALID;
+      }
+    }
+    return pos;
+  }
+
+  /**
+   * Returns the position just after the end of the string whose content starts at the given position. If the string
+   * does not end, or if strict and the string contains a control character, the negated position is returned.
+   */
+  private static long skipString(ByteWindow window, long pos, boolean strict) throws IOException {
+    while (true) {
+      int b = window.get(pos++);
+      if (b < 0 || (strict && b < 0x20)) {
+        return -(pos - 1);
+      }
+      if (b == '\\') {
+        pos++;
+      } else if (b == '"') {
+        return pos;
+      }
+    }
+  }
+
+  private void push(int depth, int b) {
+    if (depth == stack.length) {
+      byte[] newStack = new byte[stack.length * 2];
+      System.arraycopy(stack, 0, newStack, 0, depth);
+      stack = newStack;
+    }
+    stack[depth] = (byte) (b == '{' ? '}' : ']');
+  }
+
+  /**
+   * Returns the start of the record after the object that ends at the given position, -1 if there are no more
+   * records, or {@link #INVALID} if strict and the records are not separated correctly.
+   */
+  private long next(ByteWindow window, long contentEnd, boolean strict) throws IOException {
+    long pos = skipWhitespace(window, contentEnd);
+    int b = window.get(pos);
+    if (array) {
+      if (b == ']') {
+        return checkEnd(window, pos + 1, strict);
+      }
+      if (b != ',') {
+        return fail(window, pos, "',' or ']'", strict);
+      }
+      pos = skipWhitespace(window, pos + 1);
+      b = window.get(pos);
+    } else if (b < 0) {
+      return -1;
+    }
+    return b == '{' ? pos : fail(window, pos, "'{'", strict);
+  }
+
+  /**
+   * Checks that there is only whitespace after the end of the top level array.
+   */
+  private long checkEnd(ByteWindow window, long pos, boolean strict) throws IOException {
+    pos = skipWhitespace(window, pos);
+    return window.get(pos) < 0 ? -1 : fail(window, pos, "the end of the file", strict);
+  }
+
+  private long fail(ByteWindow window, long pos, String expected, boolean strict) throws IOException {
+    if (strict) {
+      return INVALID;
+    }
+    throw unexpected(window, pos, expected);
+  }
+
+  private static IOException unexpected(ByteWindow window, long pos, String expected) throws IOException {
+    int b = window.get(pos);
+    return new IOException(String.format("Expected %s at position %d, but found %s.", expected, pos,
+                                         b < 0 ? "the end of the file" : "'" + (char) b + "'"));
+  }
+
+  private static long skipWhitespace(ByteWindow window, long pos) throws IOException {
+    int b = window.get(pos);
+    while (b >= 0 && isWhitespace((byte) b)) {
+      b = window.get(++pos);
+    }
+    return pos;
+  }
+
+  /**
+   * Returns whether the byte can be part of a number, true, false or null.
+   */
+  private static boolean isLiteral(int b) {
+    return (b >= '0' && b <= '9') || (b >= 'a' && b <= 'z') || b == '-' || b == '+' || b == '.' || b == 'E';
+  }
+
+  private static boolean isWhitespace(byte b) {
+    return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+  }
+
+  private static int skipByteOrderMark(byte[] head, int headLength) {
+    return headLength >= 3 && (head[0] & 0xff) == 0xef && (head[1] & 0xff) == 0xbb && (head[2] & 0xff) == 0xbf ? 3 : 0;
+  }
+}
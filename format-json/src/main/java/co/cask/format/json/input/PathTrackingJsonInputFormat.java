@@ -20,6 +20,9 @@ import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.format.StructuredRecordStringConverter;
 import co.cask.hydrator.format.input.PathTrackingInputFormat;
+import co.cask.hydrator.format.input.RecordScanner;
+import co.cask.hydrator.format.input.ScanningRecordReader;
+import co.cask.hydrator.format.input.SplittableLineRecordReader;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
@@ -27,18 +30,21 @@ import org.apache.hadoop.mapreduce.InputSplit;
 import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.apache.hadoop.mapreduce.lib.input.FileSplit;
-import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import javax.annotation.Nullable;
 
 /**
- * Json format that tracks which file each record was read from.
+ * Json format that tracks which file each record was read from. If the schema is supported by
+ * {@link JsonRecordDecoder}, each line is decoded directly from the bytes read into a record with the schema.
+ * Otherwise, each line is decoded with {@link StructuredRecordStringConverter}. If multi-line records are enabled,
+ * objects can span multiple lines, and are found with a {@link JsonRecordScanner} instead of being read line by line.
  */
 public class PathTrackingJsonInputFormat extends PathTrackingInputFormat {
-
+  static final String MULTILINE = "json.multiline";
 
   private Schema getModifiedSchema(Schema schema, @Nullable String pathField) {
     // if the path field is set, it might not be nullable
@@ -59,14 +65,42 @@ public class PathTrackingJsonInputFormat extends PathTrackingInputFormat {
     return Schema.recordOf(schema.getRecordName(), fieldCopies);
   }
 
+  private StructuredRecord.Builder fromJsonString(String json, Schema schema, Schema modifiedSchema)
+    throws IOException {
+    StructuredRecord record = StructuredRecordStringConverter.fromJsonString(json, modifiedSchema);
+    StructuredRecord.Builder builder = StructuredRecord.builder(schema);
+    for (Schema.Field field : schema.getFields()) {
+      builder.set(field.getName(), record.get(field.getName()));
+    }
+    return builder;
+  }
+
 
   @Override
   protected RecordReader<NullWritable, StructuredRecord.Builder> createRecordReader(FileSplit split,
                                                                                     TaskAttemptContext context,
                                                                                     @Nullable String pathField,
                                                                                     @Nullable Schema schema) {
-    RecordReader<LongWritable, Text> delegate = (new TextInputFormat()).createRecordReader(split, context);
-    Schema modifiedSchema = getModifiedSchema(schema, pathField);
+    JsonRecordDecoder decoder = JsonRecordDecoder.isSupported(schema) ? new JsonRecordDecoder(schema, pathField) : null;
+    Schema modifiedSchema = decoder == null ? getModifiedSchema(schema, pathField) : null;
+    if (context.getConfiguration().getBoolean(MULTILINE, false)) {
+      return new ScanningRecordReader() {
+        @Override
+        protected RecordScanner createScanner(byte[] head, int headLength) {
+          return new JsonRecordScanner(head, headLength);
+        }
+
+        @Override
+        protected StructuredRecord.Builder parse(byte[] bytes, int offset, int length) throws IOException {
+          if (decoder != null) {
+            return decoder.decode(bytes, offset, length);
+          }
+          return fromJsonString(new String(bytes, offset, length, StandardCharsets.UTF_8), schema, modifiedSchema);
+        }
+      };
+    }
+
+    RecordReader<LongWritable, Text> delegate = new SplittableLineRecordReader();
 
     return new RecordReader<NullWritable, StructuredRecord.Builder>() {
 
@@ -87,13 +121,11 @@ public class PathTrackingJsonInputFormat extends PathTrackingInputFormat {
 
       @Override
       public StructuredRecord.Builder getCurrentValue() throws IOException, InterruptedException {
-        String json = delegate.getCurrentValue().toString();
-        StructuredRecord record = StructuredRecordStringConverter.fromJsonString(json, modifiedSchema);
-        StructuredRecord.Builder builder = StructuredRecord.builder(schema);
-        for (Schema.Field field : schema.getFields()) {
-          builder.set(field.getName(), record.get(field.getName()));
+        if (decoder != null) {
+          Text line = delegate.getCurrentValue();
+          return decoder.decode(line.getBytes(), 0, line.getLength());
         }
-        return builder;
+        return fromJsonString(delegate.getCurrentValue().toString(), schema, modifiedSchema);
       }
 
       @Override
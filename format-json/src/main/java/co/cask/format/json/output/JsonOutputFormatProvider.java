@@ -17,15 +17,19 @@
 package co.cask.format.json.output;
 
 import co.cask.cdap.api.annotation.Description;
+import co.cask.cdap.api.annotation.Macro;
 import co.cask.cdap.api.annotation.Name;
 import co.cask.cdap.api.annotation.Plugin;
 import co.cask.cdap.api.data.batch.OutputFormatProvider;
 import co.cask.cdap.api.plugin.PluginClass;
+import co.cask.cdap.api.plugin.PluginConfig;
 import co.cask.cdap.api.plugin.PluginPropertyField;
+import co.cask.hydrator.format.output.CompressedTextOutputFormat;
 
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import javax.annotation.Nullable;
 
 /**
  * Output format plugin for json.
@@ -37,6 +41,11 @@ public class JsonOutputFormatProvider implements OutputFormatProvider {
   public static final PluginClass PLUGIN_CLASS = getPluginClass();
   static final String NAME = "json";
   static final String DESC = "Plugin for writing files in json format.";
+  private final Conf conf;
+
+  public JsonOutputFormatProvider(Conf conf) {
+    this.conf = conf;
+  }
 
   @Override
   public String getOutputFormatClassName() {
@@ -45,12 +54,39 @@ public class JsonOutputFormatProvider implements OutputFormatProvider {
 
   @Override
   public Map<String, String> getOutputFormatConfiguration() {
-    return Collections.emptyMap();
+    if (conf.containsMacro("compressionCodec") || conf.containsMacro("compressionThreads")) {
+      return Collections.emptyMap();
+    }
+    return CompressedTextOutputFormat.getCompressionConfiguration(conf.compressionCodec, conf.compressionThreads);
+  }
+
+  /**
+   * Configuration for the json format.
+   */
+  public static class Conf extends PluginConfig {
+    private static final String CODEC_DESC = "Compression codec to use when writing data. Must be 'gzip', 'bzip2', "
+      + "'snappy', 'lz4', 'deflate', or 'none'.";
+    private static final String THREADS_DESC = "Number of threads to compress each file with. More than one "
+      + "thread can only be used with the 'gzip' codec. The default is 1.";
+
+    @Macro
+    @Nullable
+    @Description(CODEC_DESC)
+    private String compressionCodec;
+
+    @Macro
+    @Nullable
+    @Description(THREADS_DESC)
+    private Integer compressionThreads;
   }
 
   private static PluginClass getPluginClass() {
     Map<String, PluginPropertyField> properties = new HashMap<>();
+    properties.put("compressionCodec",
+                   new PluginPropertyField("compressionCodec", Conf.CODEC_DESC, "string", false, true));
+    properties.put("compressionThreads",
+                   new PluginPropertyField("compressionThreads", Conf.THREADS_DESC, "int", false, true));
     return new PluginClass("outputformat", NAME, DESC, JsonOutputFormatProvider.class.getName(),
-                           null, properties);
+                           "conf", properties);
   }
 }
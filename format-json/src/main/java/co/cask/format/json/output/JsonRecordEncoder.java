@@ -0,0 +1,223 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.format.json.output;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.format.StructuredRecordStringConverter;
+import co.cask.hydrator.format.output.Utf8Buffer;
+import org.apache.hadoop.io.Text;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes StructuredRecords as JSON objects, directly into a reused UTF-8 buffer. The output is the same as
+ * {@link StructuredRecordStringConverter#toJsonString}: fields are written in the order of the schema, null values
+ * are written as null, and strings are escaped the same way.
+ *
+ * The encoder of each field is chosen once for each schema, and the name of each field is encoded once.
+ * Int, long, double, boolean, string and record values are encoded directly. Values of other types, and of logical
+ * types, are converted with StructuredRecordStringConverter, so they are written the same way as before.
+ */
+final class JsonRecordEncoder {
+  private static final byte[] NULL = { 'n', 'u', 'l', 'l' };
+  private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+  private final Utf8Buffer buffer;
+  private Schema schema;
+  private RecordEncoder root;
+
+  JsonRecordEncoder() {
+    this.buffer = new Utf8Buffer(1024);
+  }
+
+  /**
+   * Encodes a record into the given text, replacing its contents.
+   */
+  void encode(StructuredRecord record, Text text) throws IOException {
+    Schema recordSchema = record.getSchema();
+    // records usually share the same schema instance, so only compare the schemas if they are different instances
+    if (recordSchema != schema && (schema == null || !schema.equals(recordSchema))) {
+      root = new RecordEncoder(recordSchema, new HashMap<>());
+      schema = recordSchema;
+    }
+    buffer.clear();
+    root.encode(record, buffer);
+    text.set(buffer.getBytes(), 0, buffer.getLength());
+  }
+
+  /**
+   * Creates the encoder of a field. Record encoders are shared by record name, which allows recursive schemas.
+   */
+  private static ValueEncoder createEncoder(Schema.Field field, Map<String, RecordEncoder> records) {
+    Schema fieldSchema = field.getSchema().isNullable() ? field.getSchema().getNonNullable() : field.getSchema();
+    if (fieldSchema.getLogicalType() == null) {
+      switch (fieldSchema.getType()) {
+        case INT:
+        case LONG:
+          return (value, out) -> out.append(((Number) value).longValue());
+        case BOOLEAN:
+          return (value, out) -> out.append((boolean) (Boolean) value);
+        case DOUBLE:
+          return (value, out) -> {
+            double number = (Double) value;
+            if (Double.isNaN(number) || Double.isInfinite(number)) {
+              throw new IllegalArgumentException("Numeric values must be finite, but was " + number);
+            }
+            out.append(Double.toString(number));
+          };
+        case STRING:
+          return (value, out) -> appendString(value instanceof CharSequence ? (CharSequence) value : value.toString(),
+                                              out);
+        case RECORD:
+          RecordEncoder record = records.get(fieldSchema.getRecordName());
+          return record == null ? new RecordEncoder(fieldSchema, records) : record;
+        default:
+          break;
+      }
+    }
+    // convert other types as a record with just this field, so they are written exactly as before
+    Schema single = Schema.recordOf("record", field);
+    String name = field.getName();
+    return (value, out) -> {
+      String json = StructuredRecordStringConverter.toJsonString(StructuredRecord.builder(single)
+                                                                   .set(name, value).build());
+      // the json is {"name":value}, and field names cannot contain ':'
+      out.append(json.subSequence(json.indexOf(':') + 1, json.length() - 1));
+    };
+  }
+
+  /**
+   * Appends a quoted JSON string, escaping the same characters as Gson's JsonWriter.
+   */
+  private static void appendString(CharSequence chars, Utf8Buffer out) {
+    out.append((byte) '"');
+    int length = chars.length();
+    for (int i = 0; i < length; i++) {
+      char c = chars.charAt(i);
+      if (c < 0x80) {
+        if (c == '"' || c == '\\') {
+          out.append((byte) '\\');
+          out.append((byte) c);
+        } else if (c >= 0x20) {
+          out.append((byte) c);
+        } else {
+          appendControl(c, out);
+        }
+      } else if (c == 0x2028 || c == 0x2029) {
+        // line and paragraph separators are escaped, since they end lines in javascript
+        appendUnicodeEscape(c, out);
+      } else {
+        i = out.appendNonAscii(chars, i);
+      }
+    }
+    out.append((byte) '"');
+  }
+
+  private static void appendControl(char c, Utf8Buffer out) {
+    switch (c) {
+      case '\t':
+        out.append((byte) '\\');
+        out.append((byte) 't');
+        break;
+      case '\b':
+        out.append((byte) '\\');
+        out.append((byte) 'b');
+        break;
+      case '\n':
+        out.append((byte) '\\');
+        out.append((byte) 'n');
+        break;
+      case '\r':
+        out.append((byte) '\\');
+        out.append((byte) 'r');
+        break;
+      case '\f':
+        out.append((byte) '\\');
+        out.append((byte) 'f');
+        break;
+      default:
+        appendUnicodeEscape(c, out);
+    }
+  }
+
+  private static void appendUnicodeEscape(char c, Utf8Buffer out) {
+    out.append((byte) '\\');
+    out.append((byte) 'u');
+    out.append(HEX[(c >> 12) & 0xf]);
+    out.append(HEX[(c >> 8) & 0xf]);
+    out.append(HEX[(c >> 4) & 0xf]);
+    out.append(HEX[c & 0xf]);
+  }
+
+  /**
+   * Encodes a value that is not null.
+   */
+  private interface ValueEncoder {
+    void encode(Object value, Utf8Buffer out) throws IOException;
+  }
+
+  /**
+   * Encodes the fields of a record as a JSON object.
+   */
+  private static final class RecordEncoder implements ValueEncoder {
+    private final String[] names;
+    // the quoted name of each field followed by ':', preceded by ',' for all but the first field
+    private final byte[][] prefixes;
+    private final ValueEncoder[] encoders;
+
+    RecordEncoder(Schema schema, Map<String, RecordEncoder> records) {
+      records.put(schema.getRecordName(), this);
+      List<Schema.Field> fields = schema.getFields();
+      this.names = new String[fields.size()];
+      this.prefixes = new byte[fields.size()][];
+      this.encoders = new ValueEncoder[fields.size()];
+      Utf8Buffer prefix = new Utf8Buffer(64);
+      for (int i = 0; i < names.length; i++) {
+        names[i] = fields.get(i).getName();
+        prefix.clear();
+        if (i > 0) {
+          prefix.append((byte) ',');
+        }
+        appendString(names[i], prefix);
+        prefix.append((byte) ':');
+        prefixes[i] = new byte[prefix.getLength()];
+        System.arraycopy(prefix.getBytes(), 0, prefixes[i], 0, prefix.getLength());
+        encoders[i] = createEncoder(fields.get(i), records);
+      }
+    }
+
+    @Override
+    public void encode(Object value, Utf8Buffer out) throws IOException {
+      StructuredRecord record = (StructuredRecord) value;
+      out.append((byte) '{');
+      for (int i = 0; i < names.length; i++) {
+        out.append(prefixes[i]);
+        Object fieldValue = record.get(names[i]);
+        if (fieldValue == null) {
+          out.append(NULL);
+        } else {
+          encoders[i].encode(fieldValue, out);
+        }
+      }
+      out.append((byte) '}');
+    }
+  }
+}
@@ -18,32 +18,37 @@ package co.cask.format.json.output;
 
 import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.dataset.lib.KeyValue;
-import co.cask.cdap.format.StructuredRecordStringConverter;
+import co.cask.hydrator.format.output.CompressedTextOutputFormat;
 import co.cask.hydrator.format.output.DelegatingOutputFormat;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.OutputFormat;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
-import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
 
 import java.io.IOException;
 import java.util.function.Function;
 
 /**
- * Converts StructuredRecord into string before delegating to TextOutputFormat.
+ * Encodes StructuredRecords as JSON before delegating to CompressedTextOutputFormat. Each task encodes its records
+ * into a single reused Text with a {@link JsonRecordEncoder}.
  */
 public class StructuredJsonOutputFormat extends DelegatingOutputFormat<NullWritable, Text> {
 
   @Override
   protected OutputFormat<NullWritable, Text> createDelegate() {
-    return new TextOutputFormat<>();
+    return new CompressedTextOutputFormat<>();
   }
 
   @Override
   protected Function<StructuredRecord, KeyValue<NullWritable, Text>> getConversion(TaskAttemptContext context) {
+    JsonRecordEncoder encoder = new JsonRecordEncoder();
+    // the delegate writes the text before the next record is converted, so the same text is used for every record
+    Text text = new Text();
+    KeyValue<NullWritable, Text> keyValue = new KeyValue<>(NullWritable.get(), text);
     return record -> {
       try {
-        return new KeyValue<>(NullWritable.get(), new Text(StructuredRecordStringConverter.toJsonString(record)));
+        encoder.encode(record, text);
+        return keyValue;
       } catch (IOException e) {
         throw new RuntimeException("Unable to convert record into a json object", e);
       }
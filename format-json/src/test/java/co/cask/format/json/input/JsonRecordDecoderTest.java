@@ -0,0 +1,215 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.format.json.input;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for {@link JsonRecordDecoder}.
+ */
+public class JsonRecordDecoderTest {
+  private static final Schema INNER = Schema.recordOf(
+    "inner",
+    Schema.Field.of("x", Schema.nullableOf(Schema.of(Schema.Type.INT))),
+    Schema.Field.of("y", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+  private static final Schema SCHEMA = Schema.recordOf(
+    "record",
+    Schema.Field.of("b", Schema.nullableOf(Schema.of(Schema.Type.BOOLEAN))),
+    Schema.Field.of("i", Schema.nullableOf(Schema.of(Schema.Type.INT))),
+    Schema.Field.of("l", Schema.nullableOf(Schema.of(Schema.Type.LONG))),
+    Schema.Field.of("f", Schema.nullableOf(Schema.of(Schema.Type.FLOAT))),
+    Schema.Field.of("d", Schema.nullableOf(Schema.of(Schema.Type.DOUBLE))),
+    Schema.Field.of("s", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("inner", Schema.nullableOf(INNER)),
+    Schema.Field.of("list", Schema.nullableOf(Schema.arrayOf(Schema.nullableOf(Schema.of(Schema.Type.LONG))))),
+    Schema.Field.of("records", Schema.nullableOf(Schema.arrayOf(INNER))),
+    Schema.Field.of("map", Schema.nullableOf(Schema.mapOf(Schema.of(Schema.Type.STRING),
+                                                          Schema.nullableOf(Schema.of(Schema.Type.DOUBLE))))));
+
+  @Test
+  public void testIsSupported() {
+    Assert.assertTrue(JsonRecordDecoder.isSupported(SCHEMA));
+    Assert.assertFalse(JsonRecordDecoder.isSupported(
+      Schema.recordOf("bytes", Schema.Field.of("x", Schema.of(Schema.Type.BYTES)))));
+    Assert.assertFalse(JsonRecordDecoder.isSupported(
+      Schema.recordOf("enum", Schema.Field.of("x", Schema.enumWith("a", "b")))));
+    Assert.assertFalse(JsonRecordDecoder.isSupported(
+      Schema.recordOf("union", Schema.Field.of("x", Schema.unionOf(Schema.of(Schema.Type.INT),
+                                                                  Schema.of(Schema.Type.STRING))))));
+    Assert.assertFalse(JsonRecordDecoder.isSupported(
+      Schema.recordOf("map", Schema.Field.of("x", Schema.mapOf(Schema.of(Schema.Type.INT),
+                                                              Schema.of(Schema.Type.STRING))))));
+  }
+
+  @Test
+  public void testValues() throws IOException {
+    StructuredRecord record = decode(
+      SCHEMA, "{ \"b\": true, \"i\": -5, \"l\": 9223372036854775807, \"f\": 1.5, \"d\": -2.25e3, " +
+        "\"s\": \"a\\\"b\\u00e9\", \"list\": [1, null, 3], \"map\": { \"k1\": 0.5, \"k2\": null } }");
+    Assert.assertTrue(record.<Boolean>get("b"));
+    Assert.assertEquals(-5, (int) record.<Integer>get("i"));
+    Assert.assertEquals(Long.MAX_VALUE, (long) record.<Long>get("l"));
+    Assert.assertEquals(1.5f, record.<Float>get("f"), 0f);
+    Assert.assertEquals(-2250d, record.<Double>get("d"), 0d);
+    Assert.assertEquals("a\"bé", record.get("s"));
+    Assert.assertEquals(Arrays.asList(1L, null, 3L), record.get("list"));
+    Map<String, Double> map = record.get("map");
+    Assert.assertEquals(2, map.size());
+    Assert.assertEquals(0.5d, map.get("k1"), 0d);
+    Assert.assertTrue(map.containsKey("k2"));
+    Assert.assertNull(map.get("k2"));
+  }
+
+  @Test
+  public void testNumbersAndStrings() throws IOException {
+    // numbers can be given as strings, and strings as numbers
+    StructuredRecord record = decode(SCHEMA, "{ \"i\": \"7\", \"l\": 3.0, \"f\": \"0.25\", \"d\": 4, \"s\": 1.50 }");
+    Assert.assertEquals(7, (int) record.<Integer>get("i"));
+    Assert.assertEquals(3L, (long) record.<Long>get("l"));
+    Assert.assertEquals(0.25f, record.<Float>get("f"), 0f);
+    Assert.assertEquals(4d, record.<Double>get("d"), 0d);
+    Assert.assertEquals("1.50", record.get("s"));
+  }
+
+  @Test
+  public void testNulls() throws IOException {
+    StructuredRecord record = decode(
+      SCHEMA, "{ \"b\": null, \"i\": null, \"s\": null, \"inner\": null, \"list\": null, \"map\": null }");
+    for (Schema.Field field : SCHEMA.getFields()) {
+      Assert.assertNull(field.getName(), record.get(field.getName()));
+    }
+    // fields that are missing from the object are null
+    record = decode(SCHEMA, "{}");
+    for (Schema.Field field : SCHEMA.getFields()) {
+      Assert.assertNull(field.getName(), record.get(field.getName()));
+    }
+    record = decode(SCHEMA, "{ \"inner\": {} }");
+    StructuredRecord inner = record.get("inner");
+    Assert.assertNull(inner.get("x"));
+    Assert.assertNull(inner.get("y"));
+  }
+
+  @Test
+  public void testNestedRecords() throws IOException {
+    StructuredRecord record = decode(
+      SCHEMA, "{ \"inner\": { \"y\": \"a\", \"x\": 1 }, \"records\": [ { \"x\": 2 }, { \"y\": \"b\", \"z\": [1] } ] }");
+    StructuredRecord inner = record.get("inner");
+    Assert.assertEquals(INNER, inner.getSchema());
+    Assert.assertEquals(1, (int) inner.<Integer>get("x"));
+    Assert.assertEquals("a", inner.get("y"));
+
+    List<StructuredRecord> records = record.get("records");
+    Assert.assertEquals(2, records.size());
+    Assert.assertEquals(2, (int) records.get(0).<Integer>get("x"));
+    Assert.assertNull(records.get(0).get("y"));
+    Assert.assertNull(records.get(1).get("x"));
+    Assert.assertEquals("b", records.get(1).get("y"));
+  }
+
+  @Test
+  public void testRecursiveSchema() throws IOException {
+    Schema schema = Schema.recordOf(
+      "node",
+      Schema.Field.of("value", Schema.of(Schema.Type.INT)),
+      Schema.Field.of("next", Schema.nullableOf(Schema.recordOf("node"))));
+    StructuredRecord record = decode(schema,
+                                     "{ \"value\": 1, \"next\": { \"value\": 2, \"next\": { \"value\": 3 } } }");
+    int expected = 1;
+    for (StructuredRecord node = record; node != null; node = node.get("next")) {
+      Assert.assertEquals(expected++, (int) node.<Integer>get("value"));
+    }
+    Assert.assertEquals(4, expected);
+  }
+
+  @Test
+  public void testUnknownFields() throws IOException {
+    StructuredRecord record = decode(
+      SCHEMA, "{ \"a\": { \"b\": [ { \"c\": null }, 1, \"x\" ] }, \"i\": 1, \"e\": [ [], {} ], \"f2\": 2.5, " +
+        "\"n\": null, \"t\": true, \"inner\": { \"u\": { \"x\": \"not an int\" }, \"x\": 3 }, \"s\": \"end\" }");
+    Assert.assertEquals(1, (int) record.<Integer>get("i"));
+    Assert.assertEquals("end", record.get("s"));
+    StructuredRecord inner = record.get("inner");
+    Assert.assertEquals(3, (int) inner.<Integer>get("x"));
+    Assert.assertNull(record.get("f"));
+  }
+
+  @Test
+  public void testSkipField() throws IOException {
+    Schema schema = Schema.recordOf(
+      "record",
+      Schema.Field.of("s", Schema.of(Schema.Type.STRING)),
+      Schema.Field.of("path", Schema.nullableOf(Schema.of(Schema.Type.INT))));
+    JsonRecordDecoder decoder = new JsonRecordDecoder(schema, "path");
+    byte[] bytes = "{ \"s\": \"a\", \"path\": \"not an int\" }".getBytes(StandardCharsets.UTF_8);
+    StructuredRecord.Builder builder = decoder.decode(bytes, 0, bytes.length);
+    builder.set("path", 5);
+    StructuredRecord record = builder.build();
+    Assert.assertEquals("a", record.get("s"));
+    Assert.assertEquals(5, (int) record.<Integer>get("path"));
+  }
+
+  @Test
+  public void testOffset() throws IOException {
+    JsonRecordDecoder decoder = new JsonRecordDecoder(SCHEMA, null);
+    byte[] bytes = "[{\"i\": 1}, {\"i\": 2}]".getBytes(StandardCharsets.UTF_8);
+    StructuredRecord record = decoder.decode(bytes, 11, 8).build();
+    Assert.assertEquals(2, (int) record.<Integer>get("i"));
+    // the decoder can be reused
+    record = decoder.decode(bytes, 1, 8).build();
+    Assert.assertEquals(1, (int) record.<Integer>get("i"));
+  }
+
+  @Test
+  public void testInvalidValues() {
+    for (String json : Arrays.asList(
+      "[]", "1", "{ \"i\": 2147483648 }", "{ \"i\": 1.5 }", "{ \"i\": \"abc\" }", "{ \"i\": true }",
+      "{ \"l\": \"1.0\" }", "{ \"d\": \"x\" }", "{ \"b\": \"true\" }", "{ \"b\": 1 }", "{ \"s\": {} }",
+      "{ \"s\": [\"a\"] }", "{ \"list\": 1 }", "{ \"list\": [\"a\"] }", "{ \"map\": [] }", "{ \"inner\": 1 }",
+      "{ \"inner\": { \"x\": \"y\" } }", "{ \"i\": 1 ")) {
+      try {
+        decode(SCHEMA, json);
+        Assert.fail(String.format("Expected '%s' to be rejected.", json));
+      } catch (IOException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testMatchesSchema() throws IOException {
+    StructuredRecord record = decode(SCHEMA, "{ \"map\": { \"a\": 1 }, \"records\": [] }");
+    Assert.assertEquals(SCHEMA, record.getSchema());
+    Assert.assertEquals(Collections.singletonMap("a", 1d), record.get("map"));
+    Assert.assertEquals(Collections.emptyList(), record.get("records"));
+  }
+
+  private static StructuredRecord decode(Schema schema, String json) throws IOException {
+    byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+    return new JsonRecordDecoder(schema, null).decode(bytes, 0, bytes.length).build();
+  }
+}
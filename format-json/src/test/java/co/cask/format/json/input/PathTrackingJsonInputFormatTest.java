@@ -0,0 +1,157 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.format.json.input;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests for reading multi-line JSON files with {@link PathTrackingJsonInputFormat}.
+ */
+public class PathTrackingJsonInputFormatTest {
+  private static final Schema INNER = Schema.recordOf("inner", Schema.Field.of("x", Schema.of(Schema.Type.INT)));
+  private static final Schema SCHEMA = Schema.recordOf(
+    "record",
+    Schema.Field.of("id", Schema.of(Schema.Type.INT)),
+    Schema.Field.of("text", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("tags", Schema.nullableOf(Schema.arrayOf(Schema.of(Schema.Type.STRING)))),
+    Schema.Field.of("inner", Schema.nullableOf(INNER)));
+  // parts of strings as they are written in the file, which contain brackets and braces, and their decoded values
+  private static final String[] JSON_TEXTS = { "a", "{b", "} ", "[1, {", "\\\"q\\\" ", "\\n", "é😀", ", " };
+  private static final String[] TEXTS = { "a", "{b", "} ", "[1, {", "\"q\" ", "\n", "é😀", ", " };
+
+  @ClassRule
+  public static final TemporaryFolder TMP_FOLDER = new TemporaryFolder();
+
+  @Test
+  public void testObjectSplits() throws Exception {
+    testSplits(false);
+  }
+
+  @Test
+  public void testArraySplits() throws Exception {
+    testSplits(true);
+  }
+
+  @Test
+  public void testNoRecordStartFound() throws Exception {
+    // a record with a large string that contains braces that are not followed by well formed objects
+    StringBuilder json = new StringBuilder("{ \"id\": 0, \"text\": \"");
+    while (json.length() < 3 * 1024 * 1024) {
+      json.append("{ not json ");
+    }
+    json.append("\" }\n{ \"id\": 1 }\n");
+    File file = write(json.toString());
+    Assert.assertEquals(2, read(file, file.length()).size());
+    try {
+      read(file, file.length() / 3);
+      Assert.fail("Expected the start of a record not to be found.");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  private void testSplits(boolean array) throws Exception {
+    Random random = new Random(0);
+    StringBuilder json = new StringBuilder(array ? "[\n" : "");
+    List<String> expected = new ArrayList<>();
+    for (int id = 0; id < 2000; id++) {
+      StringBuilder jsonText = new StringBuilder();
+      StringBuilder text = new StringBuilder();
+      for (int i = random.nextInt(6); i >= 0; i--) {
+        int part = random.nextInt(TEXTS.length);
+        jsonText.append(JSON_TEXTS[part]);
+        text.append(TEXTS[part]);
+      }
+      List<String> tags = new ArrayList<>();
+      for (int i = random.nextInt(3); i > 0; i--) {
+        tags.add(TEXTS[random.nextInt(3)]);
+      }
+      boolean hasInner = random.nextBoolean();
+      if (id > 0) {
+        json.append(array ? ",\n" : random.nextBoolean() ? "\n" : " \n\n");
+      }
+      json.append("{\n  \"id\": ").append(id)
+        .append(",\n  \"text\": \"").append(jsonText)
+        .append("\",\n  \"tags\": [");
+      for (int i = 0; i < tags.size(); i++) {
+        json.append(i == 0 ? "" : ", ").append('"').append(tags.get(i)).append('"');
+      }
+      json.append("],\n  \"inner\": ").append(hasInner ? "{ \"x\": " + id + " }" : "null").append("\n}");
+      expected.add(id + "|" + text + "|" + tags + "|" + (hasInner ? id : null));
+    }
+    json.append(array ? "\n]\n" : "\n");
+    File file = write(json.toString());
+
+    Assert.assertEquals(expected, read(file, file.length()));
+    for (long splitSize : new long[] { 101, 500, 10000, file.length() / 2 + 1 }) {
+      Assert.assertEquals("Split size " + splitSize, expected, read(file, splitSize));
+    }
+  }
+
+  private static File write(String content) throws IOException {
+    File file = new File(TMP_FOLDER.newFolder(), "data.json");
+    Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    return file;
+  }
+
+  /**
+   * Reads the records of every split of the file, in order, and returns their values separated by '|'.
+   */
+  private static List<String> read(File file, long splitSize) throws Exception {
+    Configuration conf = new Configuration();
+    conf.setBoolean(PathTrackingJsonInputFormat.MULTILINE, true);
+    TaskAttemptContextImpl context = new TaskAttemptContextImpl(conf, new TaskAttemptID());
+    PathTrackingJsonInputFormat inputFormat = new PathTrackingJsonInputFormat();
+    List<String> values = new ArrayList<>();
+    for (long start = 0; start < file.length(); start += splitSize) {
+      FileSplit split = new FileSplit(new Path(file.toURI()), start, Math.min(splitSize, file.length() - start),
+                                      new String[0]);
+      try (RecordReader<NullWritable, StructuredRecord.Builder> reader =
+             inputFormat.createRecordReader(split, context, null, SCHEMA)) {
+        reader.initialize(split, context);
+        while (reader.nextKeyValue()) {
+          StructuredRecord record = reader.getCurrentValue().build();
+          StructuredRecord inner = record.get("inner");
+          values.add(record.get("id") + "|" + record.get("text") + "|" + record.get("tags") + "|" +
+                       (inner == null ? null : inner.get("x")));
+        }
+      }
+    }
+    return values;
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.format.json.output;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.format.StructuredRecordStringConverter;
+import org.apache.hadoop.io.Text;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Tests for {@link JsonRecordEncoder}, which must write the same json as {@link StructuredRecordStringConverter}.
+ */
+public class JsonRecordEncoderTest {
+  private static final Schema INNER = Schema.recordOf(
+    "inner",
+    Schema.Field.of("x", Schema.of(Schema.Type.INT)),
+    Schema.Field.of("s", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+  private static final Schema SCHEMA = Schema.recordOf(
+    "record",
+    Schema.Field.of("i", Schema.of(Schema.Type.INT)),
+    Schema.Field.of("l", Schema.nullableOf(Schema.of(Schema.Type.LONG))),
+    Schema.Field.of("f", Schema.of(Schema.Type.FLOAT)),
+    Schema.Field.of("d", Schema.of(Schema.Type.DOUBLE)),
+    Schema.Field.of("b", Schema.of(Schema.Type.BOOLEAN)),
+    Schema.Field.of("s", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("date", Schema.nullableOf(Schema.of(Schema.LogicalType.DATE))),
+    Schema.Field.of("array", Schema.arrayOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("map", Schema.mapOf(Schema.of(Schema.Type.STRING), Schema.of(Schema.Type.LONG))),
+    Schema.Field.of("inner", INNER),
+    Schema.Field.of("nullableInner", Schema.nullableOf(INNER)));
+
+  @Test
+  public void testSameAsStringConverter() throws IOException {
+    JsonRecordEncoder encoder = new JsonRecordEncoder();
+    String[] strings = {
+      "", "plain", "héllo 中文 😀", "quote \" backslash \\ slash /", "tab\tnewline\nreturn\rfeed\fback\b",
+      "\u0000\u0001\u001f\u007f", "separators \u2028 \u2029", "unpaired \ud800 \udc00 \ud83d"
+    };
+    for (int i = 0; i < strings.length; i++) {
+      Map<String, Long> map = new LinkedHashMap<>();
+      map.put(strings[i], (long) i);
+      map.put("k", -1L);
+      StructuredRecord inner = StructuredRecord.builder(INNER).set("x", i).set("s", strings[i]).build();
+      StructuredRecord.Builder builder = StructuredRecord.builder(SCHEMA)
+        .set("i", i == 1 ? Integer.MIN_VALUE : i)
+        .set("f", i + 0.5f)
+        .set("d", i == 2 ? 1.0E-20d : i / 3d)
+        .set("b", i % 2 == 0)
+        .set("s", strings[i])
+        .set("array", Arrays.asList(strings[i], "x"))
+        .set("map", map)
+        .set("inner", inner);
+      // null values on every other record
+      if (i % 2 == 0) {
+        builder.set("l", i == 0 ? Long.MAX_VALUE : -i * 10000000000L)
+          .setDate("date", LocalDate.of(2018, 1, i + 1))
+          .set("nullableInner", inner);
+      }
+      StructuredRecord record = builder.build();
+      Assert.assertArrayEquals(strings[i], StructuredRecordStringConverter.toJsonString(record)
+                                 .getBytes(StandardCharsets.UTF_8), encode(encoder, record));
+    }
+  }
+
+  @Test
+  public void testEscapes() throws IOException {
+    Schema schema = Schema.recordOf("record", Schema.Field.of("s", Schema.of(Schema.Type.STRING)));
+    JsonRecordEncoder encoder = new JsonRecordEncoder();
+    Assert.assertEquals("{\"s\":\"a\\\"b\\\\c/d\\t\\b\\n\\r\\f\\u0000\\u001f\u007f\\u2028\\u2029é😀\"}",
+                        new String(encode(encoder, StructuredRecord.builder(schema)
+                          .set("s", "a\"b\\c/d\t\b\n\r\f\u0000\u001f\u007f\u2028\u2029é😀").build()),
+                                   StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testRecursiveRecords() throws IOException {
+    Schema node = Schema.recordOf(
+      "node",
+      Schema.Field.of("value", Schema.of(Schema.Type.INT)),
+      Schema.Field.of("next", Schema.nullableOf(Schema.recordOf("node"))));
+    StructuredRecord last = StructuredRecord.builder(node).set("value", 2).build();
+    StructuredRecord first = StructuredRecord.builder(node).set("value", 1).set("next", last).build();
+    Assert.assertEquals("{\"value\":1,\"next\":{\"value\":2,\"next\":null}}",
+                        new String(encode(new JsonRecordEncoder(), first), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testReuse() throws IOException {
+    JsonRecordEncoder encoder = new JsonRecordEncoder();
+    Schema schema = Schema.recordOf("record", Schema.Field.of("s", Schema.of(Schema.Type.STRING)));
+    Schema other = Schema.recordOf("other", Schema.Field.of("i", Schema.of(Schema.Type.INT)));
+    Text text = new Text();
+    String longValue = String.join("", Collections.nCopies(1000, "value "));
+    encoder.encode(StructuredRecord.builder(schema).set("s", longValue).build(), text);
+    Assert.assertEquals("{\"s\":\"" + longValue + "\"}", text.toString());
+    // the text is replaced, and records of another schema are encoded with the fields of their schema
+    encoder.encode(StructuredRecord.builder(other).set("i", 1).build(), text);
+    Assert.assertEquals("{\"i\":1}", text.toString());
+    encoder.encode(StructuredRecord.builder(schema).set("s", "x").build(), text);
+    Assert.assertEquals("{\"s\":\"x\"}", text.toString());
+  }
+
+  @Test
+  public void testNonFiniteDoubles() throws IOException {
+    Schema schema = Schema.recordOf("record", Schema.Field.of("d", Schema.of(Schema.Type.DOUBLE)));
+    for (double value : new double[] { Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY }) {
+      try {
+        encode(new JsonRecordEncoder(), StructuredRecord.builder(schema).set("d", value).build());
+        Assert.fail("Expected a non-finite double to be rejected: " + value);
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+
+  private static byte[] encode(JsonRecordEncoder encoder, StructuredRecord record) throws IOException {
+    Text text = new Text();
+    encoder.encode(record, text);
+    return Arrays.copyOf(text.getBytes(), text.getLength());
+  }
+}
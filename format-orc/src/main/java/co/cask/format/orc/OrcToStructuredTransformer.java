@@ -0,0 +1,383 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.format.orc;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.hydrator.format.input.StructuredRecordBatch;
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DecimalColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ListColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.MapColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.StructColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.TimestampColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.orc.TypeDescription;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Creates StructuredRecords from rows of a {@link VectorizedRowBatch}. The converter for each field is chosen once,
+ * based on the ORC type of the column and the schema of the field, instead of once per value. Only columns that
+ * are in the record schema are read, which can be used to project the columns read from the file.
+ */
+public class OrcToStructuredTransformer {
+  private final Schema schema;
+  private final StructConverter converter;
+  private final boolean[] includedColumns;
+
+  /**
+   * @param fileSchema the schema of the ORC file
+   * @param schema the schema of the records to create. Fields that do not exist in the file are not set.
+   */
+  public OrcToStructuredTransformer(TypeDescription fileSchema, Schema schema) {
+    if (fileSchema.getCategory() != TypeDescription.Category.STRUCT) {
+      throw new IllegalArgumentException(
+        String.format("ORC files must contain structs, but found '%s'.", fileSchema));
+    }
+    this.schema = schema;
+    this.includedColumns = new boolean[fileSchema.getMaximumId() + 1];
+    this.includedColumns[fileSchema.getId()] = true;
+    this.converter = new StructConverter(fileSchema, schema, includedColumns);
+  }
+
+  /**
+   * @return which columns of the file must be read, indexed by ORC column id
+   */
+  public boolean[] getIncludedColumns() {
+    return includedColumns;
+  }
+
+  /**
+   * Sets the fields of the given row in the given builder.
+   *
+   * @param batch the batch containing the row, as read with the file schema
+   * @param row the index of the row in the batch
+   * @return a builder for the record, with all fields that exist in the file set
+   */
+  public StructuredRecord.Builder transform(VectorizedRowBatch batch, int row) {
+    StructuredRecord.Builder builder = StructuredRecord.builder(schema);
+    converter.setFields(batch.cols, row, builder);
+    return builder;
+  }
+
+  /**
+   * Copies all the rows of a batch into a record batch. Columns of boolean, int, long, float and double values are
+   * copied into the arrays of the record batch without creating an object for each value.
+   *
+   * @param batch the batch of rows, as read with the file schema
+   * @param records the record batch to copy the rows into, which must have the record schema and must be able to
+   *   hold all the rows of the batch. It is reset before the rows are copied.
+   */
+  public void transform(VectorizedRowBatch batch, StructuredRecordBatch records) {
+    records.reset();
+    records.setSize(batch.size);
+    converter.copyFields(batch.cols, batch.size, records);
+  }
+
+  /**
+   * Returns the schema that matches the given ORC schema. All fields are nullable, since ORC allows nulls in
+   * every column.
+   *
+   * @param type the ORC type, which must be a struct
+   * @param recordName the name of the record
+   * @return the schema for the ORC type
+   */
+  public static Schema toSchema(TypeDescription type, String recordName) {
+    if (type.getCategory() != TypeDescription.Category.STRUCT) {
+      throw new IllegalArgumentException(
+        String.format("ORC files must contain structs, but found '%s'.", type));
+    }
+    return toNonNullableSchema(type, recordName);
+  }
+
+  private static Schema toNonNullableSchema(TypeDescription type, String name) {
+    switch (type.getCategory()) {
+      case BOOLEAN:
+        return Schema.of(Schema.Type.BOOLEAN);
+      case BYTE:
+      case SHORT:
+      case INT:
+        return Schema.of(Schema.Type.INT);
+      case LONG:
+        return Schema.of(Schema.Type.LONG);
+      case FLOAT:
+        return Schema.of(Schema.Type.FLOAT);
+      case DOUBLE:
+      case DECIMAL:
+        return Schema.of(Schema.Type.DOUBLE);
+      case STRING:
+      case CHAR:
+      case VARCHAR:
+        return Schema.of(Schema.Type.STRING);
+      case BINARY:
+        return Schema.of(Schema.Type.BYTES);
+      case DATE:
+        return Schema.of(Schema.LogicalType.DATE);
+      case TIMESTAMP:
+        return Schema.of(Schema.LogicalType.TIMESTAMP_MICROS);
+      case LIST:
+        return Schema.arrayOf(Schema.nullableOf(toNonNullableSchema(type.getChildren().get(0), name)));
+      case MAP:
+        return Schema.mapOf(toNonNullableSchema(type.getChildren().get(0), name),
+                            Schema.nullableOf(toNonNullableSchema(type.getChildren().get(1), name)));
+      case STRUCT:
+        List<String> fieldNames = type.getFieldNames();
+        List<Schema.Field> fields = new ArrayList<>(fieldNames.size());
+        for (int i = 0; i < fieldNames.size(); i++) {
+          String fieldName = fieldNames.get(i);
+          Schema fieldSchema = toNonNullableSchema(type.getChildren().get(i), name + "." + fieldName);
+          fields.add(Schema.Field.of(fieldName, Schema.nullableOf(fieldSchema)));
+        }
+        return Schema.recordOf(name, fields);
+      default:
+        throw new IllegalArgumentException(String.format("ORC type '%s' is currently not supported.", type));
+    }
+  }
+
+  /**
+   * Converts the value at a non-null position of a column vector.
+   */
+  private interface Converter {
+    Object convert(ColumnVector vector, int index);
+  }
+
+  private static Object read(ColumnVector vector, int row, Converter converter) {
+    int index = vector.isRepeating ? 0 : row;
+    if (!vector.noNulls && vector.isNull[index]) {
+      return null;
+    }
+    return converter.convert(vector, index);
+  }
+
+  /**
+   * Copies the values of a column vector into a column of a record batch. Long and double vectors that are stored
+   * in primitive columns are copied directly, any other values are converted one at a time.
+   */
+  private static void copy(ColumnVector vector, int size, Converter converter,
+                           StructuredRecordBatch records, int field) {
+    Schema.Type columnType = records.getColumnType(field);
+    if (vector instanceof LongColumnVector && columnType != null) {
+      long[] values = ((LongColumnVector) vector).vector;
+      for (int row = 0; row < size; row++) {
+        int index = vector.isRepeating ? 0 : row;
+        if (vector.noNulls || !vector.isNull[index]) {
+          switch (columnType) {
+            case BOOLEAN:
+              records.setBoolean(field, row, values[index] != 0);
+              break;
+            case INT:
+              records.setInt(field, row, (int) values[index]);
+              break;
+            default:
+              records.setLong(field, row, values[index]);
+          }
+        }
+      }
+    } else if (vector instanceof DoubleColumnVector && columnType != null) {
+      double[] values = ((DoubleColumnVector) vector).vector;
+      for (int row = 0; row < size; row++) {
+        int index = vector.isRepeating ? 0 : row;
+        if (vector.noNulls || !vector.isNull[index]) {
+          if (columnType == Schema.Type.FLOAT) {
+            records.setFloat(field, row, (float) values[index]);
+          } else {
+            records.setDouble(field, row, values[index]);
+          }
+        }
+      }
+    } else {
+      for (int row = 0; row < size; row++) {
+        Object value = read(vector, row, converter);
+        if (value != null) {
+          records.set(field, row, value);
+        }
+      }
+    }
+  }
+
+  private static Converter createConverter(String name, TypeDescription type, Schema schema) {
+    Schema nonNullable = schema.isNullable() ? schema.getNonNullable() : schema;
+    Schema.Type schemaType = nonNullable.getType();
+    switch (type.getCategory()) {
+      case BOOLEAN:
+      case BYTE:
+      case SHORT:
+      case INT:
+      case LONG:
+      case DATE:
+        // dates are stored as days since the epoch, the same as the date logical type
+        switch (schemaType) {
+          case BOOLEAN:
+            return (vector, index) -> ((LongColumnVector) vector).vector[index] != 0;
+          case INT:
+            return (vector, index) -> (int) ((LongColumnVector) vector).vector[index];
+          case LONG:
+            return (vector, index) -> ((LongColumnVector) vector).vector[index];
+        }
+        break;
+      case FLOAT:
+      case DOUBLE:
+        switch (schemaType) {
+          case FLOAT:
+            return (vector, index) -> (float) ((DoubleColumnVector) vector).vector[index];
+          case DOUBLE:
+            return (vector, index) -> ((DoubleColumnVector) vector).vector[index];
+        }
+        break;
+      case STRING:
+      case CHAR:
+      case VARCHAR:
+      case BINARY:
+        switch (schemaType) {
+          case STRING:
+          case ENUM:
+            return (vector, index) -> {
+              BytesColumnVector bytes = (BytesColumnVector) vector;
+              return new String(bytes.vector[index], bytes.start[index], bytes.length[index], StandardCharsets.UTF_8);
+            };
+          case BYTES:
+            return (vector, index) -> {
+              BytesColumnVector bytes = (BytesColumnVector) vector;
+              int start = bytes.start[index];
+              return Arrays.copyOfRange(bytes.vector[index], start, start + bytes.length[index]);
+            };
+        }
+        break;
+      case DECIMAL:
+        switch (schemaType) {
+          case DOUBLE:
+            return (vector, index) -> ((DecimalColumnVector) vector).vector[index].getHiveDecimal().doubleValue();
+          case STRING:
+            return (vector, index) -> ((DecimalColumnVector) vector).vector[index].getHiveDecimal().toString();
+        }
+        break;
+      case TIMESTAMP:
+        if (schemaType == Schema.Type.LONG) {
+          if (nonNullable.getLogicalType() == Schema.LogicalType.TIMESTAMP_MILLIS) {
+            return (vector, index) -> ((TimestampColumnVector) vector).getTime(index);
+          }
+          return (vector, index) -> {
+            TimestampColumnVector timestamps = (TimestampColumnVector) vector;
+            return Math.floorDiv(timestamps.getTime(index), 1000L) * 1000000L + timestamps.getNanos(index) / 1000;
+          };
+        }
+        break;
+      case LIST:
+        if (schemaType == Schema.Type.ARRAY) {
+          Converter elementConverter = createConverter(name, type.getChildren().get(0),
+                                                       nonNullable.getComponentSchema());
+          return (vector, index) -> {
+            ListColumnVector list = (ListColumnVector) vector;
+            int offset = (int) list.offsets[index];
+            int length = (int) list.lengths[index];
+            List<Object> values = new ArrayList<>(length);
+            for (int i = offset; i < offset + length; i++) {
+              values.add(read(list.child, i, elementConverter));
+            }
+            return values;
+          };
+        }
+        break;
+      case MAP:
+        if (schemaType == Schema.Type.MAP) {
+          Map.Entry<Schema, Schema> mapSchema = nonNullable.getMapSchema();
+          Converter keyConverter = createConverter(name, type.getChildren().get(0), mapSchema.getKey());
+          Converter valueConverter = createConverter(name, type.getChildren().get(1), mapSchema.getValue());
+          return (vector, index) -> {
+            MapColumnVector map = (MapColumnVector) vector;
+            int offset = (int) map.offsets[index];
+            int length = (int) map.lengths[index];
+            Map<Object, Object> values = new LinkedHashMap<>();
+            for (int i = offset; i < offset + length; i++) {
+              values.put(read(map.keys, i, keyConverter), read(map.values, i, valueConverter));
+            }
+            return values;
+          };
+        }
+        break;
+      case STRUCT:
+        if (schemaType == Schema.Type.RECORD) {
+          StructConverter structConverter = new StructConverter(type, nonNullable, null);
+          return (vector, index) -> {
+            StructuredRecord.Builder builder = StructuredRecord.builder(nonNullable);
+            structConverter.setFields(((StructColumnVector) vector).fields, index, builder);
+            return builder.build();
+          };
+        }
+        break;
+    }
+    throw new IllegalArgumentException(
+      String.format("Field '%s' of ORC type '%s' cannot be read as type '%s'.", name, type, schemaType));
+  }
+
+  /**
+   * Sets the fields of a record from the child vectors of a struct, matching fields by name.
+   */
+  private static class StructConverter {
+    private final List<String> fieldNames = new ArrayList<>();
+    private final List<Integer> columnIndexes = new ArrayList<>();
+    private final List<Converter> converters = new ArrayList<>();
+
+    /**
+     * @param type the ORC struct type
+     * @param schema the record schema
+     * @param includedColumns if not null, the columns of the fields in the record schema are marked as included
+     */
+    StructConverter(TypeDescription type, Schema schema, boolean[] includedColumns) {
+      List<String> columnNames = type.getFieldNames();
+      for (Schema.Field field : schema.getFields()) {
+        int columnIndex = columnNames.indexOf(field.getName());
+        if (columnIndex < 0) {
+          continue;
+        }
+        TypeDescription columnType = type.getChildren().get(columnIndex);
+        fieldNames.add(field.getName());
+        columnIndexes.add(columnIndex);
+        converters.add(createConverter(field.getName(), columnType, field.getSchema()));
+        if (includedColumns != null) {
+          for (int id = columnType.getId(); id <= columnType.getMaximumId(); id++) {
+            includedColumns[id] = true;
+          }
+        }
+      }
+    }
+
+    void setFields(ColumnVector[] columns, int row, StructuredRecord.Builder builder) {
+      for (int i = 0; i < fieldNames.size(); i++) {
+        builder.set(fieldNames.get(i), read(columns[columnIndexes.get(i)], row, converters.get(i)));
+      }
+    }
+
+    void copyFields(ColumnVector[] columns, int size, StructuredRecordBatch records) {
+      for (int i = 0; i < fieldNames.size(); i++) {
+        int field = records.getFieldIndex(fieldNames.get(i));
+        if (field >= 0) {
+          copy(columns[columnIndexes.get(i)], size, converters.get(i), records, field);
+        }
+      }
+    }
+  }
+}
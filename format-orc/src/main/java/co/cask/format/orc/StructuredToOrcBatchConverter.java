@@ -0,0 +1,250 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.format.orc;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ListColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.MapColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.StructColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.orc.TypeDescription;
+
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Adds StructuredRecords as rows of a {@link VectorizedRowBatch}. A writer is created for each column when the
+ * converter is created, so the type of each field is only looked at once, and values are put directly into the
+ * column vectors of the batch instead of being wrapped in writables first. Arrays, maps and records are written
+ * as ORC lists, maps and structs.
+ */
+public class StructuredToOrcBatchConverter {
+  private final Schema schema;
+  private final ColumnWriter[] writers;
+
+  /**
+   * @param schema the schema of the records
+   * @param orcSchema the ORC schema of the rows, which must be a struct with a column for each field of the records
+   * @throws IllegalArgumentException if the schemas do not match or a field has an unsupported type
+   */
+  public StructuredToOrcBatchConverter(Schema schema, TypeDescription orcSchema) {
+    List<Schema.Field> fields = schema.getFields();
+    List<TypeDescription> columns = orcSchema.getChildren();
+    if (orcSchema.getCategory() != TypeDescription.Category.STRUCT || columns.size() != fields.size()) {
+      throw new IllegalArgumentException(
+        String.format("ORC schema %s does not have a column for each field of schema %s", orcSchema, schema));
+    }
+    this.schema = schema;
+    this.writers = new ColumnWriter[fields.size()];
+    for (int i = 0; i < writers.length; i++) {
+      writers[i] = createWriter(fields.get(i).getName(), fields.get(i).getSchema(), columns.get(i));
+    }
+  }
+
+  /**
+   * Returns the schema of the records that this converter adds.
+   */
+  public Schema getSchema() {
+    return schema;
+  }
+
+  /**
+   * Adds the record as the next row of the batch. The caller must make sure the batch is not full.
+   * String and byte array values are referenced by the batch, not copied.
+   */
+  public void addRow(StructuredRecord record, VectorizedRowBatch batch) {
+    int row = batch.size++;
+    List<Schema.Field> fields = schema.getFields();
+    for (int i = 0; i < writers.length; i++) {
+      writers[i].write(batch.cols[i], row, record.get(fields.get(i).getName()));
+    }
+  }
+
+  private static ColumnWriter createWriter(String name, Schema schema, TypeDescription orcType) {
+    boolean nullable = schema.isNullable();
+    ColumnWriter writer = createNonNullWriter(name, nullable ? schema.getNonNullable() : schema, orcType);
+    return (vector, row, value) -> {
+      if (value == null) {
+        if (!nullable) {
+          throw new IllegalArgumentException(String.format("Field '%s' is not nullable, but found a null value.",
+                                                           name));
+        }
+        vector.noNulls = false;
+        vector.isNull[row] = true;
+      } else {
+        vector.isNull[row] = false;
+        writer.write(vector, row, value);
+      }
+    };
+  }
+
+  private static ColumnWriter createNonNullWriter(String name, Schema schema, TypeDescription orcType) {
+    switch (schema.getType()) {
+      case BOOLEAN:
+        checkCategory(name, schema, orcType, TypeDescription.Category.BOOLEAN);
+        return (vector, row, value) -> ((LongColumnVector) vector).vector[row] = (Boolean) value ? 1L : 0L;
+      case INT:
+        checkCategory(name, schema, orcType, TypeDescription.Category.INT);
+        return (vector, row, value) -> ((LongColumnVector) vector).vector[row] = (Integer) value;
+      case LONG:
+        checkCategory(name, schema, orcType, TypeDescription.Category.LONG);
+        return (vector, row, value) -> ((LongColumnVector) vector).vector[row] = (Long) value;
+      case FLOAT:
+        checkCategory(name, schema, orcType, TypeDescription.Category.FLOAT);
+        return (vector, row, value) -> ((DoubleColumnVector) vector).vector[row] = (Float) value;
+      case DOUBLE:
+        checkCategory(name, schema, orcType, TypeDescription.Category.DOUBLE);
+        return (vector, row, value) -> ((DoubleColumnVector) vector).vector[row] = (Double) value;
+      case STRING:
+      case ENUM:
+        checkCategory(name, schema, orcType, TypeDescription.Category.STRING);
+        return (vector, row, value) -> {
+          byte[] bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+          ((BytesColumnVector) vector).setRef(row, bytes, 0, bytes.length);
+        };
+      case BYTES:
+        checkCategory(name, schema, orcType, TypeDescription.Category.BINARY);
+        return (vector, row, value) -> {
+          if (value instanceof ByteBuffer) {
+            ByteBuffer buffer = (ByteBuffer) value;
+            if (buffer.hasArray()) {
+              ((BytesColumnVector) vector).setRef(row, buffer.array(), buffer.arrayOffset() + buffer.position(),
+                                                  buffer.remaining());
+              return;
+            }
+            value = Bytes.getBytes(buffer);
+          }
+          byte[] bytes = (byte[]) value;
+          ((BytesColumnVector) vector).setRef(row, bytes, 0, bytes.length);
+        };
+      case ARRAY:
+        checkCategory(name, schema, orcType, TypeDescription.Category.LIST);
+        return createListWriter(name, schema, orcType);
+      case MAP:
+        checkCategory(name, schema, orcType, TypeDescription.Category.MAP);
+        return createMapWriter(name, schema, orcType);
+      case RECORD:
+        checkCategory(name, schema, orcType, TypeDescription.Category.STRUCT);
+        return createStructWriter(name, schema, orcType);
+      default:
+        throw new IllegalArgumentException(String.format("Type '%s' of field '%s' is not supported in ORC.",
+                                                         schema.getType(), name));
+    }
+  }
+
+  private static ColumnWriter createListWriter(String name, Schema schema, TypeDescription orcType) {
+    ColumnWriter elementWriter = createWriter(name, schema.getComponentSchema(), orcType.getChildren().get(0));
+    return (vector, row, value) -> {
+      ListColumnVector list = (ListColumnVector) vector;
+      int offset = list.childCount;
+      if (value instanceof Collection) {
+        Collection<?> collection = (Collection<?>) value;
+        startChildren(list.child, list.offsets, list.lengths, row, offset, collection.size());
+        list.childCount += collection.size();
+        int i = offset;
+        for (Object element : collection) {
+          elementWriter.write(list.child, i++, element);
+        }
+      } else {
+        // arrays of primitives, like int[], are not Object[]
+        int length = Array.getLength(value);
+        startChildren(list.child, list.offsets, list.lengths, row, offset, length);
+        list.childCount += length;
+        for (int i = 0; i < length; i++) {
+          elementWriter.write(list.child, offset + i, Array.get(value, i));
+        }
+      }
+    };
+  }
+
+  private static ColumnWriter createMapWriter(String name, Schema schema, TypeDescription orcType) {
+    Map.Entry<Schema, Schema> mapSchema = schema.getMapSchema();
+    ColumnWriter keyWriter = createWriter(name, mapSchema.getKey(), orcType.getChildren().get(0));
+    ColumnWriter valueWriter = createWriter(name, mapSchema.getValue(), orcType.getChildren().get(1));
+    return (vector, row, value) -> {
+      MapColumnVector map = (MapColumnVector) vector;
+      Map<?, ?> entries = (Map<?, ?>) value;
+      int offset = map.childCount;
+      startChildren(map.keys, map.offsets, map.lengths, row, offset, entries.size());
+      map.values.ensureSize(offset + entries.size(), offset != 0);
+      map.childCount += entries.size();
+      int i = offset;
+      for (Map.Entry<?, ?> entry : entries.entrySet()) {
+        keyWriter.write(map.keys, i, entry.getKey());
+        valueWriter.write(map.values, i, entry.getValue());
+        i++;
+      }
+    };
+  }
+
+  private static ColumnWriter createStructWriter(String name, Schema schema, TypeDescription orcType) {
+    List<Schema.Field> fields = schema.getFields();
+    List<TypeDescription> children = orcType.getChildren();
+    if (children.size() != fields.size()) {
+      throw new IllegalArgumentException(
+        String.format("ORC type %s of field '%s' does not have a field for each field of %s", orcType, name, schema));
+    }
+    String[] names = new String[fields.size()];
+    ColumnWriter[] fieldWriters = new ColumnWriter[fields.size()];
+    for (int i = 0; i < fieldWriters.length; i++) {
+      names[i] = fields.get(i).getName();
+      fieldWriters[i] = createWriter(name + "." + names[i], fields.get(i).getSchema(), children.get(i));
+    }
+    return (vector, row, value) -> {
+      StructColumnVector struct = (StructColumnVector) vector;
+      StructuredRecord record = (StructuredRecord) value;
+      for (int i = 0; i < fieldWriters.length; i++) {
+        fieldWriters[i].write(struct.fields[i], row, record.get(names[i]));
+      }
+    };
+  }
+
+  /**
+   * Sets where the children of a list or map row start, and makes sure the child vector has room for them.
+   */
+  private static void startChildren(ColumnVector child, long[] offsets, long[] lengths, int row, int offset,
+                                    int length) {
+    offsets[row] = offset;
+    lengths[row] = length;
+    child.ensureSize(offset + length, offset != 0);
+  }
+
+  private static void checkCategory(String name, Schema schema, TypeDescription orcType,
+                                    TypeDescription.Category expected) {
+    if (orcType.getCategory() != expected) {
+      throw new IllegalArgumentException(String.format("Field '%s' of type '%s' cannot be written as ORC type %s.",
+                                                       name, schema.getType(), orcType));
+    }
+  }
+
+  /**
+   * Writes a value into a row of a column vector.
+   */
+  private interface ColumnWriter {
+    void write(ColumnVector vector, int row, Object value);
+  }
+}
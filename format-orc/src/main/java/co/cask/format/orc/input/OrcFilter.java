@@ -0,0 +1,235 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.format.orc.input;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.hydrator.format.input.PushdownFilter;
+import org.apache.hadoop.hive.ql.io.sarg.PredicateLeaf;
+import org.apache.hadoop.hive.ql.io.sarg.SearchArgument;
+import org.apache.hadoop.hive.ql.io.sarg.SearchArgumentFactory;
+import org.apache.orc.TypeDescription;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * Translates a {@link PushdownFilter} into an ORC search argument, which the ORC reader uses to skip stripes and
+ * row groups whose column statistics show that none of their rows can match.
+ *
+ * The search argument does not remove individual rows, so rows that do not match can still be read from row groups
+ * that contain at least one row that might match.
+ */
+final class OrcFilter {
+
+  private OrcFilter() {
+  }
+
+  /**
+   * Checks that the conditions on columns of the given schema can be pushed down, so that an invalid filter fails
+   * when the pipeline is deployed instead of being ignored while reading. Conditions on columns that are not in the
+   * schema are not checked.
+   *
+   * @throws IllegalArgumentException if a condition is on a column whose type cannot be filtered on, or if its literal
+   *                                  cannot be compared with the column
+   */
+  static void validate(PushdownFilter filter, Schema schema) {
+    for (PushdownFilter.Condition condition : filter.getConditions()) {
+      Schema.Field field = schema.getField(condition.getColumn());
+      if (field == null) {
+        continue;
+      }
+      Schema fieldSchema = field.getSchema().isNullable() ? field.getSchema().getNonNullable() : field.getSchema();
+      PredicateLeaf.Type leafType = getLeafType(fieldSchema);
+      if (leafType == null) {
+        throw new IllegalArgumentException(
+          String.format("Column '%s' of type '%s' cannot be used in a filter.", condition.getColumn(),
+                        fieldSchema.getLogicalType() == null ? fieldSchema.getType() : fieldSchema.getLogicalType()));
+      }
+      if (condition.getLiteral() != null) {
+        getLiteral(condition, leafType);
+      }
+    }
+  }
+
+  /**
+   * Creates the search argument for a file with the given schema. Conditions are ignored if they are on columns
+   * that do not exist in the file, on columns whose type cannot be filtered on, or if their literal cannot be
+   * compared with the column in this file. Ignoring a condition only means that less data can be skipped.
+   *
+   * @return the search argument, or {@code null} if none of the conditions apply to the file
+   */
+  @Nullable
+  static SearchArgument toSearchArgument(PushdownFilter filter, TypeDescription fileSchema) {
+    List<String> columnNames = fileSchema.getFieldNames();
+    SearchArgument.Builder builder = SearchArgumentFactory.newBuilder().startAnd();
+    boolean empty = true;
+    for (PushdownFilter.Condition condition : filter.getConditions()) {
+      int columnIndex = columnNames.indexOf(condition.getColumn());
+      if (columnIndex < 0) {
+        continue;
+      }
+      PredicateLeaf.Type leafType = getLeafType(fileSchema.getChildren().get(columnIndex));
+      if (leafType == null) {
+        continue;
+      }
+      Object literal = null;
+      if (condition.getLiteral() != null) {
+        try {
+          literal = getLiteral(condition, leafType);
+        } catch (IllegalArgumentException e) {
+          continue;
+        }
+      }
+      addCondition(builder, condition, leafType, literal);
+      empty = false;
+    }
+    return empty ? null : builder.end().build();
+  }
+
+  /**
+   * Returns the names of the columns in the given schema, indexed by ORC column id, as expected by the
+   * ORC reader to resolve the columns of a search argument.
+   */
+  static String[] getColumnNames(TypeDescription fileSchema) {
+    String[] names = new String[fileSchema.getMaximumId() + 1];
+    List<String> fieldNames = fileSchema.getFieldNames();
+    for (int i = 0; i < fieldNames.size(); i++) {
+      names[fileSchema.getChildren().get(i).getId()] = fieldNames.get(i);
+    }
+    return names;
+  }
+
+  private static void addCondition(SearchArgument.Builder builder, PushdownFilter.Condition condition,
+                                   PredicateLeaf.Type leafType, @Nullable Object literal) {
+    String column = condition.getColumn();
+    switch (condition.getOperator()) {
+      case IS_NULL:
+        builder.isNull(column, leafType);
+        break;
+      case IS_NOT_NULL:
+        builder.startNot().isNull(column, leafType).end();
+        break;
+      case EQ:
+        builder.equals(column, leafType, literal);
+        break;
+      case NE:
+        builder.startNot().equals(column, leafType, literal).end();
+        break;
+      case LT:
+        builder.lessThan(column, leafType, literal);
+        break;
+      case LE:
+        builder.lessThanEquals(column, leafType, literal);
+        break;
+      case GT:
+        builder.startNot().lessThanEquals(column, leafType, literal).end();
+        break;
+      case GE:
+        builder.startNot().lessThan(column, leafType, literal).end();
+        break;
+      default:
+        // should never happen
+        throw new IllegalStateException("Unsupported operator " + condition.getOperator());
+    }
+  }
+
+  /**
+   * @throws IllegalArgumentException if the literal cannot be compared with a column of the given type
+   */
+  private static Object getLiteral(PushdownFilter.Condition condition, PredicateLeaf.Type type) {
+    switch (type) {
+      case BOOLEAN:
+        return condition.getBooleanLiteral();
+      case LONG:
+        return condition.getLongLiteral();
+      case FLOAT:
+        return condition.getDoubleLiteral();
+      case DATE:
+        return Date.valueOf(condition.getStringLiteral());
+      case TIMESTAMP:
+        return Timestamp.valueOf(condition.getStringLiteral());
+      default:
+        return condition.getStringLiteral();
+    }
+  }
+
+  /**
+   * @return the type of the predicates on a column of the given ORC type, or {@code null} if the column cannot be
+   *         filtered on
+   */
+  @Nullable
+  private static PredicateLeaf.Type getLeafType(TypeDescription type) {
+    switch (type.getCategory()) {
+      case BOOLEAN:
+        return PredicateLeaf.Type.BOOLEAN;
+      case BYTE:
+      case SHORT:
+      case INT:
+      case LONG:
+        return PredicateLeaf.Type.LONG;
+      case FLOAT:
+      case DOUBLE:
+        return PredicateLeaf.Type.FLOAT;
+      case STRING:
+      case CHAR:
+      case VARCHAR:
+        return PredicateLeaf.Type.STRING;
+      case DATE:
+        return PredicateLeaf.Type.DATE;
+      case TIMESTAMP:
+        return PredicateLeaf.Type.TIMESTAMP;
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * @return the type of the predicates on a field with the given non-nullable schema, or {@code null} if the field
+   *         cannot be filtered on
+   */
+  @Nullable
+  private static PredicateLeaf.Type getLeafType(Schema schema) {
+    Schema.LogicalType logicalType = schema.getLogicalType();
+    if (logicalType != null) {
+      switch (logicalType) {
+        case DATE:
+          return PredicateLeaf.Type.DATE;
+        case TIMESTAMP_MILLIS:
+        case TIMESTAMP_MICROS:
+          return PredicateLeaf.Type.TIMESTAMP;
+        default:
+          return null;
+      }
+    }
+    switch (schema.getType()) {
+      case BOOLEAN:
+        return PredicateLeaf.Type.BOOLEAN;
+      case INT:
+      case LONG:
+        return PredicateLeaf.Type.LONG;
+      case FLOAT:
+      case DOUBLE:
+        return PredicateLeaf.Type.FLOAT;
+      case STRING:
+        return PredicateLeaf.Type.STRING;
+      default:
+        return null;
+    }
+  }
+}
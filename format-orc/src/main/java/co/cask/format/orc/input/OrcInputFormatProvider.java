@@ -0,0 +1,95 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.format.orc.input;
+
+import co.cask.cdap.api.annotation.Description;
+import co.cask.cdap.api.annotation.Macro;
+import co.cask.cdap.api.annotation.Name;
+import co.cask.cdap.api.annotation.Plugin;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.plugin.PluginClass;
+import co.cask.cdap.api.plugin.PluginPropertyField;
+import co.cask.hydrator.format.input.PathTrackingConfig;
+import co.cask.hydrator.format.input.PathTrackingInputFormatProvider;
+import co.cask.hydrator.format.input.PushdownFilter;
+
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Provides and sets up configuration for an ORC input format.
+ */
+@Plugin(type = "inputformat")
+@Name(OrcInputFormatProvider.NAME)
+@Description(OrcInputFormatProvider.DESC)
+public class OrcInputFormatProvider extends PathTrackingInputFormatProvider<OrcInputFormatProvider.Conf> {
+  public static final PluginClass PLUGIN_CLASS = getPluginClass();
+  static final String NAME = "orc";
+  static final String DESC = "Plugin for reading files in orc format.";
+
+  public OrcInputFormatProvider(Conf conf) {
+    super(conf);
+  }
+
+  @Override
+  public String getInputFormatClassName() {
+    return CombineOrcInputFormat.class.getName();
+  }
+
+  @Override
+  protected void validate() {
+    if (!conf.containsMacro("pushdownFilter") && conf.pushdownFilter != null) {
+      PushdownFilter filter = PushdownFilter.parse(conf.pushdownFilter);
+      Schema schema = conf.containsMacro("schema") ? null : conf.getSchema();
+      if (schema != null) {
+        OrcFilter.validate(filter, schema);
+      }
+    }
+  }
+
+  @Override
+  protected void addFormatProperties(Map<String, String> properties) {
+    if (conf.pushdownFilter != null) {
+      properties.put(PathTrackingOrcInputFormat.FILTER, conf.pushdownFilter);
+    }
+  }
+
+  /**
+   * Plugin config for orc input format
+   */
+  public static class Conf extends PathTrackingConfig {
+    private static final String FILTER_DESC =
+      "Conditions used to skip stripes and row groups that cannot contain matching rows, such as "
+        + "\"id >= 100 AND name = 'abc'\". Conditions on top level columns can be joined with AND, and can use "
+        + "the =, !=, <, <=, >, >=, IS NULL and IS NOT NULL operators. String, date and timestamp literals must be "
+        + "quoted. Rows that do not match can still be read, so a separate filter is needed to remove them.";
+
+    @Macro
+    @Nullable
+    @Description(FILTER_DESC)
+    private String pushdownFilter;
+  }
+
+  private static PluginClass getPluginClass() {
+    Map<String, PluginPropertyField> properties = new HashMap<>(PathTrackingConfig.FIELDS);
+    properties.put("pushdownFilter",
+                   new PluginPropertyField("pushdownFilter", Conf.FILTER_DESC, "string", false, true));
+    return new PluginClass("inputformat", NAME, DESC, OrcInputFormatProvider.class.getName(),
+                           "conf", properties);
+  }
+}
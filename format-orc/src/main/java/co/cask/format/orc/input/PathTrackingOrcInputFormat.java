@@ -0,0 +1,135 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.format.orc.input;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.format.orc.OrcToStructuredTransformer;
+import co.cask.hydrator.format.input.BatchRecordReader;
+import co.cask.hydrator.format.input.PathTrackingInputFormat;
+import co.cask.hydrator.format.input.PushdownFilter;
+import co.cask.hydrator.format.input.StructuredRecordBatch;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.io.sarg.SearchArgument;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.orc.OrcFile;
+import org.apache.orc.Reader;
+import org.apache.orc.TypeDescription;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * ORC format that tracks which file each record was read from. Rows are read a batch at a time with the vectorized
+ * ORC reader, and each batch is copied column by column into a {@link StructuredRecordBatch}. Only the columns in
+ * the schema are read, and stripes and row groups are skipped based on the configured filter.
+ */
+public class PathTrackingOrcInputFormat extends PathTrackingInputFormat {
+  static final String FILTER = "orc.pushdown.filter";
+
+  @Override
+  protected RecordReader<NullWritable, StructuredRecord.Builder> createRecordReader(FileSplit split,
+                                                                                    TaskAttemptContext context,
+                                                                                    @Nullable String pathField,
+                                                                                    @Nullable Schema schema) {
+    String filter = context.getConfiguration().get(FILTER);
+    return new OrcRecordReader(schema, pathField, filter == null ? null : PushdownFilter.parse(filter));
+  }
+
+  /**
+   * Reads batches of rows from an ORC file and copies them into batches of records.
+   */
+  static class OrcRecordReader extends BatchRecordReader {
+    private final String pathField;
+    private final PushdownFilter filter;
+    private Schema schema;
+    private org.apache.orc.RecordReader rows;
+    private VectorizedRowBatch batch;
+    private OrcToStructuredTransformer recordTransformer;
+    private StructuredRecordBatch records;
+
+    OrcRecordReader(@Nullable Schema schema, @Nullable String pathField, @Nullable PushdownFilter filter) {
+      this.schema = schema;
+      this.pathField = pathField;
+      this.filter = filter;
+    }
+
+    @Override
+    public void initialize(InputSplit split, TaskAttemptContext context) throws IOException {
+      FileSplit fileSplit = (FileSplit) split;
+      Configuration hConf = context.getConfiguration();
+      Reader reader = OrcFile.createReader(fileSplit.getPath(), OrcFile.readerOptions(hConf));
+      TypeDescription fileSchema = reader.getSchema();
+      // if schema is null, use the schema of the file, with the path as an additional field
+      if (schema == null) {
+        Schema fileRecordSchema = OrcToStructuredTransformer.toSchema(fileSchema, "record");
+        if (pathField == null) {
+          schema = fileRecordSchema;
+        } else {
+          List<Schema.Field> fields = new ArrayList<>(fileRecordSchema.getFields().size() + 1);
+          fields.addAll(fileRecordSchema.getFields());
+          fields.add(Schema.Field.of(pathField, Schema.of(Schema.Type.STRING)));
+          schema = Schema.recordOf(fileRecordSchema.getRecordName(), fields);
+        }
+      }
+      recordTransformer = new OrcToStructuredTransformer(fileSchema, schema);
+
+      // stripes are read by the split that contains their first byte
+      Reader.Options options = reader.options()
+        .range(fileSplit.getStart(), fileSplit.getLength())
+        .include(recordTransformer.getIncludedColumns());
+      SearchArgument searchArgument = filter == null ? null : OrcFilter.toSearchArgument(filter, fileSchema);
+      if (searchArgument != null) {
+        options.searchArgument(searchArgument, OrcFilter.getColumnNames(fileSchema));
+      }
+      rows = reader.rows(options);
+      batch = fileSchema.createRowBatch(VectorizedRowBatch.DEFAULT_SIZE);
+      records = new StructuredRecordBatch(schema, VectorizedRowBatch.DEFAULT_SIZE);
+    }
+
+    @Nullable
+    @Override
+    public StructuredRecordBatch nextBatch() throws IOException {
+      do {
+        if (!rows.nextBatch(batch)) {
+          return null;
+        }
+      } while (batch.size == 0);
+      recordTransformer.transform(batch, records);
+      return records;
+    }
+
+    @Override
+    public float getProgress() throws IOException {
+      return rows.getProgress();
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (rows != null) {
+        rows.close();
+      }
+    }
+  }
+}
@@ -18,29 +18,27 @@ package co.cask.format.orc.output;
 
 import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.dataset.lib.KeyValue;
-import co.cask.format.orc.StructuredToOrcTransformer;
 import co.cask.hydrator.format.output.DelegatingOutputFormat;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapreduce.OutputFormat;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
-import org.apache.orc.mapred.OrcStruct;
-import org.apache.orc.mapreduce.OrcOutputFormat;
 
 import java.util.function.Function;
 
 /**
- * Converts StructuredRecord into OrcStruct before delegating to OrcOutputFormat.
+ * Writes StructuredRecords as ORC files. Records are written directly into vectorized row batches instead of being
+ * converted into OrcStructs first.
  */
-public class StructuredOrcOutputFormat extends DelegatingOutputFormat<NullWritable, OrcStruct> {
+public class StructuredOrcOutputFormat extends DelegatingOutputFormat<NullWritable, StructuredRecord> {
 
   @Override
-  protected OutputFormat<NullWritable, OrcStruct> createDelegate() {
-    return new OrcOutputFormat<>();
+  protected OutputFormat<NullWritable, StructuredRecord> createDelegate() {
+    return new VectorizedOrcOutputFormat();
   }
 
   @Override
-  protected Function<StructuredRecord, KeyValue<NullWritable, OrcStruct>> getConversion(TaskAttemptContext context) {
-    StructuredToOrcTransformer transformer = new StructuredToOrcTransformer();
-    return record -> new KeyValue<>(NullWritable.get(), transformer.transform(record));
+  protected Function<StructuredRecord, KeyValue<NullWritable, StructuredRecord>> getConversion(
+    TaskAttemptContext context) {
+    return record -> new KeyValue<>(NullWritable.get(), record);
   }
 }
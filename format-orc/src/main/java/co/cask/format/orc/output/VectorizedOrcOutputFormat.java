@@ -0,0 +1,91 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.format.orc.output;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.format.orc.StructuredToOrcBatchConverter;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.orc.OrcFile;
+import org.apache.orc.TypeDescription;
+import org.apache.orc.Writer;
+import org.apache.orc.mapred.OrcOutputFormat;
+
+import java.io.IOException;
+
+/**
+ * Writes StructuredRecords to ORC files by filling the column vectors of a {@link VectorizedRowBatch}, and adding
+ * the batch to the ORC writer whenever it is full. The writer is configured the same way as by
+ * {@link org.apache.orc.mapreduce.OrcOutputFormat}.
+ */
+class VectorizedOrcOutputFormat extends FileOutputFormat<NullWritable, StructuredRecord> {
+  private static final String EXTENSION = ".orc";
+
+  @Override
+  public RecordWriter<NullWritable, StructuredRecord> getRecordWriter(TaskAttemptContext context) throws IOException {
+    Path file = getDefaultWorkFile(context, EXTENSION);
+    OrcFile.WriterOptions options = OrcOutputFormat.buildOptions(context.getConfiguration());
+    return new VectorizedOrcRecordWriter(OrcFile.createWriter(file, options), options.getSchema());
+  }
+
+  /**
+   * Adds records to a row batch and writes the batch when it is full. The converter of the records is created
+   * from the schema of the first record, and only created again if a record has a different schema.
+   */
+  private static class VectorizedOrcRecordWriter extends RecordWriter<NullWritable, StructuredRecord> {
+    private final Writer writer;
+    private final TypeDescription orcSchema;
+    private final VectorizedRowBatch batch;
+    private StructuredToOrcBatchConverter converter;
+
+    VectorizedOrcRecordWriter(Writer writer, TypeDescription orcSchema) {
+      this.writer = writer;
+      this.orcSchema = orcSchema;
+      this.batch = orcSchema.createRowBatch();
+    }
+
+    @Override
+    public void write(NullWritable key, StructuredRecord record) throws IOException {
+      // schemas are compared by reference first, since records usually share the same schema object
+      if (converter == null || (converter.getSchema() != record.getSchema()
+        && !converter.getSchema().equals(record.getSchema()))) {
+        converter = new StructuredToOrcBatchConverter(record.getSchema(), orcSchema);
+      }
+      converter.addRow(record, batch);
+      if (batch.size == batch.getMaxSize()) {
+        flush();
+      }
+    }
+
+    @Override
+    public void close(TaskAttemptContext context) throws IOException {
+      if (batch.size > 0) {
+        flush();
+      }
+      writer.close();
+    }
+
+    private void flush() throws IOException {
+      writer.addRowBatch(batch);
+      batch.reset();
+    }
+  }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.format.orc;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.orc.OrcFile;
+import org.apache.orc.Reader;
+import org.apache.orc.RecordReader;
+import org.apache.orc.TypeDescription;
+import org.apache.orc.Writer;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for {@link StructuredToOrcBatchConverter}, which read the written files back with
+ * {@link OrcToStructuredTransformer}.
+ */
+public class StructuredToOrcBatchConverterTest {
+  private static final Schema INNER = Schema.recordOf(
+    "inner",
+    Schema.Field.of("x", Schema.of(Schema.Type.INT)),
+    Schema.Field.of("tags", Schema.arrayOf(Schema.of(Schema.Type.STRING))));
+  private static final Schema SCHEMA = Schema.recordOf(
+    "record",
+    Schema.Field.of("b", Schema.of(Schema.Type.BOOLEAN)),
+    Schema.Field.of("i", Schema.of(Schema.Type.INT)),
+    Schema.Field.of("l", Schema.of(Schema.Type.LONG)),
+    Schema.Field.of("f", Schema.of(Schema.Type.FLOAT)),
+    Schema.Field.of("d", Schema.of(Schema.Type.DOUBLE)),
+    Schema.Field.of("s", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("e", Schema.enumWith("A", "B")),
+    Schema.Field.of("bytes", Schema.of(Schema.Type.BYTES)),
+    Schema.Field.of("ns", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("ints", Schema.arrayOf(Schema.nullableOf(Schema.of(Schema.Type.INT)))),
+    Schema.Field.of("longs", Schema.nullableOf(Schema.arrayOf(Schema.of(Schema.Type.LONG)))),
+    Schema.Field.of("map", Schema.mapOf(Schema.of(Schema.Type.STRING), Schema.nullableOf(Schema.of(Schema.Type.LONG)))),
+    Schema.Field.of("inner", INNER),
+    Schema.Field.of("ninner", Schema.nullableOf(INNER)));
+  private static final TypeDescription INNER_TYPE = TypeDescription.createStruct()
+    .addField("x", TypeDescription.createInt())
+    .addField("tags", TypeDescription.createList(TypeDescription.createString()));
+  private static final TypeDescription ORC_SCHEMA = TypeDescription.createStruct()
+    .addField("b", TypeDescription.createBoolean())
+    .addField("i", TypeDescription.createInt())
+    .addField("l", TypeDescription.createLong())
+    .addField("f", TypeDescription.createFloat())
+    .addField("d", TypeDescription.createDouble())
+    .addField("s", TypeDescription.createString())
+    .addField("e", TypeDescription.createString())
+    .addField("bytes", TypeDescription.createBinary())
+    .addField("ns", TypeDescription.createString())
+    .addField("ints", TypeDescription.createList(TypeDescription.createInt()))
+    .addField("longs", TypeDescription.createList(TypeDescription.createLong()))
+    .addField("map", TypeDescription.createMap(TypeDescription.createString(), TypeDescription.createLong()))
+    .addField("inner", INNER_TYPE)
+    .addField("ninner", INNER_TYPE);
+
+  @ClassRule
+  public static final TemporaryFolder TMP_FOLDER = new TemporaryFolder();
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    List<StructuredRecord> records = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      // values of different sizes, so that the children of lists and maps are spread over several batches
+      List<String> tags = new ArrayList<>();
+      Map<String, Long> map = new HashMap<>();
+      for (int j = 0; j < i % 4; j++) {
+        tags.add("tag" + j + "é");
+        map.put("key" + j, j == 1 ? null : (long) i * j);
+      }
+      StructuredRecord inner = StructuredRecord.builder(INNER).set("x", -i).set("tags", tags).build();
+      // byte buffers are written from their position
+      ByteBuffer bytes = ByteBuffer.wrap(("xx" + i + "😀").getBytes(StandardCharsets.UTF_8));
+      bytes.position(2);
+      records.add(StructuredRecord.builder(SCHEMA)
+                    .set("b", i % 2 == 0)
+                    .set("i", i == 0 ? Integer.MIN_VALUE : i)
+                    .set("l", i == 0 ? Long.MAX_VALUE : -i * 1000000000000L)
+                    .set("f", i + 0.5f)
+                    .set("d", i == 1 ? Double.NaN : i / 3d)
+                    .set("s", i == 2 ? "" : "string " + i)
+                    .set("e", i % 2 == 0 ? "A" : "B")
+                    .set("bytes", i % 2 == 0 ? bytes : Arrays.copyOfRange(bytes.array(), 2, bytes.limit()))
+                    .set("ns", i % 3 == 0 ? null : "n" + i)
+                    .set("ints", i % 2 == 0 ? Arrays.asList(i, null, -i) : new int[] { i, i + 1 })
+                    .set("longs", i % 3 == 1 ? null : Collections.nCopies(i, (long) i))
+                    .set("map", map)
+                    .set("inner", inner)
+                    .set("ninner", i % 2 == 0 ? null : inner)
+                    .build());
+    }
+
+    File file = new File(TMP_FOLDER.newFolder(), "data.orc");
+    write(file, SCHEMA, records, 3);
+
+    // enums are read back as strings
+    List<Schema.Field> readFields = new ArrayList<>();
+    for (Schema.Field field : SCHEMA.getFields()) {
+      readFields.add(field.getName().equals("e") ? Schema.Field.of("e", Schema.of(Schema.Type.STRING)) : field);
+    }
+    List<StructuredRecord> actual = read(file, Schema.recordOf("record", readFields));
+    Assert.assertEquals(records.size(), actual.size());
+    for (int i = 0; i < records.size(); i++) {
+      for (Schema.Field field : SCHEMA.getFields()) {
+        String name = field.getName();
+        Assert.assertEquals(String.format("Field '%s' of record %d", name, i),
+                            normalize(records.get(i).get(name)), normalize(actual.get(i).get(name)));
+      }
+    }
+  }
+
+  @Test
+  public void testNullInNonNullableField() {
+    TypeDescription orcSchema = TypeDescription.createStruct().addField("i", TypeDescription.createInt());
+    StructuredToOrcBatchConverter converter = new StructuredToOrcBatchConverter(
+      Schema.recordOf("record", Schema.Field.of("i", Schema.of(Schema.Type.INT))), orcSchema);
+    // records of a schema where the field is nullable can be built without a value for it
+    Schema nullable = Schema.recordOf("record", Schema.Field.of("i", Schema.nullableOf(Schema.of(Schema.Type.INT))));
+    try {
+      converter.addRow(StructuredRecord.builder(nullable).build(), orcSchema.createRowBatch());
+      Assert.fail("Expected a null value of a non-nullable field to be rejected.");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testIncompatibleSchemas() {
+    Schema schema = Schema.recordOf("record", Schema.Field.of("x", Schema.of(Schema.Type.INT)));
+    assertIncompatible(schema, TypeDescription.createStruct().addField("x", TypeDescription.createString()));
+    assertIncompatible(schema, TypeDescription.createStruct()
+      .addField("x", TypeDescription.createInt())
+      .addField("y", TypeDescription.createInt()));
+    assertIncompatible(schema, TypeDescription.createInt());
+    assertIncompatible(Schema.recordOf("record", Schema.Field.of("inner", INNER)),
+                       TypeDescription.createStruct().addField(
+                         "inner", TypeDescription.createStruct().addField("x", TypeDescription.createInt())));
+    assertIncompatible(Schema.recordOf("record", Schema.Field.of(
+                         "u", Schema.unionOf(Schema.of(Schema.Type.INT), Schema.of(Schema.Type.STRING)))),
+                       TypeDescription.createStruct().addField("u", TypeDescription.createInt()));
+  }
+
+  private static void assertIncompatible(Schema schema, TypeDescription orcSchema) {
+    try {
+      new StructuredToOrcBatchConverter(schema, orcSchema);
+      Assert.fail(String.format("Expected schema %s to be incompatible with ORC schema %s.", schema, orcSchema));
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  /**
+   * Writes the records in batches of the given size.
+   */
+  private static void write(File file, Schema schema, List<StructuredRecord> records, int batchSize) throws Exception {
+    StructuredToOrcBatchConverter converter = new StructuredToOrcBatchConverter(schema, ORC_SCHEMA);
+    Writer writer = OrcFile.createWriter(new Path(file.toURI()),
+                                         OrcFile.writerOptions(new Configuration()).setSchema(ORC_SCHEMA));
+    try {
+      VectorizedRowBatch batch = ORC_SCHEMA.createRowBatch(batchSize);
+      for (StructuredRecord record : records) {
+        converter.addRow(record, batch);
+        if (batch.size == batch.getMaxSize()) {
+          writer.addRowBatch(batch);
+          batch.reset();
+        }
+      }
+      if (batch.size > 0) {
+        writer.addRowBatch(batch);
+      }
+    } finally {
+      writer.close();
+    }
+  }
+
+  private static List<StructuredRecord> read(File file, Schema schema) throws Exception {
+    Reader reader = OrcFile.createReader(new Path(file.toURI()), OrcFile.readerOptions(new Configuration()));
+    OrcToStructuredTransformer transformer = new OrcToStructuredTransformer(reader.getSchema(), schema);
+    List<StructuredRecord> records = new ArrayList<>();
+    RecordReader rows = reader.rows();
+    try {
+      VectorizedRowBatch batch = reader.getSchema().createRowBatch();
+      while (rows.nextBatch(batch)) {
+        for (int row = 0; row < batch.size; row++) {
+          records.add(transformer.transform(batch, row).build());
+        }
+      }
+    } finally {
+      rows.close();
+    }
+    return records;
+  }
+
+  /**
+   * Converts a value to a form that can be compared with the value that is read back.
+   */
+  private static Object normalize(Object value) {
+    if (value instanceof ByteBuffer) {
+      ByteBuffer buffer = ((ByteBuffer) value).duplicate();
+      byte[] bytes = new byte[buffer.remaining()];
+      buffer.get(bytes);
+      return Arrays.toString(bytes);
+    }
+    if (value instanceof byte[]) {
+      return Arrays.toString((byte[]) value);
+    }
+    if (value instanceof int[]) {
+      List<Object> values = new ArrayList<>();
+      for (int element : (int[]) value) {
+        values.add(element);
+      }
+      return values;
+    }
+    if (value instanceof Collection) {
+      List<Object> values = new ArrayList<>();
+      for (Object element : (Collection<?>) value) {
+        values.add(normalize(element));
+      }
+      return values;
+    }
+    if (value instanceof Map) {
+      Map<Object, Object> values = new HashMap<>();
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+        values.put(normalize(entry.getKey()), normalize(entry.getValue()));
+      }
+      return values;
+    }
+    if (value instanceof StructuredRecord) {
+      StructuredRecord record = (StructuredRecord) value;
+      Map<String, Object> values = new LinkedHashMap<>();
+      for (Schema.Field field : record.getSchema().getFields()) {
+        values.put(field.getName(), normalize(record.get(field.getName())));
+      }
+      return values;
+    }
+    return value;
+  }
+}
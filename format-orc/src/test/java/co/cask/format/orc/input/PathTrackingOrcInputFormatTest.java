@@ -0,0 +1,176 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.format.orc.input;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.hydrator.format.input.PushdownFilter;
+import co.cask.hydrator.format.input.StructuredRecordBatch;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.common.type.HiveDecimal;
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DecimalColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.apache.orc.OrcFile;
+import org.apache.orc.TypeDescription;
+import org.apache.orc.Writer;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for reading ORC files with a pushdown filter.
+ */
+public class PathTrackingOrcInputFormatTest {
+  private static final int ROW_GROUP_SIZE = 1000;
+  private static final int NUM_ROWS = 3 * ROW_GROUP_SIZE;
+
+  @ClassRule
+  public static final TemporaryFolder TMP_FOLDER = new TemporaryFolder();
+
+  private static Configuration conf;
+  private static File file;
+
+  @BeforeClass
+  public static void setupClass() throws Exception {
+    conf = new Configuration();
+    file = new File(TMP_FOLDER.newFolder(), "data.orc");
+    TypeDescription schema = TypeDescription.createStruct()
+      .addField("id", TypeDescription.createLong())
+      .addField("name", TypeDescription.createString())
+      .addField("amount", TypeDescription.createDecimal().withPrecision(10).withScale(2));
+    // a single stripe with three row groups, ids 0 to 999 in the first one, 1000 to 1999 in the second one, ...
+    Writer writer = OrcFile.createWriter(new Path(file.toURI()),
+                                         OrcFile.writerOptions(conf).setSchema(schema).rowIndexStride(ROW_GROUP_SIZE));
+    try {
+      VectorizedRowBatch batch = schema.createRowBatch();
+      LongColumnVector ids = (LongColumnVector) batch.cols[0];
+      BytesColumnVector names = (BytesColumnVector) batch.cols[1];
+      DecimalColumnVector amounts = (DecimalColumnVector) batch.cols[2];
+      for (int id = 0; id < NUM_ROWS; id++) {
+        int row = batch.size++;
+        ids.vector[row] = id;
+        names.setVal(row, ("name" + id).getBytes(StandardCharsets.UTF_8));
+        amounts.set(row, HiveDecimal.create(id + ".50"));
+        if (batch.size == batch.getMaxSize()) {
+          writer.addRowBatch(batch);
+          batch.reset();
+        }
+      }
+      if (batch.size > 0) {
+        writer.addRowBatch(batch);
+      }
+    } finally {
+      writer.close();
+    }
+  }
+
+  @Test
+  public void testRowGroupsAreSkipped() throws Exception {
+    // only the last row group can contain ids >= 2500, the first two are skipped
+    List<Long> ids = readIds("id >= 2500");
+    Assert.assertEquals(ROW_GROUP_SIZE, ids.size());
+    Assert.assertEquals(2000L, (long) ids.get(0));
+    Assert.assertEquals(NUM_ROWS - 1L, (long) ids.get(ids.size() - 1));
+
+    // only the first row group has names that sort before 'name1', the others start at 'name1000' and 'name2000'
+    ids = readIds("name < 'name1'");
+    Assert.assertEquals(ROW_GROUP_SIZE, ids.size());
+    Assert.assertEquals(0L, (long) ids.get(0));
+
+    // rows that do not match are still read from row groups that can contain a match
+    ids = readIds("id < 10 AND id IS NOT NULL");
+    Assert.assertEquals(ROW_GROUP_SIZE, ids.size());
+    Assert.assertEquals(0L, (long) ids.get(0));
+
+    // no row group can contain a match
+    Assert.assertTrue(readIds("id > 5000").isEmpty());
+  }
+
+  @Test
+  public void testConditionsThatDoNotApplyAreIgnored() throws Exception {
+    // decimal columns cannot be filtered on
+    Assert.assertEquals(NUM_ROWS, readIds("amount > 2500").size());
+    // columns that are not in the file
+    Assert.assertEquals(NUM_ROWS, readIds("missing = 1").size());
+    // literals that cannot be compared with the column in the file
+    Assert.assertEquals(NUM_ROWS, readIds("id = 'abc'").size());
+    // the conditions that do apply are still used
+    Assert.assertEquals(ROW_GROUP_SIZE, readIds("amount > 2500 AND id >= 2500 AND missing = 1").size());
+  }
+
+  @Test
+  public void testValidation() {
+    Schema schema = Schema.recordOf(
+      "record",
+      Schema.Field.of("id", Schema.nullableOf(Schema.of(Schema.Type.LONG))),
+      Schema.Field.of("name", Schema.of(Schema.Type.STRING)),
+      Schema.Field.of("ts", Schema.of(Schema.LogicalType.TIMESTAMP_MICROS)),
+      Schema.Field.of("payload", Schema.of(Schema.Type.BYTES)),
+      Schema.Field.of("tags", Schema.arrayOf(Schema.of(Schema.Type.STRING))));
+
+    OrcFilter.validate(PushdownFilter.parse("id >= 10 AND name = 'abc' AND ts < '2018-01-01 00:00:00'"), schema);
+    OrcFilter.validate(PushdownFilter.parse("missing = 'abc'"), schema);
+
+    assertInvalid("payload IS NULL", schema);
+    assertInvalid("tags IS NOT NULL", schema);
+    assertInvalid("id = 'abc'", schema);
+    assertInvalid("name = abc", schema);
+    assertInvalid("ts < '2018-01-01'", schema);
+  }
+
+  private static void assertInvalid(String filter, Schema schema) {
+    try {
+      OrcFilter.validate(PushdownFilter.parse(filter), schema);
+      Assert.fail(String.format("Expected filter '%s' to be invalid.", filter));
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  private static List<Long> readIds(String filter) throws Exception {
+    List<Long> ids = new ArrayList<>();
+    PathTrackingOrcInputFormat.OrcRecordReader reader =
+      new PathTrackingOrcInputFormat.OrcRecordReader(null, null, PushdownFilter.parse(filter));
+    try {
+      reader.initialize(new FileSplit(new Path(file.toURI()), 0, file.length(), new String[0]),
+                        new TaskAttemptContextImpl(conf, new TaskAttemptID()));
+      StructuredRecordBatch batch;
+      while ((batch = reader.nextBatch()) != null) {
+        long[] values = batch.getLongs(batch.getFieldIndex("id"));
+        for (int row = 0; row < batch.size(); row++) {
+          ids.add(values[row]);
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    return ids;
+  }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.format.parquet.input;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.hydrator.format.input.PushdownFilter;
+import org.apache.parquet.filter2.predicate.FilterApi;
+import org.apache.parquet.filter2.predicate.FilterPredicate;
+import org.apache.parquet.filter2.predicate.Operators;
+import org.apache.parquet.io.api.Binary;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.OriginalType;
+import org.apache.parquet.schema.PrimitiveType;
+import org.apache.parquet.schema.Type;
+
+import javax.annotation.Nullable;
+
+/**
+ * Translates a {@link PushdownFilter} into a Parquet {@link FilterPredicate}. The Parquet reader uses the predicate
+ * to skip row groups whose min/max statistics show that none of their rows can match, and to drop the
+ * non-matching rows of the row groups it reads.
+ */
+final class ParquetFilter {
+
+  private ParquetFilter() {
+  }
+
+  /**
+   * Checks that every condition of the filter can be translated for the given schema.
+   *
+   * @param filter the filter to check
+   * @param schema the schema of the records read
+   * @throws IllegalArgumentException if a column is not in the schema, its type cannot be used in a filter, or the
+   *                                  literal cannot be compared with it
+   */
+  static void validate(PushdownFilter filter, Schema schema) {
+    for (PushdownFilter.Condition condition : filter.getConditions()) {
+      String column = condition.getColumn();
+      Schema.Field field = schema.getField(column);
+      if (field == null) {
+        throw new IllegalArgumentException(
+          String.format("Column '%s' in the filter does not exist in the schema.", column));
+      }
+      toFilterPredicate(condition, getNonNullable(field));
+    }
+  }
+
+  /**
+   * Creates the predicate for a file. The type of each column is taken from the schema of the source. Conditions
+   * on columns that do not exist in the file, or whose type in the file does not match the schema, are ignored for
+   * that file, so rows that do not match them can still be read.
+   *
+   * @param filter the filter to translate
+   * @param schema the schema of the records read, which must contain every column used in the filter
+   * @param fileSchema the schema of the file, from its footer
+   * @return the predicate, or {@code null} if none of the conditions apply to the file
+   */
+  @Nullable
+  static FilterPredicate toFilterPredicate(PushdownFilter filter, Schema schema, MessageType fileSchema) {
+    FilterPredicate predicate = null;
+    for (PushdownFilter.Condition condition : filter.getConditions()) {
+      Schema.Field field = schema.getField(condition.getColumn());
+      if (field == null) {
+        // cannot happen if the filter was validated
+        throw new IllegalArgumentException(
+          String.format("Column '%s' in the filter does not exist in the schema.", condition.getColumn()));
+      }
+      Schema fieldSchema = getNonNullable(field);
+      if (!isCompatible(fieldSchema, fileSchema, condition.getColumn())) {
+        continue;
+      }
+      FilterPredicate conditionPredicate = toFilterPredicate(condition, fieldSchema);
+      predicate = predicate == null ? conditionPredicate : FilterApi.and(predicate, conditionPredicate);
+    }
+    return predicate;
+  }
+
+  /**
+   * Returns whether the column is a top level primitive column of the file whose type is read as the given schema.
+   */
+  private static boolean isCompatible(Schema fieldSchema, MessageType fileSchema, String column) {
+    if (!fileSchema.containsField(column)) {
+      return false;
+    }
+    Type type = fileSchema.getType(column);
+    if (!type.isPrimitive() || type.isRepetition(Type.Repetition.REPEATED)) {
+      return false;
+    }
+    PrimitiveType.PrimitiveTypeName typeName = type.asPrimitiveType().getPrimitiveTypeName();
+    OriginalType originalType = type.getOriginalType();
+    switch (fieldSchema.getType()) {
+      case INT:
+        return typeName == PrimitiveType.PrimitiveTypeName.INT32 &&
+          (originalType == null || originalType == OriginalType.INT_8 || originalType == OriginalType.INT_16 ||
+            originalType == OriginalType.INT_32);
+      case LONG:
+        return typeName == PrimitiveType.PrimitiveTypeName.INT64 &&
+          (originalType == null || originalType == OriginalType.INT_64);
+      case FLOAT:
+        return typeName == PrimitiveType.PrimitiveTypeName.FLOAT;
+      case DOUBLE:
+        return typeName == PrimitiveType.PrimitiveTypeName.DOUBLE;
+      case STRING:
+        return typeName == PrimitiveType.PrimitiveTypeName.BINARY &&
+          (originalType == OriginalType.UTF8 || originalType == OriginalType.ENUM);
+      case BOOLEAN:
+        return typeName == PrimitiveType.PrimitiveTypeName.BOOLEAN;
+      default:
+        return false;
+    }
+  }
+
+  private static Schema getNonNullable(Schema.Field field) {
+    return field.getSchema().isNullable() ? field.getSchema().getNonNullable() : field.getSchema();
+  }
+
+  private static FilterPredicate toFilterPredicate(PushdownFilter.Condition condition, Schema fieldSchema) {
+    String column = condition.getColumn();
+    boolean nullCheck = condition.getOperator() == PushdownFilter.Operator.IS_NULL ||
+      condition.getOperator() == PushdownFilter.Operator.IS_NOT_NULL;
+    if (fieldSchema.getLogicalType() == null) {
+      switch (fieldSchema.getType()) {
+        case INT:
+          return compare(FilterApi.intColumn(column), condition, nullCheck ? null : getIntLiteral(condition));
+        case LONG:
+          return compare(FilterApi.longColumn(column), condition, nullCheck ? null : condition.getLongLiteral());
+        case FLOAT:
+          return compare(FilterApi.floatColumn(column), condition,
+                         nullCheck ? null : (float) condition.getDoubleLiteral());
+        case DOUBLE:
+          return compare(FilterApi.doubleColumn(column), condition, nullCheck ? null : condition.getDoubleLiteral());
+        case STRING:
+          return compare(FilterApi.binaryColumn(column), condition,
+                         nullCheck ? null : Binary.fromString(condition.getStringLiteral()));
+        case BOOLEAN:
+          Operators.BooleanColumn booleanColumn = FilterApi.booleanColumn(column);
+          Boolean value = nullCheck ? null : condition.getBooleanLiteral();
+          switch (condition.getOperator()) {
+            case EQ:
+            case IS_NULL:
+              return FilterApi.eq(booleanColumn, value);
+            case NE:
+            case IS_NOT_NULL:
+              return FilterApi.notEq(booleanColumn, value);
+            default:
+              // booleans cannot be ordered
+              break;
+          }
+          break;
+        default:
+          break;
+      }
+    }
+    throw new IllegalArgumentException(
+      String.format("Condition '%s' is not supported for column '%s' of type '%s'.",
+                    condition, column, fieldSchema.getLogicalType() == null ?
+                      fieldSchema.getType() : fieldSchema.getLogicalType()));
+  }
+
+  private static int getIntLiteral(PushdownFilter.Condition condition) {
+    long value = condition.getLongLiteral();
+    if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException(
+        String.format("Literal %d cannot be compared with column '%s' of type int. It is out of range.",
+                      value, condition.getColumn()));
+    }
+    return (int) value;
+  }
+
+  private static <T extends Comparable<T>, C extends Operators.Column<T> & Operators.SupportsLtGt>
+  FilterPredicate compare(C column, PushdownFilter.Condition condition, T value) {
+    switch (condition.getOperator()) {
+      case EQ:
+      case IS_NULL:
+        return FilterApi.eq(column, value);
+      case NE:
+      case IS_NOT_NULL:
+        return FilterApi.notEq(column, value);
+      case LT:
+        return FilterApi.lt(column, value);
+      case LE:
+        return FilterApi.ltEq(column, value);
+      case GT:
+        return FilterApi.gt(column, value);
+      case GE:
+        return FilterApi.gtEq(column, value);
+      default:
+        // should never happen
+        throw new IllegalStateException("Unsupported operator " + condition.getOperator());
+    }
+  }
+}
@@ -17,14 +17,19 @@
 package co.cask.format.parquet.input;
 
 import co.cask.cdap.api.annotation.Description;
+import co.cask.cdap.api.annotation.Macro;
 import co.cask.cdap.api.annotation.Name;
 import co.cask.cdap.api.annotation.Plugin;
 import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.api.plugin.PluginClass;
+import co.cask.cdap.api.plugin.PluginPropertyField;
 import co.cask.hydrator.format.input.PathTrackingConfig;
 import co.cask.hydrator.format.input.PathTrackingInputFormatProvider;
+import co.cask.hydrator.format.input.PushdownFilter;
 
+import java.util.HashMap;
 import java.util.Map;
+import javax.annotation.Nullable;
 
 /**
  * Provides and sets up configuration for an parquet input format.
@@ -32,14 +37,12 @@ import java.util.Map;
 @Plugin(type = "inputformat")
 @Name(ParquetInputFormatProvider.NAME)
 @Description(ParquetInputFormatProvider.DESC)
-public class ParquetInputFormatProvider extends PathTrackingInputFormatProvider<PathTrackingConfig> {
+public class ParquetInputFormatProvider extends PathTrackingInputFormatProvider<ParquetInputFormatProvider.Conf> {
   static final String NAME = "parquet";
   static final String DESC = "Plugin for reading files in text format.";
-  public static final PluginClass PLUGIN_CLASS =
-    new PluginClass("inputformat", NAME, DESC, ParquetInputFormatProvider.class.getName(),
-                    "conf", PathTrackingConfig.FIELDS);
+  public static final PluginClass PLUGIN_CLASS = getPluginClass();
 
-  public ParquetInputFormatProvider(PathTrackingConfig conf) {
+  public ParquetInputFormatProvider(Conf conf) {
     super(conf);
   }
 
@@ -48,11 +51,54 @@ public class ParquetInputFormatProvider extends PathTrackingInputFormatProvider<
     return CombineParquetInputFormat.class.getName();
   }
 
+  @Override
+  protected void validate() {
+    if (conf.containsMacro("pushdownFilter") || conf.pushdownFilter == null) {
+      return;
+    }
+    PushdownFilter filter = PushdownFilter.parse(conf.pushdownFilter);
+    if (!conf.containsMacro("schema")) {
+      Schema schema = conf.getSchema();
+      if (schema == null) {
+        throw new IllegalArgumentException("A schema must be specified in order to use a filter with parquet files.");
+      }
+      ParquetFilter.validate(filter, schema);
+    }
+  }
+
   @Override
   protected void addFormatProperties(Map<String, String> properties) {
     Schema schema = conf.getSchema();
     if (schema != null) {
       properties.put("parquet.avro.schema", schema.toString());
     }
+    if (conf.pushdownFilter != null) {
+      properties.put(PathTrackingParquetInputFormat.FILTER, conf.pushdownFilter);
+    }
+  }
+
+  /**
+   * Plugin config for parquet input format
+   */
+  public static class Conf extends PathTrackingConfig {
+    private static final String FILTER_DESC =
+      "Conditions that records must match, such as \"id >= 100 AND name = 'abc'\". Row groups whose statistics "
+        + "show that none of their rows can match are skipped. Conditions on top level columns can be joined with "
+        + "AND, and can use the =, !=, <, <=, >, >=, IS NULL and IS NOT NULL operators. String literals must be "
+        + "quoted. Requires a schema, which must contain the columns used in the filter. Conditions on columns that "
+        + "are missing from a file, or whose type in the file does not match the schema, are ignored for that file.";
+
+    @Macro
+    @Nullable
+    @Description(FILTER_DESC)
+    private String pushdownFilter;
+  }
+
+  private static PluginClass getPluginClass() {
+    Map<String, PluginPropertyField> properties = new HashMap<>(PathTrackingConfig.FIELDS);
+    properties.put("pushdownFilter",
+                   new PluginPropertyField("pushdownFilter", Conf.FILTER_DESC, "string", false, true));
+    return new PluginClass("inputformat", NAME, DESC, ParquetInputFormatProvider.class.getName(),
+                           "conf", properties);
   }
 }
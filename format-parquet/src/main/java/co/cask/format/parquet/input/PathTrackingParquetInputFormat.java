@@ -20,6 +20,7 @@ import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.data.schema.Schema;
 import co.cask.format.avro.AvroToStructuredTransformer;
 import co.cask.hydrator.format.input.PathTrackingInputFormat;
+import co.cask.hydrator.format.input.PushdownFilter;
 import org.apache.avro.generic.GenericRecord;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapreduce.InputSplit;
@@ -27,6 +28,15 @@ import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.apache.hadoop.mapreduce.lib.input.FileSplit;
 import org.apache.parquet.avro.AvroParquetInputFormat;
+import org.apache.parquet.filter2.compat.FilterCompat;
+import org.apache.parquet.filter2.compat.RowGroupFilter;
+import org.apache.parquet.filter2.predicate.FilterPredicate;
+import org.apache.parquet.format.converter.ParquetMetadataConverter;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.hadoop.metadata.ColumnChunkMetaData;
+import org.apache.parquet.hadoop.metadata.ParquetMetadata;
+import org.apache.parquet.schema.MessageType;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -35,8 +45,16 @@ import javax.annotation.Nullable;
 
 /**
  * Parquet format that tracks which file each record was read from.
+ *
+ * If a schema is given, records are materialized directly into StructuredRecords with that schema, and only the
+ * columns in the schema are read. If a filter is also given, row groups that cannot contain matching rows are
+ * skipped, and the number of bytes skipped is reported in the {@link #COUNTER_GROUP} counter group.
+ * If no schema is given, records are read as Avro GenericRecords, whose schema is used for the StructuredRecords.
  */
 public class PathTrackingParquetInputFormat extends PathTrackingInputFormat {
+  public static final String COUNTER_GROUP = "parquet";
+  public static final String BYTES_SKIPPED_COUNTER = "bytes.skipped";
+  static final String FILTER = "parquet.pushdown.filter";
 
   @Override
   protected RecordReader<NullWritable, StructuredRecord.Builder> createRecordReader(FileSplit split,
@@ -44,13 +62,19 @@ public class PathTrackingParquetInputFormat extends PathTrackingInputFormat {
                                                                                     @Nullable String pathField,
                                                                                     @Nullable Schema schema)
     throws IOException, InterruptedException {
-    RecordReader<Void, GenericRecord> delegate = (new AvroParquetInputFormat<GenericRecord>())
-      .createRecordReader(split, context);
-    return new ParquetRecordReader(delegate, schema, pathField);
+    if (schema == null) {
+      RecordReader<Void, GenericRecord> delegate = (new AvroParquetInputFormat<GenericRecord>())
+        .createRecordReader(split, context);
+      return new ParquetRecordReader(delegate, pathField);
+    }
+
+    String filterExpression = context.getConfiguration().get(FILTER);
+    PushdownFilter filter = filterExpression == null ? null : PushdownFilter.parse(filterExpression);
+    return new StructuredRecordReader(new StructuredRecordReadSupport(schema, pathField), schema, filter);
   }
 
   /**
-   * Transforms GenericRecords into StructuredRecord.
+   * Transforms GenericRecords into StructuredRecord, using the schema of the first GenericRecord.
    */
   static class ParquetRecordReader extends RecordReader<NullWritable, StructuredRecord.Builder> {
     private final RecordReader<Void, GenericRecord> delegate;
@@ -58,10 +82,8 @@ public class PathTrackingParquetInputFormat extends PathTrackingInputFormat {
     private final String pathField;
     private Schema schema;
 
-    ParquetRecordReader(RecordReader<Void, GenericRecord> delegate, @Nullable Schema schema,
-                        @Nullable String pathField) {
+    ParquetRecordReader(RecordReader<Void, GenericRecord> delegate, @Nullable String pathField) {
       this.delegate = delegate;
-      this.schema = schema;
       this.pathField = pathField;
       this.recordTransformer = new AvroToStructuredTransformer();
     }
@@ -111,4 +133,88 @@ public class PathTrackingParquetInputFormat extends PathTrackingInputFormat {
       delegate.close();
     }
   }
+
+  /**
+   * Reads StructuredRecords that were materialized by a {@link StructuredRecordReadSupport}, and reports the number
+   * of bytes skipped by the filter. The filter is translated for each file, based on the schema in its footer.
+   */
+  static class StructuredRecordReader extends RecordReader<NullWritable, StructuredRecord.Builder> {
+    private final StructuredRecordReadSupport readSupport;
+    private final Schema schema;
+    private final PushdownFilter filter;
+    private RecordReader<Void, StructuredRecord.Builder> delegate;
+
+    StructuredRecordReader(StructuredRecordReadSupport readSupport, Schema schema, @Nullable PushdownFilter filter) {
+      this.readSupport = readSupport;
+      this.schema = schema;
+      this.filter = filter;
+    }
+
+    @Override
+    public void initialize(InputSplit split, TaskAttemptContext context) throws IOException, InterruptedException {
+      FilterCompat.Filter parquetFilter = FilterCompat.NOOP;
+      if (filter != null) {
+        FileSplit fileSplit = (FileSplit) split;
+        // only the metadata of the row groups that start in the split is deserialized
+        long start = fileSplit.getStart();
+        ParquetMetadata footer = ParquetFileReader.readFooter(
+          context.getConfiguration(), fileSplit.getPath(),
+          ParquetMetadataConverter.range(start, start + fileSplit.getLength()));
+        MessageType fileSchema = footer.getFileMetaData().getSchema();
+        FilterPredicate predicate = ParquetFilter.toFilterPredicate(filter, schema, fileSchema);
+        if (predicate != null) {
+          parquetFilter = FilterCompat.get(predicate);
+          context.getCounter(COUNTER_GROUP, BYTES_SKIPPED_COUNTER)
+            .increment(getSkippedBytes(footer.getBlocks(), parquetFilter, fileSchema));
+        }
+      }
+      delegate = new org.apache.parquet.hadoop.ParquetRecordReader<>(readSupport, parquetFilter);
+      delegate.initialize(split, context);
+    }
+
+    /**
+     * Returns the number of bytes in the given row groups that are skipped because of the filter.
+     */
+    static long getSkippedBytes(List<BlockMetaData> rowGroups, FilterCompat.Filter filter, MessageType fileSchema) {
+      List<BlockMetaData> readRowGroups = RowGroupFilter.filterRowGroups(filter, rowGroups, fileSchema);
+      return getSize(rowGroups) - getSize(readRowGroups);
+    }
+
+    private static long getSize(List<BlockMetaData> rowGroups) {
+      long size = 0;
+      for (BlockMetaData rowGroup : rowGroups) {
+        for (ColumnChunkMetaData column : rowGroup.getColumns()) {
+          size += column.getTotalSize();
+        }
+      }
+      return size;
+    }
+
+    @Override
+    public boolean nextKeyValue() throws IOException, InterruptedException {
+      return delegate.nextKeyValue();
+    }
+
+    @Override
+    public NullWritable getCurrentKey() {
+      return NullWritable.get();
+    }
+
+    @Override
+    public StructuredRecord.Builder getCurrentValue() throws IOException, InterruptedException {
+      return delegate.getCurrentValue();
+    }
+
+    @Override
+    public float getProgress() throws IOException, InterruptedException {
+      return delegate.getProgress();
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (delegate != null) {
+        delegate.close();
+      }
+    }
+  }
 }
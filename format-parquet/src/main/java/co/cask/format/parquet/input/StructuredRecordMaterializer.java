@@ -0,0 +1,530 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.format.parquet.input;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import org.apache.parquet.column.Dictionary;
+import org.apache.parquet.io.api.Binary;
+import org.apache.parquet.io.api.Converter;
+import org.apache.parquet.io.api.GroupConverter;
+import org.apache.parquet.io.api.PrimitiveConverter;
+import org.apache.parquet.io.api.RecordMaterializer;
+import org.apache.parquet.schema.GroupType;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.OriginalType;
+import org.apache.parquet.schema.PrimitiveType;
+import org.apache.parquet.schema.Type;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Materializes parquet records into StructuredRecord builders. The tree of converters is created once per file,
+ * based on the parquet schema of the file and the schema of the records, so values are set directly in the
+ * builders as the column readers produce them. Fields that are not in the record schema are skipped.
+ *
+ * Lists are read according to the parquet backward compatibility rules for the LIST annotation, and repeated fields
+ * without annotation are read as arrays. Unions of several types are read from groups with one optional field per
+ * non-null type of the union, which is how parquet-avro writes them.
+ */
+class StructuredRecordMaterializer extends RecordMaterializer<StructuredRecord.Builder> {
+  private final RecordConverter root;
+
+  StructuredRecordMaterializer(MessageType parquetSchema, Schema schema) {
+    this.root = new RecordConverter(parquetSchema, schema, null);
+  }
+
+  @Override
+  public StructuredRecord.Builder getCurrentRecord() {
+    return root.builder;
+  }
+
+  @Override
+  public GroupConverter getRootConverter() {
+    return root;
+  }
+
+  private static Converter createConverter(Type type, Schema schema, Consumer<Object> setter) {
+    Schema nonNullable = schema.isNullable() ? schema.getNonNullable() : schema;
+    if (type.isPrimitive()) {
+      return createPrimitiveConverter(type.asPrimitiveType(), nonNullable, setter);
+    }
+    GroupType groupType = type.asGroupType();
+    OriginalType originalType = groupType.getOriginalType();
+    if (originalType == OriginalType.LIST && nonNullable.getType() == Schema.Type.ARRAY) {
+      return new ListConverter(groupType, nonNullable.getComponentSchema(), setter);
+    }
+    if ((originalType == OriginalType.MAP || originalType == OriginalType.MAP_KEY_VALUE)
+      && nonNullable.getType() == Schema.Type.MAP) {
+      return new MapConverter(groupType, nonNullable.getMapSchema(), setter);
+    }
+    if (originalType == null && nonNullable.getType() == Schema.Type.RECORD) {
+      return new RecordConverter(groupType, nonNullable, setter);
+    }
+    if (originalType == null && nonNullable.getType() == Schema.Type.UNION) {
+      return new UnionConverter(groupType, nonNullable, setter);
+    }
+    throw incompatible(type, nonNullable);
+  }
+
+  private static Converter createPrimitiveConverter(PrimitiveType type, Schema schema, Consumer<Object> setter) {
+    Schema.Type schemaType = schema.getType();
+    switch (type.getPrimitiveTypeName()) {
+      case BOOLEAN:
+        if (schemaType == Schema.Type.BOOLEAN) {
+          return new PrimitiveConverter() {
+            @Override
+            public void addBoolean(boolean value) {
+              setter.accept(value);
+            }
+          };
+        }
+        break;
+      case INT32:
+        if (schemaType == Schema.Type.INT) {
+          return new PrimitiveConverter() {
+            @Override
+            public void addInt(int value) {
+              setter.accept(value);
+            }
+          };
+        }
+        if (schemaType == Schema.Type.LONG) {
+          return new PrimitiveConverter() {
+            @Override
+            public void addInt(int value) {
+              setter.accept((long) value);
+            }
+          };
+        }
+        break;
+      case INT64:
+        if (schemaType == Schema.Type.LONG) {
+          return new PrimitiveConverter() {
+            @Override
+            public void addLong(long value) {
+              setter.accept(value);
+            }
+          };
+        }
+        break;
+      case FLOAT:
+        if (schemaType == Schema.Type.FLOAT) {
+          return new PrimitiveConverter() {
+            @Override
+            public void addFloat(float value) {
+              setter.accept(value);
+            }
+          };
+        }
+        if (schemaType == Schema.Type.DOUBLE) {
+          return new PrimitiveConverter() {
+            @Override
+            public void addFloat(float value) {
+              setter.accept((double) value);
+            }
+          };
+        }
+        break;
+      case DOUBLE:
+        if (schemaType == Schema.Type.DOUBLE) {
+          return new PrimitiveConverter() {
+            @Override
+            public void addDouble(double value) {
+              setter.accept(value);
+            }
+          };
+        }
+        break;
+      case BINARY:
+      case FIXED_LEN_BYTE_ARRAY:
+        if (schemaType == Schema.Type.STRING || schemaType == Schema.Type.ENUM) {
+          return new StringConverter(setter);
+        }
+        if (schemaType == Schema.Type.BYTES) {
+          return new PrimitiveConverter() {
+            @Override
+            public void addBinary(Binary value) {
+              setter.accept(ByteBuffer.wrap(value.getBytes()));
+            }
+          };
+        }
+        break;
+      default:
+        break;
+    }
+    throw incompatible(type, schema);
+  }
+
+  private static IllegalArgumentException incompatible(Type type, Schema schema) {
+    return new IllegalArgumentException(
+      String.format("Parquet field '%s' of type '%s' cannot be read as type '%s'.",
+                    type.getName(), type.toString().trim(), schema.getType()));
+  }
+
+  private static Converter createIgnoringConverter(Type type) {
+    if (type.isPrimitive()) {
+      return new IgnoringPrimitiveConverter();
+    }
+    GroupType groupType = type.asGroupType();
+    Converter[] converters = new Converter[groupType.getFieldCount()];
+    for (int i = 0; i < converters.length; i++) {
+      converters[i] = createIgnoringConverter(groupType.getType(i));
+    }
+    return new GroupConverter() {
+      @Override
+      public Converter getConverter(int fieldIndex) {
+        return converters[fieldIndex];
+      }
+
+      @Override
+      public void start() {
+        // no-op
+      }
+
+      @Override
+      public void end() {
+        // no-op
+      }
+    };
+  }
+
+  /**
+   * Creates a record for each parquet group.
+   */
+  private static final class RecordConverter extends GroupConverter {
+    private final Schema schema;
+    private final Consumer<Object> parent;
+    private final Converter[] converters;
+    private final List<RepeatedField> repeatedFields = new ArrayList<>();
+    private StructuredRecord.Builder builder;
+
+    /**
+     * @param type the parquet group type
+     * @param schema the record schema
+     * @param parent receives each record once it is complete, or {@code null} for the root converter, whose
+     *               builder is returned without being built
+     */
+    private RecordConverter(GroupType type, Schema schema, Consumer<Object> parent) {
+      this.schema = schema;
+      this.parent = parent;
+      this.converters = new Converter[type.getFieldCount()];
+      for (int i = 0; i < converters.length; i++) {
+        Type fieldType = type.getType(i);
+        Schema.Field field = schema.getField(fieldType.getName());
+        if (field == null) {
+          converters[i] = createIgnoringConverter(fieldType);
+          continue;
+        }
+        String name = field.getName();
+        if (fieldType.isRepetition(Type.Repetition.REPEATED)) {
+          Schema fieldSchema = field.getSchema().isNullable() ? field.getSchema().getNonNullable() : field.getSchema();
+          if (fieldSchema.getType() != Schema.Type.ARRAY) {
+            throw incompatible(fieldType, fieldSchema);
+          }
+          RepeatedField repeatedField = new RepeatedField(name);
+          repeatedFields.add(repeatedField);
+          converters[i] = createConverter(fieldType, fieldSchema.getComponentSchema(), repeatedField.values::add);
+        } else {
+          converters[i] = createConverter(fieldType, field.getSchema(), value -> builder.set(name, value));
+        }
+      }
+    }
+
+    @Override
+    public Converter getConverter(int fieldIndex) {
+      return converters[fieldIndex];
+    }
+
+    @Override
+    public void start() {
+      builder = StructuredRecord.builder(schema);
+      for (RepeatedField repeatedField : repeatedFields) {
+        repeatedField.values.clear();
+      }
+    }
+
+    @Override
+    public void end() {
+      for (RepeatedField repeatedField : repeatedFields) {
+        builder.set(repeatedField.name, new ArrayList<>(repeatedField.values));
+      }
+      if (parent != null) {
+        parent.accept(builder.build());
+      }
+    }
+  }
+
+  /**
+   * Values of a repeated field without a LIST annotation.
+   */
+  private static final class RepeatedField {
+    private final String name;
+    private final List<Object> values = new ArrayList<>();
+
+    private RepeatedField(String name) {
+      this.name = name;
+    }
+  }
+
+  /**
+   * Creates a list for each group annotated with LIST.
+   */
+  private static final class ListConverter extends GroupConverter {
+    private final Consumer<Object> parent;
+    private final Converter converter;
+    private List<Object> values;
+
+    private ListConverter(GroupType type, Schema elementSchema, Consumer<Object> parent) {
+      this.parent = parent;
+      Type repeatedType = type.getType(0);
+      if (isElementType(repeatedType, type.getName())) {
+        // two level list, the repeated field is the element
+        this.converter = createConverter(repeatedType, elementSchema, value -> values.add(value));
+      } else {
+        // three level list, the repeated group contains the element, which can be null
+        this.converter = new ElementConverter(repeatedType.asGroupType(), elementSchema, value -> values.add(value));
+      }
+    }
+
+    private static boolean isElementType(Type repeatedType, String parentName) {
+      return repeatedType.isPrimitive() || repeatedType.asGroupType().getFieldCount() > 1
+        || repeatedType.getName().equals("array") || repeatedType.getName().equals(parentName + "_tuple");
+    }
+
+    @Override
+    public Converter getConverter(int fieldIndex) {
+      return converter;
+    }
+
+    @Override
+    public void start() {
+      values = new ArrayList<>();
+    }
+
+    @Override
+    public void end() {
+      parent.accept(values);
+    }
+  }
+
+  /**
+   * Reads the element of a three level list.
+   */
+  private static final class ElementConverter extends GroupConverter {
+    private final Consumer<Object> parent;
+    private final Converter converter;
+    private Object element;
+
+    private ElementConverter(GroupType type, Schema elementSchema, Consumer<Object> parent) {
+      this.parent = parent;
+      this.converter = createConverter(type.getType(0), elementSchema, value -> element = value);
+    }
+
+    @Override
+    public Converter getConverter(int fieldIndex) {
+      return converter;
+    }
+
+    @Override
+    public void start() {
+      element = null;
+    }
+
+    @Override
+    public void end() {
+      parent.accept(element);
+    }
+  }
+
+  /**
+   * Reads a union from a group with one field per non-null type of the union, of which at most one is set.
+   */
+  private static final class UnionConverter extends GroupConverter {
+    private final Converter[] converters;
+
+    private UnionConverter(GroupType type, Schema unionSchema, Consumer<Object> parent) {
+      List<Schema> branches = new ArrayList<>();
+      for (Schema branch : unionSchema.getUnionSchemas()) {
+        if (branch.getType() != Schema.Type.NULL) {
+          branches.add(branch);
+        }
+      }
+      if (branches.size() != type.getFieldCount()) {
+        throw incompatible(type, unionSchema);
+      }
+      this.converters = new Converter[branches.size()];
+      for (int i = 0; i < converters.length; i++) {
+        converters[i] = createConverter(type.getType(i), branches.get(i), parent);
+      }
+    }
+
+    @Override
+    public Converter getConverter(int fieldIndex) {
+      return converters[fieldIndex];
+    }
+
+    @Override
+    public void start() {
+      // no-op, the value is passed on by the converter of the field that is set
+    }
+
+    @Override
+    public void end() {
+      // no-op
+    }
+  }
+
+  /**
+   * Creates a map for each group annotated with MAP.
+   */
+  private static final class MapConverter extends GroupConverter {
+    private final Consumer<Object> parent;
+    private final Converter converter;
+    private Map<Object, Object> values;
+
+    private MapConverter(GroupType type, Map.Entry<Schema, Schema> mapSchema, Consumer<Object> parent) {
+      this.parent = parent;
+      this.converter = new KeyValueConverter(type.getType(0).asGroupType(), mapSchema, this);
+    }
+
+    @Override
+    public Converter getConverter(int fieldIndex) {
+      return converter;
+    }
+
+    @Override
+    public void start() {
+      values = new HashMap<>();
+    }
+
+    @Override
+    public void end() {
+      parent.accept(values);
+    }
+  }
+
+  /**
+   * Reads the key and value of a map entry.
+   */
+  private static final class KeyValueConverter extends GroupConverter {
+    private final MapConverter map;
+    private final Converter keyConverter;
+    private final Converter valueConverter;
+    private Object key;
+    private Object value;
+
+    private KeyValueConverter(GroupType type, Map.Entry<Schema, Schema> mapSchema, MapConverter map) {
+      this.map = map;
+      this.keyConverter = createConverter(type.getType(0), mapSchema.getKey(), key -> this.key = key);
+      this.valueConverter = type.getFieldCount() > 1 ?
+        createConverter(type.getType(1), mapSchema.getValue(), value -> this.value = value) : null;
+    }
+
+    @Override
+    public Converter getConverter(int fieldIndex) {
+      return fieldIndex == 0 ? keyConverter : valueConverter;
+    }
+
+    @Override
+    public void start() {
+      key = null;
+      value = null;
+    }
+
+    @Override
+    public void end() {
+      map.values.put(key, value);
+    }
+  }
+
+  /**
+   * Converts binary values into strings. Dictionary encoded values are only decoded once per dictionary.
+   */
+  private static final class StringConverter extends PrimitiveConverter {
+    private final Consumer<Object> setter;
+    private String[] dictionary;
+
+    private StringConverter(Consumer<Object> setter) {
+      this.setter = setter;
+    }
+
+    @Override
+    public boolean hasDictionarySupport() {
+      return true;
+    }
+
+    @Override
+    public void setDictionary(Dictionary dictionary) {
+      this.dictionary = new String[dictionary.getMaxId() + 1];
+      for (int i = 0; i <= dictionary.getMaxId(); i++) {
+        this.dictionary[i] = dictionary.decodeToBinary(i).toStringUsingUTF8();
+      }
+    }
+
+    @Override
+    public void addValueFromDictionary(int dictionaryId) {
+      setter.accept(dictionary[dictionaryId]);
+    }
+
+    @Override
+    public void addBinary(Binary value) {
+      setter.accept(value.toStringUsingUTF8());
+    }
+  }
+
+  /**
+   * Skips the values of a field that is not in the record schema.
+   */
+  private static final class IgnoringPrimitiveConverter extends PrimitiveConverter {
+
+    @Override
+    public void addBinary(Binary value) {
+      // no-op
+    }
+
+    @Override
+    public void addBoolean(boolean value) {
+      // no-op
+    }
+
+    @Override
+    public void addDouble(double value) {
+      // no-op
+    }
+
+    @Override
+    public void addFloat(float value) {
+      // no-op
+    }
+
+    @Override
+    public void addInt(int value) {
+      // no-op
+    }
+
+    @Override
+    public void addLong(long value) {
+      // no-op
+    }
+  }
+}
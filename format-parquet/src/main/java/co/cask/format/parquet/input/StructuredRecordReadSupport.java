@@ -0,0 +1,69 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.format.parquet.input;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.parquet.hadoop.api.ReadSupport;
+import org.apache.parquet.io.api.RecordMaterializer;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.Type;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link ReadSupport} that materializes parquet records directly into StructuredRecords with the given schema,
+ * without going through Avro GenericRecords. Only the top level columns that are in the schema are read.
+ * The projection is taken from the schema of each file, so that it always matches the types and repetition of the
+ * columns in the file. Columns that do not exist in a file are not set.
+ */
+class StructuredRecordReadSupport extends ReadSupport<StructuredRecord.Builder> {
+  private final Schema schema;
+  private final String skipField;
+
+  /**
+   * @param schema the schema of the records to create
+   * @param skipField a field in the schema that is not read from the files, such as the path field
+   */
+  StructuredRecordReadSupport(Schema schema, @Nullable String skipField) {
+    this.schema = schema;
+    this.skipField = skipField;
+  }
+
+  @Override
+  public ReadContext init(Configuration configuration, Map<String, String> keyValueMetaData, MessageType fileSchema) {
+    List<Type> projectedFields = new ArrayList<>();
+    for (Type field : fileSchema.getFields()) {
+      if (!field.getName().equals(skipField) && schema.getField(field.getName()) != null) {
+        projectedFields.add(field);
+      }
+    }
+    return new ReadContext(new MessageType(fileSchema.getName(), projectedFields));
+  }
+
+  @Override
+  public RecordMaterializer<StructuredRecord.Builder> prepareForRead(Configuration configuration,
+                                                                    Map<String, String> keyValueMetaData,
+                                                                    MessageType fileSchema,
+                                                                    ReadContext readContext) {
+    return new StructuredRecordMaterializer(readContext.getRequestedSchema(), schema);
+  }
+}
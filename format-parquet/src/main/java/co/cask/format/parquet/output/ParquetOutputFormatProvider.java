@@ -26,6 +26,7 @@ import co.cask.cdap.api.plugin.PluginClass;
 import co.cask.cdap.api.plugin.PluginConfig;
 import co.cask.cdap.api.plugin.PluginPropertyField;
 import org.apache.parquet.format.CompressionCodec;
+import org.apache.parquet.hadoop.ParquetOutputFormat;
 
 import java.io.IOException;
 import java.util.HashMap;
@@ -43,7 +44,6 @@ public class ParquetOutputFormatProvider implements OutputFormatProvider {
   static final String SCHEMA_KEY = "parquet.avro.schema";
   static final String NAME = "parquet";
   static final String DESC = "Plugin for writing files in parquet format.";
-  private static final String PARQUET_COMPRESSION = "parquet.compression";
   private final Conf conf;
 
   public ParquetOutputFormatProvider(Conf conf) {
@@ -66,11 +66,20 @@ public class ParquetOutputFormatProvider implements OutputFormatProvider {
     if (conf.compressionCodec != null && !"none".equalsIgnoreCase(conf.compressionCodec)) {
       try {
         CompressionCodec.valueOf(conf.compressionCodec.toUpperCase());
-        configuration.put(PARQUET_COMPRESSION, conf.compressionCodec.toUpperCase());
+        configuration.put(ParquetOutputFormat.COMPRESSION, conf.compressionCodec.toUpperCase());
       } catch (IllegalArgumentException e) {
         throw new IllegalArgumentException("Unsupported compression codec " + conf.compressionCodec, e);
       }
     }
+    if (conf.pageSize != null) {
+      configuration.put(ParquetOutputFormat.PAGE_SIZE, String.valueOf(conf.pageSize));
+    }
+    if (conf.rowGroupSize != null) {
+      configuration.put(ParquetOutputFormat.BLOCK_SIZE, String.valueOf(conf.rowGroupSize));
+    }
+    if (conf.enableDictionary != null) {
+      configuration.put(ParquetOutputFormat.ENABLE_DICTIONARY, String.valueOf(conf.enableDictionary));
+    }
     return configuration;
   }
 
@@ -81,6 +90,12 @@ public class ParquetOutputFormatProvider implements OutputFormatProvider {
     private static final String SCHEMA_DESC = "Schema of the data to write.";
     private static final String CODEC_DESC =
       "Compression codec to use when writing data. Must be 'snappy', 'gzip', or 'none'.";
+    private static final String PAGE_SIZE_DESC = "Size in bytes of each page, which is the unit of encoding and "
+      + "compression within a column. The default is 1048576 (1MB).";
+    private static final String ROW_GROUP_SIZE_DESC = "Size in bytes of each row group, which is the amount of "
+      + "data that is buffered in memory before it is written. The default is 134217728 (128MB).";
+    private static final String DICTIONARY_DESC = "Whether to dictionary encode columns with few distinct values. "
+      + "The default is true.";
 
     @Macro
     @Nullable
@@ -92,6 +107,21 @@ public class ParquetOutputFormatProvider implements OutputFormatProvider {
     @Description(CODEC_DESC)
     private String compressionCodec;
 
+    @Macro
+    @Nullable
+    @Description(PAGE_SIZE_DESC)
+    private Integer pageSize;
+
+    @Macro
+    @Nullable
+    @Description(ROW_GROUP_SIZE_DESC)
+    private Long rowGroupSize;
+
+    @Macro
+    @Nullable
+    @Description(DICTIONARY_DESC)
+    private Boolean enableDictionary;
+
     private void validate() {
       if (!containsMacro("schema") && schema != null) {
         try {
@@ -100,6 +130,13 @@ public class ParquetOutputFormatProvider implements OutputFormatProvider {
           throw new IllegalArgumentException("Unable to parse schema: " + e.getMessage(), e);
         }
       }
+      if (!containsMacro("pageSize") && pageSize != null && pageSize <= 0) {
+        throw new IllegalArgumentException(String.format("The page size must be positive, but found %d.", pageSize));
+      }
+      if (!containsMacro("rowGroupSize") && rowGroupSize != null && rowGroupSize <= 0) {
+        throw new IllegalArgumentException(
+          String.format("The row group size must be positive, but found %d.", rowGroupSize));
+      }
     }
   }
 
@@ -108,6 +145,11 @@ public class ParquetOutputFormatProvider implements OutputFormatProvider {
     properties.put("schema", new PluginPropertyField("schema", Conf.SCHEMA_DESC, "string", false, true));
     properties.put("compressionCodec",
                    new PluginPropertyField("compressionCodec", Conf.CODEC_DESC, "string", false, true));
+    properties.put("pageSize", new PluginPropertyField("pageSize", Conf.PAGE_SIZE_DESC, "int", false, true));
+    properties.put("rowGroupSize",
+                   new PluginPropertyField("rowGroupSize", Conf.ROW_GROUP_SIZE_DESC, "long", false, true));
+    properties.put("enableDictionary",
+                   new PluginPropertyField("enableDictionary", Conf.DICTIONARY_DESC, "boolean", false, true));
     return new PluginClass("outputformat", NAME, DESC, ParquetOutputFormatProvider.class.getName(),
                            "conf", properties);
   }
@@ -17,42 +17,34 @@
 package co.cask.format.parquet.output;
 
 import co.cask.cdap.api.data.format.StructuredRecord;
-import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.api.dataset.lib.KeyValue;
-import co.cask.format.avro.StructuredToAvroTransformer;
 import co.cask.hydrator.format.output.DelegatingOutputFormat;
-import org.apache.avro.generic.GenericRecord;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.mapreduce.OutputFormat;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
-import org.apache.parquet.avro.AvroParquetOutputFormat;
+import org.apache.parquet.hadoop.ParquetOutputFormat;
+import org.apache.parquet.hadoop.api.WriteSupport;
 
-import java.io.IOException;
 import java.util.function.Function;
 
 /**
- * Converts StructuredRecord into GenericRecord before delegating to AvroKeyOutputFormat.
+ * Writes StructuredRecords to parquet files with a {@link StructuredRecordWriteSupport}.
  */
-public class StructuredParquetOutputFormat extends DelegatingOutputFormat<Void, GenericRecord> {
+public class StructuredParquetOutputFormat extends DelegatingOutputFormat<Void, StructuredRecord> {
 
   @Override
-  protected OutputFormat<Void, GenericRecord> createDelegate() {
-    return new AvroParquetOutputFormat<>();
+  protected OutputFormat<Void, StructuredRecord> createDelegate() {
+    return new ParquetOutputFormat<StructuredRecord>() {
+      @Override
+      public WriteSupport<StructuredRecord> getWriteSupport(Configuration configuration) {
+        // each record writer needs its own write support, since it holds the record consumer of the writer
+        return new StructuredRecordWriteSupport();
+      }
+    };
   }
 
   @Override
-  protected Function<StructuredRecord, KeyValue<Void, GenericRecord>> getConversion(TaskAttemptContext context)
-    throws IOException {
-
-    Configuration hConf = context.getConfiguration();
-    Schema schema = Schema.parseJson(hConf.get(ParquetOutputFormatProvider.SCHEMA_KEY));
-    StructuredToAvroTransformer transformer = new StructuredToAvroTransformer(schema);
-    return record -> {
-      try {
-        return new KeyValue<>(null, transformer.transform(record));
-      } catch (IOException e) {
-        throw new RuntimeException("Unable to transform structured record into a generic record", e);
-      }
-    };
+  protected Function<StructuredRecord, KeyValue<Void, StructuredRecord>> getConversion(TaskAttemptContext context) {
+    return record -> new KeyValue<>(null, record);
   }
 }
@@ -0,0 +1,345 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.format.parquet.output;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.parquet.avro.AvroSchemaConverter;
+import org.apache.parquet.hadoop.api.WriteSupport;
+import org.apache.parquet.io.api.Binary;
+import org.apache.parquet.io.api.RecordConsumer;
+import org.apache.parquet.schema.GroupType;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.Type;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link WriteSupport} that writes the values of StructuredRecords directly to the parquet record consumer,
+ * without converting them into Avro GenericRecords first. The parquet schema is derived from the schema the same
+ * way parquet-avro derives it, and the Avro schema is stored in the file metadata, so the files are the same as
+ * the files written with parquet-avro, and can be read by the same readers. The tree of writers is created once,
+ * when the write support is initialized.
+ */
+class StructuredRecordWriteSupport extends WriteSupport<StructuredRecord> {
+  // the metadata key that parquet-avro stores the avro schema with
+  private static final String AVRO_SCHEMA_METADATA_KEY = "parquet.avro.schema";
+  private RecordValueWriter root;
+  private RecordConsumer consumer;
+
+  @Override
+  public WriteContext init(Configuration configuration) {
+    String schemaStr = configuration.get(ParquetOutputFormatProvider.SCHEMA_KEY);
+    Schema schema;
+    try {
+      schema = Schema.parseJson(schemaStr);
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Unable to parse schema: " + e.getMessage(), e);
+    }
+    org.apache.avro.Schema avroSchema = new org.apache.avro.Schema.Parser().parse(schemaStr);
+    MessageType parquetSchema = new AvroSchemaConverter(configuration).convert(avroSchema);
+    root = new RecordValueWriter(parquetSchema, schema);
+    return new WriteContext(parquetSchema,
+                            Collections.singletonMap(AVRO_SCHEMA_METADATA_KEY, avroSchema.toString()));
+  }
+
+  @Override
+  public void prepareForWrite(RecordConsumer recordConsumer) {
+    this.consumer = recordConsumer;
+  }
+
+  @Override
+  public void write(StructuredRecord record) {
+    consumer.startMessage();
+    root.writeFields(consumer, record);
+    consumer.endMessage();
+  }
+
+  private static ValueWriter createWriter(Type type, Schema schema) {
+    Schema nonNullable = schema.isNullable() ? schema.getNonNullable() : schema;
+    switch (nonNullable.getType()) {
+      case BOOLEAN:
+        return (consumer, value) -> consumer.addBoolean((Boolean) value);
+      case INT:
+        return (consumer, value) -> consumer.addInteger((Integer) value);
+      case LONG:
+        return (consumer, value) -> consumer.addLong((Long) value);
+      case FLOAT:
+        return (consumer, value) -> consumer.addFloat((Float) value);
+      case DOUBLE:
+        return (consumer, value) -> consumer.addDouble((Double) value);
+      case STRING:
+      case ENUM:
+        return (consumer, value) -> consumer.addBinary(Binary.fromString(value.toString()));
+      case BYTES:
+        return (consumer, value) -> consumer.addBinary(toBinary(value));
+      case ARRAY:
+        return createListWriter(type.asGroupType(), nonNullable.getComponentSchema());
+      case MAP:
+        return createMapWriter(type.asGroupType(), nonNullable.getMapSchema().getValue());
+      case RECORD:
+        return new RecordValueWriter(type.asGroupType(), nonNullable);
+      case UNION:
+        return new UnionWriter(type.asGroupType(), nonNullable);
+      default:
+        throw new IllegalArgumentException(
+          String.format("Field '%s' of type '%s' is not supported in parquet.", type.getName(), nonNullable.getType()));
+    }
+  }
+
+  private static Binary toBinary(Object value) {
+    if (value instanceof ByteBuffer) {
+      ByteBuffer buffer = (ByteBuffer) value;
+      if (buffer.hasArray()) {
+        return Binary.fromConstantByteArray(buffer.array(), buffer.arrayOffset() + buffer.position(),
+                                            buffer.remaining());
+      }
+      return Binary.fromConstantByteArray(Bytes.getBytes(buffer));
+    }
+    return Binary.fromConstantByteArray((byte[]) value);
+  }
+
+  /**
+   * Creates the writer of a group annotated with LIST. Lists are written with the two level structure by default,
+   * where the repeated field is the element, and with the three level structure if parquet-avro is configured to
+   * write it, where the repeated group contains an optional element.
+   */
+  private static ValueWriter createListWriter(GroupType type, Schema elementSchema) {
+    Type repeatedType = type.getType(0);
+    String repeatedName = repeatedType.getName();
+    if (repeatedType.isPrimitive() || repeatedType.asGroupType().getFieldCount() > 1 || "array".equals(repeatedName)) {
+      ValueWriter elementWriter = createWriter(repeatedType, elementSchema);
+      return (consumer, value) -> {
+        consumer.startGroup();
+        Collection<?> elements = toCollection(value);
+        if (!elements.isEmpty()) {
+          consumer.startField(repeatedName, 0);
+          for (Object element : elements) {
+            if (element == null) {
+              throw new IllegalArgumentException(
+                String.format("Array '%s' contains a null element, which cannot be written in parquet.",
+                              type.getName()));
+            }
+            elementWriter.write(consumer, element);
+          }
+          consumer.endField(repeatedName, 0);
+        }
+        consumer.endGroup();
+      };
+    }
+
+    Type elementType = repeatedType.asGroupType().getType(0);
+    String elementName = elementType.getName();
+    ValueWriter elementWriter = createWriter(elementType, elementSchema);
+    return (consumer, value) -> {
+      consumer.startGroup();
+      Collection<?> elements = toCollection(value);
+      if (!elements.isEmpty()) {
+        consumer.startField(repeatedName, 0);
+        for (Object element : elements) {
+          consumer.startGroup();
+          if (element != null) {
+            consumer.startField(elementName, 0);
+            elementWriter.write(consumer, element);
+            consumer.endField(elementName, 0);
+          }
+          consumer.endGroup();
+        }
+        consumer.endField(repeatedName, 0);
+      }
+      consumer.endGroup();
+    };
+  }
+
+  /**
+   * Creates the writer of a group annotated with MAP. Keys are always written as strings, like parquet-avro does.
+   */
+  private static ValueWriter createMapWriter(GroupType type, Schema valueSchema) {
+    GroupType keyValueType = type.getType(0).asGroupType();
+    String keyValueName = keyValueType.getName();
+    String keyName = keyValueType.getType(0).getName();
+    String valueName = keyValueType.getType(1).getName();
+    ValueWriter valueWriter = createWriter(keyValueType.getType(1), valueSchema);
+    return (consumer, value) -> {
+      consumer.startGroup();
+      Map<?, ?> map = (Map<?, ?>) value;
+      if (!map.isEmpty()) {
+        consumer.startField(keyValueName, 0);
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+          consumer.startGroup();
+          consumer.startField(keyName, 0);
+          consumer.addBinary(Binary.fromString(entry.getKey().toString()));
+          consumer.endField(keyName, 0);
+          if (entry.getValue() != null) {
+            consumer.startField(valueName, 1);
+            valueWriter.write(consumer, entry.getValue());
+            consumer.endField(valueName, 1);
+          }
+          consumer.endGroup();
+        }
+        consumer.endField(keyValueName, 0);
+      }
+      consumer.endGroup();
+    };
+  }
+
+  private static Collection<?> toCollection(Object value) {
+    if (value instanceof Collection) {
+      return (Collection<?>) value;
+    }
+    // arrays of primitives, like int[], are not Object[]
+    int length = Array.getLength(value);
+    Object[] elements = new Object[length];
+    for (int i = 0; i < length; i++) {
+      elements[i] = Array.get(value, i);
+    }
+    return Arrays.asList(elements);
+  }
+
+  /**
+   * Writes a value of a field, which is not null.
+   */
+  private interface ValueWriter {
+    void write(RecordConsumer consumer, Object value);
+  }
+
+  /**
+   * Writes the fields of a record as a group.
+   */
+  private static final class RecordValueWriter implements ValueWriter {
+    private final String[] names;
+    private final boolean[] required;
+    private final ValueWriter[] writers;
+
+    private RecordValueWriter(GroupType type, Schema schema) {
+      List<Type> fields = type.getFields();
+      this.names = new String[fields.size()];
+      this.required = new boolean[fields.size()];
+      this.writers = new ValueWriter[fields.size()];
+      for (int i = 0; i < names.length; i++) {
+        Type fieldType = fields.get(i);
+        Schema.Field field = schema.getField(fieldType.getName());
+        names[i] = fieldType.getName();
+        required[i] = fieldType.isRepetition(Type.Repetition.REQUIRED);
+        writers[i] = createWriter(fieldType, field.getSchema());
+      }
+    }
+
+    @Override
+    public void write(RecordConsumer consumer, Object value) {
+      consumer.startGroup();
+      writeFields(consumer, (StructuredRecord) value);
+      consumer.endGroup();
+    }
+
+    private void writeFields(RecordConsumer consumer, StructuredRecord record) {
+      for (int i = 0; i < names.length; i++) {
+        Object value = record.get(names[i]);
+        if (value == null) {
+          if (required[i]) {
+            throw new IllegalArgumentException(
+              String.format("Field '%s' is not nullable, but found a null value.", names[i]));
+          }
+          continue;
+        }
+        consumer.startField(names[i], i);
+        writers[i].write(consumer, value);
+        consumer.endField(names[i], i);
+      }
+    }
+  }
+
+  /**
+   * Writes a union of more than one non-null type as a group with an optional field for each type, like
+   * parquet-avro does. The field of the first type that the value is an instance of is written.
+   */
+  private static final class UnionWriter implements ValueWriter {
+    private final GroupType type;
+    private final Schema[] members;
+    private final ValueWriter[] writers;
+
+    private UnionWriter(GroupType type, Schema schema) {
+      this.type = type;
+      this.members = new Schema[type.getFieldCount()];
+      this.writers = new ValueWriter[members.length];
+      int i = 0;
+      for (Schema member : schema.getUnionSchemas()) {
+        if (member.getType() != Schema.Type.NULL) {
+          members[i] = member;
+          writers[i] = createWriter(type.getType(i), member);
+          i++;
+        }
+      }
+    }
+
+    @Override
+    public void write(RecordConsumer consumer, Object value) {
+      for (int i = 0; i < members.length; i++) {
+        if (isInstance(members[i], value)) {
+          String name = type.getFieldName(i);
+          consumer.startGroup();
+          consumer.startField(name, i);
+          writers[i].write(consumer, value);
+          consumer.endField(name, i);
+          consumer.endGroup();
+          return;
+        }
+      }
+      throw new IllegalArgumentException(
+        String.format("Value '%s' of field '%s' does not match any type of the union.", value, type.getName()));
+    }
+
+    private static boolean isInstance(Schema schema, Object value) {
+      switch (schema.getType()) {
+        case BOOLEAN:
+          return value instanceof Boolean;
+        case INT:
+          return value instanceof Integer;
+        case LONG:
+          return value instanceof Long;
+        case FLOAT:
+          return value instanceof Float;
+        case DOUBLE:
+          return value instanceof Double;
+        case STRING:
+          return value instanceof String;
+        case ENUM:
+          return value instanceof Enum || (value instanceof String && schema.getEnumIndex((String) value) != -1);
+        case BYTES:
+          return value instanceof byte[] || value instanceof ByteBuffer;
+        case ARRAY:
+          return value instanceof Collection || value.getClass().isArray();
+        case MAP:
+          return value instanceof Map;
+        case RECORD:
+          return value instanceof StructuredRecord
+            && schema.getRecordName().equals(((StructuredRecord) value).getSchema().getRecordName());
+        default:
+          return false;
+      }
+    }
+  }
+}
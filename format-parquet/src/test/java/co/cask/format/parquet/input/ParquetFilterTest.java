@@ -0,0 +1,121 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.format.parquet.input;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.hydrator.format.input.PushdownFilter;
+import org.apache.parquet.filter2.predicate.FilterApi;
+import org.apache.parquet.filter2.predicate.FilterPredicate;
+import org.apache.parquet.filter2.predicate.Operators;
+import org.apache.parquet.io.api.Binary;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.MessageTypeParser;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ParquetFilter}.
+ */
+public class ParquetFilterTest {
+  private static final Schema SCHEMA = Schema.recordOf(
+    "record",
+    Schema.Field.of("i", Schema.nullableOf(Schema.of(Schema.Type.INT))),
+    Schema.Field.of("l", Schema.of(Schema.Type.LONG)),
+    Schema.Field.of("f", Schema.of(Schema.Type.FLOAT)),
+    Schema.Field.of("d", Schema.of(Schema.Type.DOUBLE)),
+    Schema.Field.of("s", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("b", Schema.of(Schema.Type.BOOLEAN)),
+    Schema.Field.of("bytes", Schema.of(Schema.Type.BYTES)),
+    Schema.Field.of("date", Schema.of(Schema.LogicalType.DATE)));
+  private static final MessageType FILE_SCHEMA = MessageTypeParser.parseMessageType(
+    "message record { optional int32 i; required int64 l; required float f; required double d; " +
+      "optional binary s (UTF8); required boolean b; required binary bytes; required int32 date (DATE); }");
+
+  @Test
+  public void testOperators() {
+    Operators.LongColumn column = FilterApi.longColumn("l");
+    assertPredicate(FilterApi.eq(column, 5L), "l = 5");
+    assertPredicate(FilterApi.notEq(column, 5L), "l != 5");
+    assertPredicate(FilterApi.notEq(column, 5L), "l <> 5");
+    assertPredicate(FilterApi.lt(column, 5L), "l < 5");
+    assertPredicate(FilterApi.ltEq(column, 5L), "l <= 5");
+    assertPredicate(FilterApi.gt(column, 5L), "l > 5");
+    assertPredicate(FilterApi.gtEq(column, 5L), "l >= 5");
+    assertPredicate(FilterApi.eq(column, null), "l IS NULL");
+    assertPredicate(FilterApi.notEq(column, null), "l IS NOT NULL");
+    assertPredicate(FilterApi.and(FilterApi.gtEq(column, 5L), FilterApi.lt(column, 10L)), "l >= 5 AND l < 10");
+  }
+
+  @Test
+  public void testTypes() {
+    assertPredicate(FilterApi.gt(FilterApi.intColumn("i"), -3), "i > -3");
+    assertPredicate(FilterApi.lt(FilterApi.floatColumn("f"), 1.5f), "f < 1.5");
+    assertPredicate(FilterApi.ltEq(FilterApi.doubleColumn("d"), 2e3d), "d <= 2e3");
+    assertPredicate(FilterApi.eq(FilterApi.binaryColumn("s"), Binary.fromString("o'brien")), "s = 'o''brien'");
+    assertPredicate(FilterApi.eq(FilterApi.booleanColumn("b"), true), "b = true");
+    assertPredicate(FilterApi.notEq(FilterApi.booleanColumn("b"), false), "b != false");
+    assertPredicate(FilterApi.eq(FilterApi.booleanColumn("b"), null), "b IS NULL");
+  }
+
+  @Test
+  public void testValidation() {
+    ParquetFilter.validate(PushdownFilter.parse("i > 1 AND s = 'a' AND b = false AND d IS NOT NULL"), SCHEMA);
+    // missing columns
+    assertInvalid("missing = 1");
+    // unsupported types and operators
+    assertInvalid("bytes IS NULL");
+    assertInvalid("date = '2018-01-01'");
+    assertInvalid("b < true");
+    // literals that cannot be compared with the column
+    assertInvalid("l = 'abc'");
+    assertInvalid("s = abc");
+    assertInvalid("i = 1.5");
+    assertInvalid("i > 3000000000");
+    assertInvalid("b = 1");
+  }
+
+  @Test
+  public void testConditionsThatDoNotApplyToTheFileAreIgnored() {
+    MessageType fileSchema = MessageTypeParser.parseMessageType(
+      "message record { optional int64 i; required int64 l; optional binary s; " +
+        "optional group d (LIST) { repeated double element; } }");
+    // i is a long and s is binary without a string annotation in the file, f is missing and d is a list
+    Assert.assertEquals(FilterApi.gt(FilterApi.longColumn("l"), 5L),
+                        toFilterPredicate("i > 1 AND l > 5 AND s = 'a' AND f < 1.5 AND d IS NULL", fileSchema));
+    Assert.assertNull(toFilterPredicate("i > 1 AND f < 1.5", fileSchema));
+  }
+
+  private static void assertPredicate(FilterPredicate expected, String filter) {
+    Assert.assertEquals(expected, toFilterPredicate(filter, FILE_SCHEMA));
+  }
+
+  private static FilterPredicate toFilterPredicate(String filter, MessageType fileSchema) {
+    PushdownFilter pushdownFilter = PushdownFilter.parse(filter);
+    ParquetFilter.validate(pushdownFilter, SCHEMA);
+    return ParquetFilter.toFilterPredicate(pushdownFilter, SCHEMA, fileSchema);
+  }
+
+  private static void assertInvalid(String filter) {
+    try {
+      ParquetFilter.validate(PushdownFilter.parse(filter), SCHEMA);
+      Assert.fail(String.format("Expected filter '%s' to be invalid.", filter));
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+}
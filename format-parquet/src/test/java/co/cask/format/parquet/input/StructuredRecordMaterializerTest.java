@@ -0,0 +1,262 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.format.parquet.input;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.format.avro.StructuredToAvroTransformer;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.parquet.avro.AvroParquetWriter;
+import org.apache.parquet.avro.AvroWriteSupport;
+import org.apache.parquet.hadoop.ParquetReader;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for {@link StructuredRecordMaterializer}, by writing parquet files with parquet-avro and reading them back
+ * with a {@link StructuredRecordReadSupport}.
+ */
+public class StructuredRecordMaterializerTest {
+  private static final Schema INNER_SCHEMA = Schema.recordOf(
+    "inner",
+    Schema.Field.of("id", Schema.of(Schema.Type.INT)),
+    Schema.Field.of("name", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+  private static final Schema SCHEMA = Schema.recordOf(
+    "record",
+    Schema.Field.of("boolean", Schema.of(Schema.Type.BOOLEAN)),
+    Schema.Field.of("int", Schema.of(Schema.Type.INT)),
+    Schema.Field.of("long", Schema.of(Schema.Type.LONG)),
+    Schema.Field.of("float", Schema.of(Schema.Type.FLOAT)),
+    Schema.Field.of("double", Schema.of(Schema.Type.DOUBLE)),
+    Schema.Field.of("string", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("bytes", Schema.of(Schema.Type.BYTES)),
+    Schema.Field.of("nullableInt", Schema.nullableOf(Schema.of(Schema.Type.INT))),
+    Schema.Field.of("nullableString", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("date", Schema.of(Schema.LogicalType.DATE)),
+    Schema.Field.of("timestamp", Schema.nullableOf(Schema.of(Schema.LogicalType.TIMESTAMP_MICROS))),
+    Schema.Field.of("array", Schema.arrayOf(Schema.of(Schema.Type.LONG))),
+    Schema.Field.of("nullableArray", Schema.nullableOf(Schema.arrayOf(Schema.of(Schema.Type.STRING)))),
+    Schema.Field.of("map", Schema.mapOf(Schema.of(Schema.Type.STRING), Schema.of(Schema.Type.DOUBLE))),
+    Schema.Field.of("record", INNER_SCHEMA),
+    Schema.Field.of("nullableRecord", Schema.nullableOf(INNER_SCHEMA)),
+    Schema.Field.of("records", Schema.arrayOf(INNER_SCHEMA)),
+    Schema.Field.of("union", Schema.unionOf(Schema.of(Schema.Type.INT), Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("nullableUnion", Schema.unionOf(Schema.of(Schema.Type.NULL), Schema.of(Schema.Type.LONG),
+                                                    Schema.of(Schema.Type.STRING))));
+
+  @ClassRule
+  public static final TemporaryFolder TMP_FOLDER = new TemporaryFolder();
+
+  @Test
+  public void testAllTypes() throws IOException {
+    List<StructuredRecord> records = createRecords(SCHEMA);
+    // two level lists, written by default by parquet-avro
+    Path file = write(SCHEMA, records, true);
+    assertRecordsEqual(records, read(file, SCHEMA));
+    // three level lists
+    file = write(SCHEMA, records, false);
+    assertRecordsEqual(records, read(file, SCHEMA));
+  }
+
+  @Test
+  public void testNullableElements() throws IOException {
+    Schema schema = Schema.recordOf(
+      "nullableElements",
+      Schema.Field.of("array", Schema.arrayOf(Schema.nullableOf(Schema.of(Schema.Type.STRING)))),
+      Schema.Field.of("map", Schema.mapOf(Schema.of(Schema.Type.STRING), Schema.nullableOf(INNER_SCHEMA))));
+    StructuredRecord inner = StructuredRecord.builder(INNER_SCHEMA).set("id", 1).build();
+    Map<String, StructuredRecord> map = new HashMap<>();
+    map.put("a", inner);
+    map.put("b", null);
+    List<StructuredRecord> records = ImmutableList.of(
+      StructuredRecord.builder(schema).set("array", Arrays.asList("a", null, "c")).set("map", map).build(),
+      StructuredRecord.builder(schema).set("array", new ArrayList<>()).set("map", new HashMap<>()).build());
+    // null elements can only be written with three level lists
+    assertRecordsEqual(records, read(write(schema, records, false), schema));
+  }
+
+  @Test
+  public void testProjection() throws IOException {
+    Path file = write(SCHEMA, createRecords(SCHEMA), true);
+    Schema projection = Schema.recordOf(
+      "projection",
+      // ints and floats can be read as longs and doubles
+      Schema.Field.of("int", Schema.of(Schema.Type.LONG)),
+      Schema.Field.of("float", Schema.of(Schema.Type.DOUBLE)),
+      Schema.Field.of("string", Schema.of(Schema.Type.STRING)),
+      Schema.Field.of("record", Schema.recordOf(
+        "innerProjection", Schema.Field.of("name", Schema.nullableOf(Schema.of(Schema.Type.STRING))))),
+      Schema.Field.of("missing", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+      Schema.Field.of("path", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+
+    List<StructuredRecord> records = read(file, projection, "path");
+    Assert.assertEquals(3, records.size());
+    for (int i = 0; i < records.size(); i++) {
+      StructuredRecord record = records.get(i);
+      Assert.assertEquals((long) i, (long) record.<Long>get("int"));
+      Assert.assertEquals(i + 0.5d, record.<Double>get("float"), 0d);
+      Assert.assertEquals("string" + i, record.get("string"));
+      Assert.assertEquals("name" + i, record.<StructuredRecord>get("record").get("name"));
+      Assert.assertNull(record.get("missing"));
+      Assert.assertNull(record.get("path"));
+    }
+  }
+
+  @Test
+  public void testIncompatibleTypes() throws IOException {
+    Path file = write(SCHEMA, createRecords(SCHEMA), true);
+    assertIncompatible(file, Schema.Field.of("long", Schema.of(Schema.Type.INT)));
+    assertIncompatible(file, Schema.Field.of("string", Schema.of(Schema.Type.LONG)));
+    assertIncompatible(file, Schema.Field.of("record", Schema.of(Schema.Type.STRING)));
+    assertIncompatible(file, Schema.Field.of("array", Schema.of(Schema.Type.LONG)));
+    assertIncompatible(file, Schema.Field.of("union", Schema.of(Schema.Type.INT)));
+  }
+
+  private static void assertIncompatible(Path file, Schema.Field field) throws IOException {
+    try {
+      read(file, Schema.recordOf("incompatible", field));
+      Assert.fail(String.format("Expected field '%s' to be incompatible with the file.", field.getName()));
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  private static List<StructuredRecord> createRecords(Schema schema) {
+    List<StructuredRecord> records = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      StructuredRecord inner = StructuredRecord.builder(INNER_SCHEMA).set("id", i).set("name", "name" + i).build();
+      boolean nulls = i == 1;
+      StructuredRecord.Builder builder = StructuredRecord.builder(schema)
+        .set("boolean", i % 2 == 0)
+        .set("int", i)
+        .set("long", Long.MAX_VALUE - i)
+        .set("float", i + 0.5f)
+        .set("double", i + 0.25d)
+        // repeated strings are dictionary encoded
+        .set("string", "string" + i)
+        .set("bytes", ("bytes" + i).getBytes(StandardCharsets.UTF_8))
+        .setDate("date", LocalDate.of(2018, 1, i + 1))
+        .set("array", Arrays.asList((long) i, i + 1L))
+        .set("map", ImmutableMap.of("k" + i, (double) i))
+        .set("record", inner)
+        .set("records", ImmutableList.of(inner, inner))
+        .set("union", i % 2 == 0 ? "two" : i);
+      if (!nulls) {
+        builder
+          .set("nullableInt", i)
+          .set("nullableString", "nullable" + i)
+          .setTimestamp("timestamp", ZonedDateTime.of(2018, 1, i + 1, 1, 2, 3, 4000, ZoneOffset.UTC))
+          .set("nullableArray", new ArrayList<>())
+          .set("nullableRecord", inner)
+          .set("nullableUnion", i % 2 == 0 ? (Object) (long) i : "three");
+      }
+      records.add(builder.build());
+    }
+    return records;
+  }
+
+  private static Path write(Schema schema, List<StructuredRecord> records, boolean oldListStructure)
+    throws IOException {
+    Path file = new Path(new File(TMP_FOLDER.newFolder(), "data.parquet").toURI());
+    Configuration hConf = new Configuration();
+    hConf.setBoolean(AvroWriteSupport.WRITE_OLD_LIST_STRUCTURE, oldListStructure);
+    org.apache.avro.Schema avroSchema = new org.apache.avro.Schema.Parser().parse(schema.toString());
+    StructuredToAvroTransformer transformer = new StructuredToAvroTransformer(schema);
+    try (ParquetWriter<GenericRecord> writer =
+           AvroParquetWriter.<GenericRecord>builder(file).withSchema(avroSchema).withConf(hConf).build()) {
+      for (StructuredRecord record : records) {
+        writer.write(transformer.transform(record));
+      }
+    }
+    return file;
+  }
+
+  private static List<StructuredRecord> read(Path file, Schema schema) throws IOException {
+    return read(file, schema, null);
+  }
+
+  private static List<StructuredRecord> read(Path file, Schema schema, String skipField) throws IOException {
+    List<StructuredRecord> records = new ArrayList<>();
+    try (ParquetReader<StructuredRecord.Builder> reader =
+           ParquetReader.builder(new StructuredRecordReadSupport(schema, skipField), file).build()) {
+      StructuredRecord.Builder builder;
+      while ((builder = reader.read()) != null) {
+        records.add(builder.build());
+      }
+    }
+    return records;
+  }
+
+  private static void assertRecordsEqual(List<StructuredRecord> expected, List<StructuredRecord> actual) {
+    Assert.assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertRecordEquals(expected.get(i), actual.get(i));
+    }
+  }
+
+  private static void assertRecordEquals(StructuredRecord expected, StructuredRecord actual) {
+    for (Schema.Field field : expected.getSchema().getFields()) {
+      assertValueEquals(field.getName(), expected.get(field.getName()), actual.get(field.getName()));
+    }
+  }
+
+  private static void assertValueEquals(String name, Object expected, Object actual) {
+    if (expected instanceof StructuredRecord) {
+      Assert.assertTrue(name, actual instanceof StructuredRecord);
+      assertRecordEquals((StructuredRecord) expected, (StructuredRecord) actual);
+    } else if (expected instanceof byte[]) {
+      Assert.assertEquals(name, ByteBuffer.wrap((byte[]) expected), actual);
+    } else if (expected instanceof List) {
+      List<?> expectedList = (List<?>) expected;
+      List<?> actualList = (List<?>) actual;
+      Assert.assertEquals(name, expectedList.size(), actualList.size());
+      for (int i = 0; i < expectedList.size(); i++) {
+        assertValueEquals(name + "[" + i + "]", expectedList.get(i), actualList.get(i));
+      }
+    } else if (expected instanceof Map) {
+      Map<?, ?> actualMap = (Map<?, ?>) actual;
+      Assert.assertEquals(name, ((Map<?, ?>) expected).size(), actualMap.size());
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) expected).entrySet()) {
+        Assert.assertTrue(name, actualMap.containsKey(entry.getKey()));
+        assertValueEquals(name + "[" + entry.getKey() + "]", entry.getValue(), actualMap.get(entry.getKey()));
+      }
+    } else {
+      Assert.assertEquals(name, expected, actual);
+    }
+  }
+}
@@ -0,0 +1,361 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.format.parquet.output;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.format.avro.AvroToStructuredTransformer;
+import co.cask.format.avro.StructuredToAvroTransformer;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.parquet.avro.AvroParquetReader;
+import org.apache.parquet.avro.AvroParquetWriter;
+import org.apache.parquet.avro.AvroWriteSupport;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.ParquetReader;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.apache.parquet.hadoop.metadata.FileMetaData;
+import org.apache.parquet.io.api.Binary;
+import org.apache.parquet.io.api.RecordConsumer;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for {@link StructuredRecordWriteSupport}, which compare the files it writes with the files written by
+ * parquet-avro, and read them back with parquet-avro.
+ */
+public class StructuredRecordWriteSupportTest {
+  private static final Schema INNER_SCHEMA = Schema.recordOf(
+    "inner",
+    Schema.Field.of("id", Schema.of(Schema.Type.INT)),
+    Schema.Field.of("name", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+  private static final Schema SCHEMA = Schema.recordOf(
+    "record",
+    Schema.Field.of("boolean", Schema.of(Schema.Type.BOOLEAN)),
+    Schema.Field.of("int", Schema.of(Schema.Type.INT)),
+    Schema.Field.of("long", Schema.of(Schema.Type.LONG)),
+    Schema.Field.of("float", Schema.of(Schema.Type.FLOAT)),
+    Schema.Field.of("double", Schema.of(Schema.Type.DOUBLE)),
+    Schema.Field.of("string", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("bytes", Schema.of(Schema.Type.BYTES)),
+    Schema.Field.of("nullableInt", Schema.nullableOf(Schema.of(Schema.Type.INT))),
+    Schema.Field.of("nullableString", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("date", Schema.of(Schema.LogicalType.DATE)),
+    Schema.Field.of("timestamp", Schema.nullableOf(Schema.of(Schema.LogicalType.TIMESTAMP_MICROS))),
+    Schema.Field.of("array", Schema.arrayOf(Schema.of(Schema.Type.LONG))),
+    Schema.Field.of("nullableArray", Schema.nullableOf(Schema.arrayOf(Schema.of(Schema.Type.STRING)))),
+    Schema.Field.of("map", Schema.mapOf(Schema.of(Schema.Type.STRING), Schema.of(Schema.Type.DOUBLE))),
+    Schema.Field.of("record", INNER_SCHEMA),
+    Schema.Field.of("nullableRecord", Schema.nullableOf(INNER_SCHEMA)),
+    Schema.Field.of("records", Schema.arrayOf(INNER_SCHEMA)),
+    Schema.Field.of("union", Schema.unionOf(Schema.of(Schema.Type.INT), Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("nullableUnion", Schema.unionOf(Schema.of(Schema.Type.NULL), Schema.of(Schema.Type.LONG),
+                                                    Schema.of(Schema.Type.STRING))));
+
+  @ClassRule
+  public static final TemporaryFolder TMP_FOLDER = new TemporaryFolder();
+
+  @Test
+  public void testSameAsParquetAvro() throws IOException {
+    List<StructuredRecord> records = createRecords();
+    // two level lists, written by default by parquet-avro, and three level lists
+    for (boolean oldListStructure : new boolean[] { true, false }) {
+      Configuration conf = new Configuration();
+      conf.setBoolean(AvroWriteSupport.WRITE_OLD_LIST_STRUCTURE, oldListStructure);
+      Path file = write(SCHEMA, records, conf);
+      Path expectedFile = writeWithParquetAvro(SCHEMA, records, conf);
+
+      FileMetaData metadata = ParquetFileReader.readFooter(conf, file).getFileMetaData();
+      FileMetaData expectedMetadata = ParquetFileReader.readFooter(conf, expectedFile).getFileMetaData();
+      Assert.assertEquals(expectedMetadata.getSchema(), metadata.getSchema());
+      Assert.assertEquals(expectedMetadata.getKeyValueMetaData().get("parquet.avro.schema"),
+                          metadata.getKeyValueMetaData().get("parquet.avro.schema"));
+
+      List<GenericRecord> actual = read(file, conf);
+      Assert.assertEquals(read(expectedFile, conf), actual);
+      AvroToStructuredTransformer transformer = new AvroToStructuredTransformer();
+      Assert.assertEquals(records.size(), actual.size());
+      for (int i = 0; i < records.size(); i++) {
+        Assert.assertEquals(normalize(records.get(i)), normalize(transformer.transform(actual.get(i), SCHEMA)));
+      }
+    }
+  }
+
+  @Test
+  public void testNullElements() throws IOException {
+    Schema schema = Schema.recordOf(
+      "nullableElements",
+      Schema.Field.of("array", Schema.arrayOf(Schema.nullableOf(Schema.of(Schema.Type.STRING)))),
+      Schema.Field.of("map", Schema.mapOf(Schema.of(Schema.Type.STRING), Schema.nullableOf(INNER_SCHEMA))));
+    StructuredRecord inner = StructuredRecord.builder(INNER_SCHEMA).set("id", 1).build();
+    Map<String, StructuredRecord> map = new HashMap<>();
+    map.put("a", inner);
+    map.put("b", null);
+    List<StructuredRecord> records = ImmutableList.of(
+      StructuredRecord.builder(schema).set("array", Arrays.asList("a", null, "c")).set("map", map).build(),
+      StructuredRecord.builder(schema).set("array", new ArrayList<>()).set("map", new HashMap<>()).build());
+
+    // null elements can only be written with three level lists
+    Configuration conf = new Configuration();
+    conf.setBoolean(AvroWriteSupport.WRITE_OLD_LIST_STRUCTURE, false);
+    List<GenericRecord> actual = read(write(schema, records, conf), conf);
+    Assert.assertEquals(2, actual.size());
+    Assert.assertEquals(Arrays.asList("a", null, "c"), normalize(actual.get(0).get("array")));
+    Assert.assertEquals(new ArrayList<>(), normalize(actual.get(1).get("array")));
+    Map<?, ?> actualMap = (Map<?, ?>) normalize(actual.get(0).get("map"));
+    Assert.assertEquals(2, actualMap.size());
+    Assert.assertEquals(1, ((GenericRecord) actualMap.get("a")).get("id"));
+    Assert.assertTrue(actualMap.containsKey("b"));
+    Assert.assertNull(actualMap.get("b"));
+    Assert.assertTrue(((Map<?, ?>) actual.get(1).get("map")).isEmpty());
+  }
+
+  @Test
+  public void testInvalidValues() {
+    Schema nullable = Schema.recordOf("record", Schema.Field.of("x", Schema.nullableOf(Schema.of(Schema.Type.INT))));
+    assertInvalid(Schema.recordOf("record", Schema.Field.of("x", Schema.of(Schema.Type.INT))),
+                  StructuredRecord.builder(nullable).build(), true);
+
+    Schema array = Schema.arrayOf(Schema.nullableOf(Schema.of(Schema.Type.STRING)));
+    Schema arraySchema = Schema.recordOf("record", Schema.Field.of("x", array));
+    assertInvalid(arraySchema, StructuredRecord.builder(arraySchema).set("x", Arrays.asList("a", null)).build(), true);
+
+    Schema union = Schema.unionOf(Schema.of(Schema.Type.INT), Schema.of(Schema.Type.STRING));
+    Schema unionSchema = Schema.recordOf("record", Schema.Field.of("x", union));
+    Schema longSchema = Schema.recordOf("record", Schema.Field.of("x", Schema.of(Schema.Type.LONG)));
+    assertInvalid(unionSchema, StructuredRecord.builder(longSchema).set("x", 1L).build(), false);
+  }
+
+  /**
+   * Checks that writing the record with the given schema fails.
+   */
+  private static void assertInvalid(Schema schema, StructuredRecord record, boolean oldListStructure) {
+    Configuration conf = new Configuration();
+    conf.set(ParquetOutputFormatProvider.SCHEMA_KEY, schema.toString());
+    conf.setBoolean(AvroWriteSupport.WRITE_OLD_LIST_STRUCTURE, oldListStructure);
+    StructuredRecordWriteSupport writeSupport = new StructuredRecordWriteSupport();
+    writeSupport.init(conf);
+    writeSupport.prepareForWrite(new NoOpRecordConsumer());
+    try {
+      writeSupport.write(record);
+      Assert.fail(String.format("Expected record %s to be rejected for schema %s.", record, schema));
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  private static List<StructuredRecord> createRecords() {
+    List<StructuredRecord> records = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      StructuredRecord inner = StructuredRecord.builder(INNER_SCHEMA).set("id", i).set("name", "name" + i).build();
+      // byte buffers are written from their position
+      ByteBuffer bytes = ByteBuffer.wrap(("xxbytes" + i).getBytes(StandardCharsets.UTF_8));
+      bytes.position(2);
+      StructuredRecord.Builder builder = StructuredRecord.builder(SCHEMA)
+        .set("boolean", i % 2 == 0)
+        .set("int", i == 3 ? Integer.MIN_VALUE : i)
+        .set("long", Long.MAX_VALUE - i)
+        .set("float", i + 0.5f)
+        .set("double", i + 0.25d)
+        .set("string", i == 2 ? "" : "string" + i + "é")
+        .set("bytes", i % 2 == 0 ? bytes : ("bytes" + i).getBytes(StandardCharsets.UTF_8))
+        .setDate("date", LocalDate.of(2018, 1, i + 1))
+        // arrays of primitives are written like lists
+        .set("array", i % 2 == 0 ? Arrays.asList((long) i, i + 1L) : new long[] { i, i + 1L, i + 2L })
+        .set("map", ImmutableMap.of("k" + i, (double) i, "other", -1d))
+        .set("record", inner)
+        .set("records", i == 2 ? ImmutableList.of() : ImmutableList.of(inner, inner))
+        .set("union", i % 2 == 0 ? "two" : i);
+      if (i != 1) {
+        builder
+          .set("nullableInt", i)
+          .set("nullableString", "nullable" + i)
+          .setTimestamp("timestamp", ZonedDateTime.of(2018, 1, i + 1, 1, 2, 3, 4000, ZoneOffset.UTC))
+          .set("nullableArray", i == 0 ? new ArrayList<>() : Arrays.asList("a", "b"))
+          .set("nullableRecord", inner)
+          .set("nullableUnion", i % 2 == 0 ? (Object) (long) i : "three");
+      }
+      records.add(builder.build());
+    }
+    return records;
+  }
+
+  private static Path write(Schema schema, List<StructuredRecord> records, Configuration conf) throws IOException {
+    Path file = new Path(new File(TMP_FOLDER.newFolder(), "data.parquet").toURI());
+    Configuration writeConf = new Configuration(conf);
+    writeConf.set(ParquetOutputFormatProvider.SCHEMA_KEY, schema.toString());
+    try (ParquetWriter<StructuredRecord> writer =
+           new ParquetWriter<>(file, new StructuredRecordWriteSupport(), CompressionCodecName.UNCOMPRESSED,
+                               ParquetWriter.DEFAULT_BLOCK_SIZE, ParquetWriter.DEFAULT_PAGE_SIZE,
+                               ParquetWriter.DEFAULT_PAGE_SIZE, ParquetWriter.DEFAULT_IS_DICTIONARY_ENABLED,
+                               ParquetWriter.DEFAULT_IS_VALIDATING_ENABLED, ParquetWriter.DEFAULT_WRITER_VERSION,
+                               writeConf)) {
+      for (StructuredRecord record : records) {
+        writer.write(record);
+      }
+    }
+    return file;
+  }
+
+  private static Path writeWithParquetAvro(Schema schema, List<StructuredRecord> records,
+                                           Configuration conf) throws IOException {
+    Path file = new Path(new File(TMP_FOLDER.newFolder(), "data.parquet").toURI());
+    org.apache.avro.Schema avroSchema = new org.apache.avro.Schema.Parser().parse(schema.toString());
+    StructuredToAvroTransformer transformer = new StructuredToAvroTransformer(schema);
+    try (ParquetWriter<GenericRecord> writer =
+           AvroParquetWriter.<GenericRecord>builder(file).withSchema(avroSchema).withConf(conf).build()) {
+      for (StructuredRecord record : records) {
+        writer.write(transformer.transform(record));
+      }
+    }
+    return file;
+  }
+
+  private static List<GenericRecord> read(Path file, Configuration conf) throws IOException {
+    List<GenericRecord> records = new ArrayList<>();
+    try (ParquetReader<GenericRecord> reader = AvroParquetReader.<GenericRecord>builder(file).withConf(conf).build()) {
+      GenericRecord record;
+      while ((record = reader.read()) != null) {
+        records.add(record);
+      }
+    }
+    return records;
+  }
+
+  /**
+   * Converts a value to a form that can be compared with the value that is read back.
+   */
+  private static Object normalize(Object value) {
+    if (value instanceof ByteBuffer) {
+      ByteBuffer buffer = ((ByteBuffer) value).duplicate();
+      byte[] bytes = new byte[buffer.remaining()];
+      buffer.get(bytes);
+      return Arrays.toString(bytes);
+    }
+    if (value instanceof byte[]) {
+      return Arrays.toString((byte[]) value);
+    }
+    if (value instanceof long[]) {
+      List<Object> values = new ArrayList<>();
+      for (long element : (long[]) value) {
+        values.add(element);
+      }
+      return values;
+    }
+    if (value instanceof CharSequence) {
+      return value.toString();
+    }
+    if (value instanceof Collection) {
+      List<Object> values = new ArrayList<>();
+      for (Object element : (Collection<?>) value) {
+        values.add(normalize(element));
+      }
+      return values;
+    }
+    if (value instanceof Map) {
+      Map<Object, Object> values = new HashMap<>();
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+        values.put(normalize(entry.getKey()), normalize(entry.getValue()));
+      }
+      return values;
+    }
+    if (value instanceof StructuredRecord) {
+      StructuredRecord record = (StructuredRecord) value;
+      Map<String, Object> values = new LinkedHashMap<>();
+      for (Schema.Field field : record.getSchema().getFields()) {
+        values.put(field.getName(), normalize(record.get(field.getName())));
+      }
+      return values;
+    }
+    return value;
+  }
+
+  /**
+   * A record consumer that ignores the values, used to check the values that are rejected by the write support.
+   */
+  private static final class NoOpRecordConsumer extends RecordConsumer {
+    @Override
+    public void startMessage() {
+    }
+
+    @Override
+    public void endMessage() {
+    }
+
+    @Override
+    public void startField(String field, int index) {
+    }
+
+    @Override
+    public void endField(String field, int index) {
+    }
+
+    @Override
+    public void startGroup() {
+    }
+
+    @Override
+    public void endGroup() {
+    }
+
+    @Override
+    public void addInteger(int value) {
+    }
+
+    @Override
+    public void addLong(long value) {
+    }
+
+    @Override
+    public void addBoolean(boolean value) {
+    }
+
+    @Override
+    public void addBinary(Binary value) {
+    }
+
+    @Override
+    public void addFloat(float value) {
+    }
+
+    @Override
+    public void addDouble(double value) {
+    }
+  }
+}
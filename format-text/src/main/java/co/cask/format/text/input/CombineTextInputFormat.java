@@ -17,7 +17,10 @@
 package co.cask.format.text.input;
 
 import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.hydrator.format.input.CombinePathTrackingInputFormat;
+import co.cask.hydrator.format.input.CombinePathTrackingRecordReader;
 import co.cask.hydrator.format.input.PathTrackingInputFormat;
+import co.cask.hydrator.format.input.PathTrackingRecordReaderWrapper;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
@@ -26,9 +29,6 @@ import org.apache.hadoop.mapreduce.InputSplit;
 import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
-import org.apache.hadoop.mapreduce.lib.input.CombineFileInputFormat;
-import org.apache.hadoop.mapreduce.lib.input.CombineFileRecordReader;
-import org.apache.hadoop.mapreduce.lib.input.CombineFileRecordReaderWrapper;
 import org.apache.hadoop.mapreduce.lib.input.CombineFileSplit;
 
 import java.io.BufferedReader;
@@ -43,7 +43,7 @@ import javax.annotation.Nullable;
  * Combined input format that tracks which file each text record was read from and optionally emits a file header
  * as the first record for each split.
  */
-public class CombineTextInputFormat extends CombineFileInputFormat<NullWritable, StructuredRecord> {
+public class CombineTextInputFormat extends CombinePathTrackingInputFormat {
   static final String HEADER = "combine.path.tracking.header";
 
   /**
@@ -101,7 +101,12 @@ public class CombineTextInputFormat extends CombineFileInputFormat<NullWritable,
     if (combineSplit.getHeader() != null) {
       context.getConfiguration().set(HEADER, combineSplit.getHeader());
     }
-    return new CombineFileRecordReader<>(combineSplit, context, WrapperReader.class);
+    return new CombinePathTrackingRecordReader(combineSplit, context, WrapperReader.class);
+  }
+
+  @Override
+  protected Class<? extends RecordReader<NullWritable, StructuredRecord>> getRecordReaderClass() {
+    return WrapperReader.class;
   }
 
   /**
@@ -109,7 +114,7 @@ public class CombineTextInputFormat extends CombineFileInputFormat<NullWritable,
    * {@link PathTrackingInputFormat}. All it does is pick the i'th path in the CombineFileSplit to create a
    * FileSplit and use the delegate RecordReader to read that split.
    */
-  public static class WrapperReader extends CombineFileRecordReaderWrapper<NullWritable, StructuredRecord> {
+  public static class WrapperReader extends PathTrackingRecordReaderWrapper {
 
     public WrapperReader(CombineFileSplit split, TaskAttemptContext context,
                          Integer idx) throws IOException, InterruptedException {